@@ -0,0 +1,44 @@
+package sem.benchmark;
+
+/**
+ * A benchmark that can be run by BenchmarkRunner.
+ *
+ * <p>setUp() is called once before the warmup iterations, and tearDown() once after the measurement iterations.
+ * Within the iterations, run() is called repeatedly, and each call returns the number of operations it has done
+ * (for example the number of sentences read), which the runner turns into operations per second.
+ *
+ */
+public abstract class Benchmark {
+	private String name;
+
+	public Benchmark(String name){
+		this.name = name;
+	}
+
+	/**
+	 * @return	Name of the benchmark, used for selecting benchmarks on the command line.
+	 */
+	public String getName(){
+		return this.name;
+	}
+
+	/**
+	 * Prepare the data for the benchmark. The time spent here is not measured.
+	 * @throws Exception
+	 */
+	public void setUp() throws Exception{
+	}
+
+	/**
+	 * Do the measured work once.
+	 * @return	Number of operations.
+	 * @throws Exception
+	 */
+	public abstract long run() throws Exception;
+
+	/**
+	 * Delete any files created by the benchmark.
+	 */
+	public void tearDown(){
+	}
+}
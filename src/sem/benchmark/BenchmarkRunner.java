@@ -0,0 +1,259 @@
+package sem.benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs benchmarks in the same way as JMH: a number of warmup iterations that are not measured,
+ * followed by measurement iterations, optionally repeated in several freshly started JVMs (forks),
+ * so that the results do not depend on what the JIT compiler has seen from other benchmarks.
+ *
+ * <p>Each iteration calls Benchmark.run() repeatedly until the iteration time has passed.
+ * The score is the number of operations per second, and the allocation rate is measured as the number of bytes
+ * allocated by the benchmark thread per operation (when the JVM supports com.sun.management.ThreadMXBean).
+ *
+ * <p>Forked JVMs are started with the same java executable and classpath as the current one,
+ * and report the result of every iteration on standard output, in lines starting with RESULT_PREFIX.
+ *
+ */
+public class BenchmarkRunner {
+	/**
+	 * Prefix of the lines that forked JVMs use for reporting results.
+	 */
+	public static final String RESULT_PREFIX = "#result\t";
+
+	private int warmupIterations;
+	private int measurementIterations;
+	private double iterationSeconds;
+	private int forks;
+	private List<String> jvmArgs;
+
+	/**
+	 * The measurements of one benchmark.
+	 */
+	public static class Result{
+		private String name;
+		private ArrayList<Double> scores;
+		private ArrayList<Double> allocations;
+
+		public Result(String name){
+			this.name = name;
+			this.scores = new ArrayList<Double>();
+			this.allocations = new ArrayList<Double>();
+		}
+
+		public String getName(){
+			return this.name;
+		}
+
+		/**
+		 * Add the result of one measurement iteration.
+		 * @param score			Operations per second.
+		 * @param allocation	Bytes allocated per operation, or a negative number if it could not be measured.
+		 */
+		public void add(double score, double allocation){
+			this.scores.add(score);
+			this.allocations.add(allocation);
+		}
+
+		public int getCount(){
+			return this.scores.size();
+		}
+
+		/**
+		 * @return	Mean operations per second over all iterations.
+		 */
+		public double getScore(){
+			return mean(this.scores);
+		}
+
+		/**
+		 * @return	Standard deviation of the operations per second.
+		 */
+		public double getError(){
+			if(this.scores.size() < 2)
+				return 0.0;
+			double mean = this.getScore(), sum = 0.0;
+			for(double score : this.scores)
+				sum += (score - mean) * (score - mean);
+			return Math.sqrt(sum / (this.scores.size() - 1));
+		}
+
+		/**
+		 * @return	Mean bytes allocated per operation, or a negative number if it could not be measured.
+		 */
+		public double getAllocation(){
+			return mean(this.allocations);
+		}
+
+		private static double mean(ArrayList<Double> values){
+			if(values.isEmpty())
+				return 0.0;
+			double sum = 0.0;
+			for(double value : values)
+				sum += value;
+			return sum / values.size();
+		}
+	}
+
+	/**
+	 * Create a runner with the JMH defaults scaled down for a small corpus: 3 warmup and 5 measurement iterations of 1 second, 1 fork.
+	 */
+	public BenchmarkRunner(){
+		this(3, 5, 1.0, 1);
+	}
+
+	/**
+	 * Create a new runner.
+	 * @param warmupIterations		Number of iterations before measuring.
+	 * @param measurementIterations	Number of measured iterations.
+	 * @param iterationSeconds		Minimum length of each iteration.
+	 * @param forks					Number of separate JVMs to run each benchmark in, or 0 to run in this JVM.
+	 */
+	public BenchmarkRunner(int warmupIterations, int measurementIterations, double iterationSeconds, int forks){
+		if(warmupIterations < 0 || measurementIterations < 1 || iterationSeconds <= 0 || forks < 0)
+			throw new RuntimeException("Invalid benchmark settings.");
+		this.warmupIterations = warmupIterations;
+		this.measurementIterations = measurementIterations;
+		this.iterationSeconds = iterationSeconds;
+		this.forks = forks;
+		this.jvmArgs = new ArrayList<String>();
+	}
+
+	/**
+	 * Set extra arguments for the forked JVMs, for example "-Xmx2g".
+	 */
+	public void setJvmArgs(List<String> jvmArgs){
+		this.jvmArgs = new ArrayList<String>(jvmArgs);
+	}
+
+	public int getForks(){
+		return this.forks;
+	}
+
+	/**
+	 * @return	Bytes allocated by the current thread so far, or -1 if the JVM cannot tell.
+	 */
+	private static long getAllocatedBytes(){
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if(bean instanceof com.sun.management.ThreadMXBean){
+			com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean)bean;
+			if(sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled())
+				return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+
+	/**
+	 * Run one iteration.
+	 * @return	Operations per second and bytes allocated per operation.
+	 */
+	private double[] iteration(Benchmark benchmark) throws Exception{
+		System.gc();
+		long operations = 0;
+		long startBytes = getAllocatedBytes();
+		long start = System.nanoTime();
+		long end = start + (long)(this.iterationSeconds * 1e9);
+		do {
+			operations += benchmark.run();
+		} while(System.nanoTime() < end);
+		long time = System.nanoTime() - start;
+		long endBytes = getAllocatedBytes();
+		double allocation = (startBytes < 0 || operations == 0) ? -1.0 : (double)(endBytes - startBytes) / operations;
+		return new double[]{operations / (time / 1e9), allocation};
+	}
+
+	/**
+	 * Run a benchmark in this JVM, ignoring the number of forks.
+	 * @param benchmark	The benchmark.
+	 * @param report	Whether to print the result of each iteration for the parent JVM.
+	 * @return	The result of the measurement iterations.
+	 * @throws Exception
+	 */
+	public Result run(Benchmark benchmark, boolean report) throws Exception{
+		Result result = new Result(benchmark.getName());
+		benchmark.setUp();
+		try {
+			for(int i = 0; i < this.warmupIterations; i++)
+				this.iteration(benchmark);
+			for(int i = 0; i < this.measurementIterations; i++){
+				double[] measurement = this.iteration(benchmark);
+				result.add(measurement[0], measurement[1]);
+				if(report)
+					System.out.println(RESULT_PREFIX + benchmark.getName() + "\t" + measurement[0] + "\t" + measurement[1]);
+			}
+		} finally {
+			benchmark.tearDown();
+		}
+		return result;
+	}
+
+	/**
+	 * Run a benchmark in separate JVMs. The main class is started with the given arguments,
+	 * and has to run the benchmark with run(benchmark, true).
+	 * @param name		Name of the benchmark.
+	 * @param mainClass	Class whose main method runs the benchmark.
+	 * @param args		Arguments for the main method.
+	 * @return	The result of the measurement iterations in all the forks.
+	 * @throws IOException
+	 */
+	public Result runForked(String name, Class<?> mainClass, List<String> args) throws IOException{
+		Result result = new Result(name);
+		for(int fork = 0; fork < this.forks; fork++){
+			ArrayList<String> command = new ArrayList<String>();
+			command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+			command.addAll(this.jvmArgs);
+			command.add("-cp");
+			command.add(System.getProperty("java.class.path"));
+			command.add(mainClass.getName());
+			command.addAll(args);
+
+			ProcessBuilder builder = new ProcessBuilder(command);
+			builder.redirectErrorStream(true);
+			Process process = builder.start();
+			BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+			String line;
+			while((line = reader.readLine()) != null){
+				if(line.startsWith(RESULT_PREFIX)){
+					String[] fields = line.split("\t");
+					if(fields.length == 4 && fields[1].equals(name))
+						result.add(Double.parseDouble(fields[2]), Double.parseDouble(fields[3]));
+				}
+				else
+					System.out.println(line);
+			}
+			reader.close();
+			try {
+				if(process.waitFor() != 0)
+					throw new RuntimeException("Benchmark fork failed: " + name);
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return	The heading for format().
+	 */
+	public static String getHeader(){
+		return String.format("%-40s %5s %14s %12s %8s %14s", "Benchmark", "Cnt", "Score", "Error", "Units", "Alloc (B/op)");
+	}
+
+	/**
+	 * Format a result as a table row.
+	 * @param result	The result.
+	 * @param units		Name of the operations, for example "sent/s".
+	 * @return	The row.
+	 */
+	public static String format(Result result, String units){
+		String allocation = (result.getAllocation() < 0) ? "n/a" : String.format("%.1f", result.getAllocation());
+		return String.format("%-40s %5d %14.1f %12s %8s %14s", result.getName(), result.getCount(), result.getScore(), String.format("+- %.1f", result.getError()), units, allocation);
+	}
+}
@@ -0,0 +1,652 @@
+package sem.benchmark;
+
+import java.io.File;
+import java.util.Random;
+
+import sem.graphreader.GraphReaderType;
+import sem.graphreader.RaspGraphReader;
+import sem.graphwriter.ShardedGraphWriter;
+import sem.metrics.Counter;
+import sem.metrics.MetricsRegistry;
+import sem.util.FileWriter;
+
+/**
+ * Generates synthetic corpora of dependency graphs in the input formats (RASP, RASP XML, CnC, Parseval and TSV),
+ * for measuring the readers and the rest of the library on corpora of any size.
+ *
+ * <p>The sentences are random, but they have the shape of parser output:
+ * <ul>
+ * <li>Sentence lengths follow a log-normal distribution with the given mean, and every sentence ends with a full stop.</li>
+ * <li>Words are drawn from a vocabulary with a Zipf distribution. The most frequent words are function words (determiners, prepositions, conjunctions),
+ * the rest are nouns, verbs, adjectives and adverbs with RASP part-of-speech tags and affixes.</li>
+ * <li>Every sentence has a dependency tree over the words, where words mostly attach to nearby heads,
+ * and the GR types depend on the part of speech of the dependent.</li>
+ * <li>Alternative parses (the n-best list of RASP, RASP XML and TSV) differ from the first one in one or two attachments, and have decreasing scores.</li>
+ * </ul>
+ *
+ * <p>With metadata enabled, RASP XML sentences also contain the weighted GRs (ewg-weighted), which are calculated from the parses.
+ * The other formats always contain the metadata that is part of the format, such as the scores in the RASP header.
+ *
+ * <p>The same seed and settings give the same sentences in every format, so corpora in different formats can be compared with each other.
+ *
+ */
+public class CorpusGenerator {
+	/**
+	 * Default number of words in the vocabulary.
+	 */
+	public static final int VOCABULARY_SIZE = 50000;
+
+	/**
+	 * Default exponent of the Zipf distribution of words.
+	 */
+	public static final double ZIPF_EXPONENT = 1.0;
+
+	/**
+	 * Default mean number of words in a sentence, including the full stop.
+	 */
+	public static final double MEAN_LENGTH = 20.0;
+
+	/**
+	 * Default standard deviation of the logarithm of the sentence length.
+	 */
+	public static final double LENGTH_DEVIATION = 0.5;
+
+	/**
+	 * Default maximum number of words in a sentence.
+	 */
+	public static final int MAX_LENGTH = 100;
+
+	/**
+	 * Default number of parses for each sentence.
+	 */
+	public static final int PARSES = 10;
+
+	/**
+	 * Number of the most frequent words that are function words.
+	 */
+	private static final int FUNCTION_WORDS = 40;
+	private static final int MIN_LENGTH = 3;
+	private static final String CONSONANTS = "bdfgklmnprstvz";
+	private static final String VOWELS = "aeiou";
+
+	// RASP tag, affix, Penn tag, chunk tag, CCG supertag, GR type of dependents with this tag
+	private static final String[][] TAGS = new String[][]{
+		{"AT1", "", "DT", "I-NP", "NP[nb]/N", "det"},
+		{"II", "", "IN", "I-PP", "(NP\\NP)/NP", "ncmod"},
+		{"IO", "", "IN", "I-PP", "(NP\\NP)/NP", "iobj"},
+		{"CC", "", "CC", "O", "conj", "conj"},
+		{"NN1", "", "NN", "I-NP", "N", "dobj"},
+		{"NN2", "s", "NNS", "I-NP", "N", "dobj"},
+		{"NP1", "", "NNP", "I-NP", "N", "dobj"},
+		{"VV0", "", "VB", "I-VP", "(S[b]\\NP)/NP", "xcomp"},
+		{"VVZ", "s", "VBZ", "I-VP", "(S[dcl]\\NP)/NP", "xcomp"},
+		{"VVD", "ed", "VBD", "I-VP", "(S[dcl]\\NP)/NP", "xcomp"},
+		{"VVG", "ing", "VBG", "I-VP", "(S[ng]\\NP)/NP", "xmod"},
+		{"JJ", "", "JJ", "I-NP", "N/N", "ncmod"},
+		{"RR", "", "RB", "I-ADVP", "(S\\NP)\\(S\\NP)", "ncmod"},
+		{".", "", ".", "O", ".", null}
+	};
+	private static final int TAG_RASP = 0, TAG_AFFIX = 1, TAG_PENN = 2, TAG_CHUNK = 3, TAG_SUPERTAG = 4, TAG_GR = 5;
+	private static final int FUNCTION_TAGS = 4;
+	private static final int PUNCTUATION_TAG = TAGS.length - 1;
+	// Relative frequencies of the content word tags, starting from NN1
+	private static final int[] CONTENT_TAG_WEIGHTS = new int[]{30, 12, 10, 5, 6, 5, 4, 18, 10};
+
+	private long seed;
+	private int vocabularySize;
+	private double zipfExponent;
+	private double meanLength;
+	private double lengthDeviation;
+	private int maxLength;
+	private int parses;
+	private boolean metadata;
+	private Counter sentenceCounter;
+
+	private String[] lemmas;
+	private int[] lemmaTags;
+	private double[] cumulative;
+
+	// The current sentence
+	private Random random;
+	private int length;
+	private int[] words;
+	private int[][] heads;
+	private String[][] types;
+	private double[] scores;
+	private int[] attached;
+	private StringBuilder builder;
+
+	/**
+	 * Create a generator with the default settings.
+	 * @param seed	Seed for the random numbers.
+	 */
+	public CorpusGenerator(long seed){
+		this.seed = seed;
+		this.meanLength = MEAN_LENGTH;
+		this.lengthDeviation = LENGTH_DEVIATION;
+		this.maxLength = MAX_LENGTH;
+		this.parses = PARSES;
+		this.metadata = false;
+		this.sentenceCounter = null;
+		this.builder = new StringBuilder();
+		this.setVocabulary(VOCABULARY_SIZE, ZIPF_EXPONENT);
+	}
+
+	/**
+	 * Set the vocabulary.
+	 * @param size			Number of different words.
+	 * @param zipfExponent	Exponent of the Zipf distribution; larger values make the frequent words more frequent.
+	 */
+	public void setVocabulary(int size, double zipfExponent){
+		if(size <= FUNCTION_WORDS || zipfExponent < 0)
+			throw new RuntimeException("The vocabulary needs more than " + FUNCTION_WORDS + " words and a non-negative Zipf exponent.");
+		this.vocabularySize = size;
+		this.zipfExponent = zipfExponent;
+		this.lemmas = null;
+	}
+
+	/**
+	 * Set the distribution of sentence lengths.
+	 * @param mean		Mean number of words in a sentence.
+	 * @param deviation	Standard deviation of the logarithm of the length.
+	 * @param max		Maximum number of words in a sentence.
+	 */
+	public void setLength(double mean, double deviation, int max){
+		if(mean < MIN_LENGTH || deviation < 0 || max < mean)
+			throw new RuntimeException("Invalid sentence length settings.");
+		this.meanLength = mean;
+		this.lengthDeviation = deviation;
+		this.maxLength = max;
+	}
+
+	/**
+	 * Set the number of parses for each sentence. CnC and Parseval only contain the first one.
+	 * @param parses	Number of parses.
+	 */
+	public void setParses(int parses){
+		if(parses < 1)
+			throw new RuntimeException("Sentences need to have at least 1 parse.");
+		this.parses = parses;
+	}
+
+	/**
+	 * Include optional metadata in the output (weighted GRs in RASP XML).
+	 * @param metadata
+	 */
+	public void setMetadata(boolean metadata){
+		this.metadata = metadata;
+	}
+
+	/**
+	 * Count the generated sentences in a metrics registry, in the counter "generator.sentences".
+	 * @param metrics	Registry for the metrics, or null to disable them.
+	 */
+	public void setMetrics(MetricsRegistry metrics){
+		this.sentenceCounter = (metrics != null) ? metrics.counter("generator.sentences") : null;
+	}
+
+	/**
+	 * @param type	Input type.
+	 * @return	True if corpora can be generated in this format.
+	 */
+	public static boolean isSupported(GraphReaderType type){
+		return type == GraphReaderType.RASP || type == GraphReaderType.RASP_XML || type == GraphReaderType.CNC
+				|| type == GraphReaderType.PARSEVAL || type == GraphReaderType.TSV;
+	}
+
+	/**
+	 * Create the vocabulary. The words are made of syllables, so that they look like words and are unique.
+	 */
+	private void createVocabulary(){
+		Random random = new Random(this.seed);
+		this.lemmas = new String[this.vocabularySize];
+		this.lemmaTags = new int[this.vocabularySize];
+		this.cumulative = new double[this.vocabularySize];
+
+		int weightSum = 0;
+		for(int weight : CONTENT_TAG_WEIGHTS)
+			weightSum += weight;
+
+		int syllables = CONSONANTS.length() * VOWELS.length();
+		double sum = 0.0;
+		for(int rank = 0; rank < this.vocabularySize; rank++){
+			StringBuilder lemma = new StringBuilder();
+			int n = rank;
+			do {
+				int syllable = n % syllables;
+				lemma.append(CONSONANTS.charAt(syllable / VOWELS.length())).append(VOWELS.charAt(syllable % VOWELS.length()));
+				n = n / syllables - 1;
+			} while(n >= 0);
+			this.lemmas[rank] = lemma.toString();
+
+			if(rank < FUNCTION_WORDS)
+				this.lemmaTags[rank] = rank % FUNCTION_TAGS;
+			else {
+				int r = random.nextInt(weightSum), tag = 0;
+				while(r >= CONTENT_TAG_WEIGHTS[tag])
+					r -= CONTENT_TAG_WEIGHTS[tag++];
+				this.lemmaTags[rank] = FUNCTION_TAGS + tag;
+			}
+
+			sum += 1.0 / Math.pow(rank + 1, this.zipfExponent);
+			this.cumulative[rank] = sum;
+		}
+	}
+
+	/**
+	 * Draw a word from the Zipf distribution.
+	 */
+	private int nextWord(){
+		double r = this.random.nextDouble() * this.cumulative[this.cumulative.length - 1];
+		int low = 0, high = this.cumulative.length - 1;
+		while(low < high){
+			int middle = (low + high) >>> 1;
+			if(this.cumulative[middle] < r)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+
+	private int getTag(int token){
+		return (this.words[token] < 0) ? PUNCTUATION_TAG : this.lemmaTags[this.words[token]];
+	}
+
+	private String getLemma(int token){
+		return (this.words[token] < 0) ? "." : this.lemmas[this.words[token]];
+	}
+
+	private String getWord(int token){
+		return this.getLemma(token) + TAGS[this.getTag(token)][TAG_AFFIX];
+	}
+
+	/**
+	 * Choose the GR type of an edge from the tags of the dependent and the head.
+	 */
+	private String getType(int head, int dep){
+		String type = TAGS[this.getTag(dep)][TAG_GR];
+		if(type.equals("dobj") && dep < head && TAGS[this.getTag(head)][TAG_CHUNK].equals("I-VP"))
+			return "ncsubj";
+		return type;
+	}
+
+	/**
+	 * Check whether a token is the same as another one or is below it in the tree of a parse.
+	 */
+	private boolean isBelow(int[] heads, int token, int ancestor){
+		while(token >= 0){
+			if(token == ancestor)
+				return true;
+			token = heads[token];
+		}
+		return false;
+	}
+
+	/**
+	 * Generate the next sentence with all its parses.
+	 */
+	private void nextSentence(){
+		double gaussian = this.random.nextGaussian() * this.lengthDeviation;
+		double mu = Math.log(this.meanLength) - this.lengthDeviation * this.lengthDeviation / 2;
+		this.length = (int)Math.round(Math.exp(mu + gaussian));
+		this.length = Math.max(MIN_LENGTH, Math.min(this.maxLength, this.length));
+
+		for(int i = 0; i < this.length - 1; i++)
+			this.words[i] = this.nextWord();
+		this.words[this.length - 1] = -1;
+
+		// The first parse is a random tree over the words, without the full stop.
+		int[] first = this.heads[0];
+		int root = this.random.nextInt(this.length - 1);
+		first[root] = -1;
+		first[this.length - 1] = -1;
+		for(int i = 0; i < this.length - 1; i++)
+			this.attached[i] = i;
+		this.swapToAttached(root, 0);
+		int attachedCount = 1;
+		for(int i = 0; i < this.length - 1; i++){
+			if(i == root)
+				continue;
+			// Moving the words in a random order, from the ones that are not attached yet
+			int remaining = this.length - 1 - attachedCount;
+			int token = this.attached[attachedCount + this.random.nextInt(remaining)];
+			int head = this.attached[this.random.nextInt(attachedCount)];
+			for(int k = 0; k < 2; k++){
+				int candidate = this.attached[this.random.nextInt(attachedCount)];
+				if(Math.abs(candidate - token) < Math.abs(head - token))
+					head = candidate;
+			}
+			first[token] = head;
+			this.swapToAttached(token, attachedCount++);
+		}
+		for(int i = 0; i < this.length - 1; i++)
+			this.types[0][i] = (first[i] >= 0) ? this.getType(first[i], i) : null;
+		this.scores[0] = -(this.length * 1.5 + this.random.nextDouble() * 5.0);
+
+		// The other parses change one or two attachments of the first one.
+		for(int p = 1; p < this.parses; p++){
+			System.arraycopy(first, 0, this.heads[p], 0, this.length);
+			System.arraycopy(this.types[0], 0, this.types[p], 0, this.length);
+			int changes = 1 + this.random.nextInt(2);
+			for(int c = 0; c < changes && this.length > MIN_LENGTH; c++){
+				int token = this.random.nextInt(this.length - 1);
+				if(token == root)
+					continue;
+				for(int attempt = 0; attempt < 10; attempt++){
+					int head = this.random.nextInt(this.length - 1);
+					if(!this.isBelow(this.heads[p], head, token)){
+						this.heads[p][token] = head;
+						this.types[p][token] = this.getType(head, token);
+						break;
+					}
+				}
+			}
+			this.scores[p] = this.scores[p - 1] - this.random.nextDouble();
+		}
+	}
+
+	/**
+	 * Move a token to the given position in the list of tokens, which starts with the attached tokens and continues with the rest.
+	 */
+	private void swapToAttached(int token, int position){
+		for(int i = position; i < this.length - 1; i++){
+			if(this.attached[i] == token){
+				this.attached[i] = this.attached[position];
+				this.attached[position] = token;
+				return;
+			}
+		}
+	}
+
+	private static boolean hasSubtype(String type){
+		return RaspGraphReader.grsWithSubtype.contains(type);
+	}
+
+	private static boolean hasInitialGr(String type){
+		return RaspGraphReader.grsWithInitialGr.contains(type);
+	}
+
+	/**
+	 * Add a decimal number with three digits after the point.
+	 */
+	private static void appendDecimal(StringBuilder builder, double number){
+		long value = Math.round(Math.abs(number) * 1000);
+		if(number < 0 && value > 0)
+			builder.append('-');
+		builder.append(value / 1000).append('.');
+		long fraction = value % 1000;
+		if(fraction < 100)
+			builder.append('0');
+		if(fraction < 10)
+			builder.append('0');
+		builder.append(fraction);
+	}
+
+	private void appendRaspLabel(StringBuilder builder, int token, boolean pos){
+		builder.append(this.getLemma(token));
+		String affix = TAGS[this.getTag(token)][TAG_AFFIX];
+		if(affix.length() > 0)
+			builder.append('+').append(affix);
+		builder.append(':').append(token + 1);
+		if(pos)
+			builder.append('_').append(TAGS[this.getTag(token)][TAG_RASP]);
+	}
+
+	private void appendRasp(StringBuilder builder){
+		builder.append('(');
+		for(int i = 0; i < this.length; i++){
+			if(i > 0)
+				builder.append(' ');
+			builder.append('|').append(this.getWord(i)).append('|');
+		}
+		builder.append(") ").append(this.parses).append(" ; (");
+		for(int p = 0; p < this.parses; p++){
+			if(p > 0)
+				builder.append(' ');
+			appendDecimal(builder, this.scores[p]);
+		}
+		builder.append(")\n");
+		for(int p = 0; p < this.parses; p++){
+			builder.append("gr-list: ").append(p + 1).append('\n');
+			for(int i = 0; i < this.length; i++){
+				if(this.heads[p][i] < 0)
+					continue;
+				String type = this.types[p][i];
+				builder.append("(|").append(type).append("| ");
+				if(hasSubtype(type))
+					builder.append("_ ");
+				builder.append('|');
+				this.appendRaspLabel(builder, this.heads[p][i], true);
+				builder.append("| |");
+				this.appendRaspLabel(builder, i, true);
+				builder.append('|');
+				if(hasInitialGr(type))
+					builder.append(" _");
+				builder.append(")\n");
+			}
+		}
+		builder.append("\n\n");
+	}
+
+	private void appendRaspXmlGr(StringBuilder builder, String type, int head, int dep){
+		builder.append("<gr type='").append(type).append('\'');
+		if(hasSubtype(type))
+			builder.append(" subtype='_'");
+		builder.append(" head='").append(head + 1).append("' dep='").append(dep + 1).append("'>");
+	}
+
+	private void appendRaspXml(StringBuilder builder, long sentence){
+		builder.append("<sentence num='").append(sentence + 1).append("'>\n<lemma-list>");
+		for(int i = 0; i < this.length; i++){
+			String affix = TAGS[this.getTag(i)][TAG_AFFIX];
+			builder.append("<lemma  lem='").append(this.getLemma(i)).append('\'');
+			if(affix.length() > 0)
+				builder.append(" affix='").append(affix).append('\'');
+			builder.append(" num='").append(i + 1).append("' wnum='").append(i + 1).append("'  pos='").append(TAGS[this.getTag(i)][TAG_RASP]).append("' />");
+		}
+		builder.append("</lemma-list>\n<nbest-parses num='").append(this.parses).append("'> \n");
+		for(int p = 0; p < this.parses; p++){
+			builder.append("<parse-set pnum='").append(p + 1).append("' score='");
+			appendDecimal(builder, this.scores[p]);
+			builder.append("'> \n<gr-list>");
+			for(int i = 0; i < this.length; i++){
+				if(this.heads[p][i] >= 0){
+					this.appendRaspXmlGr(builder, this.types[p][i], this.heads[p][i], i);
+					builder.append("</gr>");
+				}
+			}
+			builder.append("\n</gr-list>\n</parse-set>\n");
+		}
+		builder.append("</nbest-parses>\n");
+		if(this.metadata){
+			// The weight of a GR is the proportion of the parses that contain it.
+			builder.append("<ewg-weighted>");
+			for(int i = 0; i < this.length; i++){
+				for(int p = 0; p < this.parses; p++){
+					int head = this.heads[p][i];
+					if(head < 0)
+						continue;
+					boolean seen = false;
+					int count = 0;
+					for(int q = 0; q < this.parses; q++){
+						if(this.heads[q][i] == head && this.types[q][i].equals(this.types[p][i])){
+							if(q < p)
+								seen = true;
+							count++;
+						}
+					}
+					if(seen)
+						continue;
+					this.appendRaspXmlGr(builder, this.types[p][i], head, i);
+					builder.append("<gr-weight weight='");
+					appendDecimal(builder, (double)count / this.parses);
+					builder.append("'/></gr>");
+				}
+			}
+			builder.append("\n</ewg-weighted>\n");
+		}
+		builder.append("</sentence>\n");
+	}
+
+	private void appendCnC(StringBuilder builder){
+		for(int i = 0; i < this.length; i++){
+			int head = this.heads[0][i];
+			if(head < 0)
+				continue;
+			String type = this.types[0][i];
+			builder.append('(').append(type).append(' ');
+			if(hasSubtype(type))
+				builder.append("_ ");
+			builder.append(this.getWord(head)).append('_').append(head).append(' ').append(this.getWord(i)).append('_').append(i);
+			if(hasInitialGr(type))
+				builder.append(" _");
+			builder.append(")\n");
+		}
+		builder.append("<c>");
+		for(int i = 0; i < this.length; i++){
+			String[] tag = TAGS[this.getTag(i)];
+			builder.append(' ').append(this.getWord(i)).append('|').append(this.getLemma(i)).append('|').append(tag[TAG_PENN]).append('|')
+				.append(tag[TAG_CHUNK]).append("|O|").append(tag[TAG_SUPERTAG]);
+		}
+		builder.append("\n\n");
+	}
+
+	private void appendParseval(StringBuilder builder, long sentence){
+		builder.append(sentence + 1).append('\n');
+		for(int i = 0; i < this.length; i++){
+			int head = this.heads[0][i];
+			if(head < 0)
+				continue;
+			String type = this.types[0][i];
+			builder.append('(').append(type).append(' ');
+			if(hasSubtype(type))
+				builder.append("_ ");
+			this.appendRaspLabel(builder, head, false);
+			builder.append(' ');
+			this.appendRaspLabel(builder, i, false);
+			if(hasInitialGr(type))
+				builder.append(" _");
+			builder.append(")\n");
+		}
+		builder.append("\n\n");
+	}
+
+	private void appendTSV(StringBuilder builder){
+		builder.append("<s>\n");
+		for(int p = 0; p < this.parses; p++){
+			builder.append("<g>\n<lem>\n");
+			for(int i = 0; i < this.length; i++)
+				builder.append(i + 1).append('\t').append(this.getLemma(i)).append('\t').append(TAGS[this.getTag(i)][TAG_RASP]).append('\n');
+			builder.append("</lem>\n<gr>\n");
+			for(int i = 0; i < this.length; i++)
+				if(this.heads[p][i] >= 0)
+					builder.append(this.types[p][i]).append('\t').append(this.heads[p][i] + 1).append('\t').append(i + 1).append('\n');
+			builder.append("</gr>\n</g>\n");
+		}
+		builder.append("</s>\n");
+	}
+
+	/**
+	 * @return	Text at the start of every file.
+	 */
+	private static String getHeader(GraphReaderType type){
+		switch(type){
+		case RASP_XML:
+			return "<rasp>";
+		case CNC:
+			return "# this file was generated by sem.benchmark.CorpusGenerator\n\n";
+		case PARSEVAL:
+			return "%LB (\n%RB )\n\n";
+		default:
+			return "";
+		}
+	}
+
+	/**
+	 * @return	Text at the end of every file.
+	 */
+	private static String getFooter(GraphReaderType type){
+		return (type == GraphReaderType.RASP_XML) ? "</rasp>\n" : "";
+	}
+
+	/**
+	 * Generate a corpus into one file.
+	 * The output is compressed if the file name ends with .gz, .bgz or .lz4 (see FileWriter).
+	 * @param type			Format of the corpus.
+	 * @param outputPath	Output file.
+	 * @param sentences		Number of sentences.
+	 */
+	public void generate(GraphReaderType type, String outputPath, long sentences){
+		this.generate(type, outputPath, sentences, 0);
+	}
+
+	/**
+	 * Generate a corpus, splitting it into several files. The files are named as the shards of ShardedGraphWriter,
+	 * and the directory that contains them can be read as one corpus, as long as it does not contain other files.
+	 * @param type				Format of the corpus.
+	 * @param outputPath		Output file, which the names of the other files are created from.
+	 * @param sentences			Number of sentences.
+	 * @param shardSentences	Number of sentences in one file, or 0 to write everything into outputPath.
+	 */
+	public void generate(GraphReaderType type, String outputPath, long sentences, long shardSentences){
+		if(!isSupported(type))
+			throw new RuntimeException("Corpora cannot be generated in this format: " + type.getLabel());
+		if(sentences < 0 || shardSentences < 0)
+			throw new RuntimeException("The number of sentences cannot be negative.");
+		if(this.lemmas == null)
+			this.createVocabulary();
+		File parent = new File(outputPath).getAbsoluteFile().getParentFile();
+		if(parent != null)
+			parent.mkdirs();
+
+		this.random = new Random(this.seed);
+		this.words = new int[this.maxLength];
+		this.attached = new int[this.maxLength];
+		this.heads = new int[this.parses][this.maxLength];
+		this.types = new String[this.parses][this.maxLength];
+		this.scores = new double[this.parses];
+
+		String header = getHeader(type), footer = getFooter(type);
+		FileWriter writer = null;
+		int shard = 0;
+		for(long sentence = 0; sentence < sentences; sentence++){
+			if(writer == null || (shardSentences > 0 && sentence % shardSentences == 0)){
+				if(writer != null){
+					writer.write(footer);
+					writer.close();
+				}
+				writer = new FileWriter((shardSentences > 0) ? ShardedGraphWriter.getShardPath(outputPath, -1, shard++) : outputPath);
+				writer.write(header);
+			}
+
+			this.nextSentence();
+
+			this.builder.setLength(0);
+			switch(type){
+			case RASP:
+				this.appendRasp(this.builder);
+				break;
+			case RASP_XML:
+				this.appendRaspXml(this.builder, sentence);
+				break;
+			case CNC:
+				this.appendCnC(this.builder);
+				break;
+			case PARSEVAL:
+				this.appendParseval(this.builder, sentence);
+				break;
+			default:
+				this.appendTSV(this.builder);
+				break;
+			}
+			writer.write(this.builder.toString());
+			if(this.sentenceCounter != null)
+				this.sentenceCounter.inc();
+		}
+		if(writer != null){
+			writer.write(footer);
+			writer.close();
+		}
+	}
+}
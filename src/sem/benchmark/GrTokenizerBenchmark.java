@@ -0,0 +1,137 @@
+package sem.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+
+import sem.exception.GraphFormatException;
+import sem.graphreader.GrTokenizer;
+import sem.graphreader.RaspGraphReader;
+import sem.graphreader.RaspLabel;
+import sem.util.FileReader;
+
+/**
+ * Compares the split-based implementation that RaspGraphReader.parseGr() used to have with the GrTokenizer.
+ * All GR lines are collected from a RASP file, and then parsed repeatedly with both methods.
+ * 
+ * <p>Usage: GrTokenizerBenchmark [raspfile] [iterations]
+ *
+ */
+public class GrTokenizerBenchmark {
+	
+	/**
+	 * The previous implementation of RaspGraphReader.parseGr(), for comparison.
+	 */
+	public static LinkedHashMap<String,String> parseGrSplit(String line, boolean simpleEdgeFormat) throws GraphFormatException{
+		LinkedHashMap<String,String> arguments = new LinkedHashMap<String,String>();
+		arguments.put("type", null);
+		arguments.put("sybtype", null);
+		arguments.put("head", null);
+		arguments.put("dependent", null);
+		arguments.put("initialgr", null);
+		
+		String originalLine = line;
+		if(line == null)
+			throw new RuntimeException("Input line cannot be null");
+		if(line.length() >= 2 && line.charAt(0) == '(' && line.charAt(line.length()-1) == ')')
+			line = line.substring(1, line.length()-1);
+		
+		ArrayList<String> lineParts = new ArrayList<String>(Arrays.asList(line.split("\\s+")));
+		for(int i = 0; i < lineParts.size(); i++){
+			String linePart = lineParts.get(i);
+			if(linePart.length() >= 2 && linePart.charAt(0) == '|' && linePart.charAt(linePart.length()-1) == '|'){
+				lineParts.add(i, linePart.substring(1, linePart.length()-1));
+				lineParts.remove(i+1);
+			}
+			else if(i == 0)
+				break;
+		}
+		
+		String type = lineParts.get(0);
+		arguments.put("type", type);
+		
+		if(type.equals("passive")){
+			if(lineParts.size() != 2)
+				throw new GraphFormatException("GR has wrong number of arguments", originalLine);
+			arguments.put("head", lineParts.get(1));
+		}
+		else if(simpleEdgeFormat || (!RaspGraphReader.grsWithSubtype.contains(type) && !RaspGraphReader.grsWithInitialGr.contains(type))){
+			if(lineParts.size() != 3)
+				throw new GraphFormatException("GR has wrong number of arguments", originalLine);
+			arguments.put("head", lineParts.get(1));
+			arguments.put("dependent", lineParts.get(2));
+		}
+		else if(RaspGraphReader.grsWithSubtype.contains(type)){
+			if(lineParts.size() != 4)
+				throw new GraphFormatException("GR has wrong number of arguments", originalLine);
+			arguments.put("subtype", lineParts.get(1));
+			arguments.put("head", lineParts.get(2));
+			arguments.put("dependent", lineParts.get(3));
+		}
+		else {
+			if(lineParts.size() != 4)
+				throw new GraphFormatException("GR has wrong number of arguments", originalLine);
+			arguments.put("head", lineParts.get(1));
+			arguments.put("dependent", lineParts.get(2));
+			arguments.put("initialgr", lineParts.get(3));
+		}
+		return arguments;
+	}
+	
+	public static ArrayList<String> readGrLines(String inputPath) throws GraphFormatException{
+		ArrayList<String> lines = new ArrayList<String>();
+		FileReader reader = new FileReader(inputPath);
+		String section = "";
+		while(reader.hasNext()){
+			String line = reader.next().trim();
+			if(!line.startsWith("("))
+				section = line;
+			else if(section.startsWith("gr-list: "))
+				lines.add(line);
+		}
+		reader.close();
+		return lines;
+	}
+	
+	public static void main(String[] args) throws GraphFormatException {
+		String inputPath = (args.length > 0) ? args[0] : "examples/rasp/pnp_1000.rasp.gz";
+		int iterations = (args.length > 1) ? Integer.parseInt(args[1]) : 200;
+		ArrayList<String> lines = readGrLines(inputPath);
+		
+		// Checking that both give the same result
+		for(String line : lines){
+			if(!RaspGraphReader.parseGr(line, false).equals(parseGrSplit(line, false)))
+				throw new RuntimeException("Different results for GR: " + line);
+		}
+		
+		GrTokenizer tokenizer = new GrTokenizer();
+		RaspLabel label = new RaspLabel();
+		long checksum = 0;
+		for(int round = 0; round < 3; round++){
+			long start = System.nanoTime();
+			for(int i = 0; i < iterations; i++){
+				for(String line : lines){
+					LinkedHashMap<String,String> grInfo = parseGrSplit(line, false);
+					checksum += RaspGraphReader.parseLabel(grInfo.get("head")).get("lemma").length();
+				}
+			}
+			long splitTime = System.nanoTime() - start;
+			
+			start = System.nanoTime();
+			for(int i = 0; i < iterations; i++){
+				for(String line : lines){
+					tokenizer.parse(line, false);
+					tokenizer.parseLabel(tokenizer.getHeadToken(), label);
+					checksum += label.getIndex();
+				}
+			}
+			long tokenizerTime = System.nanoTime() - start;
+			
+			double count = (double)lines.size() * iterations;
+			System.out.println("Round " + (round+1) + ": " + lines.size() + " GRs x " + iterations);
+			System.out.printf("  split + map:  %8.1f GRs/ms%n", count / (splitTime / 1e6));
+			System.out.printf("  GrTokenizer:  %8.1f GRs/ms (%.1fx)%n", count / (tokenizerTime / 1e6), (double)splitTime / tokenizerTime);
+		}
+		System.out.println("Checksum: " + checksum);
+	}
+}
@@ -0,0 +1,370 @@
+package sem.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+import sem.exception.GraphFormatException;
+import sem.graph.Graph;
+import sem.graphreader.GraphReader;
+import sem.graphreader.GraphReaderFactory;
+import sem.graphreader.GraphReaderType;
+import sem.graphreader.RaspGraphReader;
+import sem.graphreader.RaspXmlGraphReader;
+import sem.graphreader.TSVGraphReader;
+import sem.graphwriter.GraphWriter;
+import sem.graphwriter.GraphWriterType;
+import sem.util.FileReader;
+
+/**
+ * Throughput benchmarks for the graph readers and writers, run with BenchmarkRunner.
+ *
+ * <p>Every reader is measured on its pnp_1000 example file, and on an inflated corpus made of several uncompressed copies of it
+ * (which leaves out the gzip decompression and gives the JIT compiler a longer run). The TSV and TikZ writers are measured by writing
+ * the sentences of the TSV example, which are held in memory, into a temporary file. The score is sentences per second.
+ *
+ * <p>The node selection of RaspXmlGraphReader is measured in both modes with all parses enabled ("nodes.tokens" and "nodes.all"),
+ * on the pnp_1000 example and on a generated corpus with 10 parses for each sentence (see CorpusGenerator).
+ *
+ * <p>Usage: GraphBenchmarks [options] [regex]
+ * <br>Only the benchmarks whose name contains a match for the regular expression are run.
+ * <br>Options (the same as in JMH):
+ * <br>-wi &lt;n&gt;  Number of warmup iterations (default 3)
+ * <br>-i &lt;n&gt;   Number of measurement iterations (default 5)
+ * <br>-r &lt;s&gt;   Length of an iteration in seconds (default 1)
+ * <br>-f &lt;n&gt;   Number of forked JVMs for each benchmark, 0 to run everything in this JVM (default 1)
+ * <br>-jvmArgs &lt;args&gt;   Extra arguments for the forked JVMs, separated by spaces
+ * <br>-inflate &lt;n&gt;   Number of copies in the inflated corpora (default 10)
+ * <br>-l        List the benchmarks and exit
+ *
+ */
+public class GraphBenchmarks {
+	private static final String[][] READER_INPUTS = new String[][]{
+		{"rasp", "examples/rasp/pnp_1000.rasp.gz"},
+		{"raspxml", "examples/raspxml/pnp_1000.xml.gz"},
+		{"cnc", "examples/cnc/pnp_1000_tok.cnc.gz"},
+		{"parseval", "examples/parseval/pnp_1000.parseval.gz"},
+		{"tsv", "examples/tsv/pnp_1000.tsv.gz"}
+	};
+	private static final String WRITER_INPUT = "examples/tsv/pnp_1000.tsv.gz";
+	private static final String RASP_XML_INPUT = "examples/raspxml/pnp_1000.xml.gz";
+	private static final long GENERATED_SENTENCES = 2000;
+
+	private static long readAll(GraphReader reader) throws GraphFormatException{
+		long sentences = 0;
+		while(reader.hasNext()){
+			reader.nextSentence();
+			sentences++;
+		}
+		reader.close();
+		return sentences;
+	}
+
+	private static GraphReaderFactory getFactory(final GraphReaderType type){
+		return new GraphReaderFactory(){
+			@Override
+			public GraphReader makeGraphReader(String inputPath) throws GraphFormatException {
+				return type.makeGraphReader(inputPath);
+			}
+		};
+	}
+
+	private static GraphReaderFactory getRaspXmlFactory(final int nodeSelectionMode){
+		return new GraphReaderFactory(){
+			@Override
+			public GraphReader makeGraphReader(String inputPath) throws GraphFormatException {
+				return new RaspXmlGraphReader(inputPath, nodeSelectionMode, true, false);
+			}
+		};
+	}
+
+	/**
+	 * Creates readers that return all the parses, optionally as NBestSentence with shared nodes.
+	 */
+	private static GraphReaderFactory getNBestFactory(final GraphReaderType type, final boolean sharedParses){
+		return new GraphReaderFactory(){
+			@Override
+			public GraphReader makeGraphReader(String inputPath) throws GraphFormatException {
+				if(type == GraphReaderType.RASP)
+					return new RaspGraphReader(inputPath, true, sharedParses);
+				else if(type == GraphReaderType.RASP_XML)
+					return new RaspXmlGraphReader(inputPath, RaspXmlGraphReader.NODES_ALL, true, false, sharedParses);
+				return new TSVGraphReader(inputPath, true, sharedParses);
+			}
+		};
+	}
+
+	/**
+	 * Reads the whole input with a reader of the given type.
+	 */
+	public static class ReaderBenchmark extends Benchmark{
+		private GraphReaderFactory factory;
+		private String inputPath;
+		private int copies;
+		private File inflatedDir;
+
+		/**
+		 * @param type		Type of the reader.
+		 * @param inputPath	Input file.
+		 * @param corpus	Name of the corpus, which is the last part of the benchmark name.
+		 * @param copies	Number of uncompressed copies of the file to read, or 0 to read the file itself.
+		 */
+		public ReaderBenchmark(GraphReaderType type, String inputPath, String corpus, int copies){
+			this("reader." + type.getLabel() + "." + corpus, getFactory(type), inputPath, copies);
+		}
+
+		/**
+		 * @param name		Name of the benchmark.
+		 * @param factory	Creates the readers.
+		 * @param inputPath	Input file.
+		 * @param copies	Number of uncompressed copies of the file to read, or 0 to read the file itself.
+		 */
+		public ReaderBenchmark(String name, GraphReaderFactory factory, String inputPath, int copies){
+			super(name);
+			this.factory = factory;
+			this.inputPath = inputPath;
+			this.copies = copies;
+		}
+
+		@Override
+		public void setUp() throws IOException{
+			if(this.copies == 0)
+				return;
+			File input = new File(this.inputPath);
+			String name = input.getName().replaceAll("\\.gz$", "");
+			byte[] data;
+			InputStream in = FileReader.openInputStream(input, 0);
+			try {
+				data = readAll(in);
+			} finally {
+				in.close();
+			}
+			this.inflatedDir = Files.createTempDirectory("semgraph-benchmark").toFile();
+			for(int i = 0; i < this.copies; i++){
+				OutputStream out = new FileOutputStream(new File(this.inflatedDir, String.format("%03d-%s", i, name)));
+				out.write(data);
+				out.close();
+			}
+		}
+
+		@Override
+		public long run() throws Exception{
+			return readAll(this.factory.makeGraphReader(this.inflatedDir != null ? this.inflatedDir.getPath() : this.inputPath));
+		}
+
+		@Override
+		public void tearDown(){
+			deleteDir(this.inflatedDir);
+			this.inflatedDir = null;
+		}
+	}
+
+	/**
+	 * Reads a corpus that is generated in setUp().
+	 */
+	public static class GeneratedReaderBenchmark extends Benchmark{
+		private GraphReaderFactory factory;
+		private GraphReaderType type;
+		private CorpusGenerator generator;
+		private long sentences;
+		private File corpusDir;
+
+		/**
+		 * @param name		Name of the benchmark.
+		 * @param factory	Creates the readers.
+		 * @param type		Format of the corpus.
+		 * @param generator	Generator with the settings for the corpus.
+		 * @param sentences	Number of sentences in the corpus.
+		 */
+		public GeneratedReaderBenchmark(String name, GraphReaderFactory factory, GraphReaderType type, CorpusGenerator generator, long sentences){
+			super(name);
+			this.factory = factory;
+			this.type = type;
+			this.generator = generator;
+			this.sentences = sentences;
+		}
+
+		@Override
+		public void setUp() throws IOException{
+			this.corpusDir = Files.createTempDirectory("semgraph-benchmark").toFile();
+			this.generator.generate(this.type, new File(this.corpusDir, "corpus." + this.type.getLabel()).getPath(), this.sentences);
+		}
+
+		@Override
+		public long run() throws Exception{
+			return readAll(this.factory.makeGraphReader(this.corpusDir.getPath()));
+		}
+
+		@Override
+		public void tearDown(){
+			deleteDir(this.corpusDir);
+			this.corpusDir = null;
+		}
+	}
+
+	/**
+	 * Writes sentences held in memory with a writer of the given type.
+	 */
+	public static class WriterBenchmark extends Benchmark{
+		private GraphWriterType type;
+		private ArrayList<ArrayList<Graph>> sentences;
+		private File outputDir;
+
+		public WriterBenchmark(GraphWriterType type){
+			super("writer." + type.getLabel());
+			this.type = type;
+		}
+
+		@Override
+		public void setUp() throws Exception{
+			this.sentences = new ArrayList<ArrayList<Graph>>();
+			GraphReader reader = GraphReaderType.TSV.makeGraphReader(WRITER_INPUT);
+			while(reader.hasNext())
+				this.sentences.add(reader.nextSentence());
+			reader.close();
+			this.outputDir = Files.createTempDirectory("semgraph-benchmark").toFile();
+		}
+
+		@Override
+		public long run() throws Exception{
+			GraphWriter writer = this.type.makeGraphWriter(new File(this.outputDir, "output").getPath());
+			for(ArrayList<Graph> sentence : this.sentences)
+				writer.write(sentence);
+			writer.close();
+			return this.sentences.size();
+		}
+
+		@Override
+		public void tearDown(){
+			deleteDir(this.outputDir);
+			this.outputDir = null;
+			this.sentences = null;
+		}
+	}
+
+	private static byte[] readAll(InputStream in) throws IOException{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1 << 16];
+		int n;
+		while((n = in.read(buffer)) > 0)
+			out.write(buffer, 0, n);
+		return out.toByteArray();
+	}
+
+	private static void deleteDir(File dir){
+		if(dir == null)
+			return;
+		for(File file : dir.listFiles())
+			file.delete();
+		dir.delete();
+	}
+
+	/**
+	 * Create all the benchmarks.
+	 * @param copies	Number of copies in the inflated corpora.
+	 * @return	List of benchmarks.
+	 */
+	public static ArrayList<Benchmark> getBenchmarks(int copies){
+		ArrayList<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		for(String[] input : READER_INPUTS)
+			benchmarks.add(new ReaderBenchmark(GraphReaderType.getType(input[0]), input[1], "pnp_1000", 0));
+		for(String[] input : READER_INPUTS)
+			benchmarks.add(new ReaderBenchmark(GraphReaderType.getType(input[0]), input[1], "inflated", copies));
+		benchmarks.add(new WriterBenchmark(GraphWriterType.TSV));
+		benchmarks.add(new WriterBenchmark(GraphWriterType.TIKZDEPENDENCY));
+
+		CorpusGenerator generator = new CorpusGenerator(1);
+		generator.setLength(40, CorpusGenerator.LENGTH_DEVIATION, CorpusGenerator.MAX_LENGTH);
+		generator.setParses(10);
+		for(int mode : new int[]{RaspXmlGraphReader.NODES_TOKENS, RaspXmlGraphReader.NODES_ALL}){
+			String nodes = (mode == RaspXmlGraphReader.NODES_TOKENS) ? "tokens" : "all";
+			benchmarks.add(new ReaderBenchmark("nodes." + nodes + ".pnp_1000", getRaspXmlFactory(mode), RASP_XML_INPUT, 0));
+			benchmarks.add(new GeneratedReaderBenchmark("nodes." + nodes + ".nbest", getRaspXmlFactory(mode), GraphReaderType.RASP_XML, generator, GENERATED_SENTENCES));
+		}
+		for(GraphReaderType type : new GraphReaderType[]{GraphReaderType.RASP, GraphReaderType.RASP_XML, GraphReaderType.TSV}){
+			benchmarks.add(new GeneratedReaderBenchmark("nbest." + type.getLabel(), getNBestFactory(type, false), type, generator, GENERATED_SENTENCES));
+			benchmarks.add(new GeneratedReaderBenchmark("nbest." + type.getLabel() + ".shared", getNBestFactory(type, true), type, generator, GENERATED_SENTENCES));
+		}
+		return benchmarks;
+	}
+
+	private static void printUsage(){
+		System.out.println("Usage: GraphBenchmarks [-wi <n>] [-i <n>] [-r <seconds>] [-f <forks>] [-jvmArgs <args>] [-inflate <copies>] [-l] [regex]");
+	}
+
+	public static void main(String[] args) throws Exception{
+		int warmupIterations = 3, measurementIterations = 5, forks = 1, copies = 10;
+		double iterationSeconds = 1.0;
+		boolean list = false, child = false;
+		String regex = "";
+		ArrayList<String> jvmArgs = new ArrayList<String>();
+		for(int i = 0; i < args.length; i++){
+			if(args[i].equals("-l"))
+				list = true;
+			else if(args[i].equals("-child"))
+				child = true;
+			else if(args[i].startsWith("-") && i + 1 < args.length){
+				if(args[i].equals("-wi"))
+					warmupIterations = Integer.parseInt(args[++i]);
+				else if(args[i].equals("-i"))
+					measurementIterations = Integer.parseInt(args[++i]);
+				else if(args[i].equals("-r"))
+					iterationSeconds = Double.parseDouble(args[++i]);
+				else if(args[i].equals("-f"))
+					forks = Integer.parseInt(args[++i]);
+				else if(args[i].equals("-inflate"))
+					copies = Integer.parseInt(args[++i]);
+				else if(args[i].equals("-jvmArgs"))
+					jvmArgs.addAll(Arrays.asList(args[++i].trim().split("\\s+")));
+				else {
+					printUsage();
+					return;
+				}
+			}
+			else if(!args[i].startsWith("-"))
+				regex = args[i];
+			else {
+				printUsage();
+				return;
+			}
+		}
+
+		Pattern pattern = Pattern.compile(regex);
+		ArrayList<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		for(Benchmark benchmark : getBenchmarks(copies))
+			if(pattern.matcher(benchmark.getName()).find())
+				benchmarks.add(benchmark);
+		if(list){
+			for(Benchmark benchmark : benchmarks)
+				System.out.println(benchmark.getName());
+			return;
+		}
+
+		BenchmarkRunner runner = new BenchmarkRunner(warmupIterations, measurementIterations, iterationSeconds, child ? 0 : forks);
+		runner.setJvmArgs(jvmArgs);
+		ArrayList<BenchmarkRunner.Result> results = new ArrayList<BenchmarkRunner.Result>();
+		for(Benchmark benchmark : benchmarks){
+			if(runner.getForks() == 0)
+				results.add(runner.run(benchmark, child));
+			else {
+				System.out.println("# Running " + benchmark.getName());
+				ArrayList<String> childArgs = new ArrayList<String>(Arrays.asList("-child", "-wi", "" + warmupIterations, "-i", "" + measurementIterations,
+						"-r", "" + iterationSeconds, "-inflate", "" + copies, "^" + Pattern.quote(benchmark.getName()) + "$"));
+				results.add(runner.runForked(benchmark.getName(), GraphBenchmarks.class, childArgs));
+			}
+		}
+		if(child)
+			return;
+
+		System.out.println(BenchmarkRunner.getHeader());
+		for(BenchmarkRunner.Result result : results)
+			System.out.println(BenchmarkRunner.format(result, "sent/s"));
+	}
+}
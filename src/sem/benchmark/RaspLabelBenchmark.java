@@ -0,0 +1,110 @@
+package sem.benchmark;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import sem.exception.GraphFormatException;
+import sem.graphreader.RaspGraphReader;
+import sem.graphreader.RaspLabel;
+import sem.util.FileReader;
+
+/**
+ * Compares the regular expression that RaspGraphReader.parseLabel() used to be based on with the RaspLabel scanner.
+ * All head and dependent labels are collected from a RASP file, and then parsed repeatedly with both methods.
+ * 
+ * <p>Usage: RaspLabelBenchmark [raspfile] [iterations]
+ *
+ */
+public class RaspLabelBenchmark {
+	private static Pattern labelPattern = Pattern.compile("^([^\\+:_]+)(\\+([a-zA-Z]*))?(:([0-9]+))?(_([a-zA-Z0-9]+))?$");
+	
+	/**
+	 * The previous implementation of RaspGraphReader.parseLabel(), for comparison.
+	 */
+	public static LinkedHashMap<String,String> parseLabelRegex(String label){
+		LinkedHashMap<String,String> fields = new LinkedHashMap<String,String>();
+		Matcher matcher = labelPattern.matcher(label);
+		if(matcher.matches()){
+			fields.put("lemma", matcher.group(1));
+			fields.put("suffix", matcher.group(3));
+			fields.put("index", matcher.group(5));
+			fields.put("pos", matcher.group(7));
+		}
+		else{
+			fields.put("lemma", label);
+			fields.put("suffix", null);
+			fields.put("index", null);
+			fields.put("pos", null);
+		}
+		return fields;
+	}
+	
+	public static ArrayList<String> readLabels(String inputPath) throws GraphFormatException{
+		ArrayList<String> labels = new ArrayList<String>();
+		FileReader reader = new FileReader(inputPath);
+		String section = "";
+		while(reader.hasNext()){
+			String line = reader.next().trim();
+			if(!line.startsWith("(")){
+				section = line;
+				continue;
+			}
+			if(!section.startsWith("gr-list: "))
+				continue;
+			LinkedHashMap<String,String> grInfo = RaspGraphReader.parseGr(line, false);
+			if(grInfo.get("head") != null)
+				labels.add(grInfo.get("head"));
+			if(grInfo.get("dependent") != null)
+				labels.add(grInfo.get("dependent"));
+		}
+		reader.close();
+		return labels;
+	}
+	
+	public static void main(String[] args) throws GraphFormatException {
+		String inputPath = (args.length > 0) ? args[0] : "examples/rasp/pnp_1000.rasp.gz";
+		int iterations = (args.length > 1) ? Integer.parseInt(args[1]) : 200;
+		ArrayList<String> labels = readLabels(inputPath);
+		
+		// Checking that both give the same result
+		RaspLabel raspLabel = new RaspLabel();
+		for(String label : labels){
+			raspLabel.parse(label);
+			if(!raspLabel.toMap().equals(parseLabelRegex(label)))
+				throw new RuntimeException("Different results for label: " + label);
+		}
+		
+		long checksum = 0;
+		for(int round = 0; round < 3; round++){
+			long start = System.nanoTime();
+			for(int i = 0; i < iterations; i++)
+				for(String label : labels)
+					checksum += parseLabelRegex(label).get("lemma").length();
+			long regexTime = System.nanoTime() - start;
+			
+			start = System.nanoTime();
+			for(int i = 0; i < iterations; i++)
+				for(String label : labels)
+					checksum += RaspGraphReader.parseLabel(label).get("lemma").length();
+			long mapTime = System.nanoTime() - start;
+			
+			start = System.nanoTime();
+			for(int i = 0; i < iterations; i++){
+				for(String label : labels){
+					raspLabel.parse(label);
+					checksum += raspLabel.getIndex();
+				}
+			}
+			long scannerTime = System.nanoTime() - start;
+			
+			double count = (double)labels.size() * iterations;
+			System.out.println("Round " + (round+1) + ": " + labels.size() + " labels x " + iterations);
+			System.out.printf("  regex:             %8.1f labels/ms%n", count / (regexTime / 1e6));
+			System.out.printf("  parseLabel (map):  %8.1f labels/ms%n", count / (mapTime / 1e6));
+			System.out.printf("  RaspLabel:         %8.1f labels/ms (%.1fx)%n", count / (scannerTime / 1e6), (double)regexTime / scannerTime);
+		}
+		System.out.println("Checksum: " + checksum);
+	}
+}
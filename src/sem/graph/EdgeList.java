@@ -0,0 +1,39 @@
+package sem.graph;
+
+import java.util.ArrayList;
+
+/**
+ * The list of edges used by Graph.
+ * It keeps a modification count that also includes replaced edges, so that Graph knows when its adjacency index is out of date.
+ *
+ */
+class EdgeList extends ArrayList<Edge>{
+	private static final long serialVersionUID = 1L;
+	private int replaceCount;
+	
+	/**
+	 * Create an empty list of edges.
+	 */
+	public EdgeList(){
+		super();
+		this.replaceCount = 0;
+	}
+	
+	/**
+	 * Replace the edge at the specified position.
+	 */
+	@Override
+	public Edge set(int index, Edge edge){
+		Edge previous = super.set(index, edge);
+		this.replaceCount++;
+		return previous;
+	}
+	
+	/**
+	 * Get the modification count of the list. It changes every time the list is modified, including when an edge is replaced.
+	 * @return	Modification count.
+	 */
+	int getModCount(){
+		return this.modCount + this.replaceCount;
+	}
+}
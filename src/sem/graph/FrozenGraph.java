@@ -0,0 +1,281 @@
+package sem.graph;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map.Entry;
+
+/**
+ * Compact read-only version of a graph.
+ * 
+ * <p>Lemmas, POS tags and edge labels are stored as ids in a symbol table, nodes and edges are packed into int arrays.
+ * This takes much less memory than a Graph with separate Node and Edge objects, which is useful when a large number of graphs needs to be kept in memory.
+ * Use Graph.freeze() to create a frozen graph and toGraph() to get back a normal graph that can be edited.
+ * Code that only reads graphs can use the accessors with indices (see IndexedGraph), which work the same way on a normal Graph.
+ *
+ */
+public class FrozenGraph implements IndexedGraph{
+	private SymbolTable symbolTable;
+	private int[] nodeData; // lemma id and POS id for every node
+	private int[] edgeData; // label id, head index and dependent index for every edge
+	private String[] metadata; // keys and values, or null if there is no metadata
+	
+	/**
+	 * Create a frozen copy of a graph. 
+	 * @param graph			Input graph.
+	 * @param symbolTable	Symbol table for storing the strings.
+	 */
+	public FrozenGraph(Graph graph, SymbolTable symbolTable){
+		this.symbolTable = symbolTable;
+		
+		ArrayList<Node> nodes = graph.getNodes();
+		this.nodeData = new int[nodes.size() * 2];
+		for(int i = 0; i < nodes.size(); i++){
+			this.nodeData[2*i] = symbolTable.getId(nodes.get(i).getLemma());
+			this.nodeData[2*i+1] = symbolTable.getId(nodes.get(i).getPos());
+		}
+		
+		ArrayList<Edge> edges = graph.getEdges();
+		this.edgeData = new int[edges.size() * 3];
+		for(int i = 0; i < edges.size(); i++){
+			Edge edge = edges.get(i);
+			int head = graph.indexOf(edge.getHead());
+			int dep = graph.indexOf(edge.getDep());
+			if(head < 0)
+				throw new RuntimeException("Found a node as the head of an edge that is not present in the list of nodes.");
+			if(dep < 0)
+				throw new RuntimeException("Found a node as the dependent of an edge that is not present in the list of nodes.");
+			this.edgeData[3*i] = symbolTable.getId(edge.getLabel());
+			this.edgeData[3*i+1] = head;
+			this.edgeData[3*i+2] = dep;
+		}
+		
+		this.metadata = null;
+		if(graph.hasMetadata()){
+			this.metadata = new String[graph.getMetadata().size() * 2];
+			int i = 0;
+			for(Entry<String,String> e : graph.getMetadata().entrySet()){
+				this.metadata[i++] = e.getKey();
+				this.metadata[i++] = e.getValue();
+			}
+		}
+	}
+	
+	/**
+	 * Get the symbol table that is used for the lemmas, POS tags and labels.
+	 * @return	Symbol table.
+	 */
+	public SymbolTable getSymbolTable(){
+		return this.symbolTable;
+	}
+	
+	/**
+	 * Get the number of nodes.
+	 * @return	Number of nodes.
+	 */
+	@Override
+	public int getNodeCount(){
+		return this.nodeData.length / 2;
+	}
+	
+	/**
+	 * Get the number of edges.
+	 * @return	Number of edges.
+	 */
+	@Override
+	public int getEdgeCount(){
+		return this.edgeData.length / 3;
+	}
+	
+	/**
+	 * Get the lemma id of a node.
+	 * @param node	Index of the node.
+	 * @return		Lemma id in the symbol table.
+	 */
+	public int getLemmaId(int node){
+		return this.nodeData[2*node];
+	}
+	
+	/**
+	 * Get the POS id of a node.
+	 * @param node	Index of the node.
+	 * @return		POS id in the symbol table.
+	 */
+	public int getPosId(int node){
+		return this.nodeData[2*node+1];
+	}
+	
+	/**
+	 * Get the lemma of a node.
+	 * @param node	Index of the node.
+	 * @return		Lemma
+	 */
+	@Override
+	public String getLemma(int node){
+		return this.symbolTable.getString(this.getLemmaId(node));
+	}
+	
+	/**
+	 * Get the POS of a node.
+	 * @param node	Index of the node.
+	 * @return		POS
+	 */
+	@Override
+	public String getPos(int node){
+		return this.symbolTable.getString(this.getPosId(node));
+	}
+	
+	/**
+	 * Get the label id of an edge.
+	 * @param edge	Index of the edge.
+	 * @return		Label id in the symbol table.
+	 */
+	public int getLabelId(int edge){
+		return this.edgeData[3*edge];
+	}
+	
+	/**
+	 * Get the label of an edge.
+	 * @param edge	Index of the edge.
+	 * @return		Relation type.
+	 */
+	@Override
+	public String getLabel(int edge){
+		return this.symbolTable.getString(this.getLabelId(edge));
+	}
+	
+	/**
+	 * Get the index of the head node of an edge.
+	 * @param edge	Index of the edge.
+	 * @return		Index of the head node.
+	 */
+	@Override
+	public int getHeadIndex(int edge){
+		return this.edgeData[3*edge+1];
+	}
+	
+	/**
+	 * Get the index of the dependent node of an edge.
+	 * @param edge	Index of the edge.
+	 * @return		Index of the dependent node.
+	 */
+	@Override
+	public int getDepIndex(int edge){
+		return this.edgeData[3*edge+2];
+	}
+	
+	/**
+	 * Create a new Node object for a node in the graph.
+	 * @param node	Index of the node.
+	 * @return		New node.
+	 */
+	public Node getNode(int node){
+		return new Node(this.getLemma(node), this.getPos(node));
+	}
+	
+	/**
+	 * Create a list of new Node objects for all the nodes in the graph.
+	 * The list can not be modified; use toGraph() for a graph that can be edited.
+	 * @return	Nodes
+	 */
+	public List<Node> getNodes(){
+		ArrayList<Node> nodes = new ArrayList<Node>(this.getNodeCount());
+		for(int i = 0; i < this.getNodeCount(); i++)
+			nodes.add(this.getNode(i));
+		return Collections.unmodifiableList(nodes);
+	}
+	
+	/**
+	 * Create a list of new Edge objects for all the edges in the graph.
+	 * The edges are connected to new Node objects, which are not the same as the ones returned by getNodes();
+	 * getHeadIndex() and getDepIndex() give the positions of the nodes. The list can not be modified.
+	 * @return	Edges
+	 */
+	public List<Edge> getEdges(){
+		List<Node> nodes = this.getNodes();
+		ArrayList<Edge> edges = new ArrayList<Edge>(this.getEdgeCount());
+		for(int i = 0; i < this.getEdgeCount(); i++)
+			edges.add(new Edge(this.getLabel(i), nodes.get(this.getHeadIndex(i)), nodes.get(this.getDepIndex(i))));
+		return Collections.unmodifiableList(edges);
+	}
+	
+	/**
+	 * Get metadata from the graph.
+	 * @param key	Key
+	 * @return		Value
+	 */
+	@Override
+	public String getMetadata(String key){
+		if(this.metadata != null)
+			for(int i = 0; i < this.metadata.length; i += 2)
+				if(this.metadata[i].equals(key))
+					return this.metadata[i+1];
+		return null;
+	}
+	
+	/**
+	 * Get a HashMap containing all metadata.
+	 * @return	Hashmap with the metadata, or null if there is no metadata.
+	 */
+	public HashMap<String,String> getMetadata(){
+		if(this.metadata == null)
+			return null;
+		HashMap<String,String> map = new HashMap<String,String>();
+		for(int i = 0; i < this.metadata.length; i += 2)
+			map.put(this.metadata[i], this.metadata[i+1]);
+		return map;
+	}
+	
+	/**
+	 * Check whether the graph has any metadata attached.
+	 * @return	True if there is metadata, false otherwise.
+	 */
+	@Override
+	public boolean hasMetadata(){
+		return this.metadata != null;
+	}
+	
+	/**
+	 * Create a normal graph with the same nodes, edges and metadata.
+	 * @return	New graph.
+	 */
+	public Graph toGraph(){
+		Graph graph = new Graph();
+		for(int i = 0; i < this.getNodeCount(); i++)
+			graph.addNode(this.getLemma(i), this.getPos(i));
+		for(int i = 0; i < this.getEdgeCount(); i++)
+			graph.addEdge(this.getLabel(i), graph.getNodes().get(this.getHeadIndex(i)), graph.getNodes().get(this.getDepIndex(i)));
+		if(this.metadata != null)
+			for(int i = 0; i < this.metadata.length; i += 2)
+				graph.putMetadata(this.metadata[i], this.metadata[i+1]);
+		return graph;
+	}
+	
+	/**
+	 * Print the graph information into standard output.
+	 */
+	public void print(){
+		System.out.println("------------------");
+		System.out.println(this.toString());
+	}
+	
+	/**
+	 * Create a string representation of the graph. This is the same as for the corresponding Graph.
+	 */
+	@Override
+	public String toString(){
+		StringBuilder string = new StringBuilder();
+		string.append("::: Nodes: \n");
+		for(int i = 0; i < this.getNodeCount(); i++)
+			string.append(this.getLemma(i)).append("_").append(this.getPos(i)).append("\n");
+		string.append("::: Edges: \n");
+		for(int i = 0; i < this.getEdgeCount(); i++){
+			int head = this.getHeadIndex(i), dep = this.getDepIndex(i);
+			string.append(this.getLabel(i)).append(" ")
+				.append(this.getLemma(head)).append("_").append(this.getPos(head)).append(" ")
+				.append(this.getLemma(dep)).append("_").append(this.getPos(dep)).append("\n");
+		}
+		return string.toString();
+	}
+}
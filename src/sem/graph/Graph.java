@@ -7,12 +7,19 @@ import java.util.Map.Entry;
 /**
  * Graph structure.
  *
+ * <p>Besides the lists of nodes and edges, the graph can be read by node and edge indices (see IndexedGraph), in the same way as FrozenGraph.
+ *
  */
-public class Graph implements Cloneable{
-	private ArrayList<Node> nodes;
-	private ArrayList<Edge> edges;
+public class Graph implements Cloneable, IndexedGraph{
+	private NodeList nodes;
+	private EdgeList edges;
 	private HashMap<String,String> metadata;
 	
+	// Adjacency index in compressed sparse row form, built when first needed.
+	// The edges of node i are in outEdges[outOffsets[i]] ... outEdges[outOffsets[i+1]-1], and similarly for incoming edges.
+	private int[] outOffsets, outEdges, inOffsets, inEdges;
+	private int adjacencyNodeModCount, adjacencyEdgeModCount;
+	
 	/**
 	 * Node for representing ellipes in the graph.
 	 */
@@ -27,9 +34,18 @@ public class Graph implements Cloneable{
 	 * Create new graph.
 	 */
 	public Graph(){
-		this.nodes = new ArrayList<Node>();
-		this.edges = new ArrayList<Edge>();
+		this.nodes = new NodeList();
+		this.edges = new EdgeList();
 		this.metadata = null;
+		this.outOffsets = null;
+	}
+	
+	/**
+	 * Called before the nodes, edges or metadata are accessed.
+	 * Subclasses that create the contents of the graph lazily (for example from a memory-mapped file) override this to fill them in.
+	 * The nodes, edges and metadata should be added with addNode(), addEdge() and putMetadata().
+	 */
+	protected void materialise(){
 	}
 	
 	/**
@@ -37,6 +53,7 @@ public class Graph implements Cloneable{
 	 * @return Nodes
 	 */
 	public ArrayList<Node> getNodes() {
+		this.materialise();
 		return this.nodes;
 	}
 	
@@ -45,6 +62,7 @@ public class Graph implements Cloneable{
 	 * @return Edges
 	 */
 	public ArrayList<Edge> getEdges() {
+		this.materialise();
 		return this.edges;
 	}
 	
@@ -54,6 +72,7 @@ public class Graph implements Cloneable{
 	 * @return	Node that was added.
 	 */
 	public Node addNode(Node n) {
+		this.materialise();
 		this.nodes.add(n);
 		return n;
 	}
@@ -69,12 +88,92 @@ public class Graph implements Cloneable{
 		return this.addNode(n);
 	}
 	
+	/**
+	 * Find the position of the node in the list of nodes.
+	 * The positions are maintained by the graph, so this takes constant time in most cases.
+	 * @param n	Node
+	 * @return	Index of the node, or -1 if the node is not in the graph.
+	 */
+	public int indexOf(Node n) {
+		this.materialise();
+		return this.nodes.find(n);
+	}
+	
+	/**
+	 * Get the number of nodes.
+	 * @return	Number of nodes.
+	 */
+	@Override
+	public int getNodeCount(){
+		return this.getNodes().size();
+	}
+	
+	/**
+	 * Get the number of edges.
+	 * @return	Number of edges.
+	 */
+	@Override
+	public int getEdgeCount(){
+		return this.getEdges().size();
+	}
+	
+	/**
+	 * Get the lemma of a node.
+	 * @param node	Index of the node.
+	 * @return		Lemma
+	 */
+	@Override
+	public String getLemma(int node){
+		return this.getNodes().get(node).getLemma();
+	}
+	
+	/**
+	 * Get the POS of a node.
+	 * @param node	Index of the node.
+	 * @return		POS
+	 */
+	@Override
+	public String getPos(int node){
+		return this.getNodes().get(node).getPos();
+	}
+	
+	/**
+	 * Get the label of an edge.
+	 * @param edge	Index of the edge.
+	 * @return		Relation type.
+	 */
+	@Override
+	public String getLabel(int edge){
+		return this.getEdges().get(edge).getLabel();
+	}
+	
+	/**
+	 * Get the index of the head node of an edge.
+	 * @param edge	Index of the edge.
+	 * @return		Index of the head node, or -1 if it is not in the list of nodes.
+	 */
+	@Override
+	public int getHeadIndex(int edge){
+		return this.indexOf(this.getEdges().get(edge).getHead());
+	}
+	
+	/**
+	 * Get the index of the dependent node of an edge.
+	 * @param edge	Index of the edge.
+	 * @return		Index of the dependent node, or -1 if it is not in the list of nodes.
+	 */
+	@Override
+	public int getDepIndex(int edge){
+		return this.indexOf(this.getEdges().get(edge).getDep());
+	}
+	
 	/**
 	 * Add a new edge to the graph.
 	 * @param e	Edge.
 	 * @return	The edge that was added.
 	 */
 	public Edge addEdge(Edge e) {
+		this.materialise();
 		this.edges.add(e);
 		return e;
 	}
@@ -90,6 +189,139 @@ public class Graph implements Cloneable{
 		return this.addEdge(new Edge(label, head, dep));
 	}
 	
+	/**
+	 * Build the adjacency index, if the nodes or edges have changed since it was last built.
+	 * If the head or dependent of an edge is not in the list of nodes, the edge is only indexed for the other node.
+	 */
+	private void updateAdjacency(){
+		this.materialise();
+		if(this.outOffsets != null && this.adjacencyNodeModCount == this.nodes.getModCount() && this.adjacencyEdgeModCount == this.edges.getModCount())
+			return;
+		
+		int nodeCount = this.nodes.size(), edgeCount = this.edges.size();
+		int[] heads = new int[edgeCount], deps = new int[edgeCount];
+		int[] outOffsets = new int[nodeCount+1], inOffsets = new int[nodeCount+1];
+		
+		for(int i = 0; i < edgeCount; i++){
+			Edge edge = this.edges.get(i);
+			heads[i] = this.indexOf(edge.getHead());
+			deps[i] = this.indexOf(edge.getDep());
+			if(heads[i] >= 0)
+				outOffsets[heads[i]+1]++;
+			if(deps[i] >= 0)
+				inOffsets[deps[i]+1]++;
+		}
+		for(int i = 0; i < nodeCount; i++){
+			outOffsets[i+1] += outOffsets[i];
+			inOffsets[i+1] += inOffsets[i];
+		}
+		
+		int[] outEdges = new int[outOffsets[nodeCount]], inEdges = new int[inOffsets[nodeCount]];
+		int[] outPositions = new int[nodeCount], inPositions = new int[nodeCount];
+		for(int i = 0; i < edgeCount; i++){
+			if(heads[i] >= 0)
+				outEdges[outOffsets[heads[i]] + outPositions[heads[i]]++] = i;
+			if(deps[i] >= 0)
+				inEdges[inOffsets[deps[i]] + inPositions[deps[i]]++] = i;
+		}
+		
+		this.outOffsets = outOffsets;
+		this.outEdges = outEdges;
+		this.inOffsets = inOffsets;
+		this.inEdges = inEdges;
+		this.adjacencyNodeModCount = this.nodes.getModCount();
+		this.adjacencyEdgeModCount = this.edges.getModCount();
+	}
+	
+	/**
+	 * Collect the edges from one row of the adjacency index, optionally only the ones with a specific label.
+	 * @param offsets	Row offsets
+	 * @param edgeIds	Edge ids
+	 * @param node		Node
+	 * @param label		Label of the edges, or null for all edges.
+	 * @return			List of edges.
+	 */
+	private ArrayList<Edge> collectEdges(int[] offsets, int[] edgeIds, Node node, String label){
+		ArrayList<Edge> list = new ArrayList<Edge>();
+		int index = this.indexOf(node);
+		if(index < 0)
+			return list;
+		for(int i = offsets[index]; i < offsets[index+1]; i++){
+			Edge edge = this.edges.get(edgeIds[i]);
+			if(label == null || label.equals(edge.getLabel()))
+				list.add(edge);
+		}
+		return list;
+	}
+	
+	/**
+	 * Get the edges where this node is the head, in the order they appear in the graph.
+	 * @param node	Head node.
+	 * @return		List of outgoing edges. Empty if the node is not in the graph.
+	 */
+	public ArrayList<Edge> getOutgoing(Node node){
+		return this.getOutgoing(node, null);
+	}
+	
+	/**
+	 * Get the edges with a specific label where this node is the head.
+	 * @param node	Head node.
+	 * @param label	Label of the edges.
+	 * @return		List of outgoing edges. Empty if the node is not in the graph.
+	 */
+	public ArrayList<Edge> getOutgoing(Node node, String label){
+		this.updateAdjacency();
+		return this.collectEdges(this.outOffsets, this.outEdges, node, label);
+	}
+	
+	/**
+	 * Get the edges where this node is the dependent, in the order they appear in the graph.
+	 * @param node	Dependent node.
+	 * @return		List of incoming edges. Empty if the node is not in the graph.
+	 */
+	public ArrayList<Edge> getIncoming(Node node){
+		return this.getIncoming(node, null);
+	}
+	
+	/**
+	 * Get the edges with a specific label where this node is the dependent.
+	 * @param node	Dependent node.
+	 * @param label	Label of the edges.
+	 * @return		List of incoming edges. Empty if the node is not in the graph.
+	 */
+	public ArrayList<Edge> getIncoming(Node node, String label){
+		this.updateAdjacency();
+		return this.collectEdges(this.inOffsets, this.inEdges, node, label);
+	}
+	
+	/**
+	 * Get the head of this node, using the first edge where the node is the dependent.
+	 * @param node	Dependent node.
+	 * @return		The head node, or null if the node does not have a head.
+	 */
+	public Node getHead(Node node){
+		return this.getHead(node, null);
+	}
+	
+	/**
+	 * Get the head of this node, using the first edge with a specific label where the node is the dependent.
+	 * @param node	Dependent node.
+	 * @param label	Label of the edge.
+	 * @return		The head node, or null if there is no such edge.
+	 */
+	public Node getHead(Node node, String label){
+		this.updateAdjacency();
+		int index = this.indexOf(node);
+		if(index < 0)
+			return null;
+		for(int i = this.inOffsets[index]; i < this.inOffsets[index+1]; i++){
+			Edge edge = this.edges.get(this.inEdges[i]);
+			if(label == null || label.equals(edge.getLabel()))
+				return edge.getHead();
+		}
+		return null;
+	}
+	
 	/**
 	 * Add metadata to the graph. The graph contains a hashmap which the reader can use to store various information.
 	 * For example: putData("orig", "This is the original sentence before parsing");
@@ -99,6 +331,7 @@ public class Graph implements Cloneable{
 	 * @see 		getMetadata
 	 */
 	public void putMetadata(String key, String value){
+		this.materialise();
 		if(this.metadata == null)
 			this.metadata = new HashMap<String,String>();
 		this.metadata.put(key, value);
@@ -111,6 +344,7 @@ public class Graph implements Cloneable{
 	 * @see putMetadata
 	 */
 	public String getMetadata(String key){
+		this.materialise();
 		if(this.metadata != null)
 			return this.metadata.get(key);
 		return null;
@@ -121,6 +355,7 @@ public class Graph implements Cloneable{
 	 * @return	Hashmap with the metadata.
 	 */
 	public HashMap<String,String> getMetadata(){
+		this.materialise();
 		return this.metadata;
 	}
 	
@@ -129,6 +364,7 @@ public class Graph implements Cloneable{
 	 * @return	True if there is metadata, false otherwise.
 	 */
 	public boolean hasMetadata(){
+		this.materialise();
 		if(this.metadata == null || this.metadata.size() == 0)
 			return false;
 		return true;
@@ -147,6 +383,7 @@ public class Graph implements Cloneable{
 	 */
 	@Override
 	public String toString(){
+		this.materialise();
 		String string = "";
 		string += "::: Nodes: \n";
 		for(Node n : this.nodes)
@@ -157,10 +394,28 @@ public class Graph implements Cloneable{
 		return string;
 	}
 	
+	/**
+	 * Create a compact read-only copy of this graph, using the default symbol table.
+	 * @return	Frozen graph.
+	 */
+	public FrozenGraph freeze(){
+		return this.freeze(SymbolTable.getDefault());
+	}
+	
+	/**
+	 * Create a compact read-only copy of this graph.
+	 * @param symbolTable	Symbol table for storing lemmas, POS tags and labels.
+	 * @return	Frozen graph.
+	 */
+	public FrozenGraph freeze(SymbolTable symbolTable){
+		return new FrozenGraph(this, symbolTable);
+	}
+	
 	/**
 	 * Create a new independent graph with identical nodes and edges.
 	 */
 	public Graph clone(){
+		this.materialise();
 		Graph graph = new Graph();
 		
 		// cloning nodes
@@ -170,17 +425,20 @@ public class Graph implements Cloneable{
 		
 		//cloning edges
 		Node head = null, dep = null;
+		int headIndex, depIndex;
 		for(Edge edge : edges){
 			head = null;
 			dep = null;
-			if(this.nodes.contains(edge.getHead()))
-				head = graph.getNodes().get(this.getNodes().indexOf(edge.getHead()));
+			headIndex = this.indexOf(edge.getHead());
+			if(headIndex >= 0)
+				head = graph.getNodes().get(headIndex);
 			else {
 				throw new RuntimeException("Found a node as the head of an edge that is not present in the list of nodes.");
 			}
 			
-			if(this.nodes.contains(edge.getDep()))
-				dep = graph.getNodes().get(this.getNodes().indexOf(edge.getDep()));
+			depIndex = this.indexOf(edge.getDep());
+			if(depIndex >= 0)
+				dep = graph.getNodes().get(depIndex);
 			else {
 				throw new RuntimeException("Found a node as the dependent of an edge that is not present in the list of nodes.");
 			}
@@ -0,0 +1,71 @@
+package sem.graph;
+
+/**
+ * Read access to the nodes and edges of a graph by their index, without creating Node or Edge objects.
+ *
+ * <p>Graph and FrozenGraph both implement this, so code that only reads graphs can handle either type.
+ * The compact graphs (FrozenGraph, MappedGraph, NBestGraph) read the values directly from their arrays;
+ * for a normal Graph, the values come from the lists of nodes and edges.
+ *
+ */
+public interface IndexedGraph {
+	/**
+	 * Get the number of nodes.
+	 * @return	Number of nodes.
+	 */
+	public int getNodeCount();
+
+	/**
+	 * Get the number of edges.
+	 * @return	Number of edges.
+	 */
+	public int getEdgeCount();
+
+	/**
+	 * Get the lemma of a node.
+	 * @param node	Index of the node.
+	 * @return		Lemma
+	 */
+	public String getLemma(int node);
+
+	/**
+	 * Get the POS of a node.
+	 * @param node	Index of the node.
+	 * @return		POS
+	 */
+	public String getPos(int node);
+
+	/**
+	 * Get the label of an edge.
+	 * @param edge	Index of the edge.
+	 * @return		Relation type.
+	 */
+	public String getLabel(int edge);
+
+	/**
+	 * Get the index of the head node of an edge.
+	 * @param edge	Index of the edge.
+	 * @return		Index of the head node.
+	 */
+	public int getHeadIndex(int edge);
+
+	/**
+	 * Get the index of the dependent node of an edge.
+	 * @param edge	Index of the edge.
+	 * @return		Index of the dependent node.
+	 */
+	public int getDepIndex(int edge);
+
+	/**
+	 * Get metadata from the graph.
+	 * @param key	Key
+	 * @return		Value, or null if there is no such key.
+	 */
+	public String getMetadata(String key);
+
+	/**
+	 * Check whether the graph has any metadata attached.
+	 * @return	True if there is metadata, false otherwise.
+	 */
+	public boolean hasMetadata();
+}
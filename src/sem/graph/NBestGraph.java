@@ -0,0 +1,266 @@
+package sem.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * One parse of an NBestSentence, stored as references to the shared nodes of the sentence and a compact list of edges.
+ *
+ * <p>The nodes of the parse are either shared nodes of the sentence, or nodes that only belong to this parse
+ * (for example when the parse uses a different POS tag, or for ellip and nil nodes).
+ * The accessors with node and edge indices (getLemma(int), getHeadIndex(int), etc.) read these values directly, in the same way as FrozenGraph,
+ * without creating any Node or Edge objects.
+ * The normal Graph methods (getNodes(), getEdges(), getMetadata(), etc.) first create the nodes, edges and metadata of this parse.
+ * After that, the graph can be modified like any other graph without affecting the other parses,
+ * and the accessors with indices always return the values that the parse was created with.
+ *
+ */
+public class NBestGraph extends Graph{
+	private NBestSentence sentence;
+	// Node i is the shared node nodeRefs[i] if it is not negative, or own node -(nodeRefs[i]+1) otherwise
+	private int[] nodeRefs;
+	private int nodeCount;
+	private String[] ownLemmas, ownPos;
+	private int ownCount;
+	private String[] labels;
+	private int[] heads, deps;
+	private int edgeCount;
+	private boolean materialised;
+
+	NBestGraph(NBestSentence sentence, int nodeCapacity, int edgeCapacity){
+		nodeCapacity = Math.max(nodeCapacity, 1);
+		edgeCapacity = Math.max(edgeCapacity, 1);
+		this.sentence = sentence;
+		this.nodeRefs = new int[nodeCapacity];
+		this.nodeCount = 0;
+		this.ownLemmas = null;
+		this.ownPos = null;
+		this.ownCount = 0;
+		this.labels = new String[edgeCapacity];
+		this.heads = new int[edgeCapacity];
+		this.deps = new int[edgeCapacity];
+		this.edgeCount = 0;
+		this.materialised = false;
+	}
+
+	/**
+	 * Create the nodes, edges and metadata of this parse, the first time they are needed.
+	 */
+	@Override
+	protected void materialise(){
+		if(this.materialised)
+			return;
+		this.materialised = true;
+		for(int i = 0; i < this.nodeCount; i++)
+			this.addNode(this.getLemma(i), this.getPos(i));
+		ArrayList<Node> nodes = this.getNodes();
+		for(int i = 0; i < this.edgeCount; i++)
+			this.addEdge(this.labels[i], nodes.get(this.heads[i]), nodes.get(this.deps[i]));
+		for(int i = 0; i < this.sentence.getMetadataCount(); i++)
+			this.putMetadata(this.sentence.getMetadataKey(i), this.sentence.getMetadataValue(i));
+	}
+
+	/**
+	 * Check whether the nodes and edges of this parse have been created.
+	 * @return	True if the graph has been materialised.
+	 */
+	public boolean isMaterialised(){
+		return this.materialised;
+	}
+
+	/**
+	 * Get the sentence that this parse belongs to.
+	 * @return	Sentence
+	 */
+	public NBestSentence getSentence(){
+		return this.sentence;
+	}
+
+	private void checkBuilding(){
+		if(this.materialised)
+			throw new RuntimeException("The parse can not be extended after its nodes and edges have been created");
+	}
+
+	private int addNodeRef(int ref){
+		this.checkBuilding();
+		if(this.nodeCount == this.nodeRefs.length)
+			this.nodeRefs = Arrays.copyOf(this.nodeRefs, this.nodeCount * 2);
+		this.nodeRefs[this.nodeCount] = ref;
+		return this.nodeCount++;
+	}
+
+	/**
+	 * Add a shared node of the sentence to this parse.
+	 * @param sharedIndex	Index of the node in the sentence.
+	 * @return				Index of the node in this parse.
+	 */
+	public int addSharedNode(int sharedIndex){
+		if(sharedIndex < 0 || sharedIndex >= this.sentence.getNodeCount())
+			throw new RuntimeException("Shared node does not exist: " + sharedIndex);
+		return this.addNodeRef(sharedIndex);
+	}
+
+	/**
+	 * Add a node that only belongs to this parse.
+	 * @param lemma	Lemma
+	 * @param pos	POS
+	 * @return		Index of the node in this parse.
+	 */
+	public int addOwnNode(String lemma, String pos){
+		this.checkBuilding();
+		if(this.ownLemmas == null){
+			this.ownLemmas = new String[4];
+			this.ownPos = new String[4];
+		}
+		else if(this.ownCount == this.ownLemmas.length){
+			this.ownLemmas = Arrays.copyOf(this.ownLemmas, this.ownCount * 2);
+			this.ownPos = Arrays.copyOf(this.ownPos, this.ownCount * 2);
+		}
+		this.ownLemmas[this.ownCount] = lemma;
+		this.ownPos[this.ownCount] = pos;
+		return this.addNodeRef(-(this.ownCount++) - 1);
+	}
+
+	/**
+	 * Add a node to this parse, using the shared node at the given index if it has the same lemma and POS.
+	 * @param sharedIndex	Index of the shared node that is expected at this position.
+	 * @param lemma			Lemma
+	 * @param pos			POS
+	 * @return				Index of the node in this parse.
+	 */
+	public int addNode(int sharedIndex, String lemma, String pos){
+		if(this.sentence.nodeEquals(sharedIndex, lemma, pos))
+			return this.addNodeRef(sharedIndex);
+		return this.addOwnNode(lemma, pos);
+	}
+
+	/**
+	 * Add an edge between two nodes of this parse.
+	 * @param label	Label of the edge.
+	 * @param head	Index of the head node in this parse.
+	 * @param dep	Index of the dependent node in this parse.
+	 */
+	public void addEdge(String label, int head, int dep){
+		this.checkBuilding();
+		if(head < 0 || head >= this.nodeCount || dep < 0 || dep >= this.nodeCount)
+			throw new RuntimeException("Edge refers to a node that is not in the parse: " + head + " " + dep);
+		if(this.edgeCount == this.labels.length){
+			this.labels = Arrays.copyOf(this.labels, this.edgeCount * 2);
+			this.heads = Arrays.copyOf(this.heads, this.edgeCount * 2);
+			this.deps = Arrays.copyOf(this.deps, this.edgeCount * 2);
+		}
+		this.labels[this.edgeCount] = label;
+		this.heads[this.edgeCount] = head;
+		this.deps[this.edgeCount] = dep;
+		this.edgeCount++;
+	}
+
+	/**
+	 * Get the number of nodes in this parse.
+	 * @return	Number of nodes.
+	 */
+	public int getNodeCount(){
+		return this.nodeCount;
+	}
+
+	/**
+	 * Get the number of edges in this parse.
+	 * @return	Number of edges.
+	 */
+	public int getEdgeCount(){
+		return this.edgeCount;
+	}
+
+	/**
+	 * Check whether a node is one of the shared nodes of the sentence.
+	 * @param node	Index of the node.
+	 * @return		Index of the shared node, or -1 if the node only belongs to this parse.
+	 */
+	public int getSharedIndex(int node){
+		int ref = this.nodeRefs[node];
+		return (ref >= 0) ? ref : -1;
+	}
+
+	/**
+	 * Get the lemma of a node.
+	 * @param node	Index of the node.
+	 * @return		Lemma
+	 */
+	public String getLemma(int node){
+		int ref = this.nodeRefs[node];
+		return (ref >= 0) ? this.sentence.getLemma(ref) : this.ownLemmas[-ref - 1];
+	}
+
+	/**
+	 * Get the POS of a node.
+	 * @param node	Index of the node.
+	 * @return		POS
+	 */
+	public String getPos(int node){
+		int ref = this.nodeRefs[node];
+		return (ref >= 0) ? this.sentence.getPos(ref) : this.ownPos[-ref - 1];
+	}
+
+	/**
+	 * Get the label of an edge.
+	 * @param edge	Index of the edge.
+	 * @return		Relation type.
+	 */
+	public String getLabel(int edge){
+		return this.labels[edge];
+	}
+
+	/**
+	 * Get the index of the head node of an edge.
+	 * @param edge	Index of the edge.
+	 * @return		Index of the head node.
+	 */
+	public int getHeadIndex(int edge){
+		return this.heads[edge];
+	}
+
+	/**
+	 * Get the index of the dependent node of an edge.
+	 * @param edge	Index of the edge.
+	 * @return		Index of the dependent node.
+	 */
+	public int getDepIndex(int edge){
+		return this.deps[edge];
+	}
+
+	/**
+	 * Replace the strings that only belong to this parse with their canonical instances.
+	 * The shared nodes are interned by NBestSentence.intern().
+	 * @param symbolTable	Symbol table.
+	 */
+	void intern(SymbolTable symbolTable){
+		for(int i = 0; i < this.ownCount; i++){
+			this.ownLemmas[i] = symbolTable.intern(this.ownLemmas[i]);
+			this.ownPos[i] = symbolTable.intern(this.ownPos[i]);
+		}
+		for(int i = 0; i < this.edgeCount; i++)
+			this.labels[i] = symbolTable.intern(this.labels[i]);
+	}
+
+	/**
+	 * Create a string representation of the graph. This is the same as for the corresponding Graph.
+	 * If the graph has not been materialised, the string is created directly from the compact representation.
+	 */
+	@Override
+	public String toString(){
+		if(this.materialised)
+			return super.toString();
+		StringBuilder string = new StringBuilder();
+		string.append("::: Nodes: \n");
+		for(int i = 0; i < this.nodeCount; i++)
+			string.append(this.getLemma(i)).append("_").append(this.getPos(i)).append("\n");
+		string.append("::: Edges: \n");
+		for(int i = 0; i < this.edgeCount; i++){
+			int head = this.heads[i], dep = this.deps[i];
+			string.append(this.labels[i]).append(" ")
+				.append(this.getLemma(head)).append("_").append(this.getPos(head)).append(" ")
+				.append(this.getLemma(dep)).append("_").append(this.getPos(dep)).append("\n");
+		}
+		return string.toString();
+	}
+}
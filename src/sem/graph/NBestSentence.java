@@ -0,0 +1,160 @@
+package sem.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A sentence with several alternative parses that share their nodes.
+ *
+ * <p>The nodes of the sentence (lemmas and POS tags) are stored once, and every parse is an NBestGraph that refers to them by index,
+ * with its own nodes only where it differs from the shared ones (for example a different POS tag, or ellip and nil nodes).
+ * The edges of each parse are stored as labels and node indices, without Node and Edge objects.
+ * This way, a sentence with N parses does not take N times the memory and allocation of one parse.
+ *
+ * <p>The parses are in the list as normal graphs, so the sentence can be used wherever a list of graphs is expected.
+ * A parse creates its own Node and Edge objects the first time it is accessed through the Graph methods (getNodes(), getEdges(), etc.),
+ * and can then be modified without affecting the other parses (copy-on-write).
+ * The accessors with indices (NBestGraph.getLemma(int), getHeadIndex(int), etc.) read the shared data directly.
+ *
+ * <p>Metadata that is added to the sentence is shared by all the parses.
+ *
+ */
+public class NBestSentence extends ArrayList<Graph>{
+	private static final long serialVersionUID = 1L;
+
+	private String[] lemmas;
+	private String[] pos;
+	private int nodeCount;
+	private ArrayList<String> metadata;
+
+	/**
+	 * Create a new sentence without nodes or parses.
+	 */
+	public NBestSentence(){
+		this.lemmas = new String[16];
+		this.pos = new String[16];
+		this.nodeCount = 0;
+		this.metadata = null;
+	}
+
+	/**
+	 * Add a shared node.
+	 * @param lemma	Lemma
+	 * @param pos	POS
+	 * @return	Index of the node in the shared nodes.
+	 */
+	public int addNode(String lemma, String pos){
+		if(this.nodeCount == this.lemmas.length){
+			this.lemmas = Arrays.copyOf(this.lemmas, this.nodeCount * 2);
+			this.pos = Arrays.copyOf(this.pos, this.nodeCount * 2);
+		}
+		this.lemmas[this.nodeCount] = lemma;
+		this.pos[this.nodeCount] = pos;
+		return this.nodeCount++;
+	}
+
+	/**
+	 * @return	Number of shared nodes.
+	 */
+	public int getNodeCount(){
+		return this.nodeCount;
+	}
+
+	/**
+	 * @param index	Index of a shared node.
+	 * @return	Lemma of the node.
+	 */
+	public String getLemma(int index){
+		return this.lemmas[index];
+	}
+
+	/**
+	 * @param index	Index of a shared node.
+	 * @return	POS of the node.
+	 */
+	public String getPos(int index){
+		return this.pos[index];
+	}
+
+	/**
+	 * Check whether the shared node at the given index has this lemma and POS.
+	 * @return	True if the node exists and has the same lemma and POS.
+	 */
+	boolean nodeEquals(int index, String lemma, String pos){
+		return index < this.nodeCount && equals(this.lemmas[index], lemma) && equals(this.pos[index], pos);
+	}
+
+	private static boolean equals(String a, String b){
+		return (a == null) ? b == null : a.equals(b);
+	}
+
+	/**
+	 * Add metadata that is shared by all the parses, including the ones that are added later.
+	 * Parses that have already been materialised get the metadata directly.
+	 * @param key	Key
+	 * @param value	Value
+	 */
+	public void putMetadata(String key, String value){
+		for(Graph graph : this)
+			if(!(graph instanceof NBestGraph) || ((NBestGraph)graph).isMaterialised())
+				graph.putMetadata(key, value);
+		if(this.metadata == null)
+			this.metadata = new ArrayList<String>();
+		for(int i = 0; i < this.metadata.size(); i += 2){
+			if(this.metadata.get(i).equals(key)){
+				this.metadata.set(i + 1, value);
+				return;
+			}
+		}
+		this.metadata.add(key);
+		this.metadata.add(value);
+	}
+
+	/**
+	 * @return	Number of shared metadata entries.
+	 */
+	int getMetadataCount(){
+		return (this.metadata == null) ? 0 : this.metadata.size() / 2;
+	}
+
+	String getMetadataKey(int index){
+		return this.metadata.get(2 * index);
+	}
+
+	String getMetadataValue(int index){
+		return this.metadata.get(2 * index + 1);
+	}
+
+	/**
+	 * Create a new parse and add it to the end of the list.
+	 * @return	The new parse, without nodes or edges.
+	 */
+	public NBestGraph addParse(){
+		return this.addParse(16, 16);
+	}
+
+	/**
+	 * Create a new parse and add it to the end of the list.
+	 * @param nodeCapacity	Expected number of nodes in the parse.
+	 * @param edgeCapacity	Expected number of edges in the parse.
+	 * @return	The new parse, without nodes or edges.
+	 */
+	public NBestGraph addParse(int nodeCapacity, int edgeCapacity){
+		NBestGraph parse = new NBestGraph(this, nodeCapacity, edgeCapacity);
+		this.add(parse);
+		return parse;
+	}
+
+	/**
+	 * Replace the lemmas, POS tags and edge labels with their canonical instances, without creating the nodes and edges of the parses.
+	 * @param symbolTable	Symbol table.
+	 */
+	public void intern(SymbolTable symbolTable){
+		for(int i = 0; i < this.nodeCount; i++){
+			this.lemmas[i] = symbolTable.intern(this.lemmas[i]);
+			this.pos[i] = symbolTable.intern(this.pos[i]);
+		}
+		for(Graph graph : this)
+			symbolTable.intern(graph);
+	}
+}
@@ -6,6 +6,7 @@ package sem.graph;
 public class Node {
 	private String lemma;
 	private String pos;
+	private int index;
 	
 	/**
 	 * Create a new node.
@@ -13,6 +14,7 @@ public class Node {
 	public Node(){
 		this.lemma = null;
 		this.pos = null;
+		this.index = -1;
 	}
 	
 	/**
@@ -23,6 +25,7 @@ public class Node {
 	public Node(String lemma, String pos) {
 		this.lemma = lemma;
 		this.pos = pos;
+		this.index = -1;
 	}
 	
 	/**
@@ -41,6 +44,23 @@ public class Node {
 		return this.pos;
 	}
 	
+	/**
+	 * Get the position of this node in the list of nodes of the graph it was last added to.
+	 * The value is maintained by the graph, so use Graph.indexOf() when the node might have been moved or shared between graphs.
+	 * @return Index of the node, or -1 if it has not been added to a graph.
+	 */
+	public int getIndex(){
+		return this.index;
+	}
+	
+	/**
+	 * Set the position of this node in the list of nodes. Only used by the graph.
+	 * @param index Index
+	 */
+	void setIndex(int index){
+		this.index = index;
+	}
+	
 	/**
 	 * Get the combined representation of lemma and POS: lemma and POS joined by underscore (lemma_POS).
 	 * @return A label for this node.
@@ -0,0 +1,122 @@
+package sem.graph;
+
+import java.util.ArrayList;
+
+/**
+ * The list of nodes used by Graph.
+ * It keeps track of the position of each node in the list, so that Graph.indexOf() can find it in constant time.
+ *
+ * <p>Appending and replacing nodes keeps the indices up to date. Any other structural change (inserting, removing)
+ * is detected through the modification count and the indices are recalculated the next time they are needed.
+ *
+ */
+class NodeList extends ArrayList<Node>{
+	private static final long serialVersionUID = 1L;
+	private int indexedModCount;
+	private int replaceCount;
+
+	/**
+	 * Create an empty list of nodes.
+	 */
+	public NodeList(){
+		super();
+		this.indexedModCount = this.modCount;
+	}
+
+	/**
+	 * Append a node to the end of the list.
+	 */
+	@Override
+	public boolean add(Node node){
+		boolean indexed = (this.indexedModCount == this.modCount);
+		super.add(node);
+		this.assignIndex(node, this.size()-1);
+		if(indexed)
+			this.indexedModCount = this.modCount;
+		return true;
+	}
+
+	/**
+	 * Replace the node at the specified position.
+	 */
+	@Override
+	public Node set(int index, Node node){
+		Node previous = super.set(index, node);
+		this.assignIndex(node, index);
+		// Replacing a node does not change modCount, but anything that caches information about the list needs to know about it.
+		this.replaceCount++;
+		return previous;
+	}
+
+	/**
+	 * Same as ArrayList.indexOf(), but uses the stored node indices.
+	 */
+	@Override
+	public int indexOf(Object o){
+		if(o instanceof Node)
+			return this.find((Node)o);
+		return super.indexOf(o);
+	}
+	
+	/**
+	 * Same as ArrayList.contains(), but uses the stored node indices.
+	 */
+	@Override
+	public boolean contains(Object o){
+		return this.indexOf(o) >= 0;
+	}
+	
+	/**
+	 * Store the position of the node, unless the node already occurs earlier in the list.
+	 * @param node	Node
+	 * @param index	Position of the node
+	 */
+	private void assignIndex(Node node, int index){
+		if(node == null)
+			return;
+		int current = node.getIndex();
+		if(current >= 0 && current < index && current < this.size() && this.get(current) == node)
+			return;
+		node.setIndex(index);
+	}
+
+	/**
+	 * Get the modification count of the list. It changes every time the list is modified, including when a node is replaced.
+	 * @return	Modification count.
+	 */
+	int getModCount(){
+		return this.modCount + this.replaceCount;
+	}
+
+	/**
+	 * Find the position of the node in the list.
+	 * @param node	Node
+	 * @return	Position of the node, or -1 if it is not in the list.
+	 */
+	int find(Node node){
+		if(node == null)
+			return -1;
+		if(this.indexedModCount != this.modCount){
+			// Going backwards, so that a node that occurs several times gets the index of its first occurrence.
+			for(int i = this.size()-1; i >= 0; i--){
+				Node n = this.get(i);
+				if(n != null)
+					n.setIndex(i);
+			}
+			this.indexedModCount = this.modCount;
+		}
+
+		int index = node.getIndex();
+		if(index >= 0 && index < this.size() && this.get(index) == node)
+			return index;
+
+		// The node has not been indexed in this list (for example, it was indexed by a different graph).
+		for(int i = 0; i < this.size(); i++){
+			if(this.get(i) == node){
+				node.setIndex(i);
+				return i;
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,157 @@
+package sem.graph;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A table that maps strings (lemmas, POS tags, edge labels) to integer ids and back.
+ * Ids are assigned in the order the strings are added, starting from 0.
+ * 
+ * <p>The table can also be used for interning: intern() returns a canonical instance for every distinct string,
+ * so that a large corpus does not keep millions of copies of the same lemmas, POS tags and labels in memory.
+ * 
+ * <p>The table can be shared between threads. Looking up existing strings does not require locking.
+ *
+ */
+public class SymbolTable {
+	private static final SymbolTable defaultSymbolTable = new SymbolTable();
+	
+	private ConcurrentHashMap<String,Integer> ids;
+	private volatile String[] strings;
+	private volatile int size;
+	
+	/**
+	 * Create a new empty symbol table.
+	 */
+	public SymbolTable(){
+		this.ids = new ConcurrentHashMap<String,Integer>();
+		this.strings = new String[1024];
+		this.size = 0;
+	}
+	
+	/**
+	 * Get the global symbol table that is shared by the whole application.
+	 * @return	The default symbol table.
+	 */
+	public static SymbolTable getDefault(){
+		return defaultSymbolTable;
+	}
+	
+	/**
+	 * Get the id of a string, adding it to the table if it is not there yet.
+	 * @param string	Input string.
+	 * @return			Id of the string, or -1 if the string is null.
+	 */
+	public int getId(String string){
+		if(string == null)
+			return -1;
+		Integer id = this.ids.get(string);
+		if(id != null)
+			return id;
+		
+		synchronized(this){
+			id = this.ids.get(string);
+			if(id != null)
+				return id;
+			if(this.size >= this.strings.length){
+				String[] newStrings = new String[this.strings.length * 2];
+				System.arraycopy(this.strings, 0, newStrings, 0, this.size);
+				this.strings = newStrings;
+			}
+			int newId = this.size;
+			this.strings[newId] = string;
+			this.size = newId + 1;
+			this.ids.put(string, newId);
+			return newId;
+		}
+	}
+	
+	/**
+	 * Get the id of a string, without adding it to the table.
+	 * @param string	Input string.
+	 * @return			Id of the string, or -1 if the string is not in the table.
+	 */
+	public int lookup(String string){
+		if(string == null)
+			return -1;
+		Integer id = this.ids.get(string);
+		if(id == null)
+			return -1;
+		return id;
+	}
+	
+	/**
+	 * Get the string corresponding to an id.
+	 * @param id	Id of the string.
+	 * @return		The string, or null if the id is -1.
+	 */
+	public String getString(int id){
+		if(id == -1)
+			return null;
+		if(id < 0 || id >= this.size)
+			throw new IndexOutOfBoundsException("No string with id " + id + " in the symbol table.");
+		return this.strings[id];
+	}
+	
+	/**
+	 * Get the canonical instance of a string, adding it to the table if it is not there yet.
+	 * @param string	Input string.
+	 * @return			String from the table that is equal to the input, or null if the input is null.
+	 */
+	public String intern(String string){
+		if(string == null)
+			return null;
+		return this.getString(this.getId(string));
+	}
+	
+	/**
+	 * Replace the lemmas, POS tags and edge labels in the graph with their canonical instances.
+	 * @param graph	Graph to be modified.
+	 * @return		The same graph.
+	 */
+	public Graph intern(Graph graph){
+		if(graph == null)
+			return null;
+		if(graph instanceof NBestGraph && !((NBestGraph)graph).isMaterialised()){
+			((NBestGraph)graph).intern(this);
+			return graph;
+		}
+		for(Node node : graph.getNodes()){
+			if(node == null)
+				continue;
+			node.setLemma(this.intern(node.getLemma()));
+			node.setPos(this.intern(node.getPos()));
+		}
+		for(Edge edge : graph.getEdges()){
+			edge.setLabel(this.intern(edge.getLabel()));
+			// Nodes that are only referenced by edges
+			edge.getHead().setLemma(this.intern(edge.getHead().getLemma()));
+			edge.getHead().setPos(this.intern(edge.getHead().getPos()));
+			edge.getDep().setLemma(this.intern(edge.getDep().getLemma()));
+			edge.getDep().setPos(this.intern(edge.getDep().getPos()));
+		}
+		return graph;
+	}
+	
+	/**
+	 * Replace the strings in all the graphs of a sentence with their canonical instances.
+	 * @param sentence	List of graphs to be modified.
+	 * @return			The same list of graphs.
+	 */
+	public List<Graph> intern(List<Graph> sentence){
+		if(sentence instanceof NBestSentence)
+			((NBestSentence)sentence).intern(this);
+		else if(sentence != null)
+			for(Graph graph : sentence)
+				this.intern(graph);
+		return sentence;
+	}
+	
+	/**
+	 * Get the number of strings in the table.
+	 * @return	Number of strings.
+	 */
+	public int size(){
+		return this.size;
+	}
+}
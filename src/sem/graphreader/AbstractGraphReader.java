@@ -0,0 +1,85 @@
+package sem.graphreader;
+
+import java.util.ArrayList;
+import java.util.stream.Stream;
+
+import sem.exception.GraphFormatException;
+import sem.graph.Graph;
+import sem.graph.SymbolTable;
+
+/**
+ * Base class for the seekable readers, with the parts that do not depend on the input format:
+ * the input path, the symbol table, the sentence index, and the streams returned by graphs() and sentences().
+ *
+ * <p>A subclass sets inputPath when it reads from a path, sets started when it returns a graph or a sentence,
+ * clears started when it is reset, and supplies a factory for readers of single input files.
+ *
+ */
+public abstract class AbstractGraphReader implements SeekableGraphReader{
+	/** Path to the input, or null if the reader does not read from a path. */
+	protected String inputPath;
+	/** Symbol table for the strings of the graphs, or null if they are not interned. */
+	protected SymbolTable symbolTable;
+	/** Whether anything has been returned since the reader was created or reset. */
+	protected boolean started;
+	private SentenceIndex sentenceIndex;
+
+	/**
+	 * Creates readers with the same configuration as this one, for reading single files of the input.
+	 * @return	Factory for new readers
+	 */
+	protected abstract GraphReaderFactory getFactory();
+
+	/**
+	 * Continue reading from the sentence with this number (counting from 0).
+	 * Uses the sentence index if it has been set, otherwise reads through the corpus from the beginning.
+	 * @param sentenceId	Sentence number.
+	 * @throws GraphFormatException
+	 */
+	@Override
+	public void seek(long sentenceId) throws GraphFormatException{
+		SentenceIndex.seek(this, sentenceId);
+	}
+
+	@Override
+	public void setSentenceIndex(SentenceIndex sentenceIndex){
+		this.sentenceIndex = sentenceIndex;
+	}
+
+	@Override
+	public SentenceIndex getSentenceIndex(){
+		return this.sentenceIndex;
+	}
+
+	/**
+	 * Intern the lemmas, POS tags and edge labels of all graphs using the symbol table.
+	 * Subclasses also intern the graphs they have already read ahead.
+	 * @param symbolTable	Symbol table, or null to disable interning.
+	 */
+	@Override
+	public void setSymbolTable(SymbolTable symbolTable){
+		this.symbolTable = symbolTable;
+	}
+
+	/**
+	 * Get a stream of the graphs that have not been returned yet, as described in GraphReader.graphs().
+	 * If nothing has been returned since the reader was created or reset, the stream reads the input with new readers,
+	 * which parallel streams split by file, or by sentence if a matching sentence index has been set.
+	 * @return	Stream of graphs
+	 */
+	@Override
+	public Stream<Graph> graphs(){
+		return GraphReaderSpliterator.graphs(this, this.started, this.inputPath, this.getFactory(), this.symbolTable, this.sentenceIndex);
+	}
+
+	/**
+	 * Get a stream of the sentences that have not been returned yet, as described in GraphReader.sentences().
+	 * If nothing has been returned since the reader was created or reset, the stream reads the input with new readers,
+	 * which parallel streams split by file, or by sentence if a matching sentence index has been set.
+	 * @return	Stream of sentences
+	 */
+	@Override
+	public Stream<ArrayList<Graph>> sentences(){
+		return GraphReaderSpliterator.sentences(this, this.started, this.inputPath, this.getFactory(), this.symbolTable, this.sentenceIndex);
+	}
+}
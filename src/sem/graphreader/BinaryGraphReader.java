@@ -0,0 +1,455 @@
+package sem.graphreader;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.zip.GZIPInputStream;
+
+import sem.exception.GraphFormatException;
+import sem.graph.Graph;
+import sem.graph.Node;
+import sem.graph.SymbolTable;
+import sem.graphwriter.BinaryGraphWriter;
+import sem.util.FileReader;
+
+/**
+ * Graph reader for the binary format written by BinaryGraphWriter.
+ *
+ * <p>Every block of sentences is read from the file channel with a single call, and the strings in the dictionary of the block
+ * are decoded only once, so the nodes and edges of the block share the same String objects.
+ * Gzipped files (ending with .gz) are also supported.
+ *
+ * <p>The offset of a sentence (see getNextSentenceOffset()) is the byte offset of its block, shifted left by 16 bits,
+ * plus the position of the sentence in the block.
+ *
+ */
+public class BinaryGraphReader extends AbstractGraphReader{
+	private static final int HEADER_SIZE = 5;
+	private static final int BLOCK_HEADER_SIZE = 8;
+
+	private ArrayList<File> inputFiles;
+	private int nextSentenceFileIndex;
+	private long nextSentenceOffset;
+	private ArrayList<Graph> nextSentence;
+	private int nextGraphPointer;
+
+	private int currentFileIndex;
+	private ReadableByteChannel channel;
+	private long filePosition;
+	private ByteBuffer blockHeader;
+	private byte[] block;
+	private int blockPosition;
+	private int blockLength;
+	private long blockOffset;
+	private int blockSentences;
+	private int blockSentence;
+	private String[] dictionary;
+	private String[] symbols;
+	private int dictionarySize;
+
+	public BinaryGraphReader(String inputPath) throws GraphFormatException{
+		File input = new File(inputPath);
+		if(!input.exists())
+			throw new RuntimeException("Input path for BinaryGraphReader is invalid: " + inputPath);
+		this.inputPath = inputPath;
+		this.inputFiles = FileReader.listFileRec(input);
+		this.blockHeader = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+		this.block = new byte[1 << 16];
+		this.dictionary = new String[0];
+		this.symbols = new String[0];
+		this.dictionarySize = 0;
+		this.reset();
+	}
+
+	/**
+	 * Open a file and check the header.
+	 * @param fileIndex	Index of the file.
+	 * @throws GraphFormatException
+	 */
+	private void openFile(int fileIndex) throws GraphFormatException{
+		this.closeFile();
+		this.currentFileIndex = fileIndex;
+		if(fileIndex >= this.inputFiles.size())
+			return;
+		File file = this.inputFiles.get(fileIndex);
+		try {
+			if(file.getName().endsWith(".gz"))
+				this.channel = Channels.newChannel(new GZIPInputStream(new FileInputStream(file), 1 << 16));
+			else
+				this.channel = new FileInputStream(file).getChannel();
+			this.filePosition = 0;
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			if(!this.readFully(header) || header.getInt(0) != BinaryGraphWriter.MAGIC)
+				throw new GraphFormatException("Not a binary graph file.", file.getPath());
+			if(header.get(4) != BinaryGraphWriter.VERSION)
+				throw new GraphFormatException("Unsupported binary graph file version " + header.get(4) + ".", file.getPath());
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		this.blockSentences = 0;
+		this.blockSentence = 0;
+	}
+
+	private void closeFile(){
+		if(this.channel != null){
+			try {
+				this.channel.close();
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		this.channel = null;
+	}
+
+	/**
+	 * Fill the buffer from the channel.
+	 * @return	False if the end of the file was reached before reading anything.
+	 * @throws IOException
+	 * @throws GraphFormatException 	If the file ends in the middle of the buffer.
+	 */
+	private boolean readFully(ByteBuffer buffer) throws IOException, GraphFormatException{
+		int start = buffer.position();
+		while(buffer.hasRemaining()){
+			int n = this.channel.read(buffer);
+			if(n < 0){
+				if(buffer.position() == start)
+					return false;
+				throw new GraphFormatException("Unexpected end of binary graph file.", this.inputFiles.get(this.currentFileIndex).getPath());
+			}
+			this.filePosition += n;
+		}
+		return true;
+	}
+
+	/**
+	 * Skip bytes in the current file.
+	 */
+	private void skip(long bytes) throws IOException, GraphFormatException{
+		if(this.channel instanceof FileChannel){
+			FileChannel fileChannel = (FileChannel)this.channel;
+			fileChannel.position(fileChannel.position() + bytes);
+			this.filePosition += bytes;
+			return;
+		}
+		while(bytes > 0){
+			int n = (int)Math.min(bytes, this.block.length);
+			if(!this.readFully(ByteBuffer.wrap(this.block, 0, n)))
+				throw new GraphFormatException("Unexpected end of binary graph file.", this.inputFiles.get(this.currentFileIndex).getPath());
+			bytes -= n;
+		}
+	}
+
+	/**
+	 * Read the next block of the current file, and decode its dictionary.
+	 * @return	False if there are no more blocks in the file.
+	 * @throws GraphFormatException
+	 */
+	private boolean readBlock() throws GraphFormatException{
+		if(this.channel == null)
+			return false;
+		try {
+			this.blockOffset = this.filePosition;
+			this.blockHeader.clear();
+			if(!this.readFully(this.blockHeader))
+				return false;
+			this.blockLength = this.blockHeader.getInt(0);
+			this.blockSentences = this.blockHeader.getInt(4);
+			if(this.blockLength < 0 || this.blockSentences < 0 || this.blockSentences > BinaryGraphWriter.MAX_BLOCK_SENTENCES)
+				throw new GraphFormatException("Invalid block header in binary graph file.", this.inputFiles.get(this.currentFileIndex).getPath());
+			if(this.block.length < this.blockLength)
+				this.block = new byte[Math.max(this.blockLength, this.block.length * 2)];
+			// The file can end right after the block header, which readFully() does not report as an error
+			if(!this.readFully(ByteBuffer.wrap(this.block, 0, this.blockLength)))
+				throw new GraphFormatException("Unexpected end of binary graph file.", this.inputFiles.get(this.currentFileIndex).getPath());
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		this.blockPosition = 0;
+		this.blockSentence = 0;
+
+		int size = this.readVarint();
+		if(this.dictionary.length < size){
+			this.dictionary = new String[Math.max(size, this.dictionary.length * 2)];
+			this.symbols = new String[this.dictionary.length];
+		}
+		this.dictionarySize = size;
+		for(int i = 0; i < size; i++){
+			int length = this.readVarint();
+			if(length > this.blockLength - this.blockPosition)
+				throw this.blockError();
+			String string = new String(this.block, this.blockPosition, length, StandardCharsets.UTF_8);
+			this.blockPosition += length;
+			this.dictionary[i] = string;
+			this.symbols[i] = null;
+		}
+		return true;
+	}
+
+	private GraphFormatException blockError(){
+		return new GraphFormatException("Corrupt block in binary graph file.", this.inputFiles.get(this.currentFileIndex).getPath() + " at offset " + this.blockOffset);
+	}
+
+	private int readVarint() throws GraphFormatException{
+		int value = 0;
+		for(int shift = 0; shift < 32; shift += 7){
+			if(this.blockPosition >= this.blockLength)
+				throw this.blockError();
+			byte b = this.block[this.blockPosition++];
+			value |= (b & 0x7F) << shift;
+			if(b >= 0)
+				return value;
+		}
+		throw this.blockError();
+	}
+
+	private String readString() throws GraphFormatException{
+		int id = this.readVarint();
+		if(id == 0)
+			return null;
+		if(id > this.dictionarySize)
+			throw this.blockError();
+		return this.dictionary[id-1];
+	}
+
+	/**
+	 * Read a lemma, POS or label. These are interned with the symbol table, once per block.
+	 */
+	private String readSymbol() throws GraphFormatException{
+		if(this.symbolTable == null)
+			return this.readString();
+		int id = this.readVarint();
+		if(id == 0)
+			return null;
+		if(id > this.dictionarySize)
+			throw this.blockError();
+		if(this.symbols[id-1] == null)
+			this.symbols[id-1] = this.symbolTable.intern(this.dictionary[id-1]);
+		return this.symbols[id-1];
+	}
+
+	private Graph readGraph() throws GraphFormatException{
+		Graph graph = new Graph();
+		int nodeCount = this.readVarint();
+		for(int i = 0; i < nodeCount; i++){
+			String lemma = this.readSymbol();
+			graph.addNode(new Node(lemma, this.readSymbol()));
+		}
+
+		ArrayList<Node> nodes = graph.getNodes();
+		int edgeCount = this.readVarint();
+		for(int i = 0; i < edgeCount; i++){
+			String label = this.readSymbol();
+			int head = this.readVarint();
+			int dep = this.readVarint();
+			if(head < 0 || dep < 0 || head >= nodeCount || dep >= nodeCount)
+				throw this.blockError();
+			graph.addEdge(label, nodes.get(head), nodes.get(dep));
+		}
+
+		int metadataCount = this.readVarint();
+		for(int i = 0; i < metadataCount; i++){
+			String key = this.readString();
+			graph.putMetadata(key, this.readString());
+		}
+		return graph;
+	}
+
+	private ArrayList<Graph> readSentence() throws GraphFormatException{
+		while(this.blockSentence >= this.blockSentences){
+			if(!this.readBlock()){
+				if(this.currentFileIndex + 1 >= this.inputFiles.size()){
+					this.closeFile();
+					this.nextSentenceFileIndex = -1;
+					this.nextSentenceOffset = -1;
+					return null;
+				}
+				this.openFile(this.currentFileIndex + 1);
+			}
+		}
+
+		this.nextSentenceFileIndex = this.currentFileIndex;
+		this.nextSentenceOffset = (this.blockOffset << 16) | this.blockSentence;
+		this.blockSentence++;
+
+		int graphCount = this.readVarint();
+		ArrayList<Graph> graphs = new ArrayList<Graph>(Math.max(graphCount, 1));
+		for(int i = 0; i < graphCount; i++)
+			graphs.add(this.readGraph());
+		if(graphs.size() == 0)
+			graphs.add(new Graph());
+		return graphs;
+	}
+
+	/**
+	 * Read the next sentence into the buffer.
+	 * If the sentence could not be parsed, the buffer gets a single empty graph and the exception is passed on.
+	 * @throws GraphFormatException
+	 */
+	private void readAhead() throws GraphFormatException{
+		this.nextGraphPointer = 0;
+		try{
+			this.nextSentence = this.readSentence();
+		} catch (GraphFormatException e){
+			this.nextSentence = new ArrayList<Graph>();
+			this.nextSentence.add(new Graph());
+			// The rest of the block cannot be trusted
+			this.blockSentence = this.blockSentences;
+			throw e;
+		}
+	}
+
+	/**
+	 * Check whether there are more graphs available.
+	 * @return	True if there are more graphs available.
+	 */
+	@Override
+	public boolean hasNext() {
+		if(this.nextSentence == null)
+			return false;
+		return true;
+	}
+
+	/**
+	 * Get the next graph from the corpus.
+	 * @return	The next graph.
+	 * @throws GraphFormatException
+	 */
+	@Override
+	public Graph next() throws GraphFormatException {
+		this.started = true;
+		Graph graph = null;
+		if(this.nextSentence != null){
+			graph = this.nextSentence.get(nextGraphPointer);
+			nextGraphPointer++;
+		}
+		if(this.nextSentence == null || nextGraphPointer >= this.nextSentence.size())
+			this.readAhead();
+		return graph;
+	}
+
+	/**
+	 * Read a sentence from the corpus.
+	 * @return	List of graphs
+	 * @throws GraphFormatException
+	 */
+	@Override
+	public ArrayList<Graph> nextSentence() throws GraphFormatException {
+		this.started = true;
+		ArrayList<Graph> tempSentence = this.nextSentence;
+		this.readAhead();
+		return tempSentence;
+	}
+
+	/**
+	 * Reset the whole reading process to the beginning.
+	 * @throws GraphFormatException
+	 */
+	@Override
+	public void reset() throws GraphFormatException {
+		this.openFile(0);
+		this.readAhead();
+		this.started = false;
+	}
+
+	@Override
+	public void close() {
+		this.closeFile();
+		this.nextSentence = null;
+	}
+
+	/**
+	 * Get the list of input files, in the order they are read.
+	 * @return	List of files.
+	 */
+	@Override
+	public ArrayList<File> getInputFiles(){
+		return this.inputFiles;
+	}
+
+	/**
+	 * Get the index of the file containing the sentence that will be returned next.
+	 * @return	File index, or -1 if there are no more sentences.
+	 */
+	@Override
+	public int getNextSentenceFileIndex(){
+		return this.nextSentenceFileIndex;
+	}
+
+	/**
+	 * Get the position of the sentence that will be returned next.
+	 * @return	Offset of the block shifted left by 16 bits, plus the position of the sentence in the block, or -1 if there are no more sentences.
+	 */
+	@Override
+	public long getNextSentenceOffset(){
+		return this.nextSentenceOffset;
+	}
+
+	/**
+	 * Continue reading from the sentence at this position.
+	 * For gzipped files, the file has to be decompressed up to the block.
+	 * @param fileIndex	Index of the file, as returned by getNextSentenceFileIndex().
+	 * @param offset	Position of the sentence, as returned by getNextSentenceOffset().
+	 * @throws GraphFormatException
+	 */
+	@Override
+	public void seek(int fileIndex, long offset) throws GraphFormatException{
+		if(fileIndex < 0 || fileIndex >= this.inputFiles.size())
+			throw new RuntimeException("File index out of range: " + fileIndex);
+		long position = offset >>> 16;
+		int sentence = (int)(offset & 0xFFFF);
+		this.openFile(fileIndex);
+		if(position < HEADER_SIZE)
+			throw new RuntimeException("Invalid offset for a binary graph file: " + offset);
+		try {
+			this.skip(position - this.filePosition);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		if(!this.readBlock() || sentence >= this.blockSentences)
+			throw new GraphFormatException("No sentence at this offset.", this.inputFiles.get(fileIndex).getPath() + " " + offset);
+		// Skipping the sentences before the one we need
+		for(int i = 0; i < sentence; i++){
+			int graphCount = this.readVarint();
+			for(int j = 0; j < graphCount; j++)
+				this.readGraph();
+		}
+		this.blockSentence = sentence;
+		this.readAhead();
+		this.started = true;
+	}
+
+	/**
+	 * Creates readers with the same configuration as this one, for reading single files of the input.
+	 * @return	Factory for new readers
+	 */
+	@Override
+	protected GraphReaderFactory getFactory(){
+		return new GraphReaderFactory(){
+			@Override
+			public GraphReader makeGraphReader(String path) throws GraphFormatException {
+				return new BinaryGraphReader(path);
+			}
+		};
+	}
+
+	/**
+	 * Intern the lemmas, POS tags and edge labels of all graphs using the symbol table.
+	 * The strings are interned once per block, when they are first used.
+	 * This also applies to the sentence that has already been read ahead.
+	 * @param symbolTable	Symbol table, or null to disable interning.
+	 */
+	@Override
+	public void setSymbolTable(SymbolTable symbolTable){
+		this.symbolTable = symbolTable;
+		for(int i = 0; i < this.symbols.length; i++)
+			this.symbols[i] = null;
+		if(symbolTable != null)
+			symbolTable.intern(this.nextSentence);
+	}
+}
@@ -1,9 +1,11 @@
 package sem.graphreader;
 
+import java.io.File;
 import java.util.ArrayList;
 
 import sem.exception.GraphFormatException;
 import sem.graph.Graph;
+import sem.graph.SymbolTable;
 import sem.util.FileReader;
 import sem.util.Tools;
 
@@ -14,35 +16,86 @@ import sem.util.Tools;
  * For more info: <a href="http://svn.ask.it.usyd.edu.au/trac/candc">http://svn.ask.it.usyd.edu.au/trac/candc</a>
  * </p>
  */
-public class CnCGraphReader implements GraphReader{
+public class CnCGraphReader extends AbstractGraphReader{
 	private FileReader reader;
 	private Graph nextGraph;
+	private int nextSentenceFileIndex;
+	private long nextSentenceOffset;
+	private GrTokenizer grTokenizer = new GrTokenizer();
+	private int[] fieldEnds = new int[6];
 	
 	public CnCGraphReader(String inputPath) throws GraphFormatException{
-		this.reader = new FileReader(inputPath, "\n");
+		this(new FileReader(inputPath, "\n"));
+		this.inputPath = inputPath;
+	}
+	
+	/**
+	 * Create a reader for the lines of an existing FileReader, for example a chunk of a file that is held in memory (see SentenceChunkReader).
+	 * The sentence offsets refer to the lines of that FileReader, and graphs() and sentences() read from this reader without splitting, as there is no input path.
+	 * @param reader	Source of the lines.
+	 * @throws GraphFormatException
+	 */
+	public CnCGraphReader(FileReader reader) throws GraphFormatException{
+		this.inputPath = null;
+		this.reader = reader;
 		this.nextGraph = null;
 		this.next();
+		this.started = false;
 	}
 	
-	private int findLemmaId(String label) throws GraphFormatException{
-		if(label.length() >= 2 && label.charAt(0) == '|' && label.charAt(label.length()-1) == '|')
-			label = label.substring(1, label.length()-1);
-		int index = label.lastIndexOf('_');
-		if(index == -1 || index + 1 == label.length())
-			throw new GraphFormatException("Lemma ID not found.", label);
-		int id = Tools.getInt(label.substring(index+1), -1);
+	/**
+	 * Find the lemma ID from a token in the format |lemma_id|, which is a part of a GR line.
+	 */
+	private int findLemmaId(CharSequence line, int start, int end) throws GraphFormatException{
+		if(end - start >= 2 && line.charAt(start) == '|' && line.charAt(end-1) == '|'){
+			start++;
+			end--;
+		}
+		int index = end - 1;
+		while(index >= start && line.charAt(index) != '_')
+			index--;
+		if(index < start || index + 1 == end)
+			throw new GraphFormatException("Lemma ID not found.", line.subSequence(start, end).toString());
+		int id = Tools.getInt(line, index+1, end, -1);
 		if(id < 0)
-			throw new GraphFormatException("Lemma ID not found.", label);
+			throw new GraphFormatException("Lemma ID not found.", line.subSequence(start, end).toString());
 		return id;
 	}
 	
+	private int findLemmaId(int token) throws GraphFormatException{
+		return findLemmaId(grTokenizer.getLine(), grTokenizer.getTokenStart(token), grTokenizer.getTokenEnd(token));
+	}
+	
+	/**
+	 * Add a node from a token in the format word|lemma|POS|chunk|NE|supertag.
+	 * This has the same result as splitting the token at the bars, but only creates strings for the lemma and POS.
+	 */
+	private void addNode(Graph graph, String line, int start, int end) throws GraphFormatException{
+		// String.split() drops the empty fields at the end, so only the fields up to the last non-empty one are counted
+		int fields = 0, nonEmptyFields = 0, fieldStart = start;
+		for(int i = start; i <= end; i++){
+			if(i == end || line.charAt(i) == '|'){
+				if(fields < fieldEnds.length)
+					fieldEnds[fields] = i;
+				fields++;
+				if(i > fieldStart)
+					nonEmptyFields = fields;
+				fieldStart = i + 1;
+			}
+		}
+		if(nonEmptyFields != 6)
+			throw new GraphFormatException("Illegal number of attributes for a token.", line.substring(start, end));
+		graph.addNode(line.substring(fieldEnds[0] + 1, fieldEnds[1]), line.substring(fieldEnds[1] + 1, fieldEnds[2]));
+	}
+	
 	private Graph readNextGraph() throws GraphFormatException{
 		String line;
 		ArrayList<String> buffer = new ArrayList<String>();
-		String[] tokens, attributes;
 		Graph graph = null;
 		int headId, depId;
 		
+		this.nextSentenceFileIndex = reader.getNextLineFileIndex();
+		this.nextSentenceOffset = reader.getNextLineOffset();
 		while (reader.hasNext()) {
 			line = reader.next().trim();
 			if(line.trim().length() == 0){
@@ -57,30 +110,26 @@ public class CnCGraphReader implements GraphReader{
 				graph = new Graph();
 				
 				// Adding nodes
-				tokens = line.split("\\s+");
-				for(int i = 1; i < tokens.length; i++){
-					attributes = tokens[i].split("\\|");
-					if(attributes.length != 6)
-						throw new GraphFormatException("Illegal number of attributes for a token.", tokens[i]);
-					graph.addNode(attributes[1], attributes[2]);
-				}
+				int tokenCount = grTokenizer.tokenize(line, false);
+				for(int i = 1; i < tokenCount; i++)
+					addNode(graph, line, grTokenizer.getTokenStart(i), grTokenizer.getTokenEnd(i));
 				
 				// Adding edges
 				for(String grLine : buffer){
-					if(grLine.length() >= 2 && grLine.charAt(0) == '(' && grLine.charAt(grLine.length()-1) == ')')
-						grLine = grLine.substring(1, grLine.length()-1);
-					attributes = grLine.split("\\s+");
-					String type = attributes[0];
+					if(grTokenizer.tokenize(grLine, false) < 3)
+						throw new GraphFormatException("GR has wrong number of arguments", grLine);
 					
 					headId = -1;
 					depId = -1;
-					if(RaspGraphReader.grsWithSubtype.contains(type)){
-						headId = findLemmaId(attributes[2]);
-						depId = findLemmaId(attributes[3]);
+					if(grTokenizer.getCategory() == GrTokenizer.CATEGORY_SUBTYPE){
+						if(grTokenizer.getTokenCount() < 4)
+							throw new GraphFormatException("GR has wrong number of arguments", grLine);
+						headId = findLemmaId(2);
+						depId = findLemmaId(3);
 					}
 					else {
-						headId = findLemmaId(attributes[1]);
-						depId = findLemmaId(attributes[2]);
+						headId = findLemmaId(1);
+						depId = findLemmaId(2);
 					}
 					
 					if(headId < 0 || depId < 0)
@@ -89,7 +138,7 @@ public class CnCGraphReader implements GraphReader{
 					if(headId >= graph.getNodes().size() || depId >= graph.getNodes().size())
 						throw new GraphFormatException("The head or dependent does not exist in the nodes.", line);
 					
-					graph.addEdge(type, graph.getNodes().get(headId), graph.getNodes().get(depId));
+					graph.addEdge(grTokenizer.getType(), graph.getNodes().get(headId), graph.getNodes().get(depId));
 				}
 				buffer.clear();
 			}
@@ -98,6 +147,9 @@ public class CnCGraphReader implements GraphReader{
 			}
 		}
 		
+		if(graph != null && this.symbolTable != null)
+			this.symbolTable.intern(graph);
+		
 		return graph;
 	}
 
@@ -118,6 +170,7 @@ public class CnCGraphReader implements GraphReader{
 	 */
 	@Override
 	public Graph next() throws GraphFormatException {
+		this.started = true;
 		Graph graph = this.nextGraph;
 		this.nextGraph = readNextGraph();
 		return graph;
@@ -129,6 +182,7 @@ public class CnCGraphReader implements GraphReader{
 	 */
 	@Override
 	public ArrayList<Graph> nextSentence() throws GraphFormatException {
+		this.started = true;
 		if(!this.hasNext())
 			return null;
 		ArrayList<Graph> sentence = new ArrayList<Graph>();
@@ -145,6 +199,7 @@ public class CnCGraphReader implements GraphReader{
 			this.reader.reset();
 		this.nextGraph = null;
 		this.next();
+		this.started = false;
 	}
 
 	/**
@@ -157,6 +212,72 @@ public class CnCGraphReader implements GraphReader{
 		this.nextGraph = null;
 	}
 	
+	/**
+	 * Get the list of input files, in the order they are read.
+	 * @return	List of files.
+	 */
+	@Override
+	public ArrayList<File> getInputFiles(){
+		return this.reader.getInputFiles();
+	}
+	
+	/**
+	 * Get the index of the file containing the sentence that will be returned next.
+	 * @return	File index, or -1 if there are no more sentences.
+	 */
+	@Override
+	public int getNextSentenceFileIndex(){
+		return this.nextSentenceFileIndex;
+	}
+	
+	/**
+	 * Get the byte offset of the sentence that will be returned next.
+	 * @return	Byte offset in the (decompressed) file, or -1 if there are no more sentences.
+	 */
+	@Override
+	public long getNextSentenceOffset(){
+		return this.nextSentenceOffset;
+	}
+	
+	/**
+	 * Continue reading from the sentence at this position.
+	 * @param fileIndex	Index of the file, as returned by getNextSentenceFileIndex().
+	 * @param offset	Byte offset, as returned by getNextSentenceOffset().
+	 * @throws GraphFormatException 
+	 */
+	@Override
+	public void seek(int fileIndex, long offset) throws GraphFormatException{
+		this.reader.seek(fileIndex, offset);
+		this.nextGraph = null;
+		this.next();
+	}
+	
+	/**
+	 * Creates readers with the same configuration as this one, for reading single files of the input.
+	 * @return	Factory for new readers
+	 */
+	@Override
+	protected GraphReaderFactory getFactory(){
+		return new GraphReaderFactory(){
+			@Override
+			public GraphReader makeGraphReader(String path) throws GraphFormatException {
+				return new CnCGraphReader(path);
+			}
+		};
+	}
+	
+	/**
+	 * Intern the lemmas, POS tags and edge labels of all graphs using the symbol table.
+	 * This also applies to the graph that has already been read ahead.
+	 * @param symbolTable	Symbol table, or null to disable interning.
+	 */
+	@Override
+	public void setSymbolTable(SymbolTable symbolTable){
+		this.symbolTable = symbolTable;
+		if(symbolTable != null)
+			symbolTable.intern(this.nextGraph);
+	}
+
 	public static void main(String[] args){
 		try {
 			CnCGraphReader cncr = new CnCGraphReader("examples/candc/file1_tok.candc");
@@ -0,0 +1,349 @@
+package sem.graphreader;
+
+import sem.exception.GraphFormatException;
+
+/**
+ * Splits a GR line, such as (|ncsubj| |be+s:4_VBZ| |processing:3_NN1| _), into its arguments in a single pass.
+ *
+ * <p>The tokenizer only stores the start and end positions of the tokens in the line, so it does not create any
+ * strings or collections unless they are requested. The object is meant to be reused for every line.
+ * Known GR types are looked up in a static hash table, which returns the same String object every time and the
+ * category of the GR (how many and which arguments it has).
+ *
+ * <p>Tokens are split at whitespace in the same way as String.split("\\s+"), and bars around the arguments are removed
+ * in the same way as RaspGraphReader.parseGr() always did.
+ *
+ */
+public class GrTokenizer {
+	/**
+	 * GR with a head and a dependent, e.g. (dobj include+ing:17_VVG and:23_CC)
+	 */
+	public static final int CATEGORY_DEFAULT = 0;
+	/**
+	 * GR with only a head, e.g. (passive be+ed:4_VBDZ)
+	 */
+	public static final int CATEGORY_PASSIVE = 1;
+	/**
+	 * GR with a subtype before the head and dependent, e.g. (ncmod _ algorithm+s:6_NN2 modern:3_JJ)
+	 */
+	public static final int CATEGORY_SUBTYPE = 2;
+	/**
+	 * GR with an initial GR after the head and dependent, e.g. (ncsubj require+s:7_VVZ research:1_NN1 _)
+	 */
+	public static final int CATEGORY_INITIAL_GR = 3;
+
+	private static final String[] knownTypes = new String[]{"dependent", "ta", "arg_mod", "det", "aux", "conj", "mod", "ncmod", "xmod", "cmod", "pmod",
+			"arg", "subj", "ncsubj", "xsubj", "csubj", "subj_dobj", "comp", "obj", "dobj", "obj2", "iobj", "clausal", "xcomp", "ccomp", "pcomp", "passive", "lmod"};
+	private static final int TABLE_SIZE = 128;
+	private static final String[] typeTable = new String[TABLE_SIZE];
+	private static final int[] categoryTable = new int[TABLE_SIZE];
+
+	static {
+		for(String type : knownTypes)
+			addType(type, getCategory(type));
+		for(String type : RaspGraphReader.grsWithSubtype)
+			addType(type, CATEGORY_SUBTYPE);
+		for(String type : RaspGraphReader.grsWithInitialGr)
+			addType(type, CATEGORY_INITIAL_GR);
+	}
+
+	private static void addType(String type, int category){
+		int slot = findSlot(type, 0, type.length());
+		typeTable[slot] = type;
+		categoryTable[slot] = category;
+	}
+
+	/**
+	 * Find the slot of a type in the hash table, or the empty slot where it would go.
+	 */
+	private static int findSlot(CharSequence text, int start, int end){
+		int hash = 0;
+		for(int i = start; i < end; i++)
+			hash = 31 * hash + text.charAt(i);
+		int slot = (hash ^ (hash >>> 7)) & (TABLE_SIZE - 1);
+		while(typeTable[slot] != null && !regionEquals(typeTable[slot], text, start, end))
+			slot = (slot + 1) & (TABLE_SIZE - 1);
+		return slot;
+	}
+
+	private static boolean regionEquals(String s, CharSequence text, int start, int end){
+		if(s.length() != end - start)
+			return false;
+		for(int i = 0; i < s.length(); i++)
+			if(s.charAt(i) != text.charAt(start + i))
+				return false;
+		return true;
+	}
+
+	/**
+	 * Get the canonical instance of a GR type, so that the graphs do not keep a separate copy of the string for every edge.
+	 * @param type	GR type
+	 * @return	The instance from the table of known types, or the same string if the type is not known.
+	 */
+	public static String getKnownType(String type){
+		if(type == null)
+			return null;
+		String known = typeTable[findSlot(type, 0, type.length())];
+		return (known != null) ? known : type;
+	}
+
+	/**
+	 * Get the canonical instance of a GR type that is part of a longer text, such as a whole line.
+	 * @param text	Text containing the type.
+	 * @param start	Start of the type in the text.
+	 * @param end	End of the type in the text.
+	 * @return	The instance from the table of known types, or a new string if the type is not known.
+	 */
+	public static String getKnownType(CharSequence text, int start, int end){
+		String known = typeTable[findSlot(text, start, end)];
+		return (known != null) ? known : text.subSequence(start, end).toString();
+	}
+
+	/**
+	 * Get the category of a GR type.
+	 * @param type	GR type
+	 * @return	CATEGORY_PASSIVE, CATEGORY_SUBTYPE, CATEGORY_INITIAL_GR or CATEGORY_DEFAULT
+	 */
+	public static int getCategory(String type){
+		if(type.equals("passive"))
+			return CATEGORY_PASSIVE;
+		if(RaspGraphReader.grsWithSubtype.contains(type))
+			return CATEGORY_SUBTYPE;
+		if(RaspGraphReader.grsWithInitialGr.contains(type))
+			return CATEGORY_INITIAL_GR;
+		return CATEGORY_DEFAULT;
+	}
+
+	private CharSequence line;
+	private int[] starts;
+	private int[] ends;
+	private int count;
+	private String type;
+	private int category;
+	private int head, dependent, subtype, initialGr;
+
+	public GrTokenizer(){
+		this.line = null;
+		this.starts = new int[8];
+		this.ends = new int[8];
+		this.count = 0;
+	}
+
+	private static boolean isWhitespace(char c){
+		return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+	}
+
+	private void addToken(int start, int end){
+		if(this.count == this.starts.length){
+			int[] newStarts = new int[this.count * 2];
+			int[] newEnds = new int[this.count * 2];
+			System.arraycopy(this.starts, 0, newStarts, 0, this.count);
+			System.arraycopy(this.ends, 0, newEnds, 0, this.count);
+			this.starts = newStarts;
+			this.ends = newEnds;
+		}
+		this.starts[this.count] = start;
+		this.ends[this.count] = end;
+		this.count++;
+	}
+
+	/**
+	 * Split a line into tokens. Surrounding brackets are removed first.
+	 * The first token is the GR type, which is looked up in the table of known types.
+	 * @param line		The line.
+	 * @param stripBars	Whether to remove the bars around the tokens (only done if the first token has bars).
+	 * @return	Number of tokens.
+	 */
+	public int tokenize(CharSequence line, boolean stripBars){
+		if(line == null)
+			throw new RuntimeException("Input line cannot be null");
+		this.line = line;
+		this.count = 0;
+		this.type = null;
+		this.category = CATEGORY_DEFAULT;
+		this.head = this.dependent = this.subtype = this.initialGr = -1;
+
+		int start = 0, end = line.length();
+		if(end >= 2 && line.charAt(0) == '(' && line.charAt(end-1) == ')'){
+			start++;
+			end--;
+		}
+
+		if(start == end)
+			this.addToken(start, end);
+		else {
+			// Like String.split(), a line that starts with whitespace gets an empty first token
+			if(isWhitespace(line.charAt(start)))
+				this.addToken(start, start);
+			int i = start;
+			while(i < end){
+				while(i < end && isWhitespace(line.charAt(i)))
+					i++;
+				if(i >= end)
+					break;
+				int tokenStart = i;
+				while(i < end && !isWhitespace(line.charAt(i)))
+					i++;
+				this.addToken(tokenStart, i);
+			}
+			// ...but only if there are other tokens.
+			if(this.count == 1 && this.starts[0] == this.ends[0])
+				this.count = 0;
+		}
+
+		if(stripBars){
+			for(int i = 0; i < this.count; i++){
+				if(this.ends[i] - this.starts[i] >= 2 && line.charAt(this.starts[i]) == '|' && line.charAt(this.ends[i]-1) == '|'){
+					this.starts[i]++;
+					this.ends[i]--;
+				}
+				// If the type (first argument) doesn't have bars, don't modify the others either.
+				else if(i == 0)
+					break;
+			}
+		}
+
+		if(this.count > 0){
+			int slot = findSlot(line, this.starts[0], this.ends[0]);
+			if(typeTable[slot] != null){
+				this.type = typeTable[slot];
+				this.category = categoryTable[slot];
+			}
+			else {
+				this.type = this.getToken(0);
+				this.category = CATEGORY_DEFAULT;
+			}
+		}
+		return this.count;
+	}
+
+	/**
+	 * Tokenize a GR line and find the head, dependent, subtype and initial GR, with the same rules as RaspGraphReader.parseGr().
+	 * @param line				The line.
+	 * @param simpleEdgeFormat	Whether the GRs only contain the type, head and dependent.
+	 * @throws GraphFormatException
+	 */
+	public void parse(CharSequence line, boolean simpleEdgeFormat) throws GraphFormatException{
+		int n = this.tokenize(line, true);
+		if(n == 0)
+			throw new GraphFormatException("GR has wrong number of arguments", line.toString());
+
+		int expected;
+		if(this.category == CATEGORY_PASSIVE){
+			expected = 2;
+			this.head = 1;
+		}
+		else if(simpleEdgeFormat || this.category == CATEGORY_DEFAULT){
+			expected = 3;
+			this.head = 1;
+			this.dependent = 2;
+		}
+		else if(this.category == CATEGORY_SUBTYPE){
+			expected = 4;
+			this.subtype = 1;
+			this.head = 2;
+			this.dependent = 3;
+		}
+		else {
+			expected = 4;
+			this.head = 1;
+			this.dependent = 2;
+			this.initialGr = 3;
+		}
+		if(n != expected)
+			throw new GraphFormatException("GR has wrong number of arguments", line.toString());
+	}
+
+	/**
+	 * @return	The line that was last tokenized.
+	 */
+	public CharSequence getLine(){
+		return this.line;
+	}
+
+	public int getTokenCount(){
+		return this.count;
+	}
+
+	public int getTokenStart(int i){
+		return this.starts[i];
+	}
+
+	public int getTokenEnd(int i){
+		return this.ends[i];
+	}
+
+	public String getToken(int i){
+		if(i < 0 || i >= this.count)
+			return null;
+		return this.line.subSequence(this.starts[i], this.ends[i]).toString();
+	}
+
+	/**
+	 * Check whether a token is equal to a string, without creating a new string.
+	 * @param i	Token number.
+	 * @param s	The string to compare to.
+	 * @return	True if the token is equal to the string.
+	 */
+	public boolean tokenEquals(int i, String s){
+		if(i < 0 || i >= this.count)
+			return false;
+		return regionEquals(s, this.line, this.starts[i], this.ends[i]);
+	}
+
+	/**
+	 * Parse a token as a RASP label.
+	 * @param i		Token number.
+	 * @param label	The label object that will contain the result.
+	 * @return	The result of RaspLabel.parse()
+	 */
+	public boolean parseLabel(int i, RaspLabel label){
+		return label.parse(this.line, this.starts[i], this.ends[i]);
+	}
+
+	/**
+	 * @return	The GR type. For known types, this is always the same String object.
+	 */
+	public String getType(){
+		return this.type;
+	}
+
+	public int getCategory(){
+		return this.category;
+	}
+
+	/**
+	 * The positions of the arguments, set by parse(). These are -1 if the GR does not have the argument.
+	 */
+	public int getHeadToken(){
+		return this.head;
+	}
+
+	public int getDependentToken(){
+		return this.dependent;
+	}
+
+	public int getSubtypeToken(){
+		return this.subtype;
+	}
+
+	public int getInitialGrToken(){
+		return this.initialGr;
+	}
+
+	public String getHead(){
+		return this.getToken(this.head);
+	}
+
+	public String getDependent(){
+		return this.getToken(this.dependent);
+	}
+
+	public String getSubtype(){
+		return this.getToken(this.subtype);
+	}
+
+	public String getInitialGr(){
+		return this.getToken(this.initialGr);
+	}
+}
@@ -1,9 +1,11 @@
 package sem.graphreader;
 
 import java.util.ArrayList;
+import java.util.stream.Stream;
 
 import sem.exception.GraphFormatException;
 import sem.graph.Graph;
+import sem.graph.SymbolTable;
 
 /**
  * The general interface for a graph reader.
@@ -15,4 +17,34 @@ public interface GraphReader {
 	public ArrayList<Graph> nextSentence() throws GraphFormatException;
     public void reset() throws GraphFormatException;
     public void close();
+    
+    /**
+     * Intern the lemmas, POS tags and edge labels of the graphs that are read after this, using the symbol table.
+     * The default implementation does nothing, so readers that do not override it return graphs with their own strings.
+     * @param symbolTable	Symbol table, or null to disable interning.
+     */
+    public default void setSymbolTable(SymbolTable symbolTable){
+    }
+    
+    /**
+     * Get a stream of the graphs, in the same order as next() returns them.
+     * The stream contains the graphs that have not been returned yet, and closing it closes this reader.
+     * The built-in readers override this to read the input with new readers when nothing has been returned yet,
+     * so that parallel streams can split it by file or by sentence.
+     * @return	Stream of graphs
+     */
+    public default Stream<Graph> graphs(){
+    	return GraphReaderSpliterator.stream(this, false);
+    }
+    
+    /**
+     * Get a stream of the sentences, in the same order as nextSentence() returns them.
+     * The stream contains the sentences that have not been returned yet, and closing it closes this reader.
+     * The built-in readers override this to read the input with new readers when nothing has been returned yet,
+     * so that parallel streams can split it by file or by sentence.
+     * @return	Stream of sentences
+     */
+    public default Stream<ArrayList<Graph>> sentences(){
+    	return GraphReaderSpliterator.stream(this, true);
+    }
 }
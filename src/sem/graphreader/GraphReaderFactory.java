@@ -0,0 +1,12 @@
+package sem.graphreader;
+
+import sem.exception.GraphFormatException;
+
+/**
+ * Creates new GraphReader objects with a fixed configuration.
+ * Used for opening a separate reader for each input file, for example when streaming a directory in parallel.
+ *
+ */
+public interface GraphReaderFactory {
+	public GraphReader makeGraphReader(String inputPath) throws GraphFormatException;
+}
@@ -0,0 +1,405 @@
+package sem.graphreader;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import sem.exception.GraphFormatException;
+import sem.graph.Graph;
+import sem.graph.SymbolTable;
+import sem.util.FileReader;
+
+/**
+ * Spliterator over the graphs or sentences in a file or directory.
+ *
+ * <p>Directories are split by file: every part of the split opens its own GraphReader, so the files are also parsed in parallel.
+ * When only one file is left, the spliterator reads batches of items and hands them out as arrays, which parallelises the downstream processing.
+ * With a SentenceIndex for the input, the sentences are split into ranges instead, and every part seeks to the first sentence of its range,
+ * so that a single large file is also parsed in parallel. This is only done if all the input files support random access (see FileReader.isRandomAccess()),
+ * as every part would otherwise decompress its file from the beginning.
+ *
+ * <p>GraphFormatException is wrapped in a RuntimeException, as streams do not allow checked exceptions.
+ *
+ * @param <T>	Graph or ArrayList&lt;Graph&gt;
+ */
+public class GraphReaderSpliterator<T> implements Spliterator<T>{
+	private static final int BATCH_UNIT = 1 << 10;
+	private static final int MAX_BATCH = 1 << 25;
+	// The smallest range of sentences that is split in two with a sentence index
+	private static final int MIN_SPLIT = 1 << 7;
+	private static final int CHARACTERISTICS = Spliterator.ORDERED | Spliterator.NONNULL;
+
+	/**
+	 * Keeps track of the readers that are open across all parts of a split, so that they can be closed with the stream.
+	 */
+	private static class OpenReaders{
+		private Set<GraphReader> readers = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<GraphReader,Boolean>()));
+
+		public void closeAll(){
+			synchronized(readers){
+				for(GraphReader reader : readers)
+					reader.close();
+				readers.clear();
+			}
+		}
+	}
+
+	private ArrayList<File> files;
+	private int fileIndex;
+	private int fileEnd;
+	private GraphReaderFactory factory;
+	private SymbolTable symbolTable;
+	private boolean sentences;
+	private OpenReaders openReaders;
+	private GraphReader reader;
+	private int batch;
+
+	// With a sentence index: the range of sentences, the file of the open reader, and the graphs of the current sentence that have not been returned
+	private SentenceIndex sentenceIndex;
+	private long sentence;
+	private long sentenceEnd;
+	private int readerFile;
+	private ArrayList<Graph> pending;
+	private int pendingPos;
+
+	private GraphReaderSpliterator(ArrayList<File> files, int fileIndex, int fileEnd, GraphReaderFactory factory, SymbolTable symbolTable, boolean sentences, OpenReaders openReaders, GraphReader reader){
+		this.files = files;
+		this.fileIndex = fileIndex;
+		this.fileEnd = fileEnd;
+		this.factory = factory;
+		this.symbolTable = symbolTable;
+		this.sentences = sentences;
+		this.openReaders = openReaders;
+		this.reader = reader;
+		this.batch = 0;
+		this.sentenceIndex = null;
+	}
+
+	private GraphReaderSpliterator(ArrayList<File> files, GraphReaderFactory factory, SymbolTable symbolTable, boolean sentences, OpenReaders openReaders, SentenceIndex sentenceIndex, long sentence, long sentenceEnd){
+		this(files, 0, files.size(), factory, symbolTable, sentences, openReaders, null);
+		this.sentenceIndex = sentenceIndex;
+		this.sentence = sentence;
+		this.sentenceEnd = sentenceEnd;
+		this.readerFile = -1;
+		this.pending = null;
+		this.pendingPos = 0;
+	}
+
+	/**
+	 * Create a stream of graphs from a file or directory.
+	 * Every file gets a new GraphReader from the factory, so the stream always starts from the beginning of the input.
+	 * @param inputPath		Path to the file or directory.
+	 * @param factory		Creates the readers for single files.
+	 * @param symbolTable	Symbol table for the readers, or null.
+	 * @return	Stream of graphs, in the same order as GraphReader.next() returns them.
+	 */
+	public static Stream<Graph> graphs(String inputPath, GraphReaderFactory factory, SymbolTable symbolTable){
+		return stream(inputPath, factory, symbolTable, false);
+	}
+
+	/**
+	 * Create a stream of sentences from a file or directory.
+	 * Every file gets a new GraphReader from the factory, so the stream always starts from the beginning of the input.
+	 * @param inputPath		Path to the file or directory.
+	 * @param factory		Creates the readers for single files.
+	 * @param symbolTable	Symbol table for the readers, or null.
+	 * @return	Stream of sentences, in the same order as GraphReader.nextSentence() returns them.
+	 */
+	public static Stream<ArrayList<Graph>> sentences(String inputPath, GraphReaderFactory factory, SymbolTable symbolTable){
+		return stream(inputPath, factory, symbolTable, true);
+	}
+
+	/**
+	 * Create a stream of the graphs that a reader has not returned yet, as described in GraphReader.graphs().
+	 * If the reader has not returned anything since it was created or reset, the input is read again with new readers from the factory,
+	 * which lets a parallel stream split it by file, or by sentence if there is a sentence index for the input.
+	 * Otherwise, the stream reads the remaining graphs from the reader itself.
+	 * The reader is closed when the stream is closed.
+	 * @param reader		The reader.
+	 * @param started		Whether the reader has already returned graphs or sentences, or has been moved with seek().
+	 * @param inputPath		Path to the input of the reader, or null if it has none.
+	 * @param factory		Creates the readers for single files.
+	 * @param symbolTable	Symbol table for the readers, or null.
+	 * @param sentenceIndex	Sentence index for the input, or null.
+	 * @return	Stream of graphs, in the same order as GraphReader.next() returns them.
+	 */
+	public static Stream<Graph> graphs(GraphReader reader, boolean started, String inputPath, GraphReaderFactory factory, SymbolTable symbolTable, SentenceIndex sentenceIndex){
+		return stream(reader, started, inputPath, factory, symbolTable, sentenceIndex, false);
+	}
+
+	/**
+	 * Create a stream of the sentences that a reader has not returned yet, in the same way as graphs(GraphReader, ...).
+	 * @param reader		The reader.
+	 * @param started		Whether the reader has already returned graphs or sentences, or has been moved with seek().
+	 * @param inputPath		Path to the input of the reader, or null if it has none.
+	 * @param factory		Creates the readers for single files.
+	 * @param symbolTable	Symbol table for the readers, or null.
+	 * @param sentenceIndex	Sentence index for the input, or null.
+	 * @return	Stream of sentences, in the same order as GraphReader.nextSentence() returns them.
+	 */
+	public static Stream<ArrayList<Graph>> sentences(GraphReader reader, boolean started, String inputPath, GraphReaderFactory factory, SymbolTable symbolTable, SentenceIndex sentenceIndex){
+		return stream(reader, started, inputPath, factory, symbolTable, sentenceIndex, true);
+	}
+
+	private static <T> Stream<T> stream(final GraphReader reader, boolean started, String inputPath, GraphReaderFactory factory, SymbolTable symbolTable, SentenceIndex sentenceIndex, boolean sentences){
+		if(started || inputPath == null)
+			return stream(reader, sentences);
+		Stream<T> stream = stream(inputPath, factory, symbolTable, sentenceIndex, sentences);
+		return stream.onClose(new Runnable(){
+			@Override
+			public void run() {
+				reader.close();
+			}
+		});
+	}
+
+	private static boolean isRandomAccess(ArrayList<File> files){
+		for(File file : files)
+			if(!FileReader.isRandomAccess(file))
+				return false;
+		return true;
+	}
+
+	private static <T> Stream<T> stream(String inputPath, GraphReaderFactory factory, SymbolTable symbolTable, boolean sentences){
+		return stream(inputPath, factory, symbolTable, null, sentences);
+	}
+
+	private static <T> Stream<T> stream(String inputPath, GraphReaderFactory factory, SymbolTable symbolTable, SentenceIndex sentenceIndex, boolean sentences){
+		if(inputPath == null)
+			throw new RuntimeException("Streams are only available for readers that were created with an input path.");
+		File input = new File(inputPath);
+		if(!input.exists())
+			throw new RuntimeException("Input path is invalid: " + inputPath);
+		ArrayList<File> files = FileReader.listFileRec(input);
+		final OpenReaders openReaders = new OpenReaders();
+		GraphReaderSpliterator<T> spliterator;
+		if(sentenceIndex != null && sentenceIndex.matches(files) && isRandomAccess(files))
+			spliterator = new GraphReaderSpliterator<T>(files, factory, symbolTable, sentences, openReaders, sentenceIndex, 0, sentenceIndex.size());
+		else
+			spliterator = new GraphReaderSpliterator<T>(files, 0, files.size(), factory, symbolTable, sentences, openReaders, null);
+		return StreamSupport.stream(spliterator, false).onClose(new Runnable(){
+			@Override
+			public void run() {
+				openReaders.closeAll();
+			}
+		});
+	}
+
+	/**
+	 * Create a stream that reads the remaining graphs or sentences from an existing reader.
+	 * This cannot split the input by file, but still hands out batches for parallel processing.
+	 * The reader is closed when the stream is closed.
+	 * @param reader	The reader
+	 * @param sentences	Whether to return sentences instead of graphs
+	 * @return	Stream of graphs or sentences
+	 */
+	public static <T> Stream<T> stream(final GraphReader reader, final boolean sentences){
+		Iterator<T> iterator = new Iterator<T>(){
+			@Override
+			public boolean hasNext() {
+				return reader.hasNext();
+			}
+
+			@Override
+			public T next() {
+				if(!reader.hasNext())
+					throw new NoSuchElementException();
+				return read(reader, sentences);
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, CHARACTERISTICS), false).onClose(new Runnable(){
+			@Override
+			public void run() {
+				reader.close();
+			}
+		});
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T read(GraphReader reader, boolean sentences){
+		try {
+			if(sentences)
+				return (T)reader.nextSentence();
+			return (T)reader.next();
+		} catch (GraphFormatException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Open the next file.
+	 * @return	False if there are no more files.
+	 */
+	private boolean openNext(){
+		if(this.fileIndex >= this.fileEnd)
+			return false;
+		this.openFile(this.fileIndex++);
+		return true;
+	}
+
+	private void openFile(int index){
+		try {
+			this.reader = this.factory.makeGraphReader(this.files.get(index).getPath());
+			this.openReaders.readers.add(this.reader);
+			if(this.symbolTable != null)
+				this.reader.setSymbolTable(this.symbolTable);
+		} catch (GraphFormatException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Read the next sentence of the range, using the sentence index to find it.
+	 * A new reader is opened at the start of the range and at the start of every file.
+	 */
+	private ArrayList<Graph> readIndexed(){
+		int index = this.sentenceIndex.getFileIndex(this.sentence);
+		if(this.reader != null && this.readerFile != index)
+			this.closeCurrent();
+		try {
+			if(this.reader == null){
+				this.openFile(index);
+				this.readerFile = index;
+				// The first sentence of a file does not need seeking
+				if(this.sentence > 0 && this.sentenceIndex.getFileIndex(this.sentence - 1) == index){
+					if(!(this.reader instanceof SeekableGraphReader))
+						throw new RuntimeException("Splitting by sentence needs a SeekableGraphReader");
+					SeekableGraphReader seekable = (SeekableGraphReader)this.reader;
+					if(this.files.size() == 1){
+						// Seeking by number keeps the sentence numbers that some readers put in the metadata
+						seekable.setSentenceIndex(this.sentenceIndex);
+						seekable.seek(this.sentence);
+					}
+					else {
+						long indexed = this.sentenceIndex.getIndexedSentence(this.sentence);
+						seekable.seek(0, this.sentenceIndex.getOffset(indexed));
+						SentenceIndex.skip(seekable, indexed, this.sentence);
+					}
+				}
+			}
+			if(!this.reader.hasNext())
+				throw new RuntimeException("The sentence index does not match the input: sentence " + this.sentence + " is missing");
+			this.sentence++;
+			return this.reader.nextSentence();
+		} catch (GraphFormatException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private void closeCurrent(){
+		this.reader.close();
+		this.openReaders.readers.remove(this.reader);
+		this.reader = null;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public boolean tryAdvance(Consumer<? super T> action) {
+		if(this.sentenceIndex != null){
+			while(true){
+				if(this.pending != null && this.pendingPos < this.pending.size()){
+					action.accept((T)this.pending.get(this.pendingPos++));
+					return true;
+				}
+				if(this.sentence >= this.sentenceEnd){
+					if(this.reader != null)
+						this.closeCurrent();
+					return false;
+				}
+				ArrayList<Graph> sentence = this.readIndexed();
+				if(this.sentences){
+					action.accept((T)sentence);
+					return true;
+				}
+				this.pending = sentence;
+				this.pendingPos = 0;
+			}
+		}
+		while(true){
+			if(this.reader == null && !this.openNext())
+				return false;
+			if(this.reader.hasNext()){
+				T item = read(this.reader, this.sentences);
+				action.accept(item);
+				return true;
+			}
+			this.closeCurrent();
+		}
+	}
+
+	@Override
+	public void forEachRemaining(Consumer<? super T> action) {
+		while(this.tryAdvance(action));
+	}
+
+	@Override
+	public Spliterator<T> trySplit() {
+		// Split the range of sentences. The prefix also takes the reader and the graphs of the current sentence.
+		if(this.sentenceIndex != null){
+			long remaining = this.sentenceEnd - this.sentence;
+			if(remaining < 2 * MIN_SPLIT)
+				return null;
+			long mid = this.sentence + remaining / 2;
+			GraphReaderSpliterator<T> prefix = new GraphReaderSpliterator<T>(this.files, this.factory, this.symbolTable, this.sentences, this.openReaders, this.sentenceIndex, this.sentence, mid);
+			prefix.reader = this.reader;
+			prefix.readerFile = this.readerFile;
+			prefix.pending = this.pending;
+			prefix.pendingPos = this.pendingPos;
+			this.sentence = mid;
+			this.reader = null;
+			this.readerFile = -1;
+			this.pending = null;
+			return prefix;
+		}
+
+		int remainingFiles = this.fileEnd - this.fileIndex;
+
+		// Split by file. The prefix also takes the file that is currently open.
+		if(remainingFiles >= 2 || (remainingFiles >= 1 && this.reader != null)){
+			int mid = this.fileIndex + remainingFiles / 2;
+			GraphReaderSpliterator<T> prefix = new GraphReaderSpliterator<T>(this.files, this.fileIndex, mid, this.factory, this.symbolTable, this.sentences, this.openReaders, this.reader);
+			this.fileIndex = mid;
+			this.reader = null;
+			return prefix;
+		}
+
+		// Only one file left, hand out a batch of items.
+		if(this.reader == null && !this.openNext())
+			return null;
+		if(!this.reader.hasNext())
+			return null;
+		int n = Math.min(this.batch + BATCH_UNIT, MAX_BATCH);
+		Object[] items = new Object[n];
+		int j = 0;
+		while(j < n && this.reader.hasNext())
+			items[j++] = read(this.reader, this.sentences);
+		this.batch = j;
+		return Spliterators.spliterator(items, 0, j, CHARACTERISTICS);
+	}
+
+	@Override
+	public long estimateSize() {
+		if(this.sentenceIndex != null)
+			return this.sentenceEnd - this.sentence;
+		return Long.MAX_VALUE;
+	}
+
+	@Override
+	public int characteristics() {
+		return CHARACTERISTICS;
+	}
+}
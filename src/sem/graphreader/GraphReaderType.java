@@ -1,17 +1,21 @@
 package sem.graphreader;
 
 import sem.exception.GraphFormatException;
+import sem.graph.SymbolTable;
+import sem.metrics.MetricsRegistry;
 
 /**
  * Contains a list of GraphReader types and creates a new GraphReader based on the String label.
  *
  */
-public enum GraphReaderType {
+public enum GraphReaderType implements GraphReaderFactory {
 	RASP("rasp"),
 	RASP_XML("raspxml"),
 	CNC("cnc"),
 	PARSEVAL("parseval"),
-	TSV("tsv")
+	TSV("tsv"),
+	BINARY("binary"),
+	SNAPSHOT("snapshot")
 	;
 	
 	private final String label;
@@ -43,8 +47,53 @@ public enum GraphReaderType {
 			return new ParsevalGraphReader(inputPath, false, false);
 		case TSV:
 			return new TSVGraphReader(inputPath, true);
+		case BINARY:
+			return new BinaryGraphReader(inputPath);
+		case SNAPSHOT:
+			return new MappedGraphReader(inputPath);
 		default:
 			throw new RuntimeException("No graphreader defined for corpus type: " + (this != null?this.getLabel():this));
 		}
 	}
+	
+	/**
+	 * Create a new GraphReader that interns all lemmas, POS tags and edge labels using the symbol table.
+	 * @param inputPath		Path to the file or directory.
+	 * @param symbolTable	Symbol table, for example SymbolTable.getDefault().
+	 * @return				The new GraphReader.
+	 * @throws GraphFormatException
+	 */
+	public GraphReader makeGraphReader(String inputPath, SymbolTable symbolTable) throws GraphFormatException{
+		GraphReader reader = this.makeGraphReader(inputPath);
+		reader.setSymbolTable(symbolTable);
+		return reader;
+	}
+	
+	/**
+	 * Create a new GraphReader that reads the input files in parallel.
+	 * @param inputPath		Path to the file or directory.
+	 * @param threads		Number of worker threads. With 1 thread or less, a normal sequential GraphReader is returned.
+	 * @param preserveOrder	Whether to return the sentences in the original order of the files.
+	 * @return				The new GraphReader.
+	 * @throws GraphFormatException
+	 */
+	public GraphReader makeGraphReader(String inputPath, int threads, boolean preserveOrder) throws GraphFormatException{
+		if(threads <= 1)
+			return this.makeGraphReader(inputPath);
+		return new ParallelGraphReader(this, inputPath, threads, preserveOrder);
+	}
+	
+	/**
+	 * Create a new GraphReader that records its throughput in a metrics registry (see InstrumentedGraphReader).
+	 * The metrics are named after the type, for example "reader.tsv.sentences".
+	 * @param inputPath		Path to the file or directory.
+	 * @param threads		Number of worker threads. With 1 thread or less, the input is read sequentially.
+	 * @param preserveOrder	Whether to return the sentences in the original order of the files.
+	 * @param metrics		Registry for the metrics.
+	 * @return				The new GraphReader.
+	 * @throws GraphFormatException
+	 */
+	public GraphReader makeGraphReader(String inputPath, int threads, boolean preserveOrder, MetricsRegistry metrics) throws GraphFormatException{
+		return new InstrumentedGraphReader(this.makeGraphReader(inputPath, threads, preserveOrder), metrics, "reader." + this.label);
+	}
 }
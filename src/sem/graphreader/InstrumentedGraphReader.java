@@ -0,0 +1,108 @@
+package sem.graphreader;
+
+import java.util.ArrayList;
+
+import sem.exception.GraphFormatException;
+import sem.graph.Graph;
+import sem.graph.SymbolTable;
+import sem.metrics.Counter;
+import sem.metrics.MetricsRegistry;
+import sem.metrics.Timer;
+
+/**
+ * Graph reader that passes everything on to another reader, and records what it does in a MetricsRegistry.
+ *
+ * <p>With the prefix "reader.tsv", the metrics are:
+ * <ul>
+ * <li>reader.tsv.sentences - number of sentences returned by nextSentence()</li>
+ * <li>reader.tsv.graphs - number of graphs returned by next() and nextSentence()</li>
+ * <li>reader.tsv.errors - number of GraphFormatExceptions</li>
+ * <li>reader.tsv.read - time spent in next() and nextSentence(), including the time spent reading files (see FileReader.setMetrics())</li>
+ * </ul>
+ *
+ * <p>Several readers can use the same prefix, for example the readers of different threads, and their counts are added together.
+ * The streams returned by graphs() and sentences() read the remaining graphs from this reader, so that they are also counted.
+ *
+ */
+public class InstrumentedGraphReader implements GraphReader{
+	private GraphReader reader;
+	private Counter sentences;
+	private Counter graphs;
+	private Counter errors;
+	private Timer timer;
+
+	/**
+	 * Create a new instrumented reader.
+	 * @param reader	The reader that does the work.
+	 * @param metrics	Registry for the metrics.
+	 * @param prefix	Prefix of the metric names, for example "reader.tsv".
+	 */
+	public InstrumentedGraphReader(GraphReader reader, MetricsRegistry metrics, String prefix){
+		this.reader = reader;
+		this.sentences = metrics.counter(prefix + ".sentences");
+		this.graphs = metrics.counter(prefix + ".graphs");
+		this.errors = metrics.counter(prefix + ".errors");
+		this.timer = metrics.timer(prefix + ".read");
+	}
+
+	/**
+	 * @return	The reader that does the work.
+	 */
+	public GraphReader getReader(){
+		return this.reader;
+	}
+
+	@Override
+	public boolean hasNext() {
+		return this.reader.hasNext();
+	}
+
+	@Override
+	public Graph next() throws GraphFormatException {
+		long start = this.timer.start();
+		try {
+			Graph graph = this.reader.next();
+			if(graph != null)
+				this.graphs.inc();
+			return graph;
+		} catch (GraphFormatException e) {
+			this.errors.inc();
+			throw e;
+		} finally {
+			this.timer.stop(start);
+		}
+	}
+
+	@Override
+	public ArrayList<Graph> nextSentence() throws GraphFormatException {
+		long start = this.timer.start();
+		try {
+			ArrayList<Graph> sentence = this.reader.nextSentence();
+			if(sentence != null){
+				this.sentences.inc();
+				this.graphs.add(sentence.size());
+			}
+			return sentence;
+		} catch (GraphFormatException e) {
+			this.errors.inc();
+			throw e;
+		} finally {
+			this.timer.stop(start);
+		}
+	}
+
+	@Override
+	public void reset() throws GraphFormatException {
+		this.reader.reset();
+	}
+
+	@Override
+	public void close() {
+		this.reader.close();
+	}
+
+	@Override
+	public void setSymbolTable(SymbolTable symbolTable) {
+		this.reader.setSymbolTable(symbolTable);
+	}
+}
@@ -0,0 +1,178 @@
+package sem.graphreader;
+
+import java.util.ArrayList;
+
+import sem.graph.Graph;
+import sem.graph.Node;
+import sem.graphwriter.SnapshotGraphWriter;
+import sem.util.MappedFile;
+
+/**
+ * Graph view of a graph in a memory-mapped snapshot, returned by MappedGraphReader.
+ *
+ * <p>The accessors with node and edge indices (getLemma(int), getHeadIndex(int), etc.) read the values directly from the mapped file,
+ * in the same way as FrozenGraph, without creating any Node or Edge objects.
+ * The normal Graph methods (getNodes(), getEdges(), getMetadata(), etc.) first decode the whole graph into Node and Edge objects.
+ * After that, the graph can also be modified like any other graph. This does not change the snapshot,
+ * and the accessors with indices always return the values in the snapshot.
+ *
+ */
+public class MappedGraph extends Graph{
+	private MappedGraphReader reader;
+	private MappedFile file;
+	private long[] sections;
+	private long nodeStart, edgeStart, metadataStart;
+	private int nodeCount, edgeCount, metadataCount;
+	private boolean materialised;
+
+	MappedGraph(MappedGraphReader reader, MappedFile file, long[] sections, long graphId){
+		this.reader = reader;
+		this.file = file;
+		this.sections = sections;
+		this.nodeStart = file.getLong(sections[SnapshotGraphWriter.GRAPH_NODES] + 8 * graphId);
+		this.nodeCount = (int)(file.getLong(sections[SnapshotGraphWriter.GRAPH_NODES] + 8 * (graphId + 1)) - this.nodeStart);
+		this.edgeStart = file.getLong(sections[SnapshotGraphWriter.GRAPH_EDGES] + 8 * graphId);
+		this.edgeCount = (int)(file.getLong(sections[SnapshotGraphWriter.GRAPH_EDGES] + 8 * (graphId + 1)) - this.edgeStart);
+		this.metadataStart = file.getLong(sections[SnapshotGraphWriter.GRAPH_METADATA] + 8 * graphId);
+		this.metadataCount = (int)(file.getLong(sections[SnapshotGraphWriter.GRAPH_METADATA] + 8 * (graphId + 1)) - this.metadataStart);
+		this.materialised = false;
+	}
+
+	/**
+	 * Decode the nodes, edges and metadata from the snapshot, the first time they are needed.
+	 */
+	@Override
+	protected void materialise(){
+		if(this.materialised)
+			return;
+		this.materialised = true;
+		for(int i = 0; i < this.nodeCount; i++)
+			this.addNode(this.getLemma(i), this.getPos(i));
+		ArrayList<Node> nodes = this.getNodes();
+		for(int i = 0; i < this.edgeCount; i++)
+			this.addEdge(this.getLabel(i), nodes.get(this.getHeadIndex(i)), nodes.get(this.getDepIndex(i)));
+		for(int i = 0; i < this.metadataCount; i++){
+			long position = this.metadataStart + i;
+			this.putMetadata(this.reader.getMetadataString(this.file.getInt(this.sections[SnapshotGraphWriter.METADATA_KEYS] + 4 * position)),
+					this.reader.getMetadataString(this.file.getInt(this.sections[SnapshotGraphWriter.METADATA_VALUES] + 4 * position)));
+		}
+	}
+
+	/**
+	 * Check whether the graph has been decoded into Node and Edge objects.
+	 * @return	True if the graph has been decoded.
+	 */
+	public boolean isMaterialised(){
+		return this.materialised;
+	}
+
+	/**
+	 * Get the number of nodes in the snapshot.
+	 * @return	Number of nodes.
+	 */
+	public int getNodeCount(){
+		return this.nodeCount;
+	}
+
+	/**
+	 * Get the number of edges in the snapshot.
+	 * @return	Number of edges.
+	 */
+	public int getEdgeCount(){
+		return this.edgeCount;
+	}
+
+	/**
+	 * Get the lemma id of a node, in the string table of the snapshot.
+	 * @param node	Index of the node.
+	 * @return		String id, or -1 if the lemma is null.
+	 */
+	public int getLemmaId(int node){
+		return this.file.getInt(this.sections[SnapshotGraphWriter.NODE_LEMMAS] + 4 * (this.nodeStart + node));
+	}
+
+	/**
+	 * Get the POS id of a node, in the string table of the snapshot.
+	 * @param node	Index of the node.
+	 * @return		String id, or -1 if the POS is null.
+	 */
+	public int getPosId(int node){
+		return this.file.getInt(this.sections[SnapshotGraphWriter.NODE_POS] + 4 * (this.nodeStart + node));
+	}
+
+	/**
+	 * Get the lemma of a node.
+	 * @param node	Index of the node.
+	 * @return		Lemma
+	 */
+	public String getLemma(int node){
+		return this.reader.getString(this.getLemmaId(node));
+	}
+
+	/**
+	 * Get the POS of a node.
+	 * @param node	Index of the node.
+	 * @return		POS
+	 */
+	public String getPos(int node){
+		return this.reader.getString(this.getPosId(node));
+	}
+
+	/**
+	 * Get the label id of an edge, in the string table of the snapshot.
+	 * @param edge	Index of the edge.
+	 * @return		String id, or -1 if the label is null.
+	 */
+	public int getLabelId(int edge){
+		return this.file.getInt(this.sections[SnapshotGraphWriter.EDGE_LABELS] + 4 * (this.edgeStart + edge));
+	}
+
+	/**
+	 * Get the label of an edge.
+	 * @param edge	Index of the edge.
+	 * @return		Relation type.
+	 */
+	public String getLabel(int edge){
+		return this.reader.getString(this.getLabelId(edge));
+	}
+
+	/**
+	 * Get the index of the head node of an edge.
+	 * @param edge	Index of the edge.
+	 * @return		Index of the head node.
+	 */
+	public int getHeadIndex(int edge){
+		return this.file.getInt(this.sections[SnapshotGraphWriter.EDGE_HEADS] + 4 * (this.edgeStart + edge));
+	}
+
+	/**
+	 * Get the index of the dependent node of an edge.
+	 * @param edge	Index of the edge.
+	 * @return		Index of the dependent node.
+	 */
+	public int getDepIndex(int edge){
+		return this.file.getInt(this.sections[SnapshotGraphWriter.EDGE_DEPS] + 4 * (this.edgeStart + edge));
+	}
+
+	/**
+	 * Create a string representation of the graph. This is the same as for the corresponding Graph.
+	 * If the graph has not been decoded, the string is created directly from the snapshot.
+	 */
+	@Override
+	public String toString(){
+		if(this.materialised)
+			return super.toString();
+		StringBuilder string = new StringBuilder();
+		string.append("::: Nodes: \n");
+		for(int i = 0; i < this.getNodeCount(); i++)
+			string.append(this.getLemma(i)).append("_").append(this.getPos(i)).append("\n");
+		string.append("::: Edges: \n");
+		for(int i = 0; i < this.getEdgeCount(); i++){
+			int head = this.getHeadIndex(i), dep = this.getDepIndex(i);
+			string.append(this.getLabel(i)).append(" ")
+				.append(this.getLemma(head)).append("_").append(this.getPos(head)).append(" ")
+				.append(this.getLemma(dep)).append("_").append(this.getPos(dep)).append("\n");
+		}
+		return string.toString();
+	}
+}
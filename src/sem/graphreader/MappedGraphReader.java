@@ -0,0 +1,312 @@
+package sem.graphreader;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+import sem.exception.GraphFormatException;
+import sem.graph.Graph;
+import sem.graph.SymbolTable;
+import sem.graphwriter.SnapshotGraphWriter;
+import sem.util.MappedFile;
+
+/**
+ * Graph reader for snapshot files written by SnapshotGraphWriter.
+ *
+ * <p>The file is memory-mapped, and the graphs are returned as MappedGraph views that read their nodes and edges from the mapping
+ * only when they are needed. Any sentence can be accessed directly with getSentence(), or with seek().
+ * Files larger than 2GB are mapped in several chunks.
+ *
+ * <p>The offset of a sentence (see getNextSentenceOffset()) is the number of the sentence, so a sentence index is never needed.
+ *
+ */
+public class MappedGraphReader extends AbstractGraphReader{
+	private MappedFile file;
+	private long[] sections;
+	private long sentenceCount, graphCount;
+	private int stringCount;
+	private String[] strings;
+	private long nextSentenceId;
+	private ArrayList<Graph> nextSentence;
+	private int nextGraphPointer;
+
+	public MappedGraphReader(String inputPath) throws GraphFormatException{
+		this(inputPath, MappedFile.CHUNK_BITS);
+	}
+
+	/**
+	 * Create a new reader, mapping the file in chunks of the given size.
+	 * @param inputPath	Path to the snapshot file.
+	 * @param chunkBits	Size of the mapped chunks as a power of two. Smaller chunks are mainly useful for testing.
+	 * @throws GraphFormatException
+	 */
+	public MappedGraphReader(String inputPath, int chunkBits) throws GraphFormatException{
+		File input = new File(inputPath);
+		if(!input.isFile())
+			throw new RuntimeException("Input path for MappedGraphReader has to be a snapshot file: " + inputPath);
+		this.inputPath = inputPath;
+		this.file = new MappedFile(inputPath, chunkBits);
+		if(this.file.size() < SnapshotGraphWriter.HEADER_SIZE || this.file.getInt(0) != SnapshotGraphWriter.MAGIC)
+			throw new GraphFormatException("Not a snapshot file.", inputPath);
+		if(this.file.getInt(4) != SnapshotGraphWriter.VERSION)
+			throw new GraphFormatException("Unsupported snapshot version " + this.file.getInt(4) + ".", inputPath);
+
+		long[] counts = new long[7];
+		for(int i = 0; i < counts.length; i++){
+			counts[i] = this.file.getLong(8 + 8 * i);
+			if(counts[i] < 0)
+				throw new GraphFormatException("Invalid snapshot header.", inputPath);
+		}
+		this.sections = SnapshotGraphWriter.getSectionOffsets(counts);
+		if(this.sections[SnapshotGraphWriter.SECTIONS] != this.file.size())
+			throw new GraphFormatException("Snapshot file has the wrong size, expected " + this.sections[SnapshotGraphWriter.SECTIONS] + " bytes.", inputPath);
+		if(counts[5] > Integer.MAX_VALUE)
+			throw new GraphFormatException("Too many strings in the snapshot.", inputPath);
+		this.sentenceCount = counts[0];
+		this.graphCount = counts[1];
+		this.stringCount = (int)counts[5];
+		this.strings = new String[this.stringCount];
+		this.reset();
+	}
+
+	private String decodeString(int id){
+		long start = this.file.getLong(this.sections[SnapshotGraphWriter.STRING_OFFSETS] + 8L * id);
+		long end = this.file.getLong(this.sections[SnapshotGraphWriter.STRING_OFFSETS] + 8L * (id + 1));
+		byte[] bytes = new byte[(int)(end - start)];
+		this.file.getBytes(this.sections[SnapshotGraphWriter.STRING_DATA] + start, bytes, 0, bytes.length);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Get a lemma, POS or label from the string table of the snapshot.
+	 * The strings are decoded (and interned with the symbol table) only once.
+	 * @param id	String id.
+	 * @return	The string, or null if the id is -1.
+	 */
+	String getString(int id){
+		if(id < 0)
+			return null;
+		String string = this.strings[id];
+		if(string == null){
+			string = this.decodeString(id);
+			if(this.symbolTable != null)
+				string = this.symbolTable.intern(string);
+			this.strings[id] = string;
+		}
+		return string;
+	}
+
+	/**
+	 * Get a metadata key or value from the string table of the snapshot.
+	 * These are not cached or interned, as most of them are only used once.
+	 * @param id	String id.
+	 * @return	The string, or null if the id is -1.
+	 */
+	String getMetadataString(int id){
+		if(id < 0)
+			return null;
+		if(this.strings[id] != null)
+			return this.strings[id];
+		return this.decodeString(id);
+	}
+
+	/**
+	 * @return	Number of sentences in the snapshot.
+	 */
+	public long getSentenceCount(){
+		return this.sentenceCount;
+	}
+
+	/**
+	 * @return	Number of graphs in the snapshot.
+	 */
+	public long getGraphCount(){
+		return this.graphCount;
+	}
+
+	/**
+	 * Get a graph from the snapshot.
+	 * @param graphId	Number of the graph, counting from 0.
+	 * @return	The graph.
+	 */
+	public MappedGraph getGraph(long graphId){
+		if(graphId < 0 || graphId >= this.graphCount)
+			throw new RuntimeException("Graph number out of range: " + graphId + " (the snapshot contains " + this.graphCount + " graphs)");
+		return new MappedGraph(this, this.file, this.sections, graphId);
+	}
+
+	/**
+	 * Get a sentence from the snapshot. This does not change the position of the reader.
+	 * If a sentence has no graphs, it will contain a single empty graph.
+	 * @param sentenceId	Number of the sentence, counting from 0.
+	 * @return	List of graphs.
+	 */
+	public ArrayList<Graph> getSentence(long sentenceId){
+		if(sentenceId < 0 || sentenceId >= this.sentenceCount)
+			throw new RuntimeException("Sentence number out of range: " + sentenceId + " (the snapshot contains " + this.sentenceCount + " sentences)");
+		long start = this.file.getLong(this.sections[SnapshotGraphWriter.SENTENCE_GRAPHS] + 8 * sentenceId);
+		long end = this.file.getLong(this.sections[SnapshotGraphWriter.SENTENCE_GRAPHS] + 8 * (sentenceId + 1));
+		ArrayList<Graph> sentence = new ArrayList<Graph>((int)Math.max(end - start, 1));
+		for(long graphId = start; graphId < end; graphId++)
+			sentence.add(new MappedGraph(this, this.file, this.sections, graphId));
+		if(sentence.size() == 0)
+			sentence.add(new Graph());
+		return sentence;
+	}
+
+	private void readAhead(){
+		this.nextGraphPointer = 0;
+		if(this.nextSentenceId < this.sentenceCount)
+			this.nextSentence = this.getSentence(this.nextSentenceId);
+		else
+			this.nextSentence = null;
+	}
+
+	/**
+	 * Check whether there are more graphs available.
+	 * @return	True if there are more graphs available.
+	 */
+	@Override
+	public boolean hasNext() {
+		if(this.nextSentence == null)
+			return false;
+		return true;
+	}
+
+	/**
+	 * Get the next graph from the corpus.
+	 * @return	The next graph.
+	 */
+	@Override
+	public Graph next() throws GraphFormatException {
+		this.started = true;
+		Graph graph = null;
+		if(this.nextSentence != null){
+			graph = this.nextSentence.get(nextGraphPointer);
+			nextGraphPointer++;
+		}
+		if(this.nextSentence != null && nextGraphPointer >= this.nextSentence.size()){
+			this.nextSentenceId++;
+			this.readAhead();
+		}
+		return graph;
+	}
+
+	/**
+	 * Read a sentence from the corpus.
+	 * @return	List of graphs
+	 */
+	@Override
+	public ArrayList<Graph> nextSentence() throws GraphFormatException {
+		this.started = true;
+		ArrayList<Graph> tempSentence = this.nextSentence;
+		if(this.nextSentence != null){
+			this.nextSentenceId++;
+			this.readAhead();
+		}
+		return tempSentence;
+	}
+
+	/**
+	 * Reset the whole reading process to the beginning.
+	 */
+	@Override
+	public void reset() throws GraphFormatException {
+		this.nextSentenceId = 0;
+		this.readAhead();
+		this.started = false;
+	}
+
+	/**
+	 * Close the reader and release the mapping.
+	 * Graphs that have not been decoded cannot be used after this.
+	 */
+	@Override
+	public void close() {
+		this.file.close();
+		this.nextSentence = null;
+	}
+
+	/**
+	 * Get the list of input files, which only contains the snapshot file.
+	 * @return	List of files.
+	 */
+	@Override
+	public ArrayList<File> getInputFiles(){
+		ArrayList<File> files = new ArrayList<File>();
+		files.add(new File(this.inputPath));
+		return files;
+	}
+
+	/**
+	 * Get the index of the file containing the sentence that will be returned next.
+	 * @return	0, or -1 if there are no more sentences.
+	 */
+	@Override
+	public int getNextSentenceFileIndex(){
+		return (this.nextSentence == null) ? -1 : 0;
+	}
+
+	/**
+	 * Get the position of the sentence that will be returned next.
+	 * @return	Number of the sentence, or -1 if there are no more sentences.
+	 */
+	@Override
+	public long getNextSentenceOffset(){
+		return (this.nextSentence == null) ? -1 : this.nextSentenceId;
+	}
+
+	/**
+	 * Continue reading from the sentence at this position.
+	 * @param fileIndex	Index of the file, always 0.
+	 * @param offset	Number of the sentence.
+	 * @throws GraphFormatException
+	 */
+	@Override
+	public void seek(int fileIndex, long offset) throws GraphFormatException{
+		if(fileIndex != 0)
+			throw new RuntimeException("File index out of range: " + fileIndex);
+		this.seek(offset);
+	}
+
+	/**
+	 * Continue reading from the sentence with this number (counting from 0).
+	 * This takes constant time, a sentence index is not needed.
+	 * @param sentenceId	Sentence number.
+	 * @throws GraphFormatException
+	 */
+	@Override
+	public void seek(long sentenceId) throws GraphFormatException{
+		if(sentenceId < 0 || sentenceId >= this.sentenceCount)
+			throw new RuntimeException("Sentence number out of range: " + sentenceId + " (the snapshot contains " + this.sentenceCount + " sentences)");
+		this.nextSentenceId = sentenceId;
+		this.readAhead();
+		this.started = true;
+	}
+
+	/**
+	 * Creates readers for the same snapshot file.
+	 * @return	Factory for new readers
+	 */
+	@Override
+	protected GraphReaderFactory getFactory(){
+		return new GraphReaderFactory(){
+			@Override
+			public GraphReader makeGraphReader(String path) throws GraphFormatException {
+				return new MappedGraphReader(path);
+			}
+		};
+	}
+
+	/**
+	 * Intern the lemmas, POS tags and edge labels of all graphs using the symbol table.
+	 * Every string in the snapshot is interned only once, when it is first used.
+	 * @param symbolTable	Symbol table, or null to disable interning.
+	 */
+	@Override
+	public void setSymbolTable(SymbolTable symbolTable){
+		this.symbolTable = symbolTable;
+		this.strings = new String[this.stringCount];
+		this.readAhead();
+	}
+}
@@ -0,0 +1,373 @@
+package sem.graphreader;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import sem.exception.GraphFormatException;
+import sem.graph.Graph;
+import sem.graph.SymbolTable;
+import sem.util.FileReader;
+
+/**
+ * Graph reader that reads the files of a directory in parallel.
+ *
+ * <p>Every file is read by a separate GraphReader of the given type (or from the given factory), running on a pool of worker threads.
+ * The parsed sentences are passed to the consumer through bounded queues, so the workers only read ahead a limited number of sentences.
+ *
+ * <p>If preserveOrder is set, the sentences are returned in the same order as a normal GraphReader would return them (files in sorted order).
+ * Otherwise, sentences are returned as soon as they are ready, which keeps all the workers busy even if the files have very different sizes.
+ * Within one file, the order of the sentences is always preserved.
+ *
+ */
+public class ParallelGraphReader implements GraphReader{
+	private GraphReaderFactory type;
+	private String inputPath;
+	private ArrayList<File> inputFiles;
+	private int threads;
+	private boolean preserveOrder;
+	private SymbolTable symbolTable;
+
+	private ExecutorService executor;
+	private ArrayList<BlockingQueue<Item>> fileQueues;
+	private BlockingQueue<Item> sharedQueue;
+	private int currentFile;
+	private int finishedFiles;
+
+	private ArrayList<Graph> nextSentence;
+	private int nextGraphPointer;
+	// Whether anything has been returned since the reader was created or reset
+	private boolean started;
+
+	/**
+	 * Number of sentences that a worker can read ahead for each file.
+	 */
+	public static final int QUEUE_SIZE = 64;
+
+	/**
+	 * A sentence, an error or the end of a file, passed from a worker to the consumer.
+	 */
+	private static class Item{
+		ArrayList<Graph> sentence;
+		GraphFormatException exception;
+		Throwable error;
+		boolean end;
+	}
+
+	/**
+	 * Create a new parallel reader.
+	 * @param type			Type of the input files.
+	 * @param inputPath		Path to the file or directory.
+	 * @param threads		Number of worker threads.
+	 * @param preserveOrder	Whether to return the sentences in the original order of the files.
+	 * @throws GraphFormatException
+	 */
+	public ParallelGraphReader(GraphReaderType type, String inputPath, int threads, boolean preserveOrder) throws GraphFormatException{
+		this((GraphReaderFactory)type, inputPath, threads, preserveOrder);
+	}
+
+	/**
+	 * Create a new parallel reader that gets the readers for the single files from a factory.
+	 * @param factory		Creates a reader for every input file.
+	 * @param inputPath		Path to the file or directory.
+	 * @param threads		Number of worker threads.
+	 * @param preserveOrder	Whether to return the sentences in the original order of the files.
+	 * @throws GraphFormatException
+	 */
+	public ParallelGraphReader(GraphReaderFactory factory, String inputPath, int threads, boolean preserveOrder) throws GraphFormatException{
+		if(threads < 1)
+			throw new RuntimeException("The number of threads has to be at least 1.");
+		File input = new File(inputPath);
+		if(!input.exists())
+			throw new RuntimeException("Input path for ParallelGraphReader is invalid: " + inputPath);
+
+		this.type = factory;
+		this.inputPath = inputPath;
+		this.inputFiles = FileReader.listFileRec(input);
+		this.threads = threads;
+		this.preserveOrder = preserveOrder;
+		this.symbolTable = null;
+		this.executor = null;
+		this.reset();
+	}
+
+	/**
+	 * Start the workers for all the input files.
+	 */
+	private void start(){
+		final AtomicInteger threadCount = new AtomicInteger(0);
+		this.executor = Executors.newFixedThreadPool(this.threads, new ThreadFactory(){
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "ParallelGraphReader-" + threadCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+		this.fileQueues = null;
+		this.sharedQueue = null;
+		if(this.preserveOrder)
+			this.fileQueues = new ArrayList<BlockingQueue<Item>>();
+		else
+			this.sharedQueue = new LinkedBlockingQueue<Item>(QUEUE_SIZE * this.threads);
+		this.currentFile = 0;
+		this.finishedFiles = 0;
+
+		// The executor starts the tasks in the order they are submitted.
+		// In ordered mode, this guarantees that the file the consumer is waiting for is always being read.
+		for(File file : this.inputFiles){
+			BlockingQueue<Item> queue = this.sharedQueue;
+			if(this.preserveOrder){
+				queue = new LinkedBlockingQueue<Item>(QUEUE_SIZE);
+				this.fileQueues.add(queue);
+			}
+			this.executor.execute(new FileTask(file, queue, this.type, this.symbolTable));
+		}
+	}
+
+	/**
+	 * Reads all the sentences from one file into a queue.
+	 */
+	private static class FileTask implements Runnable{
+		private File file;
+		private BlockingQueue<Item> queue;
+		private GraphReaderFactory type;
+		private SymbolTable symbolTable;
+
+		public FileTask(File file, BlockingQueue<Item> queue, GraphReaderFactory type, SymbolTable symbolTable){
+			this.file = file;
+			this.queue = queue;
+			this.type = type;
+			this.symbolTable = symbolTable;
+		}
+
+		@Override
+		public void run() {
+			GraphReader reader = null;
+			Item error = null;
+			try {
+				reader = type.makeGraphReader(file.getPath());
+				if(symbolTable != null)
+					reader.setSymbolTable(symbolTable);
+				while(reader.hasNext()){
+					Item item = new Item();
+					try {
+						item.sentence = reader.nextSentence();
+					} catch (GraphFormatException e) {
+						item.exception = e;
+					}
+					queue.put(item);
+				}
+			} catch (InterruptedException e) {
+				// The reader was closed or reset, stop reading.
+				return;
+			} catch (GraphFormatException e) {
+				error = new Item();
+				error.exception = e;
+			} catch (Throwable e) {
+				// The reader can not continue after an unexpected error (including an Error such as OutOfMemoryError), so the rest of the file is skipped.
+				error = new Item();
+				error.error = e;
+			} finally {
+				try {
+					if(reader != null)
+						reader.close();
+				} catch (Throwable e) {
+					if(error == null){
+						error = new Item();
+						error.error = e;
+					}
+				}
+			}
+			// The consumer waits for the end of every file, so it is always queued after an error
+			try {
+				if(error != null)
+					queue.put(error);
+				Item end = new Item();
+				end.end = true;
+				queue.put(end);
+			} catch (InterruptedException e) {
+				// The reader was closed or reset, stop reading.
+			}
+		}
+	}
+
+	/**
+	 * Take the next sentence from the workers.
+	 * @return	The next sentence, or null if all the files have been read.
+	 * @throws GraphFormatException
+	 */
+	private ArrayList<Graph> readSentence() throws GraphFormatException{
+		try {
+			while(true){
+				Item item;
+				if(this.preserveOrder){
+					if(this.currentFile >= this.fileQueues.size())
+						return null;
+					item = this.fileQueues.get(this.currentFile).take();
+					if(item.end){
+						this.fileQueues.set(this.currentFile, null);
+						this.currentFile++;
+						continue;
+					}
+				}
+				else {
+					if(this.finishedFiles >= this.inputFiles.size())
+						return null;
+					item = this.sharedQueue.take();
+					if(item.end){
+						this.finishedFiles++;
+						continue;
+					}
+				}
+
+				if(item.exception != null)
+					throw item.exception;
+				if(item.error instanceof RuntimeException)
+					throw (RuntimeException)item.error;
+				if(item.error instanceof Error)
+					throw (Error)item.error;
+				if(item.error != null)
+					throw new RuntimeException(item.error);
+				if(item.sentence != null)
+					return item.sentence;
+			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Read the next sentence into the buffer.
+	 * If the sentence could not be parsed, the buffer gets a single empty graph and the exception is passed on.
+	 * A RuntimeException or an Error from a worker is handled in the same way, and reading continues with the next file.
+	 * @throws GraphFormatException
+	 */
+	private void readAhead() throws GraphFormatException{
+		this.nextGraphPointer = 0;
+		try{
+			this.nextSentence = readSentence();
+		} catch (GraphFormatException e){
+			this.nextSentence = new ArrayList<Graph>();
+			this.nextSentence.add(new Graph());
+			throw e;
+		} catch (RuntimeException e){
+			this.nextSentence = new ArrayList<Graph>();
+			this.nextSentence.add(new Graph());
+			throw e;
+		} catch (Error e){
+			this.nextSentence = new ArrayList<Graph>();
+			this.nextSentence.add(new Graph());
+			throw e;
+		}
+	}
+
+	/**
+	 * Check whether there are more graphs available.
+	 * @return	True if there are more graphs available.
+	 */
+	@Override
+	public boolean hasNext() {
+		if(this.nextSentence == null)
+			return false;
+		return true;
+	}
+
+	/**
+	 * Get the next graph from the corpus.
+	 * @return	The next graph.
+	 * @throws GraphFormatException
+	 */
+	@Override
+	public Graph next() throws GraphFormatException {
+		this.started = true;
+		Graph graph = null;
+		if(this.nextSentence != null){
+			graph = this.nextSentence.get(nextGraphPointer);
+			nextGraphPointer++;
+		}
+		if(this.nextSentence == null || nextGraphPointer >= this.nextSentence.size())
+			this.readAhead();
+		return graph;
+	}
+
+	/**
+	 * Read a sentence from the corpus.
+	 * @return	List of graphs
+	 * @throws GraphFormatException
+	 */
+	@Override
+	public ArrayList<Graph> nextSentence() throws GraphFormatException {
+		this.started = true;
+		ArrayList<Graph> tempSentence = this.nextSentence;
+		this.readAhead();
+		return tempSentence;
+	}
+
+	/**
+	 * Reset the whole reading process to the beginning.
+	 * @throws GraphFormatException
+	 */
+	@Override
+	public void reset() throws GraphFormatException {
+		this.close();
+		this.start();
+		this.readAhead();
+		this.started = false;
+	}
+
+	/**
+	 * Close the reader and stop the workers.
+	 */
+	@Override
+	public void close() {
+		if(this.executor != null)
+			this.executor.shutdownNow();
+		this.executor = null;
+		this.fileQueues = null;
+		this.sharedQueue = null;
+		this.nextSentence = null;
+		this.nextGraphPointer = 0;
+	}
+
+	/**
+	 * Get a stream of the graphs that have not been returned yet, as described in GraphReader.graphs().
+	 * If nothing has been returned since the reader was created or reset, the stream reads the input with new readers
+	 * instead of the worker threads of this reader, and parallel streams split it by file.
+	 * @return	Stream of graphs
+	 */
+	@Override
+	public Stream<Graph> graphs(){
+		return GraphReaderSpliterator.graphs(this, this.started, this.inputPath, this.type, this.symbolTable, null);
+	}
+
+	/**
+	 * Get a stream of the sentences that have not been returned yet, as described in GraphReader.sentences().
+	 * If nothing has been returned since the reader was created or reset, the stream reads the input with new readers
+	 * instead of the worker threads of this reader, and parallel streams split it by file.
+	 * @return	Stream of sentences
+	 */
+	@Override
+	public Stream<ArrayList<Graph>> sentences(){
+		return GraphReaderSpliterator.sentences(this, this.started, this.inputPath, this.type, this.symbolTable, null);
+	}
+
+	/**
+	 * Intern the lemmas, POS tags and edge labels of all graphs using the symbol table.
+	 * The workers that have already started keep their previous setting, so it is best to call reset() afterwards.
+	 * @param symbolTable	Symbol table, or null to disable interning.
+	 */
+	@Override
+	public void setSymbolTable(SymbolTable symbolTable) {
+		this.symbolTable = symbolTable;
+		if(symbolTable != null)
+			symbolTable.intern(this.nextSentence);
+	}
+}
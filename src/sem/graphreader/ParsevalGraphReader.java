@@ -1,15 +1,15 @@
 package sem.graphreader;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 
 import sem.exception.GraphFormatException;
 import sem.graph.Edge;
 import sem.graph.Graph;
 import sem.graph.Node;
+import sem.graph.SymbolTable;
 import sem.util.FileReader;
-import sem.util.Tools;
 
 /**
  * Graph reader for the Parseval format.
@@ -22,10 +22,14 @@ import sem.util.Tools;
  * <code>
  * </p>
  */
-public class ParsevalGraphReader implements GraphReader{
+public class ParsevalGraphReader extends AbstractGraphReader{
 	private FileReader reader;
 	private Graph nextGraph;
+	private int nextSentenceFileIndex;
+	private long nextSentenceOffset;
 	private String ellipLemma = "ellip";
+	private RaspLabel nodeLabel = new RaspLabel();
+	private GrTokenizer grTokenizer = new GrTokenizer();
 	private boolean simpleEdgeFormat;
 	private boolean simpleNodeFormat;
 	
@@ -38,35 +42,49 @@ public class ParsevalGraphReader implements GraphReader{
 	 * @throws GraphFormatException
 	 */
 	public ParsevalGraphReader(String inputPath, boolean simpleEdgeFormat, boolean simpleNodeFormat) throws GraphFormatException{
-		this.reader = new FileReader(inputPath, "\n");
+		this(new FileReader(inputPath, "\n"), simpleEdgeFormat, simpleNodeFormat);
+		this.inputPath = inputPath;
+	}
+	
+	/**
+	 * Create a reader for the lines of an existing FileReader, for example a chunk of a file that is held in memory (see SentenceChunkReader).
+	 * The sentence offsets refer to the lines of that FileReader, and graphs() and sentences() read from this reader without splitting, as there is no input path.
+	 * @param reader	Source of the lines.
+	 * @param simpleEdgeFormat	Enable simple edge format
+	 * @param simpleNodeFormat	Enable simple node format
+	 * @throws GraphFormatException
+	 */
+	public ParsevalGraphReader(FileReader reader, boolean simpleEdgeFormat, boolean simpleNodeFormat) throws GraphFormatException{
+		this.inputPath = null;
+		this.reader = reader;
 		this.nextGraph = null;
 		this.simpleEdgeFormat = simpleEdgeFormat;
 		this.simpleNodeFormat = simpleNodeFormat;
 		this.next();
+		this.started = false;
 	}
 	
-	private Node createNode(String label, ArrayList<Node> nodes) throws GraphFormatException{
+	private Node createNode(int token, ArrayList<Node> nodes) throws GraphFormatException{
 		
 		Node node;
 		int nodeId;
 		if(this.simpleNodeFormat){
-			node = new Node(label, "POS");
+			node = new Node(grTokenizer.getToken(token), "POS");
 		}
 		else {
-			LinkedHashMap<String,String> nodeInfo = RaspGraphReader.parseLabel(label);
-			if(nodeInfo.get("index") == null || nodeInfo.get("index").trim().length() == 0){
-				node = new Node(nodeInfo.get("lemma"), ((nodeInfo.get("pos")==null)?"POS":nodeInfo.get("pos")));
+			grTokenizer.parseLabel(token, nodeLabel);
+			if(!nodeLabel.hasIndex()){
+				node = new Node(nodeLabel.getLemma(), ((nodeLabel.getPos()==null)?"POS":nodeLabel.getPos()));
 			}
 			else {
-				nodeId = Tools.getInt(nodeInfo.get("index"), -1)-1;
+				nodeId = nodeLabel.getIndex()-1;
 				if(nodeId < 0)
-					throw new GraphFormatException("Head ID is negative.", label);
+					throw new GraphFormatException("Head ID is negative.", grTokenizer.getToken(token));
 				while(nodes.size() <= nodeId)
 					nodes.add(null);
 				if(nodes.get(nodeId) == null){
-					nodes.remove(nodeId);
-					node = new Node(nodeInfo.get("lemma"), ((nodeInfo.get("pos")==null)?"POS":nodeInfo.get("pos")));
-					nodes.add(nodeId, node);
+					node = new Node(nodeLabel.getLemma(), ((nodeLabel.getPos()==null)?"POS":nodeLabel.getPos()));
+					nodes.set(nodeId, node);
 				}
 				else
 					node = nodes.get(nodeId);
@@ -81,6 +99,8 @@ public class ParsevalGraphReader implements GraphReader{
 		String[] attributes;
 		Node head, dep;
 		
+		this.nextSentenceFileIndex = reader.getNextLineFileIndex();
+		this.nextSentenceOffset = reader.getNextLineOffset();
 		while (reader.hasNext()) {
 			line = reader.next().trim();
 			if(line.startsWith("%"))
@@ -96,32 +116,32 @@ public class ParsevalGraphReader implements GraphReader{
 				graph = new Graph();
 			
 			if(line.startsWith("(")){
-				LinkedHashMap<String,String> grInfo = RaspGraphReader.parseGr(line, this.simpleEdgeFormat);
+				grTokenizer.parse(line, this.simpleEdgeFormat);
 				
 				// Resolving the head
 				head = null;
-				if(grInfo.get("head").equals(ellipLemma)){
+				if(grTokenizer.tokenEquals(grTokenizer.getHeadToken(), ellipLemma)){
 					head = Graph.ellip.clone();
 				}
 				else{
-					head = createNode(grInfo.get("head"), graph.getNodes());
+					head = createNode(grTokenizer.getHeadToken(), graph.getNodes());
 				}
 				
 				// Resolving the dependent
 				dep = null;
-				if(grInfo.get("type").equals("passive"))
+				if(grTokenizer.getCategory() == GrTokenizer.CATEGORY_PASSIVE)
 					dep = Graph.nil.clone();
-				else if(grInfo.get("dependent") == null)
+				else if(grTokenizer.getDependentToken() < 0)
 					throw new GraphFormatException("Dependent is null.", line);
 				else
-					dep = createNode(grInfo.get("dependent"), graph.getNodes());
+					dep = createNode(grTokenizer.getDependentToken(), graph.getNodes());
 
 				if(head == null)
 					throw new GraphFormatException("Unable to resolve head.", line);
 				if(dep == null)
 					throw new GraphFormatException("Unable to resolve dependent.", line);
 				
-				graph.addEdge(grInfo.get("type"), head, dep);
+				graph.addEdge(grTokenizer.getType(), head, dep);
 			}
 			else {
 				metaData += line + "\n";
@@ -139,12 +159,15 @@ public class ParsevalGraphReader implements GraphReader{
 			
 			// Adding missing nodes to the nodelist
 			for(Edge edge : graph.getEdges()){
-				if(!graph.getNodes().contains(edge.getHead()))
+				if(graph.indexOf(edge.getHead()) < 0)
 					graph.addNode(edge.getHead());
-				if(!graph.getNodes().contains(edge.getDep()))
+				if(graph.indexOf(edge.getDep()) < 0)
 					graph.addNode(edge.getDep());
 			}
 			graph.putMetadata("text", metaData.trim());
+			
+			if(this.symbolTable != null)
+				this.symbolTable.intern(graph);
 		}
 		return graph;
 	}
@@ -166,6 +189,7 @@ public class ParsevalGraphReader implements GraphReader{
 	 */
 	@Override
 	public Graph next() throws GraphFormatException {
+		this.started = true;
 		Graph graph = this.nextGraph;
 		this.nextGraph = readNextGraph();
 		return graph;
@@ -177,6 +201,7 @@ public class ParsevalGraphReader implements GraphReader{
 	 */
 	@Override
 	public ArrayList<Graph> nextSentence() throws GraphFormatException {
+		this.started = true;
 		if(!this.hasNext())
 			return null;
 		ArrayList<Graph> sentence = new ArrayList<Graph>();
@@ -193,6 +218,7 @@ public class ParsevalGraphReader implements GraphReader{
 			this.reader.reset();
 		this.nextGraph = null;
 		this.next();
+		this.started = false;
 	}
 
 	/**
@@ -205,6 +231,74 @@ public class ParsevalGraphReader implements GraphReader{
 		this.nextGraph = null;
 	}
 
+	/**
+	 * Get the list of input files, in the order they are read.
+	 * @return	List of files.
+	 */
+	@Override
+	public ArrayList<File> getInputFiles(){
+		return this.reader.getInputFiles();
+	}
+	
+	/**
+	 * Get the index of the file containing the sentence that will be returned next.
+	 * @return	File index, or -1 if there are no more sentences.
+	 */
+	@Override
+	public int getNextSentenceFileIndex(){
+		return this.nextSentenceFileIndex;
+	}
+	
+	/**
+	 * Get the byte offset of the sentence that will be returned next.
+	 * @return	Byte offset in the (decompressed) file, or -1 if there are no more sentences.
+	 */
+	@Override
+	public long getNextSentenceOffset(){
+		return this.nextSentenceOffset;
+	}
+	
+	/**
+	 * Continue reading from the sentence at this position.
+	 * @param fileIndex	Index of the file, as returned by getNextSentenceFileIndex().
+	 * @param offset	Byte offset, as returned by getNextSentenceOffset().
+	 * @throws GraphFormatException 
+	 */
+	@Override
+	public void seek(int fileIndex, long offset) throws GraphFormatException{
+		this.reader.seek(fileIndex, offset);
+		this.nextGraph = null;
+		this.next();
+	}
+	
+	/**
+	 * Creates readers with the same configuration as this one, for reading single files of the input.
+	 * @return	Factory for new readers
+	 */
+	@Override
+	protected GraphReaderFactory getFactory(){
+		final boolean simpleEdgeFormat = this.simpleEdgeFormat;
+		final boolean simpleNodeFormat = this.simpleNodeFormat;
+		return new GraphReaderFactory(){
+			@Override
+			public GraphReader makeGraphReader(String path) throws GraphFormatException {
+				return new ParsevalGraphReader(path, simpleEdgeFormat, simpleNodeFormat);
+			}
+		};
+	}
+	
+	/**
+	 * Intern the lemmas, POS tags and edge labels of all graphs using the symbol table.
+	 * This also applies to the graph that has already been read ahead.
+	 * @param symbolTable	Symbol table, or null to disable interning.
+	 */
+	@Override
+	public void setSymbolTable(SymbolTable symbolTable){
+		this.symbolTable = symbolTable;
+		if(symbolTable != null)
+			symbolTable.intern(this.nextGraph);
+	}
+
 	public static void main(String[] args){
 		try {
 			ParsevalGraphReader reader = new ParsevalGraphReader("examples/parseval/file1.parseval", false, true);
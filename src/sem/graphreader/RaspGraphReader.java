@@ -1,20 +1,20 @@
 package sem.graphreader;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import sem.exception.GraphFormatException;
 import sem.graph.Edge;
 import sem.graph.Graph;
+import sem.graph.NBestSentence;
 import sem.graph.Node;
+import sem.graph.SymbolTable;
 import sem.util.FileReader;
-import sem.util.Tools;
 /**
  * Graph reader for the default RASP format.
  * 
@@ -27,26 +27,72 @@ import sem.util.Tools;
  * <code>./rasp.sh -m -p'-og'</code>
  *
  */
-public class RaspGraphReader implements GraphReader{
+public class RaspGraphReader extends AbstractGraphReader{
 	private boolean getAllParses;
+	private boolean sharedParses;
 	private FileReader reader;
+	private int nextSentenceFileIndex;
+	private long nextSentenceOffset;
 	
 	public static List<String> grsWithSubtype = Collections.unmodifiableList(new ArrayList<String>(Arrays.asList("dependent", "mod", "ncmod", "xmod", "cmod", "arg_mod", "arg", "xcomp", "ccomp", "ta")));
 	public static List<String> grsWithInitialGr = Collections.unmodifiableList(new ArrayList<String>(Arrays.asList("subj", "ncsubj", "xsubj", "csubj")));
 	
 	private String ellipLemma = "ellip";
-	
-	private static Pattern labelPattern = Pattern.compile("^([^\\+:_]+)(\\+([a-zA-Z]*))?(:([0-9]+))?(_([a-zA-Z0-9]+))?$");
+	private RaspLabel headLabel = new RaspLabel();
+	private RaspLabel depLabel = new RaspLabel();
+	private GrTokenizer grTokenizer = new GrTokenizer();
+	private TokenParseBuilder parseBuilder = null;
 	
 	ArrayList<Graph> nextSentence;
 	int nextGraphPointer;
 	
 	public RaspGraphReader(String inputPath, boolean getAllParses) throws GraphFormatException{
+		this(inputPath, getAllParses, false);
+	}
+	
+	/**
+	 * Create a reader for RASP output.
+	 * With sharedParses, each sentence is returned as an NBestSentence, where the parses share the nodes of the tokens
+	 * and only create their own nodes and edges when they are accessed. The graphs are the same as without sharedParses.
+	 * @param inputPath	Path to the file or directory.
+	 * @param getAllParses	Whether to return all the graphs of a sentence, or only the first one.
+	 * @param sharedParses	Whether to store the parses of a sentence with shared nodes.
+	 * @throws GraphFormatException
+	 */
+	public RaspGraphReader(String inputPath, boolean getAllParses, boolean sharedParses) throws GraphFormatException{
+		this(new FileReader(inputPath, "\n"), getAllParses, sharedParses);
+		this.inputPath = inputPath;
+	}
+	
+	/**
+	 * Create a reader for the lines of an existing FileReader, for example a chunk of a file that is held in memory (see SentenceChunkReader).
+	 * The sentence offsets refer to the lines of that FileReader, and graphs() and sentences() read from this reader without splitting, as there is no input path.
+	 * @param reader	Source of the lines.
+	 * @param getAllParses	Whether to return all the graphs of a sentence, or only the first one.
+	 * @throws GraphFormatException
+	 */
+	public RaspGraphReader(FileReader reader, boolean getAllParses) throws GraphFormatException{
+		this(reader, getAllParses, false);
+	}
+	
+	/**
+	 * Create a reader for the lines of an existing FileReader, optionally with shared parses (see RaspGraphReader(String, boolean, boolean)).
+	 * @param reader	Source of the lines.
+	 * @param getAllParses	Whether to return all the graphs of a sentence, or only the first one.
+	 * @param sharedParses	Whether to store the parses of a sentence with shared nodes.
+	 * @throws GraphFormatException
+	 */
+	public RaspGraphReader(FileReader reader, boolean getAllParses, boolean sharedParses) throws GraphFormatException{
+		this.inputPath = null;
 		this.getAllParses = getAllParses;
-		this.reader = new FileReader(inputPath, "\n");
+		this.sharedParses = sharedParses;
+		if(sharedParses)
+			this.parseBuilder = new TokenParseBuilder();
+		this.reader = reader;
 		this.nextGraphPointer = 0;
 		this.nextSentence = null;
 		this.next();
+		this.started = false;
 	}
 	
 	/**
@@ -55,136 +101,39 @@ public class RaspGraphReader implements GraphReader{
 	 * For example: algorithm+s:6_NOUN, algorithm+s:6_NOUN, algorithms
 	 * 
 	 * Returns a LinkedHashMap with four fields: lemma, suffix, index, pos
+	 * 
+	 * <p>This creates a new map for every label. When parsing many labels, reuse a RaspLabel object instead.
 	 * @param label
 	 * @return
 	 * @throws GraphFormatException 
 	 */
 	public static LinkedHashMap<String,String> parseLabel(String label) throws GraphFormatException{
-		if(label == null)
-			throw new RuntimeException("Input label cannot be null");
-		
-		LinkedHashMap<String,String> fields = new LinkedHashMap<String,String>();
-		
-		Matcher matcher = labelPattern.matcher(label);
-		if(matcher.matches()){
-			fields.put("lemma", matcher.group(1));
-			fields.put("suffix", matcher.group(3));
-			fields.put("index", matcher.group(5));
-			fields.put("pos", matcher.group(7));
-		}
-		else{
-			fields.put("lemma", label);
-			fields.put("suffix", null);
-			fields.put("index", null);
-			fields.put("pos", null);
-		}
-		return fields;
+		RaspLabel raspLabel = new RaspLabel();
+		raspLabel.parse(label);
+		return raspLabel.toMap();
 	}
 	
 	/**
 	 * Parses a line that represents a GR and return a LinkedHashMap with the arguments.
 	 * The hashmap has five keys: type, subtype, head, dependent, initialgr.
+	 * 
+	 * <p>This creates a new map for every GR. When parsing many GRs, reuse a GrTokenizer object instead.
 	 * @param line
 	 * @return
 	 * @throws GraphFormatException 
 	 */
 	public static LinkedHashMap<String,String> parseGr(String line, boolean simpleEdgeFormat) throws GraphFormatException{
+		GrTokenizer tokenizer = new GrTokenizer();
+		tokenizer.parse(line, simpleEdgeFormat);
+		
 		LinkedHashMap<String,String> arguments = new LinkedHashMap<String,String>();
-		arguments.put("type", null);
+		arguments.put("type", tokenizer.getType());
 		arguments.put("sybtype", null);
-		arguments.put("head", null);
-		arguments.put("dependent", null);
-		arguments.put("initialgr", null);
-		
-		String originalLine = line;
-		
-		// Check input for null
-		if(line == null)
-			throw new RuntimeException("Input line cannot be null");
-		
-		// Remove brackets
-		if(line.length() >= 2 && line.charAt(0) == '(' && line.charAt(line.length()-1) == ')')
-			line = line.substring(1, line.length()-1);
-		
-		// Split by whitespace
-		ArrayList<String> lineParts = new ArrayList<String>(Arrays.asList(line.split("\\s+")));
-		
-		// If the arguments are surrounded by bars (e.g. |ncmod|), remove them
-		for(int i = 0; i < lineParts.size(); i++){
-			String linePart = lineParts.get(i);
-			if(linePart.length() >= 2 && linePart.charAt(0) == '|' && linePart.charAt(linePart.length()-1) == '|'){
-				lineParts.add(i, linePart.substring(1, linePart.length()-1));
-				lineParts.remove(i+1);
-			}
-			// If the type (first argument) doesn't have bars, don't modify the others either.
-			else if(i == 0)
-				break;
-		}
-
-		String type = lineParts.get(0);
-		arguments.put("type", type);
-		
-		// Simple edge format
-		if(simpleEdgeFormat){
-			// Passive still has to have only one argument in simple Edge format
-			// Other types need exactly two.
-			if(type.equals("passive")){
-				if(lineParts.size() == 2){
-					arguments.put("head", lineParts.get(1));
-				}
-				else
-					throw new GraphFormatException("GR has wrong number of arguments", originalLine);
-			}
-			else {
-				if(lineParts.size() == 3){
-					arguments.put("head", lineParts.get(1));
-					arguments.put("dependent", lineParts.get(2));
-				}
-				else
-					throw new GraphFormatException("GR has wrong number of arguments", originalLine);
-			}
-		}
-		// Full edge format
-		else {
-			if(type.equals("passive")){
-				if(lineParts.size() == 2){
-					arguments.put("head", lineParts.get(1));
-				}
-				else
-					throw new GraphFormatException("GR has wrong number of arguments", originalLine);
-			}
-			else if(grsWithSubtype.contains(type)){
-				if(grsWithInitialGr.contains(type))
-					throw new RuntimeException("Illegal state");
-				if(lineParts.size() == 4){
-					arguments.put("subtype", lineParts.get(1));
-					arguments.put("head", lineParts.get(2));
-					arguments.put("dependent", lineParts.get(3));
-				}
-				else
-					throw new GraphFormatException("GR has wrong number of arguments", originalLine);
-			}
-			else if(grsWithInitialGr.contains(type)){
-				if(grsWithSubtype.contains(type))
-					throw new RuntimeException("Illegal state");
-				if(lineParts.size() == 4){
-					arguments.put("head", lineParts.get(1));
-					arguments.put("dependent", lineParts.get(2));
-					arguments.put("initialgr", lineParts.get(3));
-				}
-				else
-					throw new GraphFormatException("GR has wrong number of arguments", originalLine);
-			}
-			else{
-				if(lineParts.size() == 3){
-					arguments.put("head", lineParts.get(1));
-					arguments.put("dependent", lineParts.get(2));
-				}
-				else
-					throw new GraphFormatException("GR has wrong number of arguments", originalLine);
-			}
-		}
-		
+		arguments.put("head", tokenizer.getHead());
+		arguments.put("dependent", tokenizer.getDependent());
+		arguments.put("initialgr", tokenizer.getInitialGr());
+		if(tokenizer.getSubtypeToken() >= 0)
+			arguments.put("subtype", tokenizer.getSubtype());
 		return arguments;
 	}
 	
@@ -194,7 +143,10 @@ public class RaspGraphReader implements GraphReader{
 		String line, section = "", metaData = "";
 		Graph graph = null;
 		Node headNode = null, depNode = null;
+		boolean inParse = false;
 		
+		this.nextSentenceFileIndex = reader.getNextLineFileIndex();
+		this.nextSentenceOffset = reader.getNextLineOffset();
 		while (reader.hasNext()) {
 			line = reader.next().trim();
 
@@ -206,27 +158,41 @@ public class RaspGraphReader implements GraphReader{
 			}
 			
 			// If we have reached here, it is not an empty line any more.
-			if(graphs == null)
+			if(graphs == null && this.sharedParses){
+				graphs = new NBestSentence();
+				this.parseBuilder.startSentence((NBestSentence)graphs);
+			}
+			else if(graphs == null)
 				graphs = new ArrayList<Graph>();
 			
 			if(!line.startsWith("("))
 				section = line;
-			if(line.startsWith("gr-list: ")){
+			if(line.startsWith("gr-list: ") && this.sharedParses){
+				this.parseBuilder.startParse();
+				inParse = true;
+			}
+			else if(line.startsWith("gr-list: ")){
 				graph = new Graph();
 				graphs.add(graph);
 			}
 			
+			// If it's a GR in a shared parse
+			if(line.startsWith("(") && section.startsWith("gr-list: ") && inParse){
+				this.readSharedGr(line);
+				continue;
+			}
+			
 			// If it's a GR
 			if(line.startsWith("(") && section.startsWith("gr-list: ") && graph != null){ 
-				LinkedHashMap<String,String> grInfo = parseGr(line, false);
+				grTokenizer.parse(line, false);
 				
 				headNode = null;
 				depNode = null;
 				
 				//Resolving head node
-				LinkedHashMap<String,String> headInfo = parseLabel(grInfo.get("head"));
-				if(headInfo.get("index") != null && headInfo.get("index").length() > 0){
-					int headId = Tools.getInt(headInfo.get("index"), -1)-1;
+				grTokenizer.parseLabel(grTokenizer.getHeadToken(), headLabel);
+				if(headLabel.hasIndex()){
+					int headId = headLabel.getIndex()-1;
 					if(headId < 0)
 						throw new GraphFormatException("Head ID is smaller than 1.", line);
 					
@@ -238,26 +204,25 @@ public class RaspGraphReader implements GraphReader{
 						headNode = graph.getNodes().get(headId);
 					}
 					else{
-						headNode = new Node(headInfo.get("lemma"), headInfo.get("pos"));
-						graph.getNodes().remove(headId);
-						graph.getNodes().add(headId, headNode);
+						headNode = new Node(headLabel.getLemma(), headLabel.getPos());
+						graph.getNodes().set(headId, headNode);
 					}
 				}
-				else if(headInfo.get("lemma").equals(ellipLemma)){
+				else if(headLabel.lemmaEquals(ellipLemma)){
 					headNode = Graph.ellip.clone();
 				}
 				else {
-					headNode = new Node(headInfo.get("lemma"), headInfo.get("pos"));
+					headNode = new Node(headLabel.getLemma(), headLabel.getPos());
 				}
 				
 				//Resolving dep node
-				if(grInfo.get("type").equals("passive")){
+				if(grTokenizer.getCategory() == GrTokenizer.CATEGORY_PASSIVE){
 					depNode = Graph.nil.clone();
 				}
 				else{
-					LinkedHashMap<String,String> depInfo = parseLabel(grInfo.get("dependent"));
-					if(depInfo.get("index") != null && depInfo.get("index").length() > 0){
-						int depId = Tools.getInt(depInfo.get("index"), -1)-1;
+					grTokenizer.parseLabel(grTokenizer.getDependentToken(), depLabel);
+					if(depLabel.hasIndex()){
+						int depId = depLabel.getIndex()-1;
 						if(depId < 0)
 							throw new GraphFormatException("Head ID is smaller than 1.", line);
 						
@@ -269,20 +234,19 @@ public class RaspGraphReader implements GraphReader{
 							depNode = graph.getNodes().get(depId);
 						}
 						else{
-							depNode = new Node(depInfo.get("lemma"), depInfo.get("pos"));
-							graph.getNodes().remove(depId);
-							graph.getNodes().add(depId, depNode);
+							depNode = new Node(depLabel.getLemma(), depLabel.getPos());
+							graph.getNodes().set(depId, depNode);
 						}
 					}
 					else {
-						depNode = new Node(headInfo.get("lemma"), headInfo.get("pos"));
+						depNode = new Node(headLabel.getLemma(), headLabel.getPos());
 					}
 				}
 				
 				if(headNode == null || depNode == null)
 					throw new GraphFormatException("Head or dep could not be resolved to nodes.", line);
 				
-				graph.addEdge(grInfo.get("type"), headNode, depNode);
+				graph.addEdge(grTokenizer.getType(), headNode, depNode);
 			}
 			else {
 				metaData += line + "\n";
@@ -290,7 +254,14 @@ public class RaspGraphReader implements GraphReader{
 		}
 
 		// Post-processing
-		if(graphs != null){
+		if(graphs instanceof NBestSentence){
+			this.parseBuilder.finishParse();
+			if(graphs.size() > 0)
+				((NBestSentence)graphs).putMetadata("text", metaData.trim());
+			if(this.symbolTable != null)
+				this.symbolTable.intern(graphs);
+		}
+		else if(graphs != null){
 			for(Graph g : graphs){
 				// Removing placeholders
 				Iterator<Node> iterator = g.getNodes().iterator();
@@ -301,22 +272,67 @@ public class RaspGraphReader implements GraphReader{
 				
 				// Adding remaining nodes (null, ellip) to the nodelist
 				for(Edge edge : g.getEdges()){
-					if(!g.getNodes().contains(edge.getHead()))
+					if(g.indexOf(edge.getHead()) < 0)
 						g.addNode(edge.getHead());
-					if(!g.getNodes().contains(edge.getDep()))
+					if(g.indexOf(edge.getDep()) < 0)
 						g.addNode(edge.getDep());
 				}
 				
 				// Adding metadata
 				g.putMetadata("text", metaData.trim());
+				
+				if(this.symbolTable != null)
+					this.symbolTable.intern(g);
 			}
 		}
 		
-		if(graphs != null && graphs.size() == 0)
+		if(graphs instanceof NBestSentence && graphs.size() == 0)
+			((NBestSentence)graphs).addParse();
+		else if(graphs != null && graphs.size() == 0)
 			graphs.add(new Graph());
 		
 		return graphs;
 	}
+	
+	/**
+	 * Read a GR into the current shared parse. The nodes are resolved in the same way as for a Graph in readSentence().
+	 * @param line	The GR
+	 * @throws GraphFormatException
+	 */
+	private void readSharedGr(String line) throws GraphFormatException{
+		grTokenizer.parse(line, false);
+		int head, dep;
+		
+		//Resolving head node
+		grTokenizer.parseLabel(grTokenizer.getHeadToken(), headLabel);
+		if(headLabel.hasIndex()){
+			int headId = headLabel.getIndex()-1;
+			if(headId < 0)
+				throw new GraphFormatException("Head ID is smaller than 1.", line);
+			head = this.parseBuilder.addToken(headId, headLabel);
+		}
+		else if(headLabel.lemmaEquals(ellipLemma))
+			head = this.parseBuilder.addOther(Graph.ellip.getLemma(), Graph.ellip.getPos());
+		else
+			head = this.parseBuilder.addOther(headLabel.getLemma(), headLabel.getPos());
+		
+		//Resolving dep node
+		if(grTokenizer.getCategory() == GrTokenizer.CATEGORY_PASSIVE)
+			dep = this.parseBuilder.addOther(Graph.nil.getLemma(), Graph.nil.getPos());
+		else{
+			grTokenizer.parseLabel(grTokenizer.getDependentToken(), depLabel);
+			if(depLabel.hasIndex()){
+				int depId = depLabel.getIndex()-1;
+				if(depId < 0)
+					throw new GraphFormatException("Head ID is smaller than 1.", line);
+				dep = this.parseBuilder.addToken(depId, depLabel);
+			}
+			else
+				dep = this.parseBuilder.addOther(headLabel.getLemma(), headLabel.getPos());
+		}
+		
+		this.parseBuilder.addEdge(grTokenizer.getType(), head, dep);
+	}
 
 	/**
 	 * Check whether there are more graphs available.
@@ -336,6 +352,7 @@ public class RaspGraphReader implements GraphReader{
 	 */
 	@Override
 	public Graph next() throws GraphFormatException {
+		this.started = true;
 		Graph graph = null;
 		if(this.nextSentence != null){
 			graph = this.nextSentence.get(nextGraphPointer);
@@ -356,6 +373,7 @@ public class RaspGraphReader implements GraphReader{
 	 */
 	@Override
 	public ArrayList<Graph> nextSentence() throws GraphFormatException {
+		this.started = true;
 		ArrayList<Graph> tempSentence;
 		if(getAllParses)
 			tempSentence = this.nextSentence;
@@ -378,6 +396,7 @@ public class RaspGraphReader implements GraphReader{
 		this.nextSentence = null;
 		this.nextGraphPointer = 0;
 		this.next();
+		this.started = false;
 	}
 
 	/**
@@ -390,6 +409,75 @@ public class RaspGraphReader implements GraphReader{
 		this.nextSentence = null;
 	}
 
+	/**
+	 * Get the list of input files, in the order they are read.
+	 * @return	List of files.
+	 */
+	@Override
+	public ArrayList<File> getInputFiles(){
+		return this.reader.getInputFiles();
+	}
+	
+	/**
+	 * Get the index of the file containing the sentence that will be returned next.
+	 * @return	File index, or -1 if there are no more sentences.
+	 */
+	@Override
+	public int getNextSentenceFileIndex(){
+		return this.nextSentenceFileIndex;
+	}
+	
+	/**
+	 * Get the byte offset of the sentence that will be returned next.
+	 * @return	Byte offset in the (decompressed) file, or -1 if there are no more sentences.
+	 */
+	@Override
+	public long getNextSentenceOffset(){
+		return this.nextSentenceOffset;
+	}
+	
+	/**
+	 * Continue reading from the sentence at this position.
+	 * @param fileIndex	Index of the file, as returned by getNextSentenceFileIndex().
+	 * @param offset	Byte offset, as returned by getNextSentenceOffset().
+	 * @throws GraphFormatException 
+	 */
+	@Override
+	public void seek(int fileIndex, long offset) throws GraphFormatException{
+		this.reader.seek(fileIndex, offset);
+		this.nextSentence = null;
+		this.nextGraphPointer = 0;
+		this.next();
+	}
+	
+	/**
+	 * Creates readers with the same configuration as this one, for reading single files of the input.
+	 * @return	Factory for new readers
+	 */
+	@Override
+	protected GraphReaderFactory getFactory(){
+		final boolean getAllParses = this.getAllParses;
+		final boolean sharedParses = this.sharedParses;
+		return new GraphReaderFactory(){
+			@Override
+			public GraphReader makeGraphReader(String path) throws GraphFormatException {
+				return new RaspGraphReader(path, getAllParses, sharedParses);
+			}
+		};
+	}
+	
+	/**
+	 * Intern the lemmas, POS tags and edge labels of all graphs using the symbol table.
+	 * This also applies to the sentence that has already been read ahead.
+	 * @param symbolTable	Symbol table, or null to disable interning.
+	 */
+	@Override
+	public void setSymbolTable(SymbolTable symbolTable){
+		this.symbolTable = symbolTable;
+		if(symbolTable != null)
+			symbolTable.intern(this.nextSentence);
+	}
+
 	public static void main(String[] args){
 		try {
 			RaspGraphReader rgr = new RaspGraphReader("examples/rasp/file1.rasp", true);
@@ -0,0 +1,229 @@
+package sem.graphreader;
+
+import java.util.LinkedHashMap;
+
+/**
+ * A parsed RASP token label, in the format lemma+suffix:index_POS.
+ * For example: algorithm+s:6_NN2, algorithm:6_NN2, algorithm
+ *
+ * <p>The object can be reused: parse() only stores the positions of the fields in the label,
+ * and the strings are created when they are requested. The label can also be a part of a longer CharSequence, such as a whole GR line.
+ * The result is the same as matching the label with ^([^\+:_]+)(\+([a-zA-Z]*))?(:([0-9]+))?(_([a-zA-Z0-9]+))?$
+ * and, if it does not match, using the whole label as the lemma.
+ *
+ */
+public class RaspLabel {
+	private CharSequence label;
+	private int labelStart, labelEnd;
+	private int lemmaEnd;
+	private int suffixStart, suffixEnd;
+	private int indexStart, indexEnd;
+	private int posStart, posEnd;
+	private int index;
+
+	public RaspLabel(){
+		this.label = null;
+	}
+
+	private static boolean isLetter(char c){
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+	}
+
+	private static boolean isDigit(char c){
+		return c >= '0' && c <= '9';
+	}
+
+	/**
+	 * Parse a label.
+	 * @param label	The label.
+	 * @return	True if the label has the structured format, false if the whole label is taken as the lemma.
+	 */
+	public boolean parse(String label){
+		if(label == null)
+			throw new RuntimeException("Input label cannot be null");
+		return this.parse(label, 0, label.length());
+	}
+
+	/**
+	 * Parse a label that is part of a longer sequence of characters.
+	 * @param text	Text containing the label.
+	 * @param start	Start of the label.
+	 * @param end	End of the label (exclusive).
+	 * @return	True if the label has the structured format, false if the whole label is taken as the lemma.
+	 */
+	public boolean parse(CharSequence text, int start, int end){
+		if(text == null)
+			throw new RuntimeException("Input label cannot be null");
+		this.label = text;
+		this.labelStart = start;
+		this.labelEnd = end;
+		this.suffixStart = this.suffixEnd = -1;
+		this.indexStart = this.indexEnd = -1;
+		this.posStart = this.posEnd = -1;
+		this.index = -1;
+
+		int i = start;
+		char c;
+
+		// Lemma, at least one character
+		while(i < end && (c = text.charAt(i)) != '+' && c != ':' && c != '_')
+			i++;
+		this.lemmaEnd = i;
+		if(i == start)
+			return this.noMatch();
+
+		// Suffix, can be empty
+		if(i < end && text.charAt(i) == '+'){
+			this.suffixStart = ++i;
+			while(i < end && isLetter(text.charAt(i)))
+				i++;
+			this.suffixEnd = i;
+		}
+
+		// Index, at least one digit
+		if(i < end && text.charAt(i) == ':'){
+			this.indexStart = ++i;
+			int value = 0;
+			boolean overflow = false;
+			while(i < end && isDigit(c = text.charAt(i))){
+				if(value > (Integer.MAX_VALUE - (c - '0')) / 10)
+					overflow = true;
+				else
+					value = value * 10 + (c - '0');
+				i++;
+			}
+			this.indexEnd = i;
+			if(this.indexEnd == this.indexStart)
+				return this.noMatch();
+			this.index = overflow ? -1 : value;
+		}
+
+		// POS, at least one letter or digit
+		if(i < end && text.charAt(i) == '_'){
+			this.posStart = ++i;
+			while(i < end && (isLetter(c = text.charAt(i)) || isDigit(c)))
+				i++;
+			this.posEnd = i;
+			if(this.posEnd == this.posStart)
+				return this.noMatch();
+		}
+
+		if(i != end)
+			return this.noMatch();
+		return true;
+	}
+
+	/**
+	 * The label does not have the structured format, so the whole label is the lemma.
+	 * @return	false
+	 */
+	private boolean noMatch(){
+		this.lemmaEnd = this.labelEnd;
+		this.suffixStart = this.suffixEnd = -1;
+		this.indexStart = this.indexEnd = -1;
+		this.posStart = this.posEnd = -1;
+		this.index = -1;
+		return false;
+	}
+
+	private String substring(int start, int end){
+		if(start == 0 && end == this.label.length() && this.label instanceof String)
+			return (String)this.label;
+		return this.label.subSequence(start, end).toString();
+	}
+
+	public String getLemma(){
+		return this.substring(this.labelStart, this.lemmaEnd);
+	}
+
+	/**
+	 * Check whether the lemma is equal to a string, without creating a new string.
+	 * @param lemma	The string to compare to.
+	 * @return	True if the lemma is equal to the string.
+	 */
+	public boolean lemmaEquals(String lemma){
+		if(lemma.length() != this.lemmaEnd - this.labelStart)
+			return false;
+		for(int i = 0; i < lemma.length(); i++)
+			if(lemma.charAt(i) != this.label.charAt(this.labelStart + i))
+				return false;
+		return true;
+	}
+
+	/**
+	 * Check whether the POS is equal to a string, without creating a new string.
+	 * @param pos	The string to compare to, or null.
+	 * @return	True if the POS is equal to the string, or if both are null.
+	 */
+	public boolean posEquals(String pos){
+		if(this.posStart < 0 || pos == null)
+			return this.posStart < 0 && pos == null;
+		if(pos.length() != this.posEnd - this.posStart)
+			return false;
+		for(int i = 0; i < pos.length(); i++)
+			if(pos.charAt(i) != this.label.charAt(this.posStart + i))
+				return false;
+		return true;
+	}
+
+	/**
+	 * @return	The suffix, which can be an empty string, or null if the label has no suffix.
+	 */
+	public String getSuffix(){
+		if(this.suffixStart < 0)
+			return null;
+		return this.substring(this.suffixStart, this.suffixEnd);
+	}
+
+	/**
+	 * @return	True if the label has an index.
+	 */
+	public boolean hasIndex(){
+		return this.indexStart >= 0;
+	}
+
+	/**
+	 * @return	The index as a string, or null if the label has no index.
+	 */
+	public String getIndexString(){
+		if(this.indexStart < 0)
+			return null;
+		return this.substring(this.indexStart, this.indexEnd);
+	}
+
+	/**
+	 * @return	The index, or -1 if the label has no index or it does not fit into an int.
+	 */
+	public int getIndex(){
+		return this.index;
+	}
+
+	/**
+	 * @return	The POS, or null if the label has no POS.
+	 */
+	public String getPos(){
+		if(this.posStart < 0)
+			return null;
+		return this.substring(this.posStart, this.posEnd);
+	}
+
+	/**
+	 * Get the fields in the same form as RaspGraphReader.parseLabel().
+	 * @return	LinkedHashMap with four fields: lemma, suffix, index, pos
+	 */
+	public LinkedHashMap<String,String> toMap(){
+		LinkedHashMap<String,String> fields = new LinkedHashMap<String,String>();
+		fields.put("lemma", this.getLemma());
+		fields.put("suffix", this.getSuffix());
+		fields.put("index", this.getIndexString());
+		fields.put("pos", this.getPos());
+		return fields;
+	}
+
+	@Override
+	public String toString(){
+		if(this.label == null)
+			return null;
+		return this.substring(this.labelStart, this.labelEnd);
+	}
+}
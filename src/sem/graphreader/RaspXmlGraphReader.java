@@ -1,15 +1,17 @@
 package sem.graphreader;
 
-
+import java.io.File;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.LinkedHashMap;
-import java.util.Map.Entry;
+import java.util.Arrays;
+import java.util.List;
 
 import sem.exception.GraphFormatException;
 import sem.graph.Edge;
 import sem.graph.Graph;
+import sem.graph.NBestGraph;
+import sem.graph.NBestSentence;
 import sem.graph.Node;
+import sem.graph.SymbolTable;
 import sem.util.Tools;
 import sem.util.XmlReader;
 
@@ -41,18 +43,55 @@ import sem.util.XmlReader;
  * </ul>
  * If the multiple tags option is not activated in RASP, both of these modes should give the same output.
  */
-public class RaspXmlGraphReader implements GraphReader{
+public class RaspXmlGraphReader extends AbstractGraphReader{
 	private boolean getAllParses;
 	private boolean getMetaData;
+	private boolean sharedParses;
 	private XmlReader xmlReader;
+	private int nextSentenceFileIndex;
+	private long nextSentenceOffset;
 	private ArrayList<Graph> nextSentence;
 	private int nextGraphPointer;
 	private int sentenceCount;
 	private String ellipLemma = "ellip";
-	private ArrayList<String> domPath;
 	private int nodeSelectionMode;
 	private String part;
 	
+	// The position in the XML tree, kept between sentences
+	private boolean inLemmaList;
+	private boolean inGrList;
+	private boolean inWeighted;
+	
+	// The lemmas of the current sentence, indexed by lemma number
+	private Node[] lemmaNodes;
+	private int[] lemmaWordIds;
+	// The lemma numbers in the order they were read, and the position of each lemma in this order
+	private int[] lemmaIds;
+	private int[] lemmaPositions;
+	private int lemmaCount;
+	// The clones of the lemmas in the graph that is being created, indexed by lemma number
+	private Node[] lemmaClones;
+	// The node indices of the lemmas in the shared parse that is being created, indexed by lemma number (see createParse())
+	private int[] lemmaGraphIds;
+	// The lemma numbers of the heads and dependents of the GRs in the current gr-list, -1 for nodes that are not lemmas
+	private int[] grHeadIds;
+	private int[] grDepIds;
+	// The lemma numbers grouped by word (see groupTokens())
+	private int[] tokenLemmaIds;
+	private long[] tokenKeys;
+	private boolean tokensGrouped;
+	
+	private static final int ELEMENT_OTHER = 0;
+	private static final int ELEMENT_SENTENCE = 1;
+	private static final int ELEMENT_LEMMA_LIST = 2;
+	private static final int ELEMENT_LEMMA = 3;
+	private static final int ELEMENT_GR_LIST = 4;
+	private static final int ELEMENT_GR = 5;
+	private static final int ELEMENT_WEIGHTED = 6;
+	private static final int ELEMENT_GR_WEIGHT = 7;
+	private static final int ELEMENT_PART = 8;
+	private static final int ELEMENT_XPARSE = 9;
+	
 	/**
 	 * The nodes list will contain all the lemmas given by RASP, including the cases where two lemmas correspond to the same token.
 	 */
@@ -72,147 +111,353 @@ public class RaspXmlGraphReader implements GraphReader{
 	 * @throws GraphFormatException 
 	 */
 	public RaspXmlGraphReader(String inputPath, int nodeSelectionMode, boolean getAllParses, boolean getMetaData) throws GraphFormatException{
+		this(inputPath, nodeSelectionMode, getAllParses, getMetaData, false);
+	}
+	
+	/**
+	 * Create a new reader for RASP XML.
+	 * With sharedParses, each sentence is returned as an NBestSentence, where the parses share the lemmas of the sentence
+	 * and only create their own nodes and edges when they are accessed. The graphs are the same as without sharedParses.
+	 * @param inputPath		Path to the file or directory.
+	 * @param nodeSelectionMode		Set the way that nodes are added to the list of nodes in the graph. NODES_ALL includes all lemmas that RASP outputs. NODES_TOKENS includes one lemma for each token in the sentence.
+	 * @param getAllParses	Whether to include alternative parses for each sentence (if available).
+	 * @param getMetaData	Whether to read metadata (sentence id and weighted grs).
+	 * @param sharedParses	Whether to store the parses of a sentence with shared nodes.
+	 * @throws GraphFormatException 
+	 */
+	public RaspXmlGraphReader(String inputPath, int nodeSelectionMode, boolean getAllParses, boolean getMetaData, boolean sharedParses) throws GraphFormatException{
+		this.inputPath = inputPath;
 		this.getAllParses = getAllParses;
 		this.getMetaData = getMetaData;
+		this.sharedParses = sharedParses;
 		this.nextSentence = null;
 		this.nextGraphPointer = 0;
 		this.xmlReader = new XmlReader(inputPath);
-		this.domPath = new ArrayList<String>();
+		this.xmlReader.setTrackedElement("sentence");
 		this.nodeSelectionMode = nodeSelectionMode;
+		this.lemmaNodes = new Node[64];
+		this.lemmaWordIds = new int[64];
+		this.lemmaIds = new int[64];
+		this.lemmaPositions = new int[64];
+		this.lemmaCount = 0;
+		this.lemmaClones = new Node[64];
+		this.lemmaGraphIds = new int[64];
+		Arrays.fill(this.lemmaGraphIds, -1);
+		this.grHeadIds = new int[64];
+		this.grDepIds = new int[64];
+		this.tokenLemmaIds = new int[64];
+		this.tokenKeys = new long[64];
+		this.tokensGrouped = false;
 		this.part = null;
 		this.reset();
 	}
 	
+	/**
+	 * Group the lemmas of the current sentence by token: tokenLemmaIds lists the lemma numbers ordered by word number,
+	 * and in the order they were read within each word. This is done once for each sentence and shared by all its parses.
+	 */
+	private void groupTokens(){
+		if(this.tokenKeys.length < this.lemmaCount){
+			this.tokenKeys = new long[this.lemmaIds.length];
+			this.tokenLemmaIds = new int[this.lemmaIds.length];
+		}
+		boolean sorted = true;
+		for(int i = 0; i < this.lemmaCount; i++){
+			this.tokenKeys[i] = ((long)this.lemmaWordIds[this.lemmaIds[i]] << 32) | i;
+			if(i > 0 && this.tokenKeys[i] < this.tokenKeys[i-1])
+				sorted = false;
+		}
+		// RASP lists the lemmas in word order, so sorting is rarely needed.
+		if(!sorted)
+			Arrays.sort(this.tokenKeys, 0, this.lemmaCount);
+		for(int i = 0; i < this.lemmaCount; i++)
+			this.tokenLemmaIds[i] = this.lemmaIds[(int)this.tokenKeys[i]];
+		this.tokensGrouped = true;
+	}
+	
+	/**
+	 * Get the node of a graph that corresponds to a node in the GRs.
+	 * Lemma nodes are cloned once for each graph, other nodes (ellip and nil) every time, and added to otherNodes.
+	 * @param lemmaId		Lemma number of the node, or -1 if it is not a lemma.
+	 * @param node			The node in the GRs.
+	 * @param otherNodes	List of the nodes that are not lemmas.
+	 * @return	The node for the graph.
+	 */
+	private Node getGraphNode(int lemmaId, Node node, ArrayList<Node> otherNodes){
+		if(lemmaId < 0){
+			Node clone = node.clone();
+			otherNodes.add(clone);
+			return clone;
+		}
+		if(this.lemmaClones[lemmaId] == null)
+			this.lemmaClones[lemmaId] = node.clone();
+		return this.lemmaClones[lemmaId];
+	}
+	
+	/**
+	 * Create the graph of one parse from its GRs.
+	 * Making clones of all the nodes so that the graphs can be operated on independently.
+	 * @param grs	The GRs of the parse, with the lemma numbers of their nodes in grHeadIds and grDepIds.
+	 * @return	The graph.
+	 */
+	private Graph createGraph(ArrayList<Edge> grs){
+		Graph graph = new Graph();
+		ArrayList<Node> otherNodes = new ArrayList<Node>();
+		for(int i = 0; i < grs.size(); i++){
+			Edge gr = grs.get(i);
+			Node head = this.getGraphNode(this.grHeadIds[i], gr.getHead(), otherNodes);
+			Node dep = this.getGraphNode(this.grDepIds[i], gr.getDep(), otherNodes);
+			graph.addEdge(gr.getLabel(), head, dep);
+		}
+		this.selectNodes(this.nodeSelectionMode, graph.getNodes());
+		graph.getNodes().addAll(otherNodes);
+		for(int i = 0; i < this.lemmaCount; i++)
+			this.lemmaClones[this.lemmaIds[i]] = null;
+		return graph;
+	}
+	
+	/**
+	 * Create one parse of a shared sentence from its GRs. The result is the same as createGraph(), but the lemmas are stored once in the sentence,
+	 * and the parse only refers to them by index. Ellip and nil nodes belong to the parse.
+	 * The GR types are replaced with their canonical instances, as they are kept for every parse.
+	 * @param sentence	The sentence, where the parse is added.
+	 * @param grs	The GRs of the parse, with the lemma numbers of their nodes in grHeadIds and grDepIds.
+	 */
+	private void createParse(NBestSentence sentence, ArrayList<Edge> grs){
+		for(int i = sentence.getNodeCount(); i < this.lemmaCount; i++){
+			Node node = this.lemmaNodes[this.lemmaIds[i]];
+			sentence.addNode(node.getLemma(), node.getPos());
+		}
+		NBestGraph parse = sentence.addParse(this.lemmaCount + 2, grs.size());
+		
+		if(this.nodeSelectionMode == RaspXmlGraphReader.NODES_ALL){
+			for(int i = 0; i < this.lemmaCount; i++)
+				this.lemmaGraphIds[this.lemmaIds[i]] = parse.addSharedNode(i);
+		}
+		else if(this.nodeSelectionMode == RaspXmlGraphReader.NODES_TOKENS){
+			if(!this.tokensGrouped)
+				this.groupTokens();
+			// Marking the lemmas that are used in the GRs
+			for(int i = 0; i < grs.size(); i++){
+				if(this.grHeadIds[i] >= 0)
+					this.lemmaGraphIds[this.grHeadIds[i]] = -2;
+				if(this.grDepIds[i] >= 0)
+					this.lemmaGraphIds[this.grDepIds[i]] = -2;
+			}
+			int start = 0;
+			while(start < this.lemmaCount){
+				int wordId = this.lemmaWordIds[this.tokenLemmaIds[start]];
+				int chosenId = -1;
+				int end = start;
+				for(; end < this.lemmaCount && this.lemmaWordIds[this.tokenLemmaIds[end]] == wordId; end++){
+					if(this.lemmaGraphIds[this.tokenLemmaIds[end]] == -2){
+						if(chosenId < 0)
+							chosenId = this.tokenLemmaIds[end];
+						else
+							throw new RuntimeException("GRs are pointing to multiple lemmas of the same word.");
+					}
+				}
+				if(chosenId < 0)
+					chosenId = this.tokenLemmaIds[start];
+				this.lemmaGraphIds[chosenId] = parse.addSharedNode(this.lemmaPositions[chosenId]);
+				start = end;
+			}
+		}
+		
+		for(int i = 0; i < grs.size(); i++){
+			Edge gr = grs.get(i);
+			int head = (this.grHeadIds[i] >= 0) ? this.lemmaGraphIds[this.grHeadIds[i]] : parse.addOwnNode(gr.getHead().getLemma(), gr.getHead().getPos());
+			int dep = (this.grDepIds[i] >= 0) ? this.lemmaGraphIds[this.grDepIds[i]] : parse.addOwnNode(gr.getDep().getLemma(), gr.getDep().getPos());
+			parse.addEdge(GrTokenizer.getKnownType(gr.getLabel()), head, dep);
+		}
+		for(int i = 0; i < this.lemmaCount; i++)
+			this.lemmaGraphIds[this.lemmaIds[i]] = -1;
+	}
+	
 	/**
 	 * Select the list of nodes to be added to the graph, based on the specified node selection mode.
 	 * We want every word to have a lemma represented in the graph. 
-	 * Also have to remember that we want to add clones of the lemma nodes, so that different Graph object do not share the same Node objects. This allows for independent editing of the graphs.
+	 * The lemmas of the sentence are taken from lemmaNodes, and the clones that are used in the edges of the graph from lemmaClones.
+	 * This takes linear time in the number of lemmas.
 	 * @param nodeSelectionMode
-	 * @param lemmas	
-	 * @param wordIds
-	 * @param nodeMap
-	 * @return
+	 * @param selectedNodes	List where the selected nodes are added.
 	 */
-	private ArrayList<Node> selectNodes(int nodeSelectionMode, LinkedHashMap<Integer,Node> lemmas, LinkedHashMap<Node,Integer> wordIds, LinkedHashMap<Node, Node> nodeMap){
-		ArrayList<Node> selectedNodes = new ArrayList<Node>();
-		
+	private void selectNodes(int nodeSelectionMode, List<Node> selectedNodes){
 		if(nodeSelectionMode == RaspXmlGraphReader.NODES_ALL){
-			for(Node lemma : lemmas.values()){
-				if(nodeMap != null && nodeMap.containsKey(lemma))
-					selectedNodes.add(nodeMap.get(lemma));
+			for(int i = 0; i < this.lemmaCount; i++){
+				int lemmaId = this.lemmaIds[i];
+				if(this.lemmaClones[lemmaId] != null)
+					selectedNodes.add(this.lemmaClones[lemmaId]);
 				else
-					selectedNodes.add(lemma.clone());
+					selectedNodes.add(this.lemmaNodes[lemmaId].clone());
 			}
 		}
 		else if(nodeSelectionMode == RaspXmlGraphReader.NODES_TOKENS){
-			LinkedHashMap<Integer,ArrayList<Node>> wordMap = new LinkedHashMap<Integer,ArrayList<Node>>();
-			int maxWordNum = -1;
-			for(Entry<Node,Integer> e : wordIds.entrySet()){
-				if(!wordMap.containsKey(e.getValue()))
-					wordMap.put(e.getValue(), new ArrayList<Node>());
-				wordMap.get(e.getValue()).add(e.getKey());
-				if(e.getValue() > maxWordNum)
-					maxWordNum = e.getValue();
-			}
-			
-			for(int i = 0; i <= maxWordNum; i++){
-				if(!wordMap.containsKey(i))
-					continue;
+			if(!this.tokensGrouped)
+				this.groupTokens();
+			int start = 0;
+			while(start < this.lemmaCount){
+				int wordId = this.lemmaWordIds[this.tokenLemmaIds[start]];
 				Node chosenNode = null;
-				for(Node node : wordMap.get(i)){
-					if(nodeMap != null && nodeMap.containsKey(node)){
+				int end = start;
+				for(; end < this.lemmaCount && this.lemmaWordIds[this.tokenLemmaIds[end]] == wordId; end++){
+					Node clone = this.lemmaClones[this.tokenLemmaIds[end]];
+					if(clone != null){
 						if(chosenNode == null)
-							chosenNode = nodeMap.get(node);
+							chosenNode = clone;
 						else
 							throw new RuntimeException("GRs are pointing to multiple lemmas of the same word.");
 					}
 				}
 				if(chosenNode == null)
-					chosenNode = wordMap.get(i).get(0);
+					chosenNode = this.lemmaNodes[this.tokenLemmaIds[start]];
 				selectedNodes.add(chosenNode);
+				start = end;
 			}
 		}
-		// Now we add all nodes that are in the graph but were not in the list of lemmas (ellip and nil).
-		if(nodeMap != null){
-			for(Node node : nodeMap.values()){
-				if(!selectedNodes.contains(node))
-					selectedNodes.add(node);
-			}
+	}
+	
+	/**
+	 * Add the graph of one parse to the sentence.
+	 */
+	private void addGraph(ArrayList<Graph> graphs, ArrayList<Edge> grs){
+		if(graphs instanceof NBestSentence)
+			this.createParse((NBestSentence)graphs, grs);
+		else
+			graphs.add(this.createGraph(grs));
+	}
+	
+	/**
+	 * Get the code of an element, so that the elements can be handled with a switch.
+	 * Both "weighted" and "ewg-weighted" contain weighted GRs.
+	 */
+	private static int getElementCode(String tag){
+		switch(tag){
+		case "sentence":
+			return ELEMENT_SENTENCE;
+		case "lemma-list":
+			return ELEMENT_LEMMA_LIST;
+		case "lemma":
+			return ELEMENT_LEMMA;
+		case "gr-list":
+			return ELEMENT_GR_LIST;
+		case "gr":
+			return ELEMENT_GR;
+		case "weighted":
+		case "ewg-weighted":
+			return ELEMENT_WEIGHTED;
+		case "gr-weight":
+			return ELEMENT_GR_WEIGHT;
+		case "part":
+			return ELEMENT_PART;
+		case "xparse":
+			return ELEMENT_XPARSE;
+		default:
+			return ELEMENT_OTHER;
 		}
-		return selectedNodes;
 	}
-	/*
-	private ArrayList<Node> selectNodes(LinkedHashMap<Integer,Node> lemmas, HashMap<Node,Integer> wordIds, HashMap<Node, Node> nodeMap){
-		ArrayList<Node> selectedNodes = new ArrayList<Node>();
-		
-		int first, index = 0;
-		boolean foundMatch;
-		while(index < lemmas.size()){
-			first = index;
-			foundMatch = false;
-			do{
-				if(nodeMap != null && nodeMap.containsKey(lemmas.get(index))){
-					if(foundMatch == false){
-						foundMatch = true;
-						selectedNodes.add(nodeMap.get(lemmas.get(index)));
-					}
-					else 
-						throw new RuntimeException("GRs are pointing to multiple lemmas of the same word.");
-				}
-				index++;
-			} while(index < lemmas.size() && wordIds.get(lemmas.get(first)).equals(wordIds.get(lemmas.get(index))));
-
-			if(!foundMatch){
-				selectedNodes.add(lemmas.get(first).clone());
-			}
+	
+	/**
+	 * Remove the lemmas of the previous sentence.
+	 */
+	private void clearLemmas(){
+		for(int i = 0; i < this.lemmaCount; i++)
+			this.lemmaNodes[this.lemmaIds[i]] = null;
+		this.lemmaCount = 0;
+		this.tokensGrouped = false;
+	}
+	
+	/**
+	 * Add a lemma of the current sentence.
+	 */
+	private void addLemma(int lemmaId, int wordId, Node node){
+		if(lemmaId >= this.lemmaNodes.length){
+			int length = Math.max(lemmaId + 1, this.lemmaNodes.length * 2);
+			this.lemmaNodes = Arrays.copyOf(this.lemmaNodes, length);
+			this.lemmaWordIds = Arrays.copyOf(this.lemmaWordIds, length);
+			this.lemmaClones = Arrays.copyOf(this.lemmaClones, length);
+			this.lemmaPositions = Arrays.copyOf(this.lemmaPositions, length);
+			int oldLength = this.lemmaGraphIds.length;
+			this.lemmaGraphIds = Arrays.copyOf(this.lemmaGraphIds, length);
+			Arrays.fill(this.lemmaGraphIds, oldLength, length, -1);
 		}
-
-		// Now we add all nodes that are in the graph but were not in the list of lemmas (ellip and nil).
-		if(nodeMap != null){
-			for(Node node : nodeMap.values()){
-				if(!selectedNodes.contains(node))
-					selectedNodes.add(node);
-			}
+		if(this.lemmaCount >= this.lemmaIds.length)
+			this.lemmaIds = Arrays.copyOf(this.lemmaIds, this.lemmaIds.length * 2);
+		this.lemmaNodes[lemmaId] = node;
+		this.lemmaWordIds[lemmaId] = wordId;
+		this.lemmaPositions[lemmaId] = this.lemmaCount;
+		this.lemmaIds[this.lemmaCount++] = lemmaId;
+		this.tokensGrouped = false;
+	}
+	
+	/**
+	 * Add a GR to the current gr-list.
+	 */
+	private void addGr(ArrayList<Edge> grs, Edge gr, int headId, int depId){
+		int i = grs.size();
+		if(i >= this.grHeadIds.length){
+			this.grHeadIds = Arrays.copyOf(this.grHeadIds, i * 2);
+			this.grDepIds = Arrays.copyOf(this.grDepIds, i * 2);
 		}
-		
-		return selectedNodes;
+		this.grHeadIds[i] = headId;
+		this.grDepIds[i] = depId;
+		grs.add(gr);
+	}
+	
+	/**
+	 * Get a lemma of the current sentence.
+	 * @return	The lemma node, or null if there is no lemma with this number.
+	 */
+	private Node getLemma(int lemmaId){
+		if(lemmaId < 0 || lemmaId >= this.lemmaNodes.length)
+			return null;
+		return this.lemmaNodes[lemmaId];
 	}
-	*/
+	
 	/**
 	 * Read the next sentence of graphs from the corpus.
 	 * If the sentence contains no valid graphs, return a list with one graph containing no edges.
 	 * If there are no more sentences, return null.
+	 * 
+	 * <p>The XML events are handled as a state machine: the elements are identified by their codes,
+	 * and the position in the tree is kept in the flags inLemmaList, inGrList and inWeighted.
 	 * @return	The list of graphs corresponding to the next sentence.
 	 * @throws GraphFormatException 
 	 */
 	private ArrayList<Graph> readSentence() throws GraphFormatException{
 		ArrayList<Graph> graphs = null;
-		
-		
-		LinkedHashMap<Integer,Node> lemmas = new LinkedHashMap<Integer,Node>();
-		LinkedHashMap<Node,Integer> wordIds = new LinkedHashMap<Node,Integer>();
 		ArrayList<Edge> tempEdges = new ArrayList<Edge>();
 		
 		int lemmaId, wordId, grHeadId, grDepId;
-		String tag, lemma, pos, lemmaNum, wordNum, grType, grHead, grDep, grWeight, grWeightsPart = "", grWeights = "";
+		String lemma, pos, lemmaNum, wordNum, grType, grHead, grDep, grWeight, grWeightsPart = "", grWeights = "";
 		Node headNode, depNode;
 		boolean xparse = false;
 		
+		this.clearLemmas();
+		this.nextSentenceFileIndex = -1;
+		this.nextSentenceOffset = -1;
 		while (xmlReader.hasNext()) {
 			xmlReader.next();
 			
 			if(xmlReader.isStartElement()){
-				tag = xmlReader.getLocalName();
-				domPath.add(tag);
-				
-				if(tag.equals("sentence")){
-					graphs = new ArrayList<Graph>();
+				switch(getElementCode(xmlReader.getLocalName())){
+				case ELEMENT_SENTENCE:
+					this.nextSentenceFileIndex = xmlReader.getCurrentFileIndex();
+					this.nextSentenceOffset = xmlReader.nextElementOffset();
+					graphs = this.sharedParses ? new NBestSentence() : new ArrayList<Graph>();
 					sentenceCount++;
 					grWeightsPart = "";
 					grWeights = "";
-				}
+					this.clearLemmas();
+					break;
+				
+				case ELEMENT_LEMMA_LIST:
+					this.inLemmaList = true;
+					break;
 				
-				else if(tag.equals("lemma") && domPath.contains("lemma-list")){
+				case ELEMENT_LEMMA:
+					if(!this.inLemmaList)
+						break;
 					lemma = xmlReader.getAttributeValue(null, "lem");
 					pos = xmlReader.getAttributeValue(null, "pos");
 					lemmaNum = xmlReader.getAttributeValue(null, "num");
@@ -229,18 +474,21 @@ public class RaspXmlGraphReader implements GraphReader{
 					if(wordId < 0)
 						throw new GraphFormatException("Forbidden value for word number. ", wordNum);
 					
-					if(lemmas.containsKey(lemmaId))
+					if(this.getLemma(lemmaId) != null)
 						throw new GraphFormatException("Duplicate index values for lemmas.", "" + lemma + ":" + lemmaNum + "_" + pos);
-					Node node = new Node(lemma, pos);
-					lemmas.put(new Integer(lemmaId), node);
-					wordIds.put(node, new Integer(wordId));
-				}
+					this.addLemma(lemmaId, wordId, new Node(lemma, pos));
+					break;
 				
-				else if(tag.equals("gr-list")){
+				case ELEMENT_GR_LIST:
+					this.inGrList = true;
 					tempEdges.clear();
-				}
+					break;
+				
+				case ELEMENT_WEIGHTED:
+					this.inWeighted = true;
+					break;
 				
-				else if(tag.equals("gr")){
+				case ELEMENT_GR:
 					grType = xmlReader.getAttributeValue(null, "type");
 					grHead = xmlReader.getAttributeValue(null, "head");
 					grDep = xmlReader.getAttributeValue(null, "dep");
@@ -254,15 +502,13 @@ public class RaspXmlGraphReader implements GraphReader{
 					}
 					else if(grHeadId < 0){
 						if(grHead.equals(";")) //This is a known RASP output bug. Skipping this gr.
-							continue;
+							break;
 						else
 							throw new GraphFormatException("Forbidden value for head in GR.", grHead);
 					}
-					else if(!lemmas.containsKey(grHeadId)){
+					else if((headNode = this.getLemma(grHeadId)) == null){
 						throw new GraphFormatException("GR head id is not present in the lemmas.", "" + grHeadId);
 					}
-					else
-						headNode = lemmas.get(grHeadId);
 					
 					// Resolving the dep node
 					depNode = null;
@@ -272,71 +518,65 @@ public class RaspXmlGraphReader implements GraphReader{
 					else if(grDepId < 0){
 						// These are needed exceptions. They are bugs in RASP output. These GRs will be skipped.
 						if(grDep.equals("to") || grDep.equals("0")) 
-							continue;
+							break;
 						else
 							throw new GraphFormatException("Forbidden value for dep in GR.", grDep);
 					}
-					else if(!lemmas.containsKey(grDepId)){
+					else if((depNode = this.getLemma(grDepId)) == null){
 						throw new GraphFormatException("GR dep id is not present in the lemmas.", "" + grDepId);
 					}
-					else
-						depNode = lemmas.get(grDepId);
-					
-					if(headNode == null || depNode == null)
-						throw new GraphFormatException("Head or dep is null in readSentence()");
 					
-					if(domPath.contains("gr-list")){
-						tempEdges.add(new Edge(grType, headNode, depNode));
+					if(this.inGrList){
+						this.addGr(tempEdges, new Edge(grType, headNode, depNode), (grHeadId >= 0) ? grHeadId : -1, (grDep != null) ? grDepId : -1);
 					}
-					else if(domPath.contains("weighted") || domPath.contains("ewg-weighted")){
+					else if(this.inWeighted && this.getMetaData){
 						grWeightsPart = grType + "\t" + headNode.getLabel() + "\t" + depNode.getLabel();
 					}
-				}
+					break;
 				
-				else if(tag.equals("gr-weight") && (domPath.contains("weighted") || domPath.contains("ewg-weighted"))){
-					if(grWeightsPart.length() > 0){
+				case ELEMENT_GR_WEIGHT:
+					if(this.inWeighted && grWeightsPart.length() > 0){
 						grWeight = xmlReader.getAttributeValue(null, "weight");
 						grWeights += grWeightsPart + "\t" + grWeight + "\n";
 						grWeightsPart = "";
 					}
-				}
-				else if(tag.equals("part")){
+					break;
+				
+				case ELEMENT_PART:
 					part = xmlReader.getAttributeValue(null, "n");
-				}
+					break;
 				
-				else if(tag.equals("xparse"))
+				case ELEMENT_XPARSE:
 					xparse = true;
-				
+					break;
+				}
 			}
 			else if(xmlReader.isEndElement()){
-				tag = xmlReader.getLocalName();
-				domPath.remove(domPath.size()-1);
-				
-				if(tag.equals("gr-list") || tag.equals("xparse")){
-					Graph graph = new Graph();
-					graphs.add(graph);
-					// Adding edges to the graph
-					// Making clones of all the nodes so that they can be operated on independently.
-					LinkedHashMap<Node, Node> nodeMap = new LinkedHashMap<Node, Node>();
-					for(Edge edge : tempEdges){
-						if(!nodeMap.containsKey(edge.getHead()))
-							nodeMap.put(edge.getHead(), edge.getHead().clone());
-						if(!nodeMap.containsKey(edge.getDep()))
-							nodeMap.put(edge.getDep(), edge.getDep().clone());
-						graph.addEdge(edge.getLabel(), nodeMap.get(edge.getHead()), nodeMap.get(edge.getDep()));
-					}
-					
-					graph.getNodes().addAll(selectNodes(this.nodeSelectionMode, lemmas, wordIds, nodeMap));
+				int element = getElementCode(xmlReader.getLocalName());
+				if(element == ELEMENT_LEMMA_LIST)
+					this.inLemmaList = false;
+				else if(element == ELEMENT_WEIGHTED)
+					this.inWeighted = false;
+				else if(element == ELEMENT_GR_LIST || element == ELEMENT_XPARSE){
+					if(element == ELEMENT_GR_LIST)
+						this.inGrList = false;
+					this.addGraph(graphs, tempEdges);
 					tempEdges.clear();
 				}
-				
-				else if(tag.equals("sentence")){
+				else if(element == ELEMENT_SENTENCE){
 					break;
 				}
 			}
 		}
 		
-		if(this.getMetaData && graphs != null){
+		if(this.getMetaData && graphs instanceof NBestSentence && graphs.size() > 0){
+			NBestSentence sentence = (NBestSentence)graphs;
+			sentence.putMetadata("sentenceId", ""+sentenceCount);
+			sentence.putMetadata("weightedGrs", grWeights.trim());
+			sentence.putMetadata("xparse", xparse?"true":"false");
+			sentence.putMetadata("part", part);
+		}
+		else if(this.getMetaData && graphs != null){
 			for(Graph g : graphs){
 				g.putMetadata("sentenceId", ""+sentenceCount);
 				g.putMetadata("weightedGrs", grWeights.trim());
@@ -346,12 +586,13 @@ public class RaspXmlGraphReader implements GraphReader{
 		}
 
 		if(graphs != null && graphs.size() == 0){
-			Graph graph = new Graph();
-			graphs.add(graph);
-
-			graph.getNodes().addAll(selectNodes(this.nodeSelectionMode, lemmas, wordIds, null));
+			tempEdges.clear();
+			this.addGraph(graphs, tempEdges);
 		}
 		
+		if(this.symbolTable != null)
+			this.symbolTable.intern(graphs);
+		
 		return graphs;
 	}
 
@@ -362,6 +603,7 @@ public class RaspXmlGraphReader implements GraphReader{
 	 */
 	@Override
 	public Graph next() throws GraphFormatException {
+		this.started = true;
 		Graph graph = null;
 		if(this.nextSentence != null){
 			graph = this.nextSentence.get(nextGraphPointer);
@@ -396,8 +638,11 @@ public class RaspXmlGraphReader implements GraphReader{
 		this.nextSentence = null;
 		this.nextGraphPointer = 0;
 		this.sentenceCount = 0;
-		this.domPath.clear();
+		this.inLemmaList = false;
+		this.inGrList = false;
+		this.inWeighted = false;
 		this.next();
+		this.started = false;
 	}
 	
 	/**
@@ -417,6 +662,7 @@ public class RaspXmlGraphReader implements GraphReader{
 	 * @throws GraphFormatException 
 	 */
 	public ArrayList<Graph> nextSentence() throws GraphFormatException{
+		this.started = true;
 		ArrayList<Graph> tempSentence;
 		if(getAllParses)
 			tempSentence = this.nextSentence;
@@ -427,4 +673,109 @@ public class RaspXmlGraphReader implements GraphReader{
 		this.nextSentence = readSentence();
 		return tempSentence;
 	}
+
+	/**
+	 * Get the list of input files, in the order they are read.
+	 * @return	List of files.
+	 */
+	@Override
+	public ArrayList<File> getInputFiles(){
+		return this.xmlReader.getInputFiles();
+	}
+	
+	/**
+	 * Get the index of the file containing the sentence that will be returned next.
+	 * @return	File index, or -1 if there are no more sentences.
+	 */
+	@Override
+	public int getNextSentenceFileIndex(){
+		return this.nextSentenceFileIndex;
+	}
+	
+	/**
+	 * Get the byte offset of the sentence that will be returned next.
+	 * @return	Byte offset in the (decompressed) file, or -1 if there are no more sentences.
+	 */
+	@Override
+	public long getNextSentenceOffset(){
+		return this.nextSentenceOffset;
+	}
+	
+	/**
+	 * Continue reading from the sentence at this position.
+	 * @param fileIndex	Index of the file, as returned by getNextSentenceFileIndex().
+	 * @param offset	Byte offset, as returned by getNextSentenceOffset().
+	 * @throws GraphFormatException 
+	 */
+	@Override
+	public void seek(int fileIndex, long offset) throws GraphFormatException{
+		this.seek(fileIndex, offset, 0);
+	}
+	
+	/**
+	 * Continue reading from the sentence with this number (counting from 0).
+	 * Uses the sentence index if it has been set, otherwise reads through the corpus from the beginning.
+	 * @param sentenceId	Sentence number.
+	 * @throws GraphFormatException 
+	 */
+	@Override
+	public void seek(long sentenceId) throws GraphFormatException{
+		// The sentence ids in the metadata continue from the right number
+		SentenceIndex sentenceIndex = this.getSentenceIndex();
+		if(sentenceIndex != null){
+			long indexed = sentenceIndex.getIndexedSentence(sentenceId);
+			this.seek(sentenceIndex.getFileIndex(indexed), sentenceIndex.getOffset(indexed), (int)indexed);
+			SentenceIndex.skip(this, indexed, sentenceId);
+		}
+		else
+			SentenceIndex.seek(this, sentenceId);
+	}
+	
+	/**
+	 * Continue reading from the sentence at this position.
+	 * @param fileIndex		Index of the file.
+	 * @param offset		Byte offset of the sentence element.
+	 * @param sentenceCount	Number of sentences before this one, used for the sentenceId metadata.
+	 * @throws GraphFormatException
+	 */
+	private void seek(int fileIndex, long offset, int sentenceCount) throws GraphFormatException{
+		this.xmlReader.seek(fileIndex, offset);
+		this.nextSentence = null;
+		this.nextGraphPointer = 0;
+		this.sentenceCount = sentenceCount;
+		this.inLemmaList = false;
+		this.inGrList = false;
+		this.inWeighted = false;
+		this.next();
+	}
+	
+	/**
+	 * Creates readers with the same configuration as this one, for reading single files of the input.
+	 * @return	Factory for new readers
+	 */
+	@Override
+	protected GraphReaderFactory getFactory(){
+		final int nodeSelectionMode = this.nodeSelectionMode;
+		final boolean getAllParses = this.getAllParses;
+		final boolean getMetaData = this.getMetaData;
+		final boolean sharedParses = this.sharedParses;
+		return new GraphReaderFactory(){
+			@Override
+			public GraphReader makeGraphReader(String path) throws GraphFormatException {
+				return new RaspXmlGraphReader(path, nodeSelectionMode, getAllParses, getMetaData, sharedParses);
+			}
+		};
+	}
+	
+	/**
+	 * Intern the lemmas, POS tags and edge labels of all graphs using the symbol table.
+	 * This also applies to the sentence that has already been read ahead.
+	 * @param symbolTable	Symbol table, or null to disable interning.
+	 */
+	@Override
+	public void setSymbolTable(SymbolTable symbolTable){
+		this.symbolTable = symbolTable;
+		if(symbolTable != null)
+			symbolTable.intern(this.nextSentence);
+	}
 }
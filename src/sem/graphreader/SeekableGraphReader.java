@@ -0,0 +1,58 @@
+package sem.graphreader;
+
+import java.io.File;
+import java.util.ArrayList;
+
+import sem.exception.GraphFormatException;
+
+/**
+ * A graph reader that can jump to a sentence, instead of reading the corpus from the beginning.
+ * Positions are given as the index of the input file and the byte offset of the sentence in that file.
+ * A SentenceIndex maps sentence numbers to these positions.
+ *
+ * <p>Random access is supported for uncompressed files and blocked gzip files (.bgz, written by FileWriter, ConvertGraphs or bgzip).
+ * They go to the offset directly; in .bgz files, only the block of at most 64KB that contains the offset is decompressed.
+ * Random access is not supported for other .gz files (including the example corpora) and .lz4 files: seeking works,
+ * but it decompresses the file from the beginning up to the offset, and streams do not split them by sentence.
+ * For random access to a large corpus, recompress it as .bgz, convert it to the uncompressed binary format (BinaryGraphReader),
+ * or use a snapshot (MappedGraphReader).
+ *
+ */
+public interface SeekableGraphReader extends GraphReader {
+	/**
+	 * Get the list of input files, in the order they are read.
+	 * @return	List of files.
+	 */
+	public ArrayList<File> getInputFiles();
+	
+	/**
+	 * Get the index of the file containing the sentence that will be returned next.
+	 * @return	File index, or -1 if there are no more sentences.
+	 */
+	public int getNextSentenceFileIndex();
+	
+	/**
+	 * Get the byte offset of the sentence that will be returned next.
+	 * @return	Byte offset in the (decompressed) file, or -1 if there are no more sentences.
+	 */
+	public long getNextSentenceOffset();
+	
+	/**
+	 * Continue reading from the sentence at this position.
+	 * @param fileIndex	Index of the file, as returned by getNextSentenceFileIndex().
+	 * @param offset	Byte offset, as returned by getNextSentenceOffset().
+	 * @throws GraphFormatException
+	 */
+	public void seek(int fileIndex, long offset) throws GraphFormatException;
+	
+	/**
+	 * Continue reading from the sentence with this number (counting from 0).
+	 * Uses the sentence index if it has been set, otherwise reads through the corpus from the beginning.
+	 * @param sentenceId	Sentence number.
+	 * @throws GraphFormatException
+	 */
+	public void seek(long sentenceId) throws GraphFormatException;
+	
+	public void setSentenceIndex(SentenceIndex sentenceIndex);
+	public SentenceIndex getSentenceIndex();
+}
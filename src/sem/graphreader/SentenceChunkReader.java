@@ -0,0 +1,114 @@
+package sem.graphreader;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import sem.exception.GraphFormatException;
+import sem.util.FileReader;
+
+/**
+ * Reads the input files of a line-based format as raw text, and splits the lines into chunks of whole sentences without parsing them.
+ *
+ * <p>Each chunk can be parsed on its own with makeGraphReader(), for example on a different thread.
+ * Parsing the chunks one after another gives the same sentences, in the same order, as reading the input with a normal GraphReader.
+ * In the TSV format, sentences end with a &lt;/s&gt; line. In the RASP, Parseval and C&amp;C formats, they end with an empty line
+ * (the files are read with "\n" added to the end, the same as in the readers).
+ *
+ * <p>The RASP XML, binary and snapshot formats cannot be split into lines, see isSupported().
+ *
+ */
+public class SentenceChunkReader {
+	private GraphReaderType type;
+	private FileReader reader;
+	private int chunkSentences;
+
+	/**
+	 * Start reading the input.
+	 * @param type				Format of the input, one that isSupported().
+	 * @param inputPath			Path to the file or directory.
+	 * @param chunkSentences	Number of sentences in one chunk. The last chunk can be smaller.
+	 */
+	public SentenceChunkReader(GraphReaderType type, String inputPath, int chunkSentences){
+		if(!isSupported(type))
+			throw new RuntimeException("Input type cannot be split into chunks: " + type.getLabel());
+		if(chunkSentences < 1)
+			throw new RuntimeException("Chunks need to contain at least 1 sentence.");
+		this.type = type;
+		this.chunkSentences = chunkSentences;
+		this.reader = new FileReader(inputPath, (type == GraphReaderType.TSV) ? null : "\n");
+	}
+
+	/**
+	 * Check whether the input of a type can be split into chunks.
+	 * @param type	Input type.
+	 * @return	True for the line-based formats.
+	 */
+	public static boolean isSupported(GraphReaderType type){
+		return type == GraphReaderType.TSV || type == GraphReaderType.RASP || type == GraphReaderType.PARSEVAL || type == GraphReaderType.CNC;
+	}
+
+	/**
+	 * Create a reader that parses the sentences in a chunk, with the same settings as GraphReaderType.makeGraphReader().
+	 * @param type	Input type.
+	 * @param chunk	Lines of the chunk.
+	 * @return	The new GraphReader.
+	 * @throws GraphFormatException
+	 */
+	public static GraphReader makeGraphReader(GraphReaderType type, List<String> chunk) throws GraphFormatException{
+		FileReader reader = new FileReader(chunk);
+		switch(type){
+		case RASP:
+			return new RaspGraphReader(reader, true);
+		case CNC:
+			return new CnCGraphReader(reader);
+		case PARSEVAL:
+			return new ParsevalGraphReader(reader, false, false);
+		case TSV:
+			return new TSVGraphReader(reader, true);
+		default:
+			throw new RuntimeException("Input type cannot be split into chunks: " + type.getLabel());
+		}
+	}
+
+	/**
+	 * Check whether a line is the last line of a sentence.
+	 */
+	private boolean endsSentence(String line){
+		if(this.type == GraphReaderType.TSV)
+			return line.trim().equals("</s>");
+		return line.trim().length() == 0;
+	}
+
+	/**
+	 * Check whether there are more lines left.
+	 * @return	True if there is another chunk.
+	 */
+	public boolean hasNext(){
+		return this.reader.hasNext();
+	}
+
+	/**
+	 * Read the next chunk. Empty lines between sentences are counted as sentences, so chunks can have fewer sentences than requested.
+	 * @return	Lines of the chunk, or null if the input has ended.
+	 */
+	public ArrayList<String> next(){
+		if(!this.reader.hasNext())
+			return null;
+		ArrayList<String> chunk = new ArrayList<String>();
+		int sentences = 0;
+		while(this.reader.hasNext()){
+			String line = this.reader.next();
+			chunk.add(line);
+			if(this.endsSentence(line) && ++sentences >= this.chunkSentences)
+				break;
+		}
+		return chunk;
+	}
+
+	/**
+	 * Close the input files.
+	 */
+	public void close(){
+		this.reader.close();
+	}
+}
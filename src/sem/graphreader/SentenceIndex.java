@@ -0,0 +1,402 @@
+package sem.graphreader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import sem.exception.GraphFormatException;
+
+/**
+ * Index of the sentence positions in a corpus, for random access with SeekableGraphReader.
+ * It stores the number of sentences in each file, and the byte offset of every k-th sentence of a file (k is the interval of the index).
+ * Seeking to another sentence goes to the nearest stored one before it and reads forward from there,
+ * so the index of a corpus with 40 million sentences takes about 10MB with the default interval, instead of 320MB for all the offsets.
+ *
+ * <p>The index can be saved next to the corpus (see getIndexPath()) and loaded again later.
+ * It remembers the names, sizes and modification times of the files, so that an outdated index can be detected.
+ *
+ */
+public class SentenceIndex {
+	private static final int MAGIC = 0x53474958;
+	private static final int VERSION = 2;
+	
+	/**
+	 * Suffix of the index file that is stored next to the corpus.
+	 */
+	public static final String SUFFIX = ".sentidx";
+	
+	/**
+	 * Default number of sentences between the stored offsets.
+	 */
+	public static final int DEFAULT_INTERVAL = 32;
+	
+	private String[] fileNames;
+	private long[] fileLengths;
+	private long[] fileModified;
+	// Number of sentences before each file, with the total at the end
+	private long[] fileStarts;
+	// Number of stored offsets before each file
+	private int[] offsetStarts;
+	// Offsets of the sentences 0, interval, 2*interval, ... of each file
+	private long[] offsets;
+	private int offsetCount;
+	private int interval;
+	private long size;
+	private int currentFile;
+	
+	/**
+	 * Create an empty index for these files, with the default interval.
+	 * @param files	Input files, in the order they are read.
+	 */
+	public SentenceIndex(List<File> files){
+		this(files, DEFAULT_INTERVAL);
+	}
+	
+	/**
+	 * Create an empty index for these files.
+	 * @param files		Input files, in the order they are read.
+	 * @param interval	Number of sentences between the stored offsets, 1 to store all of them.
+	 */
+	public SentenceIndex(List<File> files, int interval){
+		if(interval < 1)
+			throw new RuntimeException("The interval of a sentence index has to be at least 1: " + interval);
+		int fileCount = files.size();
+		this.fileNames = new String[fileCount];
+		this.fileLengths = new long[fileCount];
+		this.fileModified = new long[fileCount];
+		for(int i = 0; i < fileCount; i++){
+			this.fileNames[i] = files.get(i).getName();
+			this.fileLengths[i] = files.get(i).length();
+			this.fileModified[i] = files.get(i).lastModified();
+		}
+		this.fileStarts = new long[fileCount + 1];
+		this.offsetStarts = new int[fileCount + 1];
+		this.offsets = new long[1024];
+		this.offsetCount = 0;
+		this.interval = interval;
+		this.size = 0;
+		this.currentFile = 0;
+	}
+	
+	/**
+	 * Add the position of the next sentence. The sentences have to be added in the order they appear in the corpus.
+	 * @param fileIndex	Index of the file.
+	 * @param offset	Byte offset in the file.
+	 */
+	public void add(int fileIndex, long offset){
+		if(fileIndex < this.currentFile || fileIndex >= this.fileNames.length)
+			throw new RuntimeException("Sentences have to be added to the index in the order of the files. File index: " + fileIndex);
+		while(this.currentFile < fileIndex){
+			this.currentFile++;
+			this.fileStarts[this.currentFile] = this.size;
+			this.offsetStarts[this.currentFile] = this.offsetCount;
+		}
+		if((this.size - this.fileStarts[this.currentFile]) % this.interval == 0){
+			if(this.offsetCount == this.offsets.length)
+				this.offsets = Arrays.copyOf(this.offsets, this.offsets.length * 2);
+			this.offsets[this.offsetCount++] = offset;
+		}
+		this.size++;
+	}
+	
+	/**
+	 * Update the sentence counts of the files after the current one.
+	 */
+	private void updateFileStarts(){
+		for(int i = this.currentFile + 1; i < this.fileStarts.length; i++){
+			this.fileStarts[i] = this.size;
+			this.offsetStarts[i] = this.offsetCount;
+		}
+	}
+	
+	/**
+	 * Get the number of sentences in the index.
+	 * @return	Number of sentences.
+	 */
+	public long size(){
+		return this.size;
+	}
+	
+	/**
+	 * Get the number of sentences between the stored offsets.
+	 * @return	Interval
+	 */
+	public int getInterval(){
+		return this.interval;
+	}
+	
+	private void checkRange(long sentenceId){
+		if(sentenceId < 0 || sentenceId >= this.size)
+			throw new RuntimeException("Sentence number out of range: " + sentenceId + " (the index contains " + this.size + " sentences)");
+	}
+	
+	/**
+	 * Get the index of the file containing the sentence.
+	 * @param sentenceId	Sentence number, counting from 0.
+	 * @return	File index.
+	 */
+	public int getFileIndex(long sentenceId){
+		this.checkRange(sentenceId);
+		this.updateFileStarts();
+		// Binary search for the last file that starts at or before the sentence
+		int low = 0, high = this.fileNames.length - 1;
+		while(low < high){
+			int mid = (low + high + 1) >>> 1;
+			if(this.fileStarts[mid] <= sentenceId)
+				low = mid;
+			else
+				high = mid - 1;
+		}
+		return low;
+	}
+	
+	/**
+	 * Get the number of the nearest sentence at or before this one whose offset is stored.
+	 * It is always in the same file, and at most interval - 1 sentences before it.
+	 * @param sentenceId	Sentence number, counting from 0.
+	 * @return	Number of the indexed sentence.
+	 */
+	public long getIndexedSentence(long sentenceId){
+		int file = this.getFileIndex(sentenceId);
+		return sentenceId - (sentenceId - this.fileStarts[file]) % this.interval;
+	}
+	
+	/**
+	 * Get the byte offset of the indexed sentence for this sentence (see getIndexedSentence()) in its file.
+	 * To reach the sentence itself, seek to this offset and read forward past the sentences in between.
+	 * @param sentenceId	Sentence number, counting from 0.
+	 * @return	Byte offset.
+	 */
+	public long getOffset(long sentenceId){
+		int file = this.getFileIndex(sentenceId);
+		return this.offsets[this.offsetStarts[file] + (int)((sentenceId - this.fileStarts[file]) / this.interval)];
+	}
+	
+	/**
+	 * Check whether the index was made for these files, and the files have not changed since.
+	 * @param files	Input files, in the order they are read.
+	 * @return	True if the index can be used for these files.
+	 */
+	public boolean matches(List<File> files){
+		if(files.size() != this.fileNames.length)
+			return false;
+		for(int i = 0; i < this.fileNames.length; i++){
+			File file = files.get(i);
+			if(!file.getName().equals(this.fileNames[i]) || file.length() != this.fileLengths[i] || file.lastModified() != this.fileModified[i])
+				return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Get the default location of the index for a corpus. For a file or directory "corpus", this is "corpus.sentidx".
+	 * @param inputPath	Path to the corpus file or directory.
+	 * @return	Path to the index file.
+	 */
+	public static String getIndexPath(String inputPath){
+		String path = inputPath;
+		while(path.length() > 1 && (path.endsWith("/") || path.endsWith(File.separator)))
+			path = path.substring(0, path.length()-1);
+		return path + SUFFIX;
+	}
+	
+	private static void writeVarLong(DataOutputStream out, long value) throws IOException{
+		while((value & ~0x7FL) != 0){
+			out.writeByte((int)((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.writeByte((int)value);
+	}
+	
+	private static long readVarLong(DataInputStream in) throws IOException{
+		long value = 0;
+		for(int shift = 0; shift < 64; shift += 7){
+			int b = in.readUnsignedByte();
+			value |= (long)(b & 0x7F) << shift;
+			if((b & 0x80) == 0)
+				return value;
+		}
+		throw new IOException("Malformed number in sentence index.");
+	}
+	
+	/**
+	 * Save the index to a file. The offsets are stored as differences, so the file is smaller than the index in memory.
+	 * @param path	Path to the index file.
+	 */
+	public void save(String path){
+		this.updateFileStarts();
+		DataOutputStream out = null;
+		try {
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path), 1 << 16));
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(this.interval);
+			out.writeInt(this.fileNames.length);
+			for(int i = 0; i < this.fileNames.length; i++){
+				out.writeUTF(this.fileNames[i]);
+				out.writeLong(this.fileLengths[i]);
+				out.writeLong(this.fileModified[i]);
+				writeVarLong(out, this.fileStarts[i+1] - this.fileStarts[i]);
+			}
+			for(int i = 0; i < this.fileNames.length; i++){
+				long previous = 0;
+				for(int j = this.offsetStarts[i]; j < this.offsetStarts[i+1]; j++){
+					writeVarLong(out, this.offsets[j] - previous);
+					previous = this.offsets[j];
+				}
+			}
+			out.close();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/**
+	 * Load an index from a file.
+	 * Files written before the interval was introduced contain all the offsets, and only every DEFAULT_INTERVAL-th of them is kept.
+	 * @param path	Path to the index file.
+	 * @return	The index, or null if the file does not exist.
+	 */
+	public static SentenceIndex load(String path){
+		File file = new File(path);
+		if(!file.isFile())
+			return null;
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+			if(in.readInt() != MAGIC)
+				throw new RuntimeException("Not a sentence index file: " + path);
+			int version = in.readInt();
+			if(version != 1 && version != VERSION)
+				throw new RuntimeException("Unsupported sentence index version " + version + " in " + path);
+			
+			// Version 1 has all the offsets
+			int storedInterval = (version == 1) ? 1 : in.readInt();
+			if(storedInterval < 1)
+				throw new RuntimeException("Illegal interval " + storedInterval + " in sentence index " + path);
+			int fileCount = in.readInt();
+			SentenceIndex index = new SentenceIndex(new ArrayList<File>(), (version == 1) ? DEFAULT_INTERVAL : storedInterval);
+			index.fileNames = new String[fileCount];
+			index.fileLengths = new long[fileCount];
+			index.fileModified = new long[fileCount];
+			index.fileStarts = new long[fileCount + 1];
+			index.offsetStarts = new int[fileCount + 1];
+			for(int i = 0; i < fileCount; i++){
+				index.fileNames[i] = in.readUTF();
+				index.fileLengths[i] = in.readLong();
+				index.fileModified[i] = in.readLong();
+				index.fileStarts[i+1] = index.fileStarts[i] + readVarLong(in);
+			}
+			long offsetTotal = 0;
+			for(int i = 0; i < fileCount; i++){
+				long fileSentences = index.fileStarts[i+1] - index.fileStarts[i];
+				offsetTotal += (fileSentences + index.interval - 1) / index.interval;
+				if(offsetTotal > Integer.MAX_VALUE - 8)
+					throw new RuntimeException("Too many sentences in index " + path + " for the interval " + index.interval);
+				index.offsetStarts[i+1] = (int)offsetTotal;
+			}
+			index.offsets = new long[(int)Math.max(offsetTotal, 1)];
+			index.offsetCount = (int)offsetTotal;
+			index.size = index.fileStarts[fileCount];
+			index.currentFile = Math.max(fileCount - 1, 0);
+			for(int i = 0; i < fileCount; i++){
+				long offset = 0;
+				int stored = index.offsetStarts[i];
+				long storedCount = (index.fileStarts[i+1] - index.fileStarts[i] + storedInterval - 1) / storedInterval;
+				for(long j = 0; j < storedCount; j++){
+					offset += readVarLong(in);
+					if((j * storedInterval) % index.interval == 0)
+						index.offsets[stored++] = offset;
+				}
+			}
+			in.close();
+			return index;
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/**
+	 * Build the index by reading through the whole corpus. The reader is reset before and after.
+	 * @param reader	The reader.
+	 * @return	The index.
+	 * @throws GraphFormatException
+	 */
+	public static SentenceIndex build(SeekableGraphReader reader) throws GraphFormatException{
+		SentenceIndex index = new SentenceIndex(reader.getInputFiles());
+		reader.reset();
+		while(reader.hasNext()){
+			index.add(reader.getNextSentenceFileIndex(), reader.getNextSentenceOffset());
+			reader.nextSentence();
+		}
+		reader.reset();
+		return index;
+	}
+	
+	/**
+	 * Load the index stored next to the corpus, or build it and save it there if it does not exist or is out of date.
+	 * The index is also set on the reader.
+	 * @param reader	The reader.
+	 * @param inputPath	Path to the corpus, used for finding the index file.
+	 * @return	The index.
+	 * @throws GraphFormatException
+	 */
+	public static SentenceIndex loadOrBuild(SeekableGraphReader reader, String inputPath) throws GraphFormatException{
+		String indexPath = getIndexPath(inputPath);
+		SentenceIndex index = load(indexPath);
+		if(index == null || !index.matches(reader.getInputFiles())){
+			index = build(reader);
+			try {
+				index.save(indexPath);
+			} catch (RuntimeException e) {
+				System.err.println("Warning: Unable to save sentence index to " + indexPath + " : " + e.getMessage());
+			}
+		}
+		reader.setSentenceIndex(index);
+		return index;
+	}
+	
+	/**
+	 * Move the reader to the sentence with this number. Uses the sentence index of the reader, or reads through the corpus if there is no index.
+	 * With an index, the reader seeks to the nearest indexed sentence and reads forward from there.
+	 * @param reader		The reader.
+	 * @param sentenceId	Sentence number, counting from 0.
+	 * @throws GraphFormatException
+	 */
+	public static void seek(SeekableGraphReader reader, long sentenceId) throws GraphFormatException{
+		SentenceIndex index = reader.getSentenceIndex();
+		if(index != null){
+			long indexed = index.getIndexedSentence(sentenceId);
+			reader.seek(index.getFileIndex(indexed), index.getOffset(indexed));
+			skip(reader, indexed, sentenceId);
+			return;
+		}
+		if(sentenceId < 0)
+			throw new RuntimeException("Sentence number out of range: " + sentenceId);
+		reader.reset();
+		skip(reader, 0, sentenceId);
+	}
+	
+	/**
+	 * Read past the sentences before the one that is needed.
+	 * @param reader		The reader, positioned at the sentence with the number from.
+	 * @param from			Number of the sentence that the reader returns next.
+	 * @param sentenceId	Number of the sentence that the reader should return next.
+	 * @throws GraphFormatException
+	 */
+	static void skip(GraphReader reader, long from, long sentenceId) throws GraphFormatException{
+		for(long i = from; i < sentenceId; i++){
+			if(!reader.hasNext())
+				throw new RuntimeException("Sentence number out of range: " + sentenceId + " (the corpus contains " + i + " sentences)");
+			reader.nextSentence();
+		}
+	}
+}
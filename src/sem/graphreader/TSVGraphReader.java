@@ -1,11 +1,15 @@
 package sem.graphreader;
 
+import java.io.File;
 import java.util.ArrayList;
 
 import sem.exception.GraphFormatException;
 import sem.graph.Edge;
 import sem.graph.Graph;
+import sem.graph.NBestGraph;
+import sem.graph.NBestSentence;
 import sem.graph.Node;
+import sem.graph.SymbolTable;
 import sem.util.FileReader;
 import sem.util.Tools;
 
@@ -28,9 +32,12 @@ import sem.util.Tools;
  * <p>If a sentence has no graphs for some reason, it will return a single empty graph (with no edges). This is to facilitate retrieval by sentence and by single graphs.
  *
  */
-public class TSVGraphReader implements GraphReader{
+public class TSVGraphReader extends AbstractGraphReader{
 	private boolean getAllParses;
+	private boolean sharedParses;
 	private FileReader reader;
+	private int nextSentenceFileIndex;
+	private long nextSentenceOffset;
 	private ArrayList<Graph> nextSentence;
 	private int nextGraphPointer = 0;
 
@@ -38,11 +45,50 @@ public class TSVGraphReader implements GraphReader{
 	private String nullLemma = "[[null]]";
 	
 	public TSVGraphReader(String inputPath, boolean getAllParses) throws GraphFormatException{
+		this(inputPath, getAllParses, false);
+	}
+	
+	/**
+	 * Create a reader for TSV files.
+	 * With sharedParses, each sentence is returned as an NBestSentence, where the parses share the nodes of the first parse
+	 * and only create their own nodes and edges when they are accessed. The graphs are the same as without sharedParses.
+	 * @param inputPath	Path to the file or directory.
+	 * @param getAllParses	Whether to return all the graphs of a sentence, or only the first one.
+	 * @param sharedParses	Whether to store the parses of a sentence with shared nodes.
+	 * @throws GraphFormatException
+	 */
+	public TSVGraphReader(String inputPath, boolean getAllParses, boolean sharedParses) throws GraphFormatException{
+		this(new FileReader(inputPath), getAllParses, sharedParses);
+		this.inputPath = inputPath;
+	}
+	
+	/**
+	 * Create a reader for the lines of an existing FileReader, for example a chunk of a file that is held in memory (see SentenceChunkReader).
+	 * The sentence offsets refer to the lines of that FileReader, and graphs() and sentences() read from this reader without splitting, as there is no input path.
+	 * @param reader	Source of the lines.
+	 * @param getAllParses	Whether to return all the graphs of a sentence, or only the first one.
+	 * @throws GraphFormatException
+	 */
+	public TSVGraphReader(FileReader reader, boolean getAllParses) throws GraphFormatException{
+		this(reader, getAllParses, false);
+	}
+	
+	/**
+	 * Create a reader for the lines of an existing FileReader, optionally with shared parses (see TSVGraphReader(String, boolean, boolean)).
+	 * @param reader	Source of the lines.
+	 * @param getAllParses	Whether to return all the graphs of a sentence, or only the first one.
+	 * @param sharedParses	Whether to store the parses of a sentence with shared nodes.
+	 * @throws GraphFormatException
+	 */
+	public TSVGraphReader(FileReader reader, boolean getAllParses, boolean sharedParses) throws GraphFormatException{
+		this.inputPath = null;
 		this.getAllParses = getAllParses;
-		this.reader = new FileReader(inputPath);
+		this.sharedParses = sharedParses;
+		this.reader = reader;
 		this.nextGraphPointer = 0;
 		this.nextSentence = null;
 		this.next();
+		this.started = false;
 	}
 	
 	public void reset() throws GraphFormatException{
@@ -50,124 +96,212 @@ public class TSVGraphReader implements GraphReader{
 		this.nextSentence = null;
 		this.nextGraphPointer = 0;
 		this.next();
+		this.started = false;
 	}
 
 	private ArrayList<Graph> readSentence() throws GraphFormatException{
 		ArrayList<Graph> graphs = null;
 		
 		Graph graph = null;
+		// The current parse, if the parses are shared
+		NBestGraph parse = null;
 		boolean inLemmas = false, inGrs = false;
-		int nodeId, headId, depId, lemmaCount = 0;
+		int nodeId, headId, depId, lemmaCount = 0, nodeCount = 0;
 		String line;
-		String[] attributes;
+		int start, end, tab1, tab2;
 		Node headNode, depNode;
+		String lemma, pos;
+		int head, dep;
 		
+		this.nextSentenceFileIndex = reader.getNextLineFileIndex();
+		this.nextSentenceOffset = reader.getNextLineOffset();
 		while (reader.hasNext()) {
-			line = reader.next().trim();
-			if(line.trim().length() == 0)
+			// The line is scanned in place: whitespace is trimmed by moving the start and end, and the fields are found by their tabs
+			line = reader.next();
+			start = 0;
+			end = line.length();
+			while(start < end && line.charAt(start) <= ' ')
+				start++;
+			while(end > start && line.charAt(end - 1) <= ' ')
+				end--;
+			if(start == end)
 				continue;
-			else if(line.equals("<s>")){
-				graphs = new ArrayList<Graph>();
+			else if(regionEquals(line, start, end, "<s>")){
+				graphs = this.sharedParses ? new NBestSentence() : new ArrayList<Graph>();
 				continue;
 			}
-			else if(line.equals("</s>"))
+			else if(regionEquals(line, start, end, "</s>"))
 				break;
-			else if(line.equals("<g>")){
-				graph = new Graph();
+			else if(regionEquals(line, start, end, "<g>")){
 				lemmaCount = 0;
-				graphs.add(graph);
+				nodeCount = 0;
+				if(graphs instanceof NBestSentence){
+					parse = ((NBestSentence)graphs).addParse();
+					graph = parse;
+				}
+				else {
+					graph = new Graph();
+					graphs.add(graph);
+				}
 			}
-			else if(line.equals("<lem>"))
+			else if(regionEquals(line, start, end, "<lem>"))
 				inLemmas = true;
-			else if(line.equals("</lem>"))
+			else if(regionEquals(line, start, end, "</lem>"))
 				inLemmas = false;
-			else if(line.equals("<gr>"))
+			else if(regionEquals(line, start, end, "<gr>"))
 				inGrs = true;
-			else if(line.equals("</gr>"))
+			else if(regionEquals(line, start, end, "</gr>"))
 				inGrs = false;
 			else if(inLemmas == true && inGrs == false && graph != null){
 				// Reading in a lemma / node
-				attributes = line.split("\\t");
-				if(attributes.length != 3)
-					throw new GraphFormatException("Illegal number of lemma attributes in TSVGraphReader.", line);
+				tab1 = findTab(line, start, end);
+				tab2 = findTab(line, tab1 + 1, end);
+				if(tab2 == end || findTab(line, tab2 + 1, end) != end)
+					throw new GraphFormatException("Illegal number of lemma attributes in TSVGraphReader.", line.substring(start, end));
+				
+				nodeId = Tools.getInt(line, start, tab1, -1)-1;
+				if(regionEquals(line, tab1 + 1, tab2, ellipLemma)){
+					lemma = Graph.ellip.getLemma();
+					pos = Graph.ellip.getPos();
+				}
+				else if(regionEquals(line, tab1 + 1, tab2, nullLemma)){
+					lemma = Graph.nil.getLemma();
+					pos = Graph.nil.getPos();
+				}
+				else {
+					lemma = line.substring(tab1 + 1, tab2);
+					pos = line.substring(tab2 + 1, end);
+				}
+				
+				if(parse != null){
+					// The nodes of the first parse are shared, the other parses only have their own nodes where they are different
+					NBestSentence sentence = parse.getSentence();
+					if(sentence.size() == 1 && lemmaCount == sentence.getNodeCount())
+						sentence.addNode(lemma, pos);
+					int index = parse.addNode(lemmaCount, lemma, pos);
+					lemmaCount++;
+					if(index != nodeId)
+						throw new GraphFormatException("Error in TSVGraphReader. Mismatch on IDs.", nodeId + " " + index);
+					continue;
+				}
 
-				Node node;
-				if(attributes[1].equals(ellipLemma))
-					node = Graph.ellip.clone();
-				else if(attributes[1].equals(nullLemma))
-					node = Graph.nil.clone();
-				else
-					node = new Node(attributes[1], attributes[2]);
-				graph.addNode(node);
-	    		lemmaCount++;
-	    		
-				nodeId = Tools.getInt(attributes[0], -1)-1;
-	    		if(graph.getNodes().indexOf(node) != nodeId)
-	    			throw new GraphFormatException("Error in TSVGraphReader. Mismatch on IDs.", nodeId + " " + graph.getNodes().indexOf(node));
+				graph.addNode(new Node(lemma, pos));
+				lemmaCount++;
+				// The new node is always the last one, so its index is the number of nodes added before it
+				if(nodeCount != nodeId)
+					throw new GraphFormatException("Error in TSVGraphReader. Mismatch on IDs.", nodeId + " " + nodeCount);
+				nodeCount++;
 			}
 			else if(inGrs == true && inLemmas == false && graph != null){
 				// Reading in a GR / edge
-				attributes = line.split("\\t");
-				if(attributes.length != 3)
-					throw new GraphFormatException("Error: Illegal number of GR attributes in TSVGraphReader.", line);
+				tab1 = findTab(line, start, end);
+				tab2 = findTab(line, tab1 + 1, end);
+				if(tab2 == end || findTab(line, tab2 + 1, end) != end)
+					throw new GraphFormatException("Error: Illegal number of GR attributes in TSVGraphReader.", line.substring(start, end));
+				
+				if(parse != null){
+					if(regionEquals(line, tab1 + 1, tab2, ellipLemma))
+						head = parse.addOwnNode(Graph.ellip.getLemma(), Graph.ellip.getPos());
+					else if(regionEquals(line, tab1 + 1, tab2, nullLemma))
+						head = parse.addOwnNode(Graph.nil.getLemma(), Graph.nil.getPos());
+					else
+						head = this.getLemmaIndex(line, start, end, tab1 + 1, tab2, lemmaCount, "The head id of a GR does not exist in the lemmas.", "GR head id is not a number or a negative number.");
+					if(regionEquals(line, tab2 + 1, end, nullLemma))
+						dep = parse.addOwnNode(Graph.nil.getLemma(), Graph.nil.getPos());
+					else
+						dep = this.getLemmaIndex(line, start, end, tab2 + 1, end, lemmaCount, "The dep id of a GR does not exist in the lemmas.", "The GR dep id is not a number or a negative number.");
+					parse.addEdge(GrTokenizer.getKnownType(line, start, tab1), head, dep);
+					continue;
+				}
 				
 				headNode = null;
 				depNode = null;
 				
 				// Resolving head node
-				if(attributes[1].equals(ellipLemma)){
+				if(regionEquals(line, tab1 + 1, tab2, ellipLemma)){
 					headNode = Graph.ellip.clone();
 					graph.addNode(headNode);
+					nodeCount++;
 				}
-				else if(attributes[1].equals(nullLemma)){
+				else if(regionEquals(line, tab1 + 1, tab2, nullLemma)){
 					headNode = Graph.nil.clone();
 					graph.addNode(headNode);
+					nodeCount++;
 				}
 				else{
-					headId = Tools.getInt(attributes[1], -1)-1;
-					if(headId >= lemmaCount)
-						throw new GraphFormatException("The head id of a GR does not exist in the lemmas.", line);
-					else if(headId < 0)
-						throw new GraphFormatException("GR head id is not a number or a negative number.", line);
+					headId = this.getLemmaIndex(line, start, end, tab1 + 1, tab2, lemmaCount, "The head id of a GR does not exist in the lemmas.", "GR head id is not a number or a negative number.");
 					headNode = graph.getNodes().get(headId);
 				}
 				
 				// Resolving dep node
-				if(attributes[2].equals(nullLemma)){
+				if(regionEquals(line, tab2 + 1, end, nullLemma)){
 					depNode = Graph.nil.clone();
 					graph.addNode(depNode);
+					nodeCount++;
 				}
 				else{
-					depId = Tools.getInt(attributes[2], -1)-1;
-					if(depId >= lemmaCount)
-						throw new GraphFormatException("The dep id of a GR does not exist in the lemmas.", line);
-					else if(depId < 0)
-						throw new GraphFormatException("The GR dep id is not a number or a negative number.", line);
+					depId = this.getLemmaIndex(line, start, end, tab2 + 1, end, lemmaCount, "The dep id of a GR does not exist in the lemmas.", "The GR dep id is not a number or a negative number.");
 					depNode = graph.getNodes().get(depId);
 				}
 				
 				// Creating the edge
 				if(headNode != null && depNode != null){
-					Edge edge = new Edge(attributes[0], headNode, depNode);
-					graph.addEdge(edge);
+					graph.addEdge(new Edge(GrTokenizer.getKnownType(line, start, tab1), headNode, depNode));
 				}
 				else
-					throw new GraphFormatException("Head or dep node is null.", line);
+					throw new GraphFormatException("Head or dep node is null.", line.substring(start, end));
 			}
 		}
 		
-		if(graphs != null && graphs.size() == 0)
+		if(graphs instanceof NBestSentence && graphs.size() == 0)
+			((NBestSentence)graphs).addParse();
+		else if(graphs != null && graphs.size() == 0)
 			graphs.add(new Graph());
 		
+		if(this.symbolTable != null)
+			this.symbolTable.intern(graphs);
+		
 		return graphs;
 	}
 
+	/**
+	 * Check whether a part of the line is equal to the given string.
+	 */
+	private static boolean regionEquals(String line, int start, int end, String value){
+		return end - start == value.length() && line.startsWith(value, start);
+	}
+
+	/**
+	 * Find the next tab in a part of the line.
+	 * @return	Position of the tab, or end if there is none.
+	 */
+	private static int findTab(String line, int start, int end){
+		for(int i = start; i < end; i++)
+			if(line.charAt(i) == '\t')
+				return i;
+		return end;
+	}
+
+	/**
+	 * Get the index of the lemma that a GR refers to. The id is parsed from the field between fieldStart and fieldEnd,
+	 * and the error messages contain the trimmed line between start and end.
+	 */
+	private int getLemmaIndex(String line, int start, int end, int fieldStart, int fieldEnd, int lemmaCount, String missingMessage, String invalidMessage) throws GraphFormatException{
+		int id = Tools.getInt(line, fieldStart, fieldEnd, -1)-1;
+		if(id >= lemmaCount)
+			throw new GraphFormatException(missingMessage, line.substring(start, end));
+		else if(id < 0)
+			throw new GraphFormatException(invalidMessage, line.substring(start, end));
+		return id;
+	}
+	
 	/**
 	 * Get the next graph from the corpus.
 	 * @throws GraphFormatException 
 	 */
 	@Override
 	public Graph next() throws GraphFormatException {
+		this.started = true;
 		Graph graph = null;
 		if(this.nextSentence != null){
 			graph = this.nextSentence.get(nextGraphPointer);
@@ -209,12 +343,84 @@ public class TSVGraphReader implements GraphReader{
 	 * @throws GraphFormatException 
 	 */
 	public ArrayList<Graph> nextSentence() throws GraphFormatException{
-		ArrayList<Graph> tempSentence = new ArrayList<Graph>();
+		this.started = true;
+		ArrayList<Graph> tempSentence;
 		if(getAllParses)
-			tempSentence.addAll(this.nextSentence);
-		else
+			tempSentence = this.nextSentence;
+		else{
+			tempSentence = new ArrayList<Graph>();
 			tempSentence.add(this.nextSentence.get(0));
+		}
 		this.nextSentence = readSentence();
 		return tempSentence;
 	}
+
+	/**
+	 * Get the list of input files, in the order they are read.
+	 * @return	List of files.
+	 */
+	@Override
+	public ArrayList<File> getInputFiles(){
+		return this.reader.getInputFiles();
+	}
+	
+	/**
+	 * Get the index of the file containing the sentence that will be returned next.
+	 * @return	File index, or -1 if there are no more sentences.
+	 */
+	@Override
+	public int getNextSentenceFileIndex(){
+		return this.nextSentenceFileIndex;
+	}
+	
+	/**
+	 * Get the byte offset of the sentence that will be returned next.
+	 * @return	Byte offset in the (decompressed) file, or -1 if there are no more sentences.
+	 */
+	@Override
+	public long getNextSentenceOffset(){
+		return this.nextSentenceOffset;
+	}
+	
+	/**
+	 * Continue reading from the sentence at this position.
+	 * @param fileIndex	Index of the file, as returned by getNextSentenceFileIndex().
+	 * @param offset	Byte offset, as returned by getNextSentenceOffset().
+	 * @throws GraphFormatException 
+	 */
+	@Override
+	public void seek(int fileIndex, long offset) throws GraphFormatException{
+		this.reader.seek(fileIndex, offset);
+		this.nextSentence = null;
+		this.nextGraphPointer = 0;
+		this.next();
+	}
+	
+	/**
+	 * Creates readers with the same configuration as this one, for reading single files of the input.
+	 * @return	Factory for new readers
+	 */
+	@Override
+	protected GraphReaderFactory getFactory(){
+		final boolean getAllParses = this.getAllParses;
+		final boolean sharedParses = this.sharedParses;
+		return new GraphReaderFactory(){
+			@Override
+			public GraphReader makeGraphReader(String path) throws GraphFormatException {
+				return new TSVGraphReader(path, getAllParses, sharedParses);
+			}
+		};
+	}
+	
+	/**
+	 * Intern the lemmas, POS tags and edge labels of all graphs using the symbol table.
+	 * This also applies to the sentence that has already been read ahead.
+	 * @param symbolTable	Symbol table, or null to disable interning.
+	 */
+	@Override
+	public void setSymbolTable(SymbolTable symbolTable){
+		this.symbolTable = symbolTable;
+		if(symbolTable != null)
+			symbolTable.intern(this.nextSentence);
+	}
 }
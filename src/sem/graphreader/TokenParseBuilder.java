@@ -0,0 +1,200 @@
+package sem.graphreader;
+
+import java.util.Arrays;
+
+import sem.graph.NBestGraph;
+import sem.graph.NBestSentence;
+
+/**
+ * Builds the parses of an NBestSentence from GRs where the nodes are identified by token index, as in the RASP output.
+ *
+ * <p>The nodes of a parse are the tokens that are used in its GRs, ordered by token index,
+ * followed by the nodes without a token index (ellip, nil, etc.) in the order they appear in the GRs.
+ * This is the same order as in the graphs created by RaspGraphReader.
+ * The first lemma and POS that are seen for a token become the shared node of the sentence,
+ * and the parses that have a different lemma or POS for that token get their own node.
+ *
+ * <p>The builder is reused for all the sentences that a reader creates, so that the buffers are only allocated once.
+ *
+ */
+class TokenParseBuilder {
+	private NBestSentence sentence;
+	private boolean inParse;
+
+	// The shared node of each token in the sentence, or -1
+	private int[] sharedNodes;
+	private int sharedMaxToken;
+
+	// The tokens of the current parse: the shared node, OWN_NODE if the lemma or POS is different, or UNUSED
+	private int[] tokenNodes;
+	private String[] tokenLemmas, tokenPos;
+	private int maxToken;
+
+	// The nodes of the current parse without a token index
+	private String[] otherLemmas, otherPos;
+	private int otherCount;
+
+	// The GRs of the current parse. Token nodes are referenced by token index, other nodes by -(index+1)
+	private String[] labels;
+	private int[] heads, deps;
+	private int edgeCount;
+
+	private static final int UNUSED = -1;
+	private static final int OWN_NODE = -2;
+
+	public TokenParseBuilder(){
+		this.sharedNodes = new int[64];
+		Arrays.fill(this.sharedNodes, -1);
+		this.tokenNodes = new int[64];
+		Arrays.fill(this.tokenNodes, UNUSED);
+		this.tokenLemmas = new String[64];
+		this.tokenPos = new String[64];
+		this.otherLemmas = new String[8];
+		this.otherPos = new String[8];
+		this.labels = new String[64];
+		this.heads = new int[64];
+		this.deps = new int[64];
+		this.sentence = null;
+		this.inParse = false;
+		this.sharedMaxToken = -1;
+		this.maxToken = -1;
+	}
+
+	/**
+	 * Start a new sentence. The parse that was being built for the previous sentence is discarded.
+	 * @param sentence	Sentence where the parses are added.
+	 */
+	public void startSentence(NBestSentence sentence){
+		for(int i = 0; i <= this.sharedMaxToken; i++)
+			this.sharedNodes[i] = -1;
+		this.sharedMaxToken = -1;
+		this.clearParse();
+		this.sentence = sentence;
+	}
+
+	/**
+	 * Start a new parse, finishing the previous one.
+	 */
+	public void startParse(){
+		this.finishParse();
+		this.inParse = true;
+	}
+
+	/**
+	 * Add a node with a token index to the current parse. If the token is already in the parse, the existing node is used.
+	 * The lemma and POS are only copied from the label if they are different from the shared node of the token.
+	 * @param token	Token index, starting from 0.
+	 * @param label	Label with the lemma and POS of the node.
+	 * @return	Reference to the node, for addEdge().
+	 */
+	public int addToken(int token, RaspLabel label){
+		if(token >= this.tokenNodes.length){
+			int oldLength = this.tokenNodes.length, length = Math.max(token + 1, oldLength * 2);
+			this.sharedNodes = Arrays.copyOf(this.sharedNodes, length);
+			Arrays.fill(this.sharedNodes, oldLength, length, -1);
+			this.tokenNodes = Arrays.copyOf(this.tokenNodes, length);
+			Arrays.fill(this.tokenNodes, oldLength, length, UNUSED);
+			this.tokenLemmas = Arrays.copyOf(this.tokenLemmas, length);
+			this.tokenPos = Arrays.copyOf(this.tokenPos, length);
+		}
+		if(this.tokenNodes[token] != UNUSED)
+			return token;
+
+		int shared = this.sharedNodes[token];
+		if(shared < 0){
+			shared = this.sentence.addNode(label.getLemma(), label.getPos());
+			this.sharedNodes[token] = shared;
+			this.sharedMaxToken = Math.max(this.sharedMaxToken, token);
+			this.tokenNodes[token] = shared;
+		}
+		else if(label.lemmaEquals(this.sentence.getLemma(shared)) && label.posEquals(this.sentence.getPos(shared)))
+			this.tokenNodes[token] = shared;
+		else {
+			this.tokenNodes[token] = OWN_NODE;
+			this.tokenLemmas[token] = label.getLemma();
+			this.tokenPos[token] = label.getPos();
+		}
+		this.maxToken = Math.max(this.maxToken, token);
+		return token;
+	}
+
+	/**
+	 * Add a node without a token index to the current parse. Every call creates a new node.
+	 * @param lemma	Lemma
+	 * @param pos	POS
+	 * @return	Reference to the node, for addEdge().
+	 */
+	public int addOther(String lemma, String pos){
+		if(this.otherCount == this.otherLemmas.length){
+			this.otherLemmas = Arrays.copyOf(this.otherLemmas, this.otherCount * 2);
+			this.otherPos = Arrays.copyOf(this.otherPos, this.otherCount * 2);
+		}
+		this.otherLemmas[this.otherCount] = lemma;
+		this.otherPos[this.otherCount] = pos;
+		return -(this.otherCount++) - 1;
+	}
+
+	/**
+	 * Add a GR to the current parse.
+	 * @param label	Label of the edge.
+	 * @param head	Reference to the head node.
+	 * @param dep	Reference to the dependent node.
+	 */
+	public void addEdge(String label, int head, int dep){
+		if(this.edgeCount == this.labels.length){
+			this.labels = Arrays.copyOf(this.labels, this.edgeCount * 2);
+			this.heads = Arrays.copyOf(this.heads, this.edgeCount * 2);
+			this.deps = Arrays.copyOf(this.deps, this.edgeCount * 2);
+		}
+		this.labels[this.edgeCount] = label;
+		this.heads[this.edgeCount] = head;
+		this.deps[this.edgeCount] = dep;
+		this.edgeCount++;
+	}
+
+	/**
+	 * Add the current parse to the sentence, if a parse has been started.
+	 */
+	public void finishParse(){
+		if(!this.inParse)
+			return;
+		NBestGraph parse = this.sentence.addParse(this.maxToken + 1 + this.otherCount, this.edgeCount);
+		// The nodes of the tokens are replaced with their indices in the parse
+		for(int i = 0; i <= this.maxToken; i++){
+			if(this.tokenNodes[i] >= 0)
+				this.tokenNodes[i] = parse.addSharedNode(this.tokenNodes[i]);
+			else if(this.tokenNodes[i] == OWN_NODE)
+				this.tokenNodes[i] = parse.addOwnNode(this.tokenLemmas[i], this.tokenPos[i]);
+		}
+		for(int i = 0; i < this.edgeCount; i++)
+			parse.addEdge(this.labels[i], this.getNode(parse, this.heads[i]), this.getNode(parse, this.deps[i]));
+		this.clearParse();
+	}
+
+	/**
+	 * Get the index of a node in the parse. Nodes without a token index are added when they are first used.
+	 */
+	private int getNode(NBestGraph parse, int reference){
+		if(reference >= 0)
+			return this.tokenNodes[reference];
+		return parse.addOwnNode(this.otherLemmas[-reference - 1], this.otherPos[-reference - 1]);
+	}
+
+	private void clearParse(){
+		for(int i = 0; i <= this.maxToken; i++){
+			this.tokenNodes[i] = UNUSED;
+			this.tokenLemmas[i] = null;
+			this.tokenPos[i] = null;
+		}
+		for(int i = 0; i < this.otherCount; i++){
+			this.otherLemmas[i] = null;
+			this.otherPos[i] = null;
+		}
+		for(int i = 0; i < this.edgeCount; i++)
+			this.labels[i] = null;
+		this.maxToken = -1;
+		this.otherCount = 0;
+		this.edgeCount = 0;
+		this.inParse = false;
+	}
+}
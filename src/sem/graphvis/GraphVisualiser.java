@@ -74,7 +74,7 @@ import sem.util.Tools;
  */
 public class GraphVisualiser {
 	private boolean enableEditing;
-	private ArrayList<ArrayList<Graph>> sentences;
+	private SentenceSource sentences;
 	private int indexS, indexG; // sentence and graph pointer
 	
 	private Visualization visualization;
@@ -223,7 +223,7 @@ public class GraphVisualiser {
 			String[] attributes = command.split("\\s+");
 			if(attributes.length == 2){
 				int sentenceId = Tools.getInt(attributes[1], -1);
-				if(sentenceId >= 0 && sentenceId < this.sentences.size()){
+				if(sentenceId >= 0 && this.sentences.getSentence(sentenceId) != null){
 					this.indexS = sentenceId;
 					this.indexG = 0;
 					this.resetGraph();
@@ -237,6 +237,7 @@ public class GraphVisualiser {
 				int headId = Tools.getInt(attrbutes[2], -1);
 				int depId = Tools.getInt(attrbutes[3], -1);
 				if(headId >= 0 && depId >= 0 && headId < this.getCurrentGraph().getNodes().size() && depId < this.getCurrentGraph().getNodes().size()){
+					this.sentences.pin(indexS);
 					this.getCurrentGraph().addEdge(attrbutes[1], this.getCurrentGraph().getNodes().get(headId), this.getCurrentGraph().getNodes().get(depId));
 					int edgeId = prefuseGraph.addEdge(headId, depId);
 		    		prefuseGraph.getEdge(edgeId).setString("label", attrbutes[1]);
@@ -259,6 +260,7 @@ public class GraphVisualiser {
 							removeEdges.add(edge);
 						}
 					}
+					this.sentences.pin(indexS);
 					this.getCurrentGraph().getEdges().removeAll(removeEdges);
 					
 					int edgeId = this.prefuseGraph.getEdge(headId, depId);
@@ -272,9 +274,11 @@ public class GraphVisualiser {
 			String[] commandBits = command.split("\\s+");
 			if(commandBits.length == 2){
 				GraphWriter writer = new TSVGraphWriter(commandBits[1]);
-				for(ArrayList<Graph> sentence : this.sentences)
+				ArrayList<Graph> sentence;
+				for(int i = 0; (sentence = this.sentences.getSentence(i)) != null; i++)
 					writer.write(sentence);
 				writer.close();
+				this.sentences.getSentence(indexS);
 				return true;
 			}
 		}
@@ -286,7 +290,7 @@ public class GraphVisualiser {
 	 */
 	public void nextSentence(){
 		indexS++;
-		if(indexS >= sentences.size())
+		if(sentences.getSentence(indexS) == null)
 			indexS = 0;
 		indexG = 0;
 		this.resetGraph();
@@ -294,11 +298,16 @@ public class GraphVisualiser {
 	
 	/**
 	 * Show the previous sentence.
+	 * Wraps around to the last sentence only if the number of sentences is known, as finding it could mean reading the whole corpus.
 	 */
 	public void prevSentence(){
 		indexS--;
-		if(indexS < 0)
+		if(indexS < 0){
+			if(sentences.isSizeKnown())
 				indexS = sentences.size()-1;
+			else
+				indexS = 0;
+		}
 		indexG = 0;
 		this.resetGraph();
 	}
@@ -308,7 +317,7 @@ public class GraphVisualiser {
 	 */
 	public void nextGraph(){
 		indexG++;
-		if(indexG >= sentences.get(indexS).size())
+		if(indexG >= sentences.getSentence(indexS).size())
 			indexG = 0;
 		this.resetGraph();
 	}
@@ -319,7 +328,7 @@ public class GraphVisualiser {
 	public void prevGraph(){
 		indexG--;
 		if(indexG < 0)
-			indexG = sentences.get(indexS).size()-1;
+			indexG = sentences.getSentence(indexS).size()-1;
 		this.resetGraph();
 	}
 
@@ -328,7 +337,7 @@ public class GraphVisualiser {
 	 * @return	The current graph.
 	 */
 	public Graph getCurrentGraph(){
-		return this.sentences.get(indexS).get(indexG);
+		return this.sentences.getSentence(indexS).get(indexG);
 	}
 	
 	/**
@@ -344,11 +353,11 @@ public class GraphVisualiser {
 		
     	for(Node node : graph.getNodes()){
     		prefuse.data.Node prefuseNode = prefuseGraph.addNode();
-    		prefuseNode.setString("label", node.getLabel()+":"+graph.getNodes().indexOf(node));
+    		prefuseNode.setString("label", node.getLabel()+":"+graph.indexOf(node));
     	}
     	
     	for(Edge edge : graph.getEdges()){
-    		int edgeId = prefuseGraph.addEdge(this.getCurrentGraph().getNodes().indexOf(edge.getHead()), this.getCurrentGraph().getNodes().indexOf(edge.getDep()));
+    		int edgeId = prefuseGraph.addEdge(graph.indexOf(edge.getHead()), graph.indexOf(edge.getDep()));
     		prefuseGraph.getEdge(edgeId).setString("label", edge.getLabel());
     	}
     	return prefuseGraph;
@@ -479,7 +488,19 @@ public class GraphVisualiser {
 	public void displaySentences(ArrayList<ArrayList<Graph>> sentences){
 		if(sentences == null || sentences.size() == 0)
 			throw new RuntimeException("No input");
+		this.displaySentences(new ListSentenceSource(sentences));
+	}
+	
+	/**
+	 * Display sentences from a sentence source. With a WindowedSentenceSource, sentences are only read when they are needed, so this works for corpora that do not fit into memory.
+	 * @param sentences
+	 */
+	public void displaySentences(SentenceSource sentences){
+		if(sentences == null || sentences.getSentence(0) == null)
+			throw new RuntimeException("No input");
 		this.sentences = sentences;
+		this.indexS = 0;
+		this.indexG = 0;
 		this.createWindow();
 		this.resetGraph();
 	}
@@ -0,0 +1,37 @@
+package sem.graphvis;
+
+import java.util.ArrayList;
+
+import sem.graph.Graph;
+
+/**
+ * Sentence source for sentences that are already in memory.
+ *
+ */
+public class ListSentenceSource implements SentenceSource{
+	private ArrayList<ArrayList<Graph>> sentences;
+	
+	public ListSentenceSource(ArrayList<ArrayList<Graph>> sentences){
+		this.sentences = sentences;
+	}
+
+	@Override
+	public ArrayList<Graph> getSentence(int index) {
+		if(index < 0 || index >= this.sentences.size())
+			return null;
+		return this.sentences.get(index);
+	}
+
+	@Override
+	public int size() {
+		return this.sentences.size();
+	}
+
+	@Override
+	public void pin(int index) {
+	}
+
+	@Override
+	public void close() {
+	}
+}
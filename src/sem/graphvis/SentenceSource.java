@@ -0,0 +1,40 @@
+package sem.graphvis;
+
+import java.util.ArrayList;
+
+import sem.graph.Graph;
+
+/**
+ * Provides the sentences shown in GraphVisualiser, by their position in the corpus.
+ *
+ */
+public interface SentenceSource {
+	/**
+	 * Get a sentence.
+	 * @param index	Sentence number, counting from 0.
+	 * @return	The sentence, or null if the corpus has fewer sentences.
+	 */
+	public ArrayList<Graph> getSentence(int index);
+	
+	/**
+	 * Get the number of sentences. This may have to read through the rest of the corpus.
+	 * @return	Number of sentences.
+	 */
+	public int size();
+	
+	/**
+	 * Check whether size() can return without reading through the corpus.
+	 * @return	True if the number of sentences is already known.
+	 */
+	public default boolean isSizeKnown(){
+		return true;
+	}
+	
+	/**
+	 * Keep this sentence in memory, for example because it has been edited.
+	 * @param index	Sentence number.
+	 */
+	public void pin(int index);
+	
+	public void close();
+}
@@ -0,0 +1,249 @@
+package sem.graphvis;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import sem.exception.GraphFormatException;
+import sem.graph.Graph;
+import sem.graphreader.SeekableGraphReader;
+import sem.graphreader.SentenceIndex;
+
+/**
+ * Sentence source that reads sentences on demand, so that the whole corpus never has to be in memory.
+ *
+ * <p>Only a window of sentences around the current position is kept. After every request, the neighbouring sentences
+ * are read on a background thread, and sentences that are far from the current position are dropped.
+ * Pinned (edited) sentences are never dropped.
+ *
+ * <p>If the reader has a sentence index, any sentence can be reached with one seek, followed by reading forward from the nearest indexed sentence.
+ * Otherwise the positions of the sentences are recorded as they are read, so the corpus is read at most once and going back to an earlier sentence is a seek.
+ *
+ */
+public class WindowedSentenceSource implements SentenceSource{
+	private SeekableGraphReader reader;
+	private SentenceIndex index;
+	private volatile boolean indexComplete;
+	private int readerPosition;
+	private int windowSize;
+
+	private HashMap<Integer,ArrayList<Graph>> cache;
+	private HashSet<Integer> pinned;
+	private ExecutorService prefetcher;
+	private volatile int currentIndex;
+
+	/**
+	 * Create a new sentence source.
+	 * @param reader		The reader. If it has a sentence index, it is assumed to cover the whole corpus.
+	 * @param windowSize	Number of sentences to keep in memory before and after the current one.
+	 * @throws GraphFormatException
+	 */
+	public WindowedSentenceSource(SeekableGraphReader reader, int windowSize) throws GraphFormatException{
+		this.reader = reader;
+		this.windowSize = windowSize;
+		this.index = reader.getSentenceIndex();
+		this.indexComplete = (this.index != null);
+		if(this.index == null)
+			this.index = new SentenceIndex(reader.getInputFiles());
+		this.reader.reset();
+		this.readerPosition = 0;
+		this.currentIndex = 0;
+		this.cache = new HashMap<Integer,ArrayList<Graph>>();
+		this.pinned = new HashSet<Integer>();
+		this.prefetcher = Executors.newSingleThreadExecutor(new ThreadFactory(){
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "WindowedSentenceSource");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Read the next sentence from the reader, recording its position if it is new.
+	 * @return	The sentence, or null at the end of the corpus.
+	 * @throws GraphFormatException
+	 */
+	private ArrayList<Graph> readNext() throws GraphFormatException{
+		if(!this.reader.hasNext()){
+			this.indexComplete = true;
+			return null;
+		}
+		if(this.readerPosition == this.index.size())
+			this.index.add(this.reader.getNextSentenceFileIndex(), this.reader.getNextSentenceOffset());
+		ArrayList<Graph> sentence = this.reader.nextSentence();
+		this.readerPosition++;
+		if(!this.reader.hasNext())
+			this.indexComplete = true;
+		return sentence;
+	}
+
+	/**
+	 * Read a sentence from the corpus, seeking or reading forward as needed.
+	 * The index only stores the position of every k-th sentence (see SentenceIndex), so the reader seeks to the nearest indexed sentence
+	 * before the one that is needed, unless it is already between the two, and reads forward from there.
+	 * @param sentenceId	Sentence number.
+	 * @return	The sentence, or null if the corpus has fewer sentences.
+	 * @throws GraphFormatException
+	 */
+	private synchronized ArrayList<Graph> load(int sentenceId) throws GraphFormatException{
+		if(sentenceId >= this.index.size() && this.indexComplete)
+			return null;
+
+		// Beyond the indexed sentences, continue from the last one that is known
+		int known = (int)this.index.size();
+		int target = Math.min(sentenceId, known - 1);
+		if(known == 0){
+			if(this.readerPosition != 0){
+				this.reader.reset();
+				this.readerPosition = 0;
+			}
+		}
+		else {
+			int indexed = (int)this.index.getIndexedSentence(target);
+			if(this.readerPosition > sentenceId || this.readerPosition < indexed){
+				this.reader.seek(this.index.getFileIndex(indexed), this.index.getOffset(indexed));
+				this.readerPosition = indexed;
+			}
+		}
+		while(this.readerPosition < sentenceId){
+			ArrayList<Graph> sentence = this.readNext();
+			if(sentence == null)
+				return null;
+			if(this.isInWindow(this.readerPosition - 1) && !this.cache.containsKey(this.readerPosition - 1))
+				this.cache.put(this.readerPosition - 1, sentence);
+		}
+		return this.readNext();
+	}
+
+	private boolean isInWindow(int sentenceId){
+		return Math.abs(sentenceId - this.currentIndex) <= this.windowSize;
+	}
+
+	/**
+	 * Get a sentence from the cache, or read it if needed.
+	 * @param sentenceId	Sentence number.
+	 * @param cacheOnly		Only read the sentence if it is in the current window.
+	 * @return	The sentence.
+	 */
+	private synchronized ArrayList<Graph> fetch(int sentenceId, boolean cacheOnly){
+		if(sentenceId < 0)
+			return null;
+		ArrayList<Graph> sentence = this.cache.get(sentenceId);
+		if(sentence == null && (!cacheOnly || this.isInWindow(sentenceId))){
+			try {
+				sentence = this.load(sentenceId);
+			} catch (GraphFormatException e) {
+				throw new RuntimeException(e);
+			}
+			if(sentence != null)
+				this.cache.put(sentenceId, sentence);
+		}
+		return sentence;
+	}
+
+	/**
+	 * Drop the sentences that are outside the window, unless they are pinned.
+	 */
+	private synchronized void evict(){
+		Iterator<Integer> iterator = this.cache.keySet().iterator();
+		while(iterator.hasNext()){
+			Integer sentenceId = iterator.next();
+			if(!this.isInWindow(sentenceId) && !this.pinned.contains(sentenceId))
+				iterator.remove();
+		}
+	}
+
+	/**
+	 * Read the sentences around the current position on the background thread.
+	 * The task stops early if the position changes in the meantime.
+	 */
+	private void prefetch(final int center){
+		this.prefetcher.execute(new Runnable(){
+			@Override
+			public void run() {
+				for(int distance = 1; distance <= windowSize; distance++){
+					if(currentIndex != center)
+						return;
+					fetch(center + distance, true);
+					if(currentIndex != center)
+						return;
+					fetch(center - distance, true);
+				}
+			}
+		});
+	}
+
+	@Override
+	public ArrayList<Graph> getSentence(int sentenceId) {
+		if(sentenceId < 0)
+			return null;
+		int previousIndex = this.currentIndex;
+		this.currentIndex = sentenceId;
+		ArrayList<Graph> sentence = this.fetch(sentenceId, false);
+		if(sentence == null){
+			// Past the end of the corpus, stay where we were
+			this.currentIndex = previousIndex;
+			return null;
+		}
+		this.evict();
+		this.prefetch(sentenceId);
+		return sentence;
+	}
+
+	/**
+	 * The number of sentences is known when the index covers the whole corpus.
+	 * This does not wait for the prefetching thread.
+	 */
+	@Override
+	public boolean isSizeKnown() {
+		return this.indexComplete;
+	}
+
+	@Override
+	public synchronized int size() {
+		if(!this.indexComplete){
+			try {
+				this.load(Integer.MAX_VALUE);
+			} catch (GraphFormatException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		return (int)this.index.size();
+	}
+
+	/**
+	 * Get the sentence index, including all the positions recorded so far.
+	 * @return	The index.
+	 */
+	public SentenceIndex getSentenceIndex(){
+		return this.index;
+	}
+
+	/**
+	 * Get the number of sentences currently kept in memory.
+	 * @return	Number of sentences.
+	 */
+	public synchronized int getCacheSize(){
+		return this.cache.size();
+	}
+
+	@Override
+	public synchronized void pin(int sentenceId) {
+		this.pinned.add(sentenceId);
+	}
+
+	@Override
+	public void close() {
+		this.prefetcher.shutdownNow();
+		synchronized(this){
+			this.reader.close();
+			this.cache.clear();
+		}
+	}
+}
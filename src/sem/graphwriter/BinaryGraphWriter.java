@@ -0,0 +1,243 @@
+package sem.graphwriter;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map.Entry;
+
+import sem.graph.Edge;
+import sem.graph.Graph;
+import sem.graph.Node;
+
+/**
+ * Graph writer for the binary format, which can be read with BinaryGraphReader much faster than any of the text formats.
+ *
+ * <p>The file starts with a header (the 4-byte magic number and a version byte), followed by blocks of sentences.
+ * Every block is length-prefixed, so that the reader can read it with a single call:
+ * <pre>
+ * block:    int32 payload length, int32 number of sentences, payload
+ * payload:  dictionary, sentences
+ * dictionary: varint number of strings, then for every string: varint length in bytes, UTF-8 bytes
+ * sentence: varint number of graphs, graphs
+ * graph:    varint number of nodes, nodes, varint number of edges, edges, varint number of metadata entries, metadata
+ * node:     varint lemma, varint POS
+ * edge:     varint label, varint head node, varint dependent node
+ * metadata: varint key, varint value
+ * </pre>
+ * Strings are stored in the dictionary of the block, and referred to by their position in the dictionary plus one (0 is null).
+ * All integers other than the block header are unsigned variable-length integers, with 7 bits per byte.
+ *
+ */
+public class BinaryGraphWriter implements GraphWriter{
+	/**
+	 * The first four bytes of every binary graph file ("SGBF").
+	 */
+	public static final int MAGIC = 0x53474246;
+	public static final int VERSION = 1;
+	/**
+	 * A block is written when its sentences take up this many bytes.
+	 */
+	public static final int BLOCK_SIZE = 1 << 20;
+	/**
+	 * Maximum number of sentences in a block. BinaryGraphReader uses 16 bits for the position of a sentence in the block.
+	 */
+	public static final int MAX_BLOCK_SENTENCES = 1 << 16;
+
+	private String file;
+	private OutputStream out;
+	private HashMap<String,Integer> dictionary;
+	private ArrayList<String> dictionaryStrings;
+	private byte[] sentenceBuffer;
+	private int sentenceBufferSize;
+	private int sentenceCount;
+	private byte[] headerBuffer;
+	private int headerBufferSize;
+
+	public BinaryGraphWriter(String file){
+		this.dictionary = new HashMap<String,Integer>();
+		this.dictionaryStrings = new ArrayList<String>();
+		this.sentenceBuffer = new byte[1 << 16];
+		this.headerBuffer = new byte[1 << 16];
+		this.open(file);
+	}
+
+	/**
+	 * Open the writer (can be done from the constructor).
+	 */
+	@Override
+	public void open(String file) {
+		if(this.out != null)
+			this.close();
+		this.file = file;
+		try {
+			this.out = new BufferedOutputStream(new FileOutputStream(file), 1 << 16);
+			this.writeInt(MAGIC);
+			this.out.write(VERSION);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		this.clearBlock();
+	}
+
+	/**
+	 * Write the remaining sentences and close the writer.
+	 */
+	@Override
+	public void close() {
+		if(this.out == null)
+			return;
+		try {
+			this.flushBlock();
+			this.out.close();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		this.out = null;
+	}
+
+	/**
+	 * Write a graph (as the only graph in a sentence).
+	 */
+	@Override
+	public void write(Graph graph) {
+		this.writeVarint(1);
+		this.writeGraph(graph);
+		this.endSentence();
+	}
+
+	/**
+	 * Write a sentence (list of graphs).
+	 */
+	@Override
+	public void write(List<Graph> sentence) {
+		this.writeVarint(sentence.size());
+		for(Graph graph : sentence)
+			this.writeGraph(graph);
+		this.endSentence();
+	}
+
+	/**
+	 * Reset the writer, discarding everything that has been written.
+	 */
+	public void reset(){
+		this.close();
+		this.open(this.file);
+	}
+
+	private void writeGraph(Graph graph){
+		ArrayList<Node> nodes = graph.getNodes();
+		this.writeVarint(nodes.size());
+		for(Node node : nodes){
+			this.writeString(node.getLemma());
+			this.writeString(node.getPos());
+		}
+
+		ArrayList<Edge> edges = graph.getEdges();
+		this.writeVarint(edges.size());
+		for(Edge edge : edges){
+			int headIndex = graph.indexOf(edge.getHead());
+			int depIndex = graph.indexOf(edge.getDep());
+			if(headIndex < 0 || depIndex < 0)
+				throw new RuntimeException("Found a node in an edge that is not present in the list of nodes.");
+			this.writeString(edge.getLabel());
+			this.writeVarint(headIndex);
+			this.writeVarint(depIndex);
+		}
+
+		if(!graph.hasMetadata())
+			this.writeVarint(0);
+		else {
+			this.writeVarint(graph.getMetadata().size());
+			for(Entry<String,String> entry : graph.getMetadata().entrySet()){
+				this.writeString(entry.getKey());
+				this.writeString(entry.getValue());
+			}
+		}
+	}
+
+	private void endSentence(){
+		this.sentenceCount++;
+		if(this.sentenceBufferSize >= BLOCK_SIZE || this.sentenceCount >= MAX_BLOCK_SENTENCES){
+			try {
+				this.flushBlock();
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
+	private void writeString(String string){
+		if(string == null){
+			this.writeVarint(0);
+			return;
+		}
+		Integer id = this.dictionary.get(string);
+		if(id == null){
+			id = this.dictionaryStrings.size();
+			this.dictionary.put(string, id);
+			this.dictionaryStrings.add(string);
+		}
+		this.writeVarint(id + 1);
+	}
+
+	private void writeVarint(int value){
+		if(this.sentenceBufferSize + 5 > this.sentenceBuffer.length)
+			this.sentenceBuffer = Arrays.copyOf(this.sentenceBuffer, this.sentenceBuffer.length * 2);
+		this.sentenceBufferSize = putVarint(this.sentenceBuffer, this.sentenceBufferSize, value);
+	}
+
+	private static int putVarint(byte[] buffer, int position, int value){
+		while((value & ~0x7F) != 0){
+			buffer[position++] = (byte)((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		buffer[position++] = (byte)value;
+		return position;
+	}
+
+	private void addHeaderBytes(byte[] bytes){
+		if(this.headerBufferSize + bytes.length + 5 > this.headerBuffer.length)
+			this.headerBuffer = Arrays.copyOf(this.headerBuffer, Math.max(this.headerBuffer.length * 2, this.headerBufferSize + bytes.length + 5));
+		this.headerBufferSize = putVarint(this.headerBuffer, this.headerBufferSize, bytes.length);
+		System.arraycopy(bytes, 0, this.headerBuffer, this.headerBufferSize, bytes.length);
+		this.headerBufferSize += bytes.length;
+	}
+
+	private void writeInt(int value) throws IOException{
+		this.out.write(value >>> 24);
+		this.out.write(value >>> 16);
+		this.out.write(value >>> 8);
+		this.out.write(value);
+	}
+
+	/**
+	 * Write the buffered sentences as a block, together with the dictionary.
+	 * @throws IOException
+	 */
+	private void flushBlock() throws IOException{
+		if(this.sentenceCount == 0)
+			return;
+		this.headerBufferSize = putVarint(this.headerBuffer, 0, this.dictionaryStrings.size());
+		for(String string : this.dictionaryStrings)
+			this.addHeaderBytes(string.getBytes(StandardCharsets.UTF_8));
+
+		this.writeInt(this.headerBufferSize + this.sentenceBufferSize);
+		this.writeInt(this.sentenceCount);
+		this.out.write(this.headerBuffer, 0, this.headerBufferSize);
+		this.out.write(this.sentenceBuffer, 0, this.sentenceBufferSize);
+		this.clearBlock();
+	}
+
+	private void clearBlock(){
+		this.dictionary.clear();
+		this.dictionaryStrings.clear();
+		this.sentenceBufferSize = 0;
+		this.sentenceCount = 0;
+	}
+}
@@ -1,6 +1,7 @@
 package sem.graphwriter;
 
 import sem.exception.GraphFormatException;
+import sem.metrics.MetricsRegistry;
 
 /**
  * Contains a list of GraphWriter types and creates a new GraphWriter based on the String label.
@@ -8,7 +9,9 @@ import sem.exception.GraphFormatException;
  */
 public enum GraphWriterType {
 	TIKZDEPENDENCY("tikzdependency"),
-	TSV("tsv")
+	TSV("tsv"),
+	BINARY("binary"),
+	SNAPSHOT("snapshot")
 	;
 	
 	private final String label;
@@ -34,8 +37,24 @@ public enum GraphWriterType {
 			return new TikzDependencyGraphWriter(outputPath, true, false, true);
 		case TSV:
 			return new TSVGraphWriter(outputPath);
+		case BINARY:
+			return new BinaryGraphWriter(outputPath);
+		case SNAPSHOT:
+			return new SnapshotGraphWriter(outputPath);
 		default:
 			throw new RuntimeException("No graphwriter defined for corpus type: " + (this != null?this.getLabel():this));
 		}
 	}
+	
+	/**
+	 * Create a new GraphWriter that records its throughput in a metrics registry (see InstrumentedGraphWriter).
+	 * The metrics are named after the type, for example "writer.tsv.sentences".
+	 * @param outputPath	Path to the output file.
+	 * @param metrics		Registry for the metrics.
+	 * @return				The new GraphWriter.
+	 * @throws GraphFormatException
+	 */
+	public GraphWriter makeGraphWriter(String outputPath, MetricsRegistry metrics) throws GraphFormatException{
+		return new InstrumentedGraphWriter(this.makeGraphWriter(outputPath), metrics, "writer." + this.label);
+	}
 }
@@ -0,0 +1,80 @@
+package sem.graphwriter;
+
+import java.util.List;
+
+import sem.graph.Graph;
+import sem.metrics.Counter;
+import sem.metrics.MetricsRegistry;
+import sem.metrics.Timer;
+
+/**
+ * Graph writer that passes everything on to another writer, and records what it does in a MetricsRegistry.
+ *
+ * <p>With the prefix "writer.tsv", the metrics are:
+ * <ul>
+ * <li>writer.tsv.sentences - number of sentences written (a single graph counts as a sentence)</li>
+ * <li>writer.tsv.graphs - number of graphs written</li>
+ * <li>writer.tsv.write - time spent in write(), including the time spent writing files (see FileWriter.setMetrics())</li>
+ * </ul>
+ *
+ */
+public class InstrumentedGraphWriter implements GraphWriter{
+	private GraphWriter writer;
+	private Counter sentences;
+	private Counter graphs;
+	private Timer timer;
+
+	/**
+	 * Create a new instrumented writer.
+	 * @param writer	The writer that does the work.
+	 * @param metrics	Registry for the metrics.
+	 * @param prefix	Prefix of the metric names, for example "writer.tsv".
+	 */
+	public InstrumentedGraphWriter(GraphWriter writer, MetricsRegistry metrics, String prefix){
+		this.writer = writer;
+		this.sentences = metrics.counter(prefix + ".sentences");
+		this.graphs = metrics.counter(prefix + ".graphs");
+		this.timer = metrics.timer(prefix + ".write");
+	}
+
+	/**
+	 * @return	The writer that does the work.
+	 */
+	public GraphWriter getWriter(){
+		return this.writer;
+	}
+
+	@Override
+	public void open(String file) {
+		this.writer.open(file);
+	}
+
+	@Override
+	public void write(Graph graph) {
+		long start = this.timer.start();
+		try {
+			this.writer.write(graph);
+		} finally {
+			this.timer.stop(start);
+		}
+		this.sentences.inc();
+		this.graphs.inc();
+	}
+
+	@Override
+	public void write(List<Graph> sentence) {
+		long start = this.timer.start();
+		try {
+			this.writer.write(sentence);
+		} finally {
+			this.timer.stop(start);
+		}
+		this.sentences.inc();
+		this.graphs.add(sentence.size());
+	}
+
+	@Override
+	public void close() {
+		this.writer.close();
+	}
+}
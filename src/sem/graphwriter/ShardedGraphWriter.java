@@ -0,0 +1,321 @@
+package sem.graphwriter;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import sem.exception.GraphFormatException;
+import sem.graph.Graph;
+import sem.graph.Node;
+
+/**
+ * Graph writer that splits the output into several files (shards).
+ *
+ * <p>A new file is started every maxSentences sentences, or when the current file has reached maxBytes bytes.
+ * The files are named after the output path, with a zero-padded shard number inserted before the first dot of the file name:
+ * "corpus.tsv.gz" becomes "corpus-000000.tsv.gz", "corpus-000001.tsv.gz", etc. FileReader.listFileRec() returns them in the order they were written,
+ * so reading the directory with a normal GraphReader gives back the sentences in the original order.
+ *
+ * <p>With several partitions, every sentence is assigned to a partition by a hash of its lemmas, and each partition
+ * is written by its own thread into its own series of files ("corpus-p001-000000.tsv.gz", etc.).
+ * The same sentence always goes into the same partition, and the order of the sentences within a partition is preserved.
+ *
+ * <p>The byte limit is checked against the size of the file on disk, which does not include data that is still in the buffers of the writer,
+ * so the files can be slightly larger. Writers that only write the file when they are closed (SnapshotGraphWriter) ignore the byte limit.
+ *
+ */
+public class ShardedGraphWriter implements GraphWriter{
+	/**
+	 * Number of sentences that can wait for each partition thread.
+	 */
+	public static final int QUEUE_SIZE = 256;
+
+	/**
+	 * The file size is checked after every this many sentences.
+	 */
+	private static final int SIZE_CHECK_INTERVAL = 16;
+
+	private GraphWriterType type;
+	private long maxSentences;
+	private long maxBytes;
+	private int partitionCount;
+	private String outputPath;
+	private Partition[] partitions;
+
+	/**
+	 * A graph or a sentence, passed to a partition thread.
+	 */
+	private static class Item{
+		Graph graph;
+		List<Graph> sentence;
+		boolean end;
+	}
+
+	/**
+	 * The series of files for one partition.
+	 */
+	private class Partition implements Runnable{
+		private int index;
+		private GraphWriter writer;
+		private File currentFile;
+		private int shard;
+		private long sentences;
+		private ArrayList<File> files;
+		private BlockingQueue<Item> queue;
+		private Thread thread;
+		private volatile RuntimeException exception;
+
+		private Partition(int index){
+			this.index = index;
+			this.shard = 0;
+			this.files = new ArrayList<File>();
+		}
+
+		private void write(Graph graph, List<Graph> sentence){
+			try {
+				if(this.writer == null){
+					this.currentFile = new File(getShardPath(outputPath, partitionCount > 1 ? this.index : -1, this.shard++));
+					this.files.add(this.currentFile);
+					this.writer = type.makeGraphWriter(this.currentFile.getPath());
+					this.sentences = 0;
+				}
+			} catch (GraphFormatException e) {
+				throw new RuntimeException(e);
+			}
+			if(graph != null)
+				this.writer.write(graph);
+			else
+				this.writer.write(sentence);
+			this.sentences++;
+			if((maxSentences > 0 && this.sentences >= maxSentences)
+					|| (maxBytes > 0 && this.sentences % SIZE_CHECK_INTERVAL == 0 && this.currentFile.length() >= maxBytes))
+				this.closeShard();
+		}
+
+		private void closeShard(){
+			if(this.writer != null){
+				this.writer.close();
+				this.writer = null;
+			}
+		}
+
+		@Override
+		public void run() {
+			while(true){
+				Item item;
+				try {
+					item = this.queue.take();
+				} catch (InterruptedException e) {
+					this.exception = new RuntimeException(e);
+					return;
+				}
+				if(item.end)
+					break;
+				// After an error, the remaining items are only taken from the queue, so that the producer does not block
+				if(this.exception == null){
+					try {
+						this.write(item.graph, item.sentence);
+					} catch (RuntimeException e) {
+						this.exception = e;
+					}
+				}
+			}
+			try {
+				this.closeShard();
+			} catch (RuntimeException e) {
+				if(this.exception == null)
+					this.exception = e;
+			}
+		}
+
+		private void add(Graph graph, List<Graph> sentence){
+			if(this.thread == null){
+				this.write(graph, sentence);
+				return;
+			}
+			if(this.exception != null)
+				throw this.exception;
+			Item item = new Item();
+			item.graph = graph;
+			item.sentence = sentence;
+			this.put(item);
+		}
+
+		private void put(Item item){
+			try {
+				this.queue.put(item);
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		private void start(){
+			this.queue = new ArrayBlockingQueue<Item>(QUEUE_SIZE);
+			this.thread = new Thread(this, "ShardedGraphWriter-" + this.index);
+			this.thread.start();
+		}
+
+		private void finish(){
+			if(this.thread == null){
+				this.closeShard();
+				return;
+			}
+			Item end = new Item();
+			end.end = true;
+			this.put(end);
+			try {
+				this.thread.join();
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+			this.thread = null;
+			if(this.exception != null)
+				throw this.exception;
+		}
+	}
+
+	/**
+	 * Create a writer that starts a new file after every maxSentences sentences.
+	 * @param type			Type of the output files.
+	 * @param outputPath	Path of the output, which the file names are created from.
+	 * @param maxSentences	Number of sentences in one file.
+	 */
+	public ShardedGraphWriter(GraphWriterType type, String outputPath, long maxSentences){
+		this(type, outputPath, maxSentences, 0, 1);
+	}
+
+	/**
+	 * Create a new sharded writer.
+	 * @param type			Type of the output files.
+	 * @param outputPath	Path of the output, which the file names are created from.
+	 * @param maxSentences	Number of sentences in one file, or 0 for no limit.
+	 * @param maxBytes		Size of one file in bytes, or 0 for no limit.
+	 * @param partitions	Number of partitions, each written by a separate thread. With 1, everything is written on the calling thread.
+	 */
+	public ShardedGraphWriter(GraphWriterType type, String outputPath, long maxSentences, long maxBytes, int partitions){
+		if(partitions < 1)
+			throw new RuntimeException("The number of partitions has to be at least 1.");
+		if(maxSentences < 0 || maxBytes < 0)
+			throw new RuntimeException("Shard limits cannot be negative.");
+		this.type = type;
+		this.maxSentences = maxSentences;
+		this.maxBytes = maxBytes;
+		this.partitionCount = partitions;
+		this.open(outputPath);
+	}
+
+	/**
+	 * Create the path of a shard.
+	 * @param outputPath	Path of the output.
+	 * @param partition		Number of the partition, or -1 if there is only one.
+	 * @param shard			Number of the shard in the partition.
+	 * @return	Path of the shard.
+	 */
+	public static String getShardPath(String outputPath, int partition, int shard){
+		File output = new File(outputPath);
+		String name = output.getName();
+		int dot = name.indexOf('.');
+		String base = (dot > 0) ? name.substring(0, dot) : name;
+		String suffix = (dot > 0) ? name.substring(dot) : "";
+		String number = (partition >= 0) ? String.format("-p%03d-%06d", partition, shard) : String.format("-%06d", shard);
+		return new File(output.getParentFile(), base + number + suffix).getPath();
+	}
+
+	/**
+	 * Choose the partition for a sentence, based on the lemmas of its first graph.
+	 * @param sentence	List of graphs.
+	 * @return	Number of the partition.
+	 */
+	protected int getPartition(List<Graph> sentence){
+		if(this.partitionCount == 1 || sentence.isEmpty())
+			return 0;
+		return this.getPartition(sentence.get(0));
+	}
+
+	/**
+	 * Choose the partition for a graph, based on its lemmas.
+	 * @param graph	The graph.
+	 * @return	Number of the partition.
+	 */
+	protected int getPartition(Graph graph){
+		if(this.partitionCount == 1)
+			return 0;
+		int hash = 0;
+		for(Node node : graph.getNodes())
+			hash = 31 * hash + (node.getLemma() == null ? 0 : node.getLemma().hashCode());
+		// Mixing the bits, so that similar hashes end up in different partitions
+		hash ^= hash >>> 16;
+		hash *= 0x85ebca6b;
+		hash ^= hash >>> 13;
+		return (hash & Integer.MAX_VALUE) % this.partitionCount;
+	}
+
+	/**
+	 * Start writing a new series of files (can be done from the constructor).
+	 * @param file	Path of the output, which the file names are created from.
+	 */
+	@Override
+	public void open(String file) {
+		if(this.partitions != null)
+			this.close();
+		File parent = new File(file).getAbsoluteFile().getParentFile();
+		if(parent != null && !parent.exists())
+			parent.mkdirs();
+		this.outputPath = file;
+		this.partitions = new Partition[this.partitionCount];
+		for(int i = 0; i < this.partitionCount; i++){
+			this.partitions[i] = new Partition(i);
+			if(this.partitionCount > 1)
+				this.partitions[i].start();
+		}
+	}
+
+	/**
+	 * Write a graph (as the only graph in a sentence).
+	 */
+	@Override
+	public void write(Graph graph) {
+		this.partitions[this.getPartition(graph)].add(graph, null);
+	}
+
+	/**
+	 * Write a sentence (list of graphs).
+	 */
+	@Override
+	public void write(List<Graph> sentence) {
+		this.partitions[this.getPartition(sentence)].add(null, sentence);
+	}
+
+	/**
+	 * Finish writing, and close all the files.
+	 */
+	@Override
+	public void close() {
+		if(this.partitions == null)
+			return;
+		RuntimeException exception = null;
+		for(Partition partition : this.partitions){
+			try {
+				partition.finish();
+			} catch (RuntimeException e) {
+				if(exception == null)
+					exception = e;
+			}
+		}
+		if(exception != null)
+			throw exception;
+	}
+
+	/**
+	 * Get the files that have been written, in order. With several partitions, the files of each partition follow each other.
+	 * @return	List of files.
+	 */
+	public ArrayList<File> getOutputFiles(){
+		ArrayList<File> files = new ArrayList<File>();
+		for(Partition partition : this.partitions)
+			files.addAll(partition.files);
+		return files;
+	}
+}
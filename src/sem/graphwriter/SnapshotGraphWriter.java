@@ -0,0 +1,287 @@
+package sem.graphwriter;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map.Entry;
+
+import sem.exception.GraphFormatException;
+import sem.graph.Edge;
+import sem.graph.Graph;
+import sem.graph.Node;
+import sem.graphreader.GraphReader;
+
+/**
+ * Writes a columnar snapshot of a corpus, which can be memory-mapped and read with MappedGraphReader.
+ *
+ * <p>All the values of one field (for example the lemmas of all nodes) are stored together in one section of the file.
+ * After the 64-byte header, the sections follow each other in this order, each starting at a multiple of 8 bytes:
+ * <pre>
+ * sentence graphs:  long[sentences+1]  index of the first graph of every sentence
+ * graph nodes:      long[graphs+1]     index of the first node of every graph
+ * graph edges:      long[graphs+1]     index of the first edge of every graph
+ * graph metadata:   long[graphs+1]     index of the first metadata entry of every graph
+ * node lemmas:      int[nodes]         string id
+ * node POS:         int[nodes]         string id
+ * edge labels:      int[edges]         string id
+ * edge heads:       int[edges]         index of the head node in the graph
+ * edge deps:        int[edges]         index of the dependent node in the graph
+ * metadata keys:    int[metadata]      string id
+ * metadata values:  int[metadata]      string id
+ * string offsets:   long[strings+1]    position of every string in the string data
+ * string data:      byte[]             UTF-8
+ * </pre>
+ * The header contains the magic number, the version and the number of sentences, graphs, nodes, edges, metadata entries, strings and bytes of string data.
+ * String id -1 is used for null. All values are big-endian.
+ *
+ * <p>The sections are written into temporary files next to the output file, and joined together when the writer is closed.
+ *
+ */
+public class SnapshotGraphWriter implements GraphWriter{
+	/**
+	 * The first four bytes of every snapshot file ("SGSN").
+	 */
+	public static final int MAGIC = 0x5347534E;
+	public static final int VERSION = 1;
+	public static final int HEADER_SIZE = 64;
+
+	public static final int SENTENCE_GRAPHS = 0;
+	public static final int GRAPH_NODES = 1;
+	public static final int GRAPH_EDGES = 2;
+	public static final int GRAPH_METADATA = 3;
+	public static final int NODE_LEMMAS = 4;
+	public static final int NODE_POS = 5;
+	public static final int EDGE_LABELS = 6;
+	public static final int EDGE_HEADS = 7;
+	public static final int EDGE_DEPS = 8;
+	public static final int METADATA_KEYS = 9;
+	public static final int METADATA_VALUES = 10;
+	public static final int STRING_OFFSETS = 11;
+	public static final int STRING_DATA = 12;
+	public static final int SECTIONS = 13;
+
+	private String file;
+	private DataOutputStream[] sections;
+	private HashMap<String,Integer> stringIds;
+	private ArrayList<String> strings;
+	private long sentenceCount, graphCount, nodeCount, edgeCount, metadataCount;
+
+	public SnapshotGraphWriter(String file){
+		this.open(file);
+	}
+
+	/**
+	 * Create a snapshot of all the sentences that are left in the reader.
+	 * @param reader		The reader.
+	 * @param outputPath	Path to the snapshot file.
+	 * @throws GraphFormatException
+	 */
+	public static void snapshot(GraphReader reader, String outputPath) throws GraphFormatException{
+		SnapshotGraphWriter writer = new SnapshotGraphWriter(outputPath);
+		while(reader.hasNext())
+			writer.write(reader.nextSentence());
+		writer.close();
+	}
+
+	/**
+	 * Calculate the positions of the sections in a snapshot file.
+	 * @param counts	Number of sentences, graphs, nodes, edges, metadata entries, strings and bytes of string data, as stored in the header.
+	 * @return	Start of every section, followed by the size of the file.
+	 */
+	public static long[] getSectionOffsets(long[] counts){
+		long sentences = counts[0], graphs = counts[1], nodes = counts[2], edges = counts[3], metadata = counts[4], strings = counts[5], stringBytes = counts[6];
+		long[] sizes = new long[]{8 * (sentences + 1), 8 * (graphs + 1), 8 * (graphs + 1), 8 * (graphs + 1),
+				4 * nodes, 4 * nodes, 4 * edges, 4 * edges, 4 * edges, 4 * metadata, 4 * metadata, 8 * (strings + 1), stringBytes};
+		long[] offsets = new long[SECTIONS + 1];
+		long position = HEADER_SIZE;
+		for(int i = 0; i < SECTIONS; i++){
+			offsets[i] = position;
+			position = align(position + sizes[i]);
+		}
+		offsets[SECTIONS] = offsets[SECTIONS - 1] + sizes[SECTIONS - 1];
+		return offsets;
+	}
+
+	private static long align(long position){
+		return (position + 7) & ~7L;
+	}
+
+	private File getSectionFile(int section){
+		return new File(this.file + ".section" + section);
+	}
+
+	/**
+	 * Open the writer (can be done from the constructor).
+	 */
+	@Override
+	public void open(String file) {
+		if(this.sections != null)
+			this.close();
+		this.file = file;
+		this.stringIds = new HashMap<String,Integer>();
+		this.strings = new ArrayList<String>();
+		this.sentenceCount = this.graphCount = this.nodeCount = this.edgeCount = this.metadataCount = 0;
+		this.sections = new DataOutputStream[STRING_OFFSETS];
+		try {
+			for(int i = 0; i < this.sections.length; i++)
+				this.sections[i] = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.getSectionFile(i)), 1 << 16));
+			this.sections[SENTENCE_GRAPHS].writeLong(0);
+			this.sections[GRAPH_NODES].writeLong(0);
+			this.sections[GRAPH_EDGES].writeLong(0);
+			this.sections[GRAPH_METADATA].writeLong(0);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Write a graph (as the only graph in a sentence).
+	 */
+	@Override
+	public void write(Graph graph) {
+		try {
+			this.writeGraph(graph);
+			this.sentenceCount++;
+			this.sections[SENTENCE_GRAPHS].writeLong(this.graphCount);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Write a sentence (list of graphs).
+	 */
+	@Override
+	public void write(List<Graph> sentence) {
+		try {
+			for(Graph graph : sentence)
+				this.writeGraph(graph);
+			this.sentenceCount++;
+			this.sections[SENTENCE_GRAPHS].writeLong(this.graphCount);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private int getStringId(String string){
+		if(string == null)
+			return -1;
+		Integer id = this.stringIds.get(string);
+		if(id == null){
+			id = this.strings.size();
+			this.stringIds.put(string, id);
+			this.strings.add(string);
+		}
+		return id;
+	}
+
+	private void writeGraph(Graph graph) throws IOException{
+		ArrayList<Node> nodes = graph.getNodes();
+		for(Node node : nodes){
+			this.sections[NODE_LEMMAS].writeInt(this.getStringId(node.getLemma()));
+			this.sections[NODE_POS].writeInt(this.getStringId(node.getPos()));
+		}
+		this.nodeCount += nodes.size();
+
+		ArrayList<Edge> edges = graph.getEdges();
+		for(Edge edge : edges){
+			int head = graph.indexOf(edge.getHead());
+			int dep = graph.indexOf(edge.getDep());
+			if(head < 0 || dep < 0)
+				throw new RuntimeException("Found a node in an edge that is not present in the list of nodes.");
+			this.sections[EDGE_LABELS].writeInt(this.getStringId(edge.getLabel()));
+			this.sections[EDGE_HEADS].writeInt(head);
+			this.sections[EDGE_DEPS].writeInt(dep);
+		}
+		this.edgeCount += edges.size();
+
+		if(graph.hasMetadata()){
+			for(Entry<String,String> entry : graph.getMetadata().entrySet()){
+				this.sections[METADATA_KEYS].writeInt(this.getStringId(entry.getKey()));
+				this.sections[METADATA_VALUES].writeInt(this.getStringId(entry.getValue()));
+				this.metadataCount++;
+			}
+		}
+
+		this.graphCount++;
+		this.sections[GRAPH_NODES].writeLong(this.nodeCount);
+		this.sections[GRAPH_EDGES].writeLong(this.edgeCount);
+		this.sections[GRAPH_METADATA].writeLong(this.metadataCount);
+	}
+
+	private static void pad(DataOutputStream out, long from, long to) throws IOException{
+		for(long i = from; i < to; i++)
+			out.write(0);
+	}
+
+	/**
+	 * Join the sections into the snapshot file and close the writer.
+	 */
+	@Override
+	public void close() {
+		if(this.sections == null)
+			return;
+		try {
+			for(DataOutputStream section : this.sections)
+				section.close();
+			this.sections = null;
+
+			long stringBytes = 0;
+			ArrayList<byte[]> encoded = new ArrayList<byte[]>(this.strings.size());
+			for(String string : this.strings){
+				byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+				encoded.add(bytes);
+				stringBytes += bytes.length;
+			}
+
+			long[] counts = new long[]{this.sentenceCount, this.graphCount, this.nodeCount, this.edgeCount, this.metadataCount, this.strings.size(), stringBytes};
+			long[] offsets = getSectionOffsets(counts);
+
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.file), 1 << 16));
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			for(long count : counts)
+				out.writeLong(count);
+			long position = 8 + 8 * counts.length;
+			pad(out, position, HEADER_SIZE);
+
+			byte[] buffer = new byte[1 << 16];
+			for(int i = 0; i < STRING_OFFSETS; i++){
+				File sectionFile = this.getSectionFile(i);
+				InputStream in = new FileInputStream(sectionFile);
+				long size = 0;
+				int n;
+				while((n = in.read(buffer)) > 0){
+					out.write(buffer, 0, n);
+					size += n;
+				}
+				in.close();
+				sectionFile.delete();
+				pad(out, offsets[i] + size, offsets[i+1]);
+			}
+
+			long stringOffset = 0;
+			out.writeLong(0);
+			for(byte[] bytes : encoded){
+				stringOffset += bytes.length;
+				out.writeLong(stringOffset);
+			}
+			pad(out, offsets[STRING_OFFSETS] + 8 * (encoded.size() + 1), offsets[STRING_DATA]);
+			for(byte[] bytes : encoded)
+				out.write(bytes);
+			out.close();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		this.stringIds = null;
+		this.strings = null;
+	}
+}
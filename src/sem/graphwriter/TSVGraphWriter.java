@@ -3,16 +3,29 @@ package sem.graphwriter;
 import java.util.List;
 
 import sem.graph.Graph;
+import sem.graph.NBestGraph;
 import sem.util.FileWriter;
 
 /**
  * Graph writer for the TSV format.
+ * The output is compressed if the file name ends with .gz, .bgz or .lz4 (see FileWriter).
  *
  */
 public class TSVGraphWriter implements GraphWriter{
 	private FileWriter fileWriter;
+	private int bufferSize;
 	
 	public TSVGraphWriter(String file){
+		this(file, FileWriter.BUFFER_SIZE);
+	}
+	
+	/**
+	 * Create a new TSVGraphWriter.
+	 * @param file			Output file path.
+	 * @param bufferSize	Size of the output buffers, in bytes.
+	 */
+	public TSVGraphWriter(String file, int bufferSize){
+		this.bufferSize = bufferSize;
 		this.open(file);
 	}
 	
@@ -23,7 +36,7 @@ public class TSVGraphWriter implements GraphWriter{
 	public void open(String file) {
 		if(this.fileWriter != null)
 			this.fileWriter.close();
-		this.fileWriter = new FileWriter(file);
+		this.fileWriter = new FileWriter(file, this.bufferSize);
 	}
 
 	/**
@@ -57,6 +70,10 @@ public class TSVGraphWriter implements GraphWriter{
 	}
 	
 	private void writeGraph(Graph graph){
+		if(graph instanceof NBestGraph && !((NBestGraph)graph).isMaterialised()){
+			writeGraph((NBestGraph)graph);
+			return;
+		}
 		fileWriter.writeln("<g>");
 		fileWriter.writeln("<lem>");
 		for(int i = 0; i < graph.getNodes().size(); i++)
@@ -65,7 +82,24 @@ public class TSVGraphWriter implements GraphWriter{
 		
 		fileWriter.writeln("<gr>");
 		for(int i = 0; i < graph.getEdges().size(); i++)
-			fileWriter.writeln("" + graph.getEdges().get(i).getLabel() + "\t" + (graph.getNodes().indexOf(graph.getEdges().get(i).getHead())+1) + "\t" + (graph.getNodes().indexOf(graph.getEdges().get(i).getDep())+1));
+			fileWriter.writeln("" + graph.getEdges().get(i).getLabel() + "\t" + (graph.indexOf(graph.getEdges().get(i).getHead())+1) + "\t" + (graph.indexOf(graph.getEdges().get(i).getDep())+1));
+		fileWriter.writeln("</gr>");
+		fileWriter.writeln("</g>");
+	}
+	
+	/**
+	 * Write a parse of an NBestSentence directly from the shared nodes, without creating its nodes and edges.
+	 */
+	private void writeGraph(NBestGraph graph){
+		fileWriter.writeln("<g>");
+		fileWriter.writeln("<lem>");
+		for(int i = 0; i < graph.getNodeCount(); i++)
+			fileWriter.writeln("" + (i+1) + "\t" + graph.getLemma(i) + "\t" + graph.getPos(i));
+		fileWriter.writeln("</lem>");
+		
+		fileWriter.writeln("<gr>");
+		for(int i = 0; i < graph.getEdgeCount(); i++)
+			fileWriter.writeln("" + graph.getLabel(i) + "\t" + (graph.getHeadIndex(i)+1) + "\t" + (graph.getDepIndex(i)+1));
 		fileWriter.writeln("</gr>");
 		fileWriter.writeln("</g>");
 	}
@@ -13,6 +13,7 @@ import sem.util.FileWriter;
  * <p>It uses the tikz-dependency, so make sure you have it installed when trying to convert the .tex into .pdf. You need to have a sufficiently up-to-date installation of tikz as well. The tikz-dependency documentation includes steps for installing them both.
  * <p>Sometimes the edges don't get positioned nicely, leading to overlapping edge labels. So take a look at the tikz-dependency documentation or the wiki example if you want to manually adjust the properties of the graph.
  * <p>If you specify the option in the constructor, an alternative algorithm is used that tries to do custom positioning of edges. The results will vary depending on the graph. However, it only makes a difference when using the segmented edges; it has no effect on arc edges in the tikz-dependency library.
+ * <p>The output is compressed if the file name ends with .gz, .bgz or .lz4 (see FileWriter).
  * 
  * <p>Tikz : <a href="http://www.texample.net/tikz/">http://www.texample.net/tikz/</a>
  * <p>Tikz-dependency : <a href="http://sourceforge.net/projects/tikz-dependency/">http://sourceforge.net/projects/tikz-dependency/</a>
@@ -25,6 +26,7 @@ public class TikzDependencyGraphWriter implements GraphWriter{
 	private boolean edgeSegmented;
 	private boolean edgeBubble;
 	private boolean repositionEdges;
+	private int bufferSize;
 	
 	/**
 	 * Create a new GraphWriter for the tikz-dependency format.
@@ -34,7 +36,20 @@ public class TikzDependencyGraphWriter implements GraphWriter{
 	 * @param repositionEdges	Reposition the edges using a different algorithm.
 	 */
 	public TikzDependencyGraphWriter(String file, boolean edgeSegmented, boolean edgeBubble, boolean repositionEdges){
+		this(file, edgeSegmented, edgeBubble, repositionEdges, FileWriter.BUFFER_SIZE);
+	}
+	
+	/**
+	 * Create a new GraphWriter for the tikz-dependency format.
+	 * @param file	Output file path.
+	 * @param edgeSegmented	Use segmented edges (as opposed to arc edges).
+	 * @param edgeBubble	Use bubbles around edge labels.
+	 * @param repositionEdges	Reposition the edges using a different algorithm.
+	 * @param bufferSize	Size of the output buffers, in bytes.
+	 */
+	public TikzDependencyGraphWriter(String file, boolean edgeSegmented, boolean edgeBubble, boolean repositionEdges, int bufferSize){
 		this.counter = 0;
+		this.bufferSize = bufferSize;
 		this.open(file);
 		this.edgeSegmented = edgeSegmented;
 		this.edgeBubble = edgeBubble;
@@ -146,7 +161,7 @@ public class TikzDependencyGraphWriter implements GraphWriter{
 	public void open(String file) {
 		if(this.fileWriter != null)
 			this.fileWriter.close();
-		this.fileWriter = new FileWriter(file);
+		this.fileWriter = new FileWriter(file, this.bufferSize);
 		this.fileWriter.writeln("% This document was automatically created by TikzDependencyGraphWriter in the SemGraph library.");
 		this.fileWriter.writeln("% You need to have the tikz and tikz-dependency packages installed in order to compile this into a pdf (e.g. using pdflatex).");
 		this.fileWriter.writeln("\\documentclass{article}");
@@ -196,7 +211,7 @@ public class TikzDependencyGraphWriter implements GraphWriter{
 			this.fileWriter.write("\\depedge");
 			if(edgeHeights != null)
 				this.fileWriter.write("[edge unit distance=" + edgeHeights.get(edge)+ "ex]");
-			this.fileWriter.writeln("{" + (graph.getNodes().indexOf(edge.getHead())+1) + "}{" + (graph.getNodes().indexOf(edge.getDep())+1) + "}{" + escapeLatex(edge.getLabel()) + "}"
+			this.fileWriter.writeln("{" + (graph.indexOf(edge.getHead())+1) + "}{" + (graph.indexOf(edge.getDep())+1) + "}{" + escapeLatex(edge.getLabel()) + "}"
 					+ " % (" + edge.getLabel() + " " + edge.getHead().getLabel() + " " + edge.getDep().getLabel() + ")");
 		}
 		
@@ -0,0 +1,32 @@
+package sem.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A count that can be increased from several threads at the same time.
+ *
+ */
+public class Counter {
+	private LongAdder count = new LongAdder();
+
+	public void inc(){
+		this.count.increment();
+	}
+
+	public void add(long n){
+		this.count.add(n);
+	}
+
+	public long getCount(){
+		return this.count.sum();
+	}
+
+	public void reset(){
+		this.count.reset();
+	}
+
+	@Override
+	public String toString(){
+		return Long.toString(this.getCount());
+	}
+}
@@ -0,0 +1,104 @@
+package sem.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Distribution of non-negative values, which can be recorded from several threads at the same time.
+ *
+ * <p>The values are counted in buckets: values below 8 have their own bucket, and every power of two above that is divided into 8 buckets.
+ * Percentiles are therefore approximate, they are returned as the largest value of the bucket and are at most 12.5% too high.
+ * The count, sum and maximum are exact.
+ *
+ */
+public class Histogram {
+	private static final int SUB_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+	private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+	private AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	private AtomicLong count = new AtomicLong();
+	private AtomicLong sum = new AtomicLong();
+	private AtomicLong max = new AtomicLong();
+
+	static int getBucket(long value){
+		if(value < SUB_BUCKETS)
+			return (int)value;
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int sub = (int)(value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+	}
+
+	static long getBucketLimit(int bucket){
+		if(bucket < SUB_BUCKETS)
+			return bucket;
+		int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+		int sub = bucket % SUB_BUCKETS;
+		return ((SUB_BUCKETS + sub + 1L) << (exponent - SUB_BITS)) - 1;
+	}
+
+	/**
+	 * Record a value. Negative values are recorded as 0.
+	 * @param value	The value.
+	 */
+	public void record(long value){
+		if(value < 0)
+			value = 0;
+		this.buckets.incrementAndGet(getBucket(value));
+		this.count.incrementAndGet();
+		this.sum.addAndGet(value);
+		long max;
+		while(value > (max = this.max.get()) && !this.max.compareAndSet(max, value));
+	}
+
+	public long getCount(){
+		return this.count.get();
+	}
+
+	public long getSum(){
+		return this.sum.get();
+	}
+
+	public long getMax(){
+		return this.max.get();
+	}
+
+	public double getMean(){
+		long count = this.count.get();
+		return (count == 0) ? 0.0 : (double)this.sum.get() / count;
+	}
+
+	/**
+	 * Get an approximate percentile.
+	 * @param percentile	Percentile between 0 and 100, for example 99.
+	 * @return	The smallest bucket limit that is at least as large as the given percentage of the values, or 0 if nothing has been recorded.
+	 */
+	public long getPercentile(double percentile){
+		long count = 0;
+		for(int i = 0; i < BUCKETS; i++)
+			count += this.buckets.get(i);
+		if(count == 0)
+			return 0;
+		long target = Math.max(1, (long)Math.ceil(count * percentile / 100.0));
+		long seen = 0;
+		for(int i = 0; i < BUCKETS; i++){
+			seen += this.buckets.get(i);
+			if(seen >= target)
+				return Math.min(getBucketLimit(i), this.getMax());
+		}
+		return this.getMax();
+	}
+
+	public void reset(){
+		for(int i = 0; i < BUCKETS; i++)
+			this.buckets.set(i, 0);
+		this.count.set(0);
+		this.sum.set(0);
+		this.max.set(0);
+	}
+
+	@Override
+	public String toString(){
+		return String.format("count=%d mean=%.1f p50=%d p99=%d max=%d", this.getCount(), this.getMean(), this.getPercentile(50), this.getPercentile(99), this.getMax());
+	}
+}
@@ -0,0 +1,55 @@
+package sem.metrics;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream that counts the bytes read through it, and optionally measures the time spent in each read.
+ *
+ */
+public class MeteredInputStream extends FilterInputStream {
+	private Counter bytes;
+	private Timer timer;
+
+	/**
+	 * @param in	The underlying stream.
+	 * @param bytes	Counter for the bytes.
+	 * @param timer	Timer for the reads, or null.
+	 */
+	public MeteredInputStream(InputStream in, Counter bytes, Timer timer){
+		super(in);
+		this.bytes = bytes;
+		this.timer = timer;
+	}
+
+	@Override
+	public int read() throws IOException {
+		long start = (this.timer != null) ? this.timer.start() : 0;
+		int b = this.in.read();
+		if(this.timer != null)
+			this.timer.stop(start);
+		if(b >= 0)
+			this.bytes.inc();
+		return b;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		long start = (this.timer != null) ? this.timer.start() : 0;
+		int n = this.in.read(b, off, len);
+		if(this.timer != null)
+			this.timer.stop(start);
+		if(n > 0)
+			this.bytes.add(n);
+		return n;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		long skipped = this.in.skip(n);
+		if(skipped > 0)
+			this.bytes.add(skipped);
+		return skipped;
+	}
+}
@@ -0,0 +1,44 @@
+package sem.metrics;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Output stream that counts the bytes written through it, and optionally measures the time spent in each write.
+ *
+ */
+public class MeteredOutputStream extends FilterOutputStream {
+	private Counter bytes;
+	private Timer timer;
+
+	/**
+	 * @param out	The underlying stream.
+	 * @param bytes	Counter for the bytes.
+	 * @param timer	Timer for the writes, or null.
+	 */
+	public MeteredOutputStream(OutputStream out, Counter bytes, Timer timer){
+		super(out);
+		this.bytes = bytes;
+		this.timer = timer;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		long start = (this.timer != null) ? this.timer.start() : 0;
+		this.out.write(b);
+		if(this.timer != null)
+			this.timer.stop(start);
+		this.bytes.inc();
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		// FilterOutputStream would write the bytes one by one
+		long start = (this.timer != null) ? this.timer.start() : 0;
+		this.out.write(b, off, len);
+		if(this.timer != null)
+			this.timer.stop(start);
+		this.bytes.add(len);
+	}
+}
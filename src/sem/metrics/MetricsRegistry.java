@@ -0,0 +1,285 @@
+package sem.metrics;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+/**
+ * A named collection of counters, timers and histograms.
+ *
+ * <p>Metrics are created the first time they are requested, and the same object is returned for the same name afterwards,
+ * so that several readers or threads can add to the same metric. Names are dot-separated, for example "reader.tsv.sentences".
+ *
+ * <p>The registry can be registered as an MBean, which makes the metrics visible in JMX clients such as jconsole.
+ * Counters are shown as a single attribute, timers and histograms as several attributes (count, mean, p50, p99, max).
+ * It can also print a report line periodically, see startReporting().
+ *
+ */
+public class MetricsRegistry implements DynamicMBean {
+	private static final String[] HISTOGRAM_ATTRIBUTES = new String[]{"count", "mean", "p50", "p99", "max"};
+
+	private ConcurrentSkipListMap<String,Object> metrics;
+	private ObjectName objectName;
+	private ScheduledExecutorService reporter;
+	private long startTime;
+
+	public MetricsRegistry(){
+		this.metrics = new ConcurrentSkipListMap<String,Object>();
+		this.startTime = System.nanoTime();
+	}
+
+	/**
+	 * Add a new metric, unless another thread has already added one with the same name.
+	 * @return	The metric that is in the registry.
+	 */
+	private Object add(String name, Object metric){
+		Object previous = this.metrics.putIfAbsent(name, metric);
+		return (previous != null) ? previous : metric;
+	}
+
+	private static void checkType(String name, Object metric, Class<?> type){
+		if(metric.getClass() != type)
+			throw new RuntimeException("Metric " + name + " is not a " + type.getSimpleName());
+	}
+
+	public Counter counter(String name){
+		Object metric = this.metrics.get(name);
+		if(metric == null)
+			metric = this.add(name, new Counter());
+		checkType(name, metric, Counter.class);
+		return (Counter)metric;
+	}
+
+	public Timer timer(String name){
+		Object metric = this.metrics.get(name);
+		if(metric == null)
+			metric = this.add(name, new Timer());
+		checkType(name, metric, Timer.class);
+		return (Timer)metric;
+	}
+
+	public Histogram histogram(String name){
+		Object metric = this.metrics.get(name);
+		if(metric == null)
+			metric = this.add(name, new Histogram());
+		checkType(name, metric, Histogram.class);
+		return (Histogram)metric;
+	}
+
+	/**
+	 * @return	Names of all the metrics, in alphabetical order.
+	 */
+	public ArrayList<String> getNames(){
+		return new ArrayList<String>(this.metrics.keySet());
+	}
+
+	/**
+	 * @return	Seconds since the registry was created or reset.
+	 */
+	public double getElapsedSeconds(){
+		return (System.nanoTime() - this.startTime) / 1e9;
+	}
+
+	/**
+	 * Set all the metrics back to zero, and restart the clock.
+	 */
+	public void reset(){
+		for(Object metric : this.metrics.values()){
+			if(metric instanceof Counter)
+				((Counter)metric).reset();
+			else
+				((Histogram)metric).reset();
+		}
+		this.startTime = System.nanoTime();
+	}
+
+	/**
+	 * Create a report of all the metrics, one per line. Counters are followed by their average rate per second.
+	 * @return	The report.
+	 */
+	public String report(){
+		StringBuilder report = new StringBuilder();
+		double seconds = this.getElapsedSeconds();
+		for(Map.Entry<String,Object> entry : this.metrics.entrySet()){
+			report.append(entry.getKey()).append(": ").append(entry.getValue());
+			if(entry.getValue() instanceof Counter && seconds > 0)
+				report.append(String.format(" (%.1f/s)", ((Counter)entry.getValue()).getCount() / seconds));
+			report.append('\n');
+		}
+		return report.toString();
+	}
+
+	/**
+	 * Print the value of some counters on a single line, with their average rate per second.
+	 * @param out		Where to print.
+	 * @param names		Names of the counters.
+	 */
+	public void printCounters(PrintStream out, String... names){
+		double seconds = this.getElapsedSeconds();
+		StringBuilder line = new StringBuilder(String.format("[%.1fs]", seconds));
+		for(String name : names){
+			long count = this.counter(name).getCount();
+			line.append(' ').append(name).append('=').append(count);
+			if(seconds > 0)
+				line.append(String.format(" (%.1f/s)", count / seconds));
+		}
+		out.println(line);
+	}
+
+	/**
+	 * Start printing some counters periodically on a background thread (see printCounters()).
+	 * If no counters are given, the whole report is printed.
+	 * @param out			Where to print.
+	 * @param periodSeconds	Time between reports.
+	 * @param names			Names of the counters.
+	 */
+	public synchronized void startReporting(final PrintStream out, long periodSeconds, final String... names){
+		this.stopReporting();
+		this.reporter = Executors.newSingleThreadScheduledExecutor(new ThreadFactory(){
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "MetricsRegistry-reporter");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		this.reporter.scheduleAtFixedRate(new Runnable(){
+			@Override
+			public void run() {
+				if(names.length == 0)
+					out.print(report());
+				else
+					printCounters(out, names);
+			}
+		}, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Stop the periodic reports.
+	 */
+	public synchronized void stopReporting(){
+		if(this.reporter != null){
+			this.reporter.shutdownNow();
+			this.reporter = null;
+		}
+	}
+
+	/**
+	 * Register the registry with the platform MBean server.
+	 * @param name	Object name, for example "sem:type=Metrics,name=ConvertGraphs".
+	 */
+	public synchronized void registerMBean(String name){
+		this.unregisterMBean();
+		try {
+			this.objectName = new ObjectName(name);
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, this.objectName);
+		} catch (Exception e) {
+			this.objectName = null;
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Remove the registry from the platform MBean server, if it has been registered.
+	 */
+	public synchronized void unregisterMBean(){
+		if(this.objectName == null)
+			return;
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			if(server.isRegistered(this.objectName))
+				server.unregisterMBean(this.objectName);
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		} finally {
+			this.objectName = null;
+		}
+	}
+
+	@Override
+	public Object getAttribute(String attribute) throws AttributeNotFoundException {
+		Object metric = this.metrics.get(attribute);
+		if(metric instanceof Counter)
+			return ((Counter)metric).getCount();
+		int dot = attribute.lastIndexOf('.');
+		if(dot > 0 && (metric = this.metrics.get(attribute.substring(0, dot))) instanceof Histogram){
+			Histogram histogram = (Histogram)metric;
+			String field = attribute.substring(dot + 1);
+			if(field.equals("count"))
+				return histogram.getCount();
+			else if(field.equals("mean"))
+				return histogram.getMean();
+			else if(field.equals("p50"))
+				return histogram.getPercentile(50);
+			else if(field.equals("p99"))
+				return histogram.getPercentile(99);
+			else if(field.equals("max"))
+				return histogram.getMax();
+		}
+		throw new AttributeNotFoundException(attribute);
+	}
+
+	@Override
+	public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+		throw new AttributeNotFoundException("Metrics are read-only: " + attribute.getName());
+	}
+
+	@Override
+	public AttributeList getAttributes(String[] attributes) {
+		AttributeList list = new AttributeList();
+		for(String attribute : attributes){
+			try {
+				list.add(new Attribute(attribute, this.getAttribute(attribute)));
+			} catch (AttributeNotFoundException e) {
+				// Missing attributes are left out of the list
+			}
+		}
+		return list;
+	}
+
+	@Override
+	public AttributeList setAttributes(AttributeList attributes) {
+		return new AttributeList();
+	}
+
+	@Override
+	public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+		if(actionName.equals("reset") && (params == null || params.length == 0)){
+			this.reset();
+			return null;
+		}
+		throw new ReflectionException(new NoSuchMethodException(actionName));
+	}
+
+	@Override
+	public MBeanInfo getMBeanInfo() {
+		ArrayList<MBeanAttributeInfo> attributes = new ArrayList<MBeanAttributeInfo>();
+		for(Map.Entry<String,Object> entry : this.metrics.entrySet()){
+			if(entry.getValue() instanceof Counter)
+				attributes.add(new MBeanAttributeInfo(entry.getKey(), "long", "Counter", true, false, false));
+			else {
+				for(String field : HISTOGRAM_ATTRIBUTES)
+					attributes.add(new MBeanAttributeInfo(entry.getKey() + "." + field, field.equals("mean") ? "double" : "long", entry.getValue().getClass().getSimpleName(), true, false, false));
+			}
+		}
+		MBeanOperationInfo reset = new MBeanOperationInfo("reset", "Set all the metrics back to zero", null, "void", MBeanOperationInfo.ACTION);
+		return new MBeanInfo(this.getClass().getName(), "Graph reading and writing metrics", attributes.toArray(new MBeanAttributeInfo[attributes.size()]), null, new MBeanOperationInfo[]{reset}, null);
+	}
+}
@@ -0,0 +1,38 @@
+package sem.metrics;
+
+/**
+ * Histogram of durations, measured in nanoseconds.
+ *
+ * <p>Usage:
+ * <code>long start = timer.start(); ... timer.stop(start);</code>
+ *
+ */
+public class Timer extends Histogram {
+
+	/**
+	 * @return	The current time, to be passed to stop().
+	 */
+	public long start(){
+		return System.nanoTime();
+	}
+
+	/**
+	 * Record the time since start().
+	 * @param start	Value returned by start().
+	 */
+	public void stop(long start){
+		this.record(System.nanoTime() - start);
+	}
+
+	/**
+	 * @return	The total recorded time, in seconds.
+	 */
+	public double getTotalSeconds(){
+		return this.getSum() / 1e9;
+	}
+
+	@Override
+	public String toString(){
+		return String.format("count=%d total=%.2fs mean=%.3fms p99=%.3fms max=%.3fms", this.getCount(), this.getTotalSeconds(), this.getMean() / 1e6, this.getPercentile(99) / 1e6, this.getMax() / 1e6);
+	}
+}
@@ -0,0 +1,246 @@
+package sem.run;
+
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import sem.exception.GraphFormatException;
+import sem.graph.Graph;
+import sem.graphreader.GraphReader;
+import sem.graphreader.GraphReaderType;
+import sem.graphreader.InstrumentedGraphReader;
+import sem.graphreader.SentenceChunkReader;
+import sem.graphwriter.GraphWriter;
+import sem.metrics.MetricsRegistry;
+import sem.metrics.Timer;
+
+/**
+ * Reads and writes graphs in a pipeline of three stages that run at the same time:
+ * <ol>
+ * <li>A reader thread reads the input as raw text, splits it into chunks of whole sentences (see SentenceChunkReader) and hands them to the parsers.</li>
+ * <li>A pool of parser threads turns the chunks into graphs.</li>
+ * <li>The calling thread writes the sentences of each chunk, in the order of the input.</li>
+ * </ol>
+ *
+ * <p>The chunks are passed from the reader to the writer through a bounded queue, in the order they were read.
+ * The writer waits for each chunk to be parsed before taking the next one, so the output is the same as with a sequential conversion,
+ * and the reader stops when the queue is full, so only a limited number of chunks are in memory at any time.
+ *
+ * <p>The input has to be in a line-based format (SentenceChunkReader.isSupported()).
+ *
+ * <p>With a MetricsRegistry (see setMetrics()), the parsers record their work under "reader.&lt;type&gt;" (see InstrumentedGraphReader),
+ * the counter "pipeline.chunks" counts the chunks, and the timer "pipeline.wait" measures how long the writer waits for parsed chunks.
+ * A long wait means that reading or parsing is the bottleneck, a short one that writing is.
+ *
+ */
+public class ConversionPipeline {
+	/**
+	 * Default number of sentences in one chunk.
+	 */
+	public static final int CHUNK_SENTENCES = 1000;
+
+	/**
+	 * Number of chunks that can be waiting or being parsed, for each parser thread.
+	 */
+	public static final int CHUNKS_PER_THREAD = 2;
+
+	private GraphReaderType inputType;
+	private String inputPath;
+	private int parserThreads;
+	private int chunkSentences;
+	private MetricsRegistry metrics;
+
+	/**
+	 * A parsed chunk, an error or the end of the input, passed from the reader to the writer.
+	 */
+	private static class Item{
+		Future<ArrayList<ArrayList<Graph>>> sentences;
+		RuntimeException exception;
+		boolean end;
+	}
+
+	/**
+	 * Create a pipeline with the default chunk size.
+	 * @param inputType		Input format.
+	 * @param inputPath		Input file or directory.
+	 * @param parserThreads	Number of parser threads.
+	 */
+	public ConversionPipeline(GraphReaderType inputType, String inputPath, int parserThreads){
+		this(inputType, inputPath, parserThreads, CHUNK_SENTENCES);
+	}
+
+	/**
+	 * Create a new pipeline.
+	 * @param inputType			Input format.
+	 * @param inputPath			Input file or directory.
+	 * @param parserThreads		Number of parser threads.
+	 * @param chunkSentences	Number of sentences in one chunk.
+	 */
+	public ConversionPipeline(GraphReaderType inputType, String inputPath, int parserThreads, int chunkSentences){
+		if(!SentenceChunkReader.isSupported(inputType))
+			throw new RuntimeException("Input type cannot be split into chunks: " + inputType.getLabel());
+		if(parserThreads < 1)
+			throw new RuntimeException("The number of threads has to be at least 1.");
+		if(chunkSentences < 1)
+			throw new RuntimeException("Chunks need to contain at least 1 sentence.");
+		this.inputType = inputType;
+		this.inputPath = inputPath;
+		this.parserThreads = parserThreads;
+		this.chunkSentences = chunkSentences;
+		this.metrics = null;
+	}
+
+	/**
+	 * Record the progress of the pipeline in a metrics registry.
+	 * @param metrics	Registry for the metrics, or null to disable them.
+	 */
+	public void setMetrics(MetricsRegistry metrics){
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Parse a chunk into sentences.
+	 */
+	private static ArrayList<ArrayList<Graph>> parse(GraphReaderType type, ArrayList<String> chunk, MetricsRegistry metrics) throws GraphFormatException{
+		ArrayList<ArrayList<Graph>> sentences = new ArrayList<ArrayList<Graph>>();
+		GraphReader reader = SentenceChunkReader.makeGraphReader(type, chunk);
+		if(metrics != null)
+			reader = new InstrumentedGraphReader(reader, metrics, "reader." + type.getLabel());
+		try {
+			while(reader.hasNext())
+				sentences.add(reader.nextSentence());
+		} finally {
+			reader.close();
+		}
+		return sentences;
+	}
+
+	/**
+	 * Reads the chunks and submits them to the parsers.
+	 */
+	private static class ChunkTask implements Runnable{
+		private SentenceChunkReader chunkReader;
+		private GraphReaderType type;
+		private ExecutorService parsers;
+		private BlockingQueue<Item> queue;
+		private MetricsRegistry metrics;
+
+		public ChunkTask(SentenceChunkReader chunkReader, GraphReaderType type, ExecutorService parsers, BlockingQueue<Item> queue, MetricsRegistry metrics){
+			this.chunkReader = chunkReader;
+			this.type = type;
+			this.parsers = parsers;
+			this.queue = queue;
+			this.metrics = metrics;
+		}
+
+		@Override
+		public void run() {
+			try {
+				try {
+					while(chunkReader.hasNext()){
+						final ArrayList<String> chunk = chunkReader.next();
+						Item item = new Item();
+						item.sentences = parsers.submit(new Callable<ArrayList<ArrayList<Graph>>>(){
+							@Override
+							public ArrayList<ArrayList<Graph>> call() throws GraphFormatException {
+								return parse(type, chunk, metrics);
+							}
+						});
+						if(metrics != null)
+							metrics.counter("pipeline.chunks").inc();
+						queue.put(item);
+					}
+				} catch (RuntimeException e) {
+					Item item = new Item();
+					item.exception = e;
+					queue.put(item);
+				} finally {
+					chunkReader.close();
+				}
+				Item end = new Item();
+				end.end = true;
+				queue.put(end);
+			} catch (InterruptedException e) {
+				// The writer has stopped, stop reading.
+			}
+		}
+	}
+
+	/**
+	 * Get the sentences of a chunk, waiting until it has been parsed.
+	 */
+	private static ArrayList<ArrayList<Graph>> getSentences(Item item) throws GraphFormatException{
+		try {
+			return item.sentences.get();
+		} catch (ExecutionException e) {
+			if(e.getCause() instanceof GraphFormatException)
+				throw (GraphFormatException)e.getCause();
+			if(e.getCause() instanceof RuntimeException)
+				throw (RuntimeException)e.getCause();
+			throw new RuntimeException(e.getCause());
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Read all the input and write it with the writer. The writer is not closed.
+	 * If a chunk cannot be parsed, the conversion stops and the exception is passed on.
+	 * @param writer	The writer.
+	 * @return	Number of sentences written.
+	 * @throws GraphFormatException
+	 */
+	public long run(GraphWriter writer) throws GraphFormatException{
+		final AtomicInteger threadCount = new AtomicInteger(0);
+		ExecutorService parsers = Executors.newFixedThreadPool(this.parserThreads, new ThreadFactory(){
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "ConversionPipeline-parser-" + threadCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		BlockingQueue<Item> queue = new ArrayBlockingQueue<Item>(CHUNKS_PER_THREAD * this.parserThreads);
+		Thread reader = new Thread(new ChunkTask(new SentenceChunkReader(this.inputType, this.inputPath, this.chunkSentences), this.inputType, parsers, queue, this.metrics), "ConversionPipeline-reader");
+		reader.setDaemon(true);
+		reader.start();
+
+		Timer wait = (this.metrics != null) ? this.metrics.timer("pipeline.wait") : null;
+		long count = 0;
+		try {
+			while(true){
+				long start = (wait != null) ? wait.start() : 0;
+				Item item = queue.take();
+				if(item.end)
+					break;
+				if(item.exception != null)
+					throw item.exception;
+				ArrayList<ArrayList<Graph>> sentences = getSentences(item);
+				if(wait != null)
+					wait.stop(start);
+				for(ArrayList<Graph> sentence : sentences){
+					writer.write(sentence);
+					count++;
+				}
+			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} finally {
+			reader.interrupt();
+			parsers.shutdownNow();
+			try {
+				reader.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		return count;
+	}
+}
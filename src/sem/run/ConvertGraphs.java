@@ -6,19 +6,126 @@ import sem.exception.GraphFormatException;
 import sem.graph.Graph;
 import sem.graphreader.GraphReader;
 import sem.graphreader.GraphReaderType;
+import sem.graphreader.SentenceChunkReader;
 import sem.graphwriter.GraphWriter;
 import sem.graphwriter.GraphWriterType;
+import sem.graphwriter.InstrumentedGraphWriter;
+import sem.graphwriter.ShardedGraphWriter;
+import sem.metrics.MetricsRegistry;
+import sem.util.FileReader;
+import sem.util.FileWriter;
 
 /**
  * Converts graphs between compatible formats
  *
+ * <p>With several parser threads, line-based input is converted with a ConversionPipeline: the input is read as text on one thread,
+ * parsed in chunks on the parser threads, and written in the original order on the main thread.
+ *
+ * <p>When run from the command line, the progress is printed periodically, and a report of the throughput is printed at the end.
+ * The same metrics are available over JMX during the conversion, under the name "sem:type=ConvertGraphs".
+ *
  */
 public class ConvertGraphs {
+	/**
+	 * Default time between progress reports on the command line, in seconds.
+	 */
+	public static final int REPORT_SECONDS = 10;
+	
 	public static void convertGraphs(String inputTypeLabel, String inputPath, String outputTypeLabel, String outputPath){
+		convertGraphs(inputTypeLabel, inputPath, outputTypeLabel, outputPath, 1);
+	}
+	
+	/**
+	 * Convert graphs, reading the input files in parallel. The order of the sentences is preserved.
+	 * @param inputTypeLabel	Input format
+	 * @param inputPath			Input file or directory
+	 * @param outputTypeLabel	Output format
+	 * @param outputPath		Output file
+	 * @param threads			Number of reader threads
+	 */
+	public static void convertGraphs(String inputTypeLabel, String inputPath, String outputTypeLabel, String outputPath, int threads){
+		convertGraphs(inputTypeLabel, inputPath, outputTypeLabel, outputPath, threads, 0, 0, 1);
+	}
+	
+	/**
+	 * Convert graphs, splitting the output into several files (see ShardedGraphWriter).
+	 * @param inputTypeLabel	Input format
+	 * @param inputPath			Input file or directory
+	 * @param outputTypeLabel	Output format
+	 * @param outputPath		Output file, which the names of the shards are created from
+	 * @param threads			Number of reader threads
+	 * @param shardSentences	Number of sentences in one output file, or 0 for no limit
+	 * @param shardBytes		Size of one output file in bytes, or 0 for no limit
+	 * @param partitions		Number of hash partitions, each written by a separate thread
+	 */
+	public static void convertGraphs(String inputTypeLabel, String inputPath, String outputTypeLabel, String outputPath, int threads, long shardSentences, long shardBytes, int partitions){
+		convertGraphs(inputTypeLabel, inputPath, outputTypeLabel, outputPath, threads, 1, shardSentences, shardBytes, partitions);
+	}
+	
+	/**
+	 * Convert graphs, parsing the input on several threads.
+	 * Input in the RASP, Parseval, C&amp;C and TSV formats is split into chunks of sentences, which are parsed in parallel (see ConversionPipeline).
+	 * Other formats are read with a ParallelGraphReader instead, which can only parse different files in parallel.
+	 * In both cases, the order of the sentences is preserved.
+	 * @param inputTypeLabel	Input format
+	 * @param inputPath			Input file or directory
+	 * @param outputTypeLabel	Output format
+	 * @param outputPath		Output file, which the names of the shards are created from
+	 * @param threads			Number of reader threads, for reading several files in parallel
+	 * @param parserThreads		Number of parser threads in the pipeline, or 1 to read and parse on the main thread
+	 * @param shardSentences	Number of sentences in one output file, or 0 for no limit
+	 * @param shardBytes		Size of one output file in bytes, or 0 for no limit
+	 * @param partitions		Number of hash partitions, each written by a separate thread
+	 */
+	public static void convertGraphs(String inputTypeLabel, String inputPath, String outputTypeLabel, String outputPath, int threads, int parserThreads, long shardSentences, long shardBytes, int partitions){
+		convertGraphs(inputTypeLabel, inputPath, outputTypeLabel, outputPath, threads, parserThreads, shardSentences, shardBytes, partitions, null);
+	}
+	
+	/**
+	 * Convert graphs, recording the throughput in a metrics registry.
+	 * The reader and the writer record their metrics under "reader.&lt;inputtype&gt;" and "writer.&lt;outputtype&gt;"
+	 * (see InstrumentedGraphReader and InstrumentedGraphWriter).
+	 * The files read and written are only recorded if the registry has also been set with FileReader.setMetrics() and FileWriter.setMetrics(),
+	 * which are global for the whole process, so several conversions can run at the same time with different registries.
+	 * @param inputTypeLabel	Input format
+	 * @param inputPath			Input file or directory
+	 * @param outputTypeLabel	Output format
+	 * @param outputPath		Output file, which the names of the shards are created from
+	 * @param threads			Number of reader threads, for reading several files in parallel
+	 * @param parserThreads		Number of parser threads in the pipeline, or 1 to read and parse on the main thread
+	 * @param shardSentences	Number of sentences in one output file, or 0 for no limit
+	 * @param shardBytes		Size of one output file in bytes, or 0 for no limit
+	 * @param partitions		Number of hash partitions, each written by a separate thread
+	 * @param metrics			Registry for the metrics, or null
+	 */
+	public static void convertGraphs(String inputTypeLabel, String inputPath, String outputTypeLabel, String outputPath, int threads, int parserThreads, long shardSentences, long shardBytes, int partitions, MetricsRegistry metrics){
 		try {
-			GraphReader reader = GraphReaderType.getType(inputTypeLabel).makeGraphReader(inputPath);
-			GraphWriter writer = GraphWriterType.getType(outputTypeLabel).makeGraphWriter(outputPath);
+			GraphReaderType inputType = GraphReaderType.getType(inputTypeLabel);
+			GraphWriterType outputType = GraphWriterType.getType(outputTypeLabel);
+			GraphWriter writer;
+			if(shardSentences > 0 || shardBytes > 0 || partitions > 1)
+				writer = new ShardedGraphWriter(outputType, outputPath, shardSentences, shardBytes, partitions);
+			else
+				writer = outputType.makeGraphWriter(outputPath);
+			if(metrics != null)
+				writer = new InstrumentedGraphWriter(writer, metrics, "writer." + outputType.getLabel());
 
+			if(parserThreads > 1 && SentenceChunkReader.isSupported(inputType)){
+				try {
+					ConversionPipeline pipeline = new ConversionPipeline(inputType, inputPath, parserThreads);
+					pipeline.setMetrics(metrics);
+					pipeline.run(writer);
+				} finally {
+					writer.close();
+				}
+				return;
+			}
+
+			GraphReader reader;
+			if(metrics != null)
+				reader = inputType.makeGraphReader(inputPath, Math.max(threads, parserThreads), true, metrics);
+			else
+				reader = inputType.makeGraphReader(inputPath, Math.max(threads, parserThreads), true);
 			while(reader.hasNext()){
 				ArrayList<Graph> sentence = reader.nextSentence();
 				writer.write(sentence);
@@ -31,11 +138,67 @@ public class ConvertGraphs {
 		}
 	}
 	
+	private static void printUsage(){
+		System.out.println("Usage: ConvertGraphs <inputtype> <inputpath> <outputtype> <outputpath> [threads] [options]");
+		System.out.println("Options:");
+		System.out.println("  -parsethreads <n>    Parse the input on n threads, in chunks of " + ConversionPipeline.CHUNK_SENTENCES + " sentences (rasp, parseval, cnc and tsv)");
+		System.out.println("  -shardsentences <n>  Start a new output file every n sentences");
+		System.out.println("  -shardbytes <n>      Start a new output file when the current one reaches n bytes");
+		System.out.println("  -partitions <k>      Divide the sentences between k series of output files, written in parallel");
+		System.out.println("  -report <s>          Print the progress every s seconds, 0 to disable (default " + REPORT_SECONDS + ")");
+		System.out.println("An output path ending with .gz is written as blocked gzip (.bgz), which supports random access.");
+	}
+	
 	public static void main(String[] args) {
-		if(args.length != 4)
-			System.out.println("Usage: ConvertGraphs <inputtype> <inputpath> <outputtype> <outputpath>");
-		else
-			convertGraphs(args[0], args[1], args[2], args[3]);
+		if(args.length < 4){
+			printUsage();
+			return;
+		}
+		int threads = 1, parserThreads = 1, partitions = 1, reportSeconds = REPORT_SECONDS;
+		long shardSentences = 0, shardBytes = 0;
+		int i = 4;
+		if(i < args.length && !args[i].startsWith("-"))
+			threads = Integer.parseInt(args[i++]);
+		for(; i < args.length; i += 2){
+			if(i + 1 >= args.length){
+				printUsage();
+				return;
+			}
+			if(args[i].equals("-parsethreads"))
+				parserThreads = Integer.parseInt(args[i+1]);
+			else if(args[i].equals("-shardsentences"))
+				shardSentences = Long.parseLong(args[i+1]);
+			else if(args[i].equals("-shardbytes"))
+				shardBytes = Long.parseLong(args[i+1]);
+			else if(args[i].equals("-partitions"))
+				partitions = Integer.parseInt(args[i+1]);
+			else if(args[i].equals("-report"))
+				reportSeconds = Integer.parseInt(args[i+1]);
+			else {
+				printUsage();
+				return;
+			}
+		}
+		
+		String outputPath = FileWriter.getRandomAccessPath(args[3]);
+		if(!outputPath.equals(args[3]))
+			System.out.println("Writing " + outputPath + " instead of " + args[3] + ", as blocked gzip supports random access");
+		
+		MetricsRegistry metrics = new MetricsRegistry();
+		FileReader.setMetrics(metrics);
+		FileWriter.setMetrics(metrics);
+		metrics.registerMBean("sem:type=ConvertGraphs");
+		if(reportSeconds > 0)
+			metrics.startReporting(System.out, reportSeconds, "writer." + args[2].toLowerCase() + ".sentences", "file.bytes.raw", "file.bytes.written");
+		try {
+			convertGraphs(args[0], args[1], args[2], outputPath, threads, parserThreads, shardSentences, shardBytes, partitions, metrics);
+		} finally {
+			metrics.stopReporting();
+			metrics.unregisterMBean();
+			FileReader.setMetrics(null);
+			FileWriter.setMetrics(null);
+		}
+		System.out.print(metrics.report());
 	}
 
 }
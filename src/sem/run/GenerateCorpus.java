@@ -0,0 +1,102 @@
+package sem.run;
+
+import sem.benchmark.CorpusGenerator;
+import sem.graphreader.GraphReaderType;
+import sem.metrics.MetricsRegistry;
+import sem.util.FileWriter;
+
+/**
+ * Generates a synthetic corpus in one of the input formats (see CorpusGenerator), for testing the readers on large corpora.
+ *
+ * <p>When run from the command line, the progress is printed periodically, and a report of the throughput is printed at the end.
+ *
+ */
+public class GenerateCorpus {
+
+	/**
+	 * Generate a corpus.
+	 * @param outputTypeLabel	Format of the corpus: rasp, raspxml, cnc, parseval or tsv
+	 * @param outputPath		Output file
+	 * @param sentences			Number of sentences
+	 * @param generator			Generator with the settings for the corpus
+	 * @param shardSentences	Number of sentences in one output file, or 0 to write everything into one file
+	 */
+	public static void generateCorpus(String outputTypeLabel, String outputPath, long sentences, CorpusGenerator generator, long shardSentences){
+		GraphReaderType outputType = GraphReaderType.getType(outputTypeLabel);
+		if(outputType == null || !CorpusGenerator.isSupported(outputType))
+			throw new RuntimeException("Unknown corpus type: " + outputTypeLabel);
+		generator.generate(outputType, outputPath, sentences, shardSentences);
+	}
+
+	private static void printUsage(){
+		System.out.println("GenerateCorpus <outputtype> <outputpath> <sentences> [-seed <n>] [-meanlength <n>] [-lengthdeviation <d>] [-maxlength <n>]");
+		System.out.println("               [-vocabulary <n>] [-zipf <exponent>] [-parses <n>] [-metadata true|false] [-shardsentences <n>] [-report <seconds>]");
+		System.out.println("Output types: rasp, raspxml, cnc, parseval, tsv");
+		System.out.println("An output path ending with .gz is written as blocked gzip (.bgz), which supports random access.");
+	}
+
+	public static void main(String[] args) {
+		if(args.length < 3){
+			printUsage();
+			return;
+		}
+		long seed = 1, shardSentences = 0;
+		double meanLength = CorpusGenerator.MEAN_LENGTH, lengthDeviation = CorpusGenerator.LENGTH_DEVIATION, zipfExponent = CorpusGenerator.ZIPF_EXPONENT;
+		int maxLength = CorpusGenerator.MAX_LENGTH, vocabularySize = CorpusGenerator.VOCABULARY_SIZE, parses = CorpusGenerator.PARSES;
+		int reportSeconds = ConvertGraphs.REPORT_SECONDS;
+		boolean metadata = false;
+		for(int i = 3; i < args.length; i += 2){
+			if(i + 1 >= args.length){
+				printUsage();
+				return;
+			}
+			if(args[i].equals("-seed"))
+				seed = Long.parseLong(args[i+1]);
+			else if(args[i].equals("-meanlength"))
+				meanLength = Double.parseDouble(args[i+1]);
+			else if(args[i].equals("-lengthdeviation"))
+				lengthDeviation = Double.parseDouble(args[i+1]);
+			else if(args[i].equals("-maxlength"))
+				maxLength = Integer.parseInt(args[i+1]);
+			else if(args[i].equals("-vocabulary"))
+				vocabularySize = Integer.parseInt(args[i+1]);
+			else if(args[i].equals("-zipf"))
+				zipfExponent = Double.parseDouble(args[i+1]);
+			else if(args[i].equals("-parses"))
+				parses = Integer.parseInt(args[i+1]);
+			else if(args[i].equals("-metadata"))
+				metadata = Boolean.parseBoolean(args[i+1]);
+			else if(args[i].equals("-shardsentences"))
+				shardSentences = Long.parseLong(args[i+1]);
+			else if(args[i].equals("-report"))
+				reportSeconds = Integer.parseInt(args[i+1]);
+			else {
+				printUsage();
+				return;
+			}
+		}
+
+		String outputPath = FileWriter.getRandomAccessPath(args[1]);
+		if(!outputPath.equals(args[1]))
+			System.out.println("Writing " + outputPath + " instead of " + args[1] + ", as blocked gzip supports random access");
+
+		CorpusGenerator generator = new CorpusGenerator(seed);
+		generator.setLength(meanLength, lengthDeviation, maxLength);
+		generator.setVocabulary(vocabularySize, zipfExponent);
+		generator.setParses(parses);
+		generator.setMetadata(metadata);
+
+		MetricsRegistry metrics = new MetricsRegistry();
+		generator.setMetrics(metrics);
+		FileWriter.setMetrics(metrics);
+		if(reportSeconds > 0)
+			metrics.startReporting(System.out, reportSeconds, "generator.sentences", "file.bytes.written");
+		try {
+			generateCorpus(args[0], outputPath, Long.parseLong(args[2]), generator, shardSentences);
+		} finally {
+			metrics.stopReporting();
+			FileWriter.setMetrics(null);
+		}
+		System.out.print(metrics.report());
+	}
+}
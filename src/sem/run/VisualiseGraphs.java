@@ -6,13 +6,32 @@ import sem.exception.GraphFormatException;
 import sem.graph.Graph;
 import sem.graphreader.GraphReader;
 import sem.graphreader.GraphReaderType;
+import sem.graphreader.SeekableGraphReader;
+import sem.graphreader.SentenceIndex;
 import sem.graphvis.GraphVisualiser;
+import sem.graphvis.WindowedSentenceSource;
 
 public class VisualiseGraphs {
 	
+	/**
+	 * Number of sentences kept in memory on each side of the current sentence.
+	 */
+	public static final int WINDOW_SIZE = 50;
+	
 	public static void visualiseGraphs(String inputTypeLabel, String inputPath){
 		try {
 			GraphReader reader = GraphReaderType.getType(inputTypeLabel).makeGraphReader(inputPath);
+			GraphVisualiser graphVisualiser = new GraphVisualiser(false);
+			
+			if(reader instanceof SeekableGraphReader){
+				// Sentences are read on demand. If there is an up-to-date index next to the corpus, any sentence can be reached directly.
+				SeekableGraphReader seekableReader = (SeekableGraphReader)reader;
+				SentenceIndex index = SentenceIndex.load(SentenceIndex.getIndexPath(inputPath));
+				if(index != null && index.matches(seekableReader.getInputFiles()))
+					seekableReader.setSentenceIndex(index);
+				graphVisualiser.displaySentences(new WindowedSentenceSource(seekableReader, WINDOW_SIZE));
+				return;
+			}
 
 			ArrayList<Graph> graphs = new ArrayList<Graph>();
 
@@ -23,7 +42,6 @@ public class VisualiseGraphs {
 			
 			reader.close();
 			
-			GraphVisualiser graphVisualiser = new GraphVisualiser(false);
 			graphVisualiser.displayGraphs(graphs);
 			
 		} catch (GraphFormatException e) {
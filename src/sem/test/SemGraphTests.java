@@ -4,29 +4,53 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
+import sem.test.benchmark.CorpusGeneratorTest;
+import sem.test.graph.FrozenGraphTest;
 import sem.test.graph.GraphTest;
+import sem.test.graph.NBestSentenceTest;
+import sem.test.graphreader.BinaryGraphReaderTest;
 import sem.test.graphreader.CnCGraphReaderTest;
+import sem.test.graphreader.MappedGraphReaderTest;
+import sem.test.graphreader.ParallelGraphReaderTest;
 import sem.test.graphreader.ParsevalGraphReaderTest;
 import sem.test.graphreader.RaspGraphReaderTest;
 import sem.test.graphreader.RaspXmlGraphReaderTest;
+import sem.test.graphreader.SentenceIndexTest;
 import sem.test.graphreader.TSVGraphReaderTest;
+import sem.test.graphvis.WindowedSentenceSourceTest;
 import sem.test.tokeniser.TokeniserTest;
+import sem.test.graphwriter.ShardedGraphWriterTest;
+import sem.test.metrics.MetricsRegistryTest;
+import sem.test.run.ConversionPipelineTest;
 import sem.test.util.FileReaderTest;
 import sem.test.util.FileWriterTest;
+import sem.test.util.Lz4FrameStreamTest;
 import sem.test.util.ToolsTest;
 import sem.test.util.XmlReaderTest;
 
 
 @RunWith(Suite.class)
 @SuiteClasses({ GraphTest.class, 
+				FrozenGraphTest.class,
+				NBestSentenceTest.class,
 				TokeniserTest.class,
 				RaspXmlGraphReaderTest.class,
 				RaspGraphReaderTest.class,
 				ParsevalGraphReaderTest.class,
 				CnCGraphReaderTest.class,
 				TSVGraphReaderTest.class,
+				BinaryGraphReaderTest.class,
+				MappedGraphReaderTest.class,
+				ParallelGraphReaderTest.class,
+				SentenceIndexTest.class,
+				ShardedGraphWriterTest.class,
+				ConversionPipelineTest.class,
+				MetricsRegistryTest.class,
+				CorpusGeneratorTest.class,
+				WindowedSentenceSourceTest.class,
 				FileReaderTest.class,
 				FileWriterTest.class,
+				Lz4FrameStreamTest.class,
 				ToolsTest.class,
 				XmlReaderTest.class
 				})
@@ -0,0 +1,90 @@
+package sem.test.benchmark;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+
+import org.junit.After;
+import org.junit.Test;
+
+import sem.benchmark.CorpusGenerator;
+import sem.exception.GraphFormatException;
+import sem.graph.Graph;
+import sem.graphreader.GraphReader;
+import sem.graphreader.GraphReaderType;
+import sem.util.FileReader;
+
+public class CorpusGeneratorTest {
+
+	@After
+	public void tearDown(){
+		delete(new File("semtests/generator"));
+	}
+
+	private void delete(File file){
+		if(file.isDirectory())
+			for(File child : file.listFiles())
+				delete(child);
+		file.delete();
+	}
+
+	private ArrayList<ArrayList<Graph>> read(GraphReaderType type, String path) throws GraphFormatException{
+		ArrayList<ArrayList<Graph>> sentences = new ArrayList<ArrayList<Graph>>();
+		GraphReader reader = type.makeGraphReader(path);
+		while(reader.hasNext())
+			sentences.add(reader.nextSentence());
+		reader.close();
+		return sentences;
+	}
+
+	@Test
+	public void testFormats() throws GraphFormatException{
+		GraphReaderType[] types = new GraphReaderType[]{GraphReaderType.TSV, GraphReaderType.RASP, GraphReaderType.RASP_XML, GraphReaderType.CNC, GraphReaderType.PARSEVAL};
+		CorpusGenerator generator = new CorpusGenerator(7);
+		generator.setVocabulary(1000, 1.1);
+		generator.setLength(12, 0.6, 40);
+		generator.setParses(3);
+		generator.setMetadata(true);
+
+		ArrayList<ArrayList<Graph>> expected = null;
+		for(GraphReaderType type : types){
+			String path = "semtests/generator/" + type.getLabel() + "/corpus." + type.getLabel() + ".gz";
+			generator.generate(type, path, 50);
+			ArrayList<ArrayList<Graph>> sentences = read(type, path);
+			assertTrue(type.getLabel(), sentences.size() == 50);
+			if(expected == null){
+				expected = sentences;
+				continue;
+			}
+			// The same sentences in every format, with only the first parse in CnC and Parseval
+			int parses = (type == GraphReaderType.CNC || type == GraphReaderType.PARSEVAL) ? 1 : 3;
+			for(int i = 0; i < sentences.size(); i++){
+				assertTrue(type.getLabel(), sentences.get(i).size() == parses);
+				for(int p = 0; p < parses; p++)
+					assertTrue(type.getLabel(), sentences.get(i).get(p).getEdges().size() == expected.get(i).get(p).getEdges().size());
+			}
+		}
+		for(ArrayList<Graph> sentence : expected){
+			Graph graph = sentence.get(0);
+			assertTrue(graph.getEdges().size() == graph.getNodes().size() - 2);
+			assertTrue(graph.getNodes().get(graph.getNodes().size() - 1).getLemma().equals("."));
+		}
+	}
+
+	@Test
+	public void testShards() throws GraphFormatException{
+		CorpusGenerator generator = new CorpusGenerator(3);
+		generator.setParses(2);
+		generator.generate(GraphReaderType.RASP, "semtests/generator/single/corpus.rasp", 45);
+		generator.generate(GraphReaderType.RASP, "semtests/generator/sharded/corpus.rasp", 45, 20);
+
+		ArrayList<File> files = FileReader.listFileRec(new File("semtests/generator/sharded"));
+		assertTrue(files.size() == 3);
+		ArrayList<ArrayList<Graph>> single = read(GraphReaderType.RASP, "semtests/generator/single/corpus.rasp");
+		ArrayList<ArrayList<Graph>> sharded = read(GraphReaderType.RASP, "semtests/generator/sharded");
+		assertTrue(single.size() == 45 && sharded.size() == 45);
+		for(int i = 0; i < single.size(); i++)
+			assertTrue(single.get(i).get(1).toString().equals(sharded.get(i).get(1).toString()));
+	}
+}
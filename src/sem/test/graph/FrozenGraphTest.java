@@ -0,0 +1,120 @@
+package sem.test.graph;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import sem.exception.GraphFormatException;
+import sem.graph.FrozenGraph;
+import sem.graph.Graph;
+import sem.graph.IndexedGraph;
+import sem.graph.Node;
+import sem.graph.SymbolTable;
+import sem.graphreader.RaspXmlGraphReader;
+
+/**
+ * Tests for the compact read-only graphs.
+ *
+ */
+public class FrozenGraphTest {
+	
+	/**
+	 * Freezing a small graph and reading it back.
+	 */
+	@Test
+	public void testFreeze() {
+		Graph graph = new Graph();
+		Node n1 = graph.addNode("Lemma1", "POS1");
+		Node n2 = graph.addNode("Lemma2", "POS2");
+		Node n3 = graph.addNode("Lemma3", "POS1");
+		graph.addEdge("rel1", n1, n2);
+		graph.addEdge("rel1", n2, n3);
+		graph.putMetadata("key1", "value1");
+		
+		SymbolTable symbolTable = new SymbolTable();
+		FrozenGraph frozen = graph.freeze(symbolTable);
+		
+		assertTrue(frozen.getNodeCount() == 3);
+		assertTrue(frozen.getEdgeCount() == 2);
+		assertTrue(symbolTable.size() == 6);
+		
+		assertTrue(frozen.getLemma(2).equals("Lemma3"));
+		assertTrue(frozen.getPos(2).equals("POS1"));
+		assertTrue(frozen.getPosId(0) == frozen.getPosId(2));
+		assertTrue(frozen.getLabel(1).equals("rel1"));
+		assertTrue(frozen.getLabelId(0) == frozen.getLabelId(1));
+		assertTrue(frozen.getHeadIndex(1) == 1);
+		assertTrue(frozen.getDepIndex(1) == 2);
+		
+		assertTrue(frozen.getMetadata("key1").equals("value1"));
+		assertTrue(frozen.getMetadata("key2") == null);
+		assertTrue(frozen.hasMetadata());
+		
+		assertTrue(frozen.toString().equals(graph.toString()));
+		assertTrue(frozen.toGraph().toString().equals(graph.toString()));
+		assertTrue(frozen.getEdges().get(1).getDep().getLabel().equals("Lemma3_POS1"));
+		// The lists are new every time and can not be modified
+		assertTrue(frozen.getNodes().get(0) != frozen.getNodes().get(0));
+		try {
+			frozen.getNodes().add(n1);
+			fail();
+		} catch (UnsupportedOperationException e) {
+		}
+		
+		// The frozen graph does not change with the original
+		graph.getNodes().get(0).setLemma("Newlemma1");
+		assertTrue(frozen.getLemma(0).equals("Lemma1"));
+	}
+	
+	/**
+	 * Read a graph through the accessors with indices, which work the same way for both types.
+	 */
+	private static String describe(IndexedGraph graph){
+		StringBuilder string = new StringBuilder();
+		for(int i = 0; i < graph.getEdgeCount(); i++)
+			string.append(graph.getLabel(i)).append(" ").append(graph.getLemma(graph.getHeadIndex(i))).append(" ").append(graph.getPos(graph.getDepIndex(i))).append("\n");
+		return graph.getNodeCount() + "\n" + string.toString();
+	}
+	
+	/**
+	 * Freezing graphs from a file.
+	 */
+	@Test
+	public void testFreezeCorpus() {
+		try {
+			RaspXmlGraphReader reader = new RaspXmlGraphReader("examples/raspxml/file1.xml", RaspXmlGraphReader.NODES_TOKENS, true, true);
+			SymbolTable symbolTable = new SymbolTable();
+			while(reader.hasNext()){
+				Graph graph = reader.next();
+				FrozenGraph frozen = graph.freeze(symbolTable);
+				assertTrue(frozen.toString().equals(graph.toString()));
+				assertTrue(describe(frozen).equals(describe(graph)));
+				assertTrue(frozen.getMetadata("sentenceId").equals(graph.getMetadata("sentenceId")));
+			}
+			reader.close();
+		} catch (GraphFormatException e) {
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * Adding and looking up strings in the symbol table.
+	 */
+	@Test
+	public void testSymbolTable() {
+		SymbolTable symbolTable = new SymbolTable();
+		assertTrue(symbolTable.getId("a") == 0);
+		assertTrue(symbolTable.getId("b") == 1);
+		assertTrue(symbolTable.getId("a") == 0);
+		assertTrue(symbolTable.getId(null) == -1);
+		assertTrue(symbolTable.lookup("c") == -1);
+		assertTrue(symbolTable.size() == 2);
+		assertTrue(symbolTable.getString(1).equals("b"));
+		assertTrue(symbolTable.getString(-1) == null);
+		
+		for(int i = 0; i < 5000; i++)
+			assertTrue(symbolTable.getId("s" + i) == i + 2);
+		assertTrue(symbolTable.getString(4001).equals("s3999"));
+	}
+}
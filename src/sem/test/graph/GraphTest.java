@@ -241,5 +241,109 @@ public class GraphTest {
 		assertTrue(clone.getMetadata("key1").equals("newvalue1"));
 		
 	}
-
+	
+	/**
+	 * Finding the positions of nodes, including after the list of nodes has been modified directly.
+	 */
+	@Test
+	public void testIndexOf() {
+		Graph graph = new Graph();
+		Node n1 = graph.addNode("Lemma1", "POS1");
+		Node n2 = graph.addNode("Lemma2", "POS2");
+		Node n3 = graph.addNode("Lemma3", "POS3");
+		Node n4 = new Node("Lemma4", "POS4");
+		
+		assertTrue(graph.indexOf(n1) == 0);
+		assertTrue(graph.indexOf(n2) == 1);
+		assertTrue(graph.indexOf(n3) == 2);
+		assertTrue(graph.indexOf(n4) == -1);
+		assertTrue(graph.indexOf(null) == -1);
+		assertTrue(n3.getIndex() == 2);
+		
+		graph.getNodes().remove(0);
+		assertTrue(graph.indexOf(n1) == -1);
+		assertTrue(graph.indexOf(n2) == 0);
+		assertTrue(graph.indexOf(n3) == 1);
+		
+		graph.getNodes().add(0, n4);
+		assertTrue(graph.indexOf(n4) == 0);
+		assertTrue(graph.indexOf(n3) == 2);
+		assertTrue(graph.getNodes().indexOf(n3) == 2);
+		assertTrue(graph.getNodes().contains(n2));
+		
+		graph.getNodes().set(1, n1);
+		assertTrue(graph.indexOf(n1) == 1);
+		assertTrue(graph.indexOf(n2) == -1);
+		
+		// The same node in two graphs
+		Graph graph2 = new Graph();
+		graph2.addNode(n2);
+		graph2.addNode(n3);
+		assertTrue(graph2.indexOf(n3) == 1);
+		assertTrue(graph.indexOf(n3) == 2);
+		assertTrue(graph2.indexOf(n3) == 1);
+		
+		// A node that occurs twice
+		graph2.addNode(n2);
+		assertTrue(graph2.indexOf(n2) == 0);
+		graph2.getNodes().remove(0);
+		assertTrue(graph2.indexOf(n2) == 1);
+	}
+	
+	/**
+	 * Finding outgoing and incoming edges, and checking that the adjacency index follows changes to the graph.
+	 */
+	@Test
+	public void testAdjacency() {
+		Graph graph = new Graph();
+		Node n1 = graph.addNode("Lemma1", "POS1");
+		Node n2 = graph.addNode("Lemma2", "POS2");
+		Node n3 = graph.addNode("Lemma3", "POS3");
+		Node n4 = new Node("Lemma4", "POS4");
+		
+		Edge e1 = graph.addEdge("rel1", n1, n2);
+		Edge e2 = graph.addEdge("rel2", n1, n3);
+		Edge e3 = graph.addEdge("rel1", n2, n3);
+		
+		assertTrue(graph.getOutgoing(n1).size() == 2);
+		assertTrue(graph.getOutgoing(n1).get(0) == e1);
+		assertTrue(graph.getOutgoing(n1).get(1) == e2);
+		assertTrue(graph.getOutgoing(n1, "rel2").size() == 1);
+		assertTrue(graph.getOutgoing(n1, "rel2").get(0) == e2);
+		assertTrue(graph.getOutgoing(n3).size() == 0);
+		assertTrue(graph.getOutgoing(n4).size() == 0);
+		
+		assertTrue(graph.getIncoming(n3).size() == 2);
+		assertTrue(graph.getIncoming(n3).get(0) == e2);
+		assertTrue(graph.getIncoming(n3).get(1) == e3);
+		assertTrue(graph.getIncoming(n3, "rel1").size() == 1);
+		assertTrue(graph.getIncoming(n1).size() == 0);
+		
+		assertTrue(graph.getHead(n2) == n1);
+		assertTrue(graph.getHead(n3) == n1);
+		assertTrue(graph.getHead(n3, "rel1") == n2);
+		assertTrue(graph.getHead(n3, "rel3") == null);
+		assertTrue(graph.getHead(n1) == null);
+		assertTrue(graph.getHead(n4) == null);
+		
+		// Changing the edges
+		graph.getEdges().remove(e2);
+		assertTrue(graph.getOutgoing(n1).size() == 1);
+		assertTrue(graph.getHead(n3) == n2);
+		graph.getEdges().set(0, new Edge("rel3", n2, n1));
+		assertTrue(graph.getOutgoing(n1).size() == 0);
+		assertTrue(graph.getHead(n1, "rel3") == n2);
+		
+		// Changing the nodes
+		Edge e4 = graph.addEdge("rel4", n3, n4);
+		assertTrue(graph.getIncoming(n4).size() == 0);
+		assertTrue(graph.getOutgoing(n3).get(0) == e4);
+		assertTrue(graph.getHead(n4) == null);
+		graph.addNode(n4);
+		assertTrue(graph.getIncoming(n4).size() == 1);
+		assertTrue(graph.getOutgoing(n3).get(0) == e4);
+		graph.getNodes().remove(n1);
+		assertTrue(graph.getIncoming(n1).size() == 0);
+		assertTrue(graph.getHead(n4) == n3);
+	}
 }
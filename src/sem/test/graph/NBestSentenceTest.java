@@ -0,0 +1,173 @@
+package sem.test.graph;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Test;
+
+import sem.benchmark.CorpusGenerator;
+import sem.exception.GraphFormatException;
+import sem.graph.Graph;
+import sem.graph.NBestGraph;
+import sem.graph.NBestSentence;
+import sem.graph.SymbolTable;
+import sem.graphreader.GraphReader;
+import sem.graphreader.GraphReaderType;
+import sem.graphreader.RaspGraphReader;
+import sem.graphreader.RaspXmlGraphReader;
+import sem.graphreader.TSVGraphReader;
+import sem.graphwriter.TSVGraphWriter;
+
+public class NBestSentenceTest {
+
+	@After
+	public void tearDown(){
+		delete(new File("semtests/nbest"));
+	}
+
+	private void delete(File file){
+		if(file.isDirectory())
+			for(File child : file.listFiles())
+				delete(child);
+		file.delete();
+	}
+
+	private NBestSentence createSentence(){
+		NBestSentence sentence = new NBestSentence();
+		sentence.addNode("cat", "NN1");
+		sentence.addNode("chase", "VVZ");
+		sentence.addNode("mouse", "NN1");
+
+		NBestGraph parse = sentence.addParse();
+		int cat = parse.addSharedNode(0), chase = parse.addSharedNode(1), mouse = parse.addSharedNode(2);
+		parse.addEdge("ncsubj", chase, cat);
+		parse.addEdge("dobj", chase, mouse);
+
+		parse = sentence.addParse();
+		cat = parse.addNode(0, "cat", "NN1");
+		chase = parse.addNode(1, "chase", "NN2");
+		int ellip = parse.addOwnNode(Graph.ellip.getLemma(), Graph.ellip.getPos());
+		parse.addEdge("ncmod", chase, cat);
+		parse.addEdge("conj", ellip, chase);
+
+		sentence.putMetadata("sentenceId", "1");
+		return sentence;
+	}
+
+	@Test
+	public void testParses(){
+		NBestSentence sentence = this.createSentence();
+		NBestGraph first = (NBestGraph)sentence.get(0), second = (NBestGraph)sentence.get(1);
+
+		assertTrue(first.getNodeCount() == 3 && first.getEdgeCount() == 2);
+		assertTrue(second.getNodeCount() == 3 && second.getEdgeCount() == 2);
+		assertTrue(second.getSharedIndex(0) == 0);
+		assertTrue(second.getSharedIndex(1) == -1 && second.getPos(1).equals("NN2"));
+		assertTrue(second.getLemma(2).equals(Graph.ellip.getLemma()));
+		assertTrue(second.getHeadIndex(1) == 2 && second.getDepIndex(1) == 1);
+
+		// The string is the same before and after creating the nodes and edges
+		String string = second.toString();
+		assertFalse(second.isMaterialised());
+		assertTrue(second.getNodes().size() == 3);
+		assertTrue(second.isMaterialised());
+		assertTrue(string.equals(second.toString()));
+		assertTrue(second.getEdges().get(1).getHead() == second.getNodes().get(2));
+		assertTrue(second.getMetadata("sentenceId").equals("1"));
+
+		// Copy-on-write: changing one parse does not affect the other
+		second.getNodes().get(0).setLemma("dog");
+		assertTrue(first.getLemma(0).equals("cat"));
+		assertTrue(first.getNodes().get(0).getLemma().equals("cat"));
+		assertTrue(first.getNodes().get(0) != second.getNodes().get(0));
+		assertTrue(second.getLemma(0).equals("cat"));
+
+		// Metadata added later is shared by all parses
+		sentence.putMetadata("part", "2");
+		assertTrue(first.getMetadata("part").equals("2") && second.getMetadata("part").equals("2"));
+	}
+
+	@Test
+	public void testIntern(){
+		NBestSentence sentence = this.createSentence();
+		SymbolTable symbolTable = new SymbolTable();
+		String cat = symbolTable.intern(new String("cat"));
+		String ncmod = symbolTable.intern(new String("ncmod"));
+		symbolTable.intern(sentence);
+
+		NBestGraph first = (NBestGraph)sentence.get(0), second = (NBestGraph)sentence.get(1);
+		assertFalse(first.isMaterialised() || second.isMaterialised());
+		assertTrue(first.getLemma(0) == cat && second.getLemma(0) == cat);
+		assertTrue(second.getLabel(0) == ncmod);
+		assertTrue(second.getNodes().get(0).getLemma() == cat);
+	}
+
+	private void compare(GraphReader reader, GraphReader sharedReader) throws GraphFormatException{
+		int count = 0;
+		while(reader.hasNext()){
+			ArrayList<Graph> sentence = reader.nextSentence();
+			ArrayList<Graph> sharedSentence = sharedReader.nextSentence();
+			assertTrue(sharedSentence instanceof NBestSentence);
+			assertTrue(sentence.size() == sharedSentence.size());
+			for(int i = 0; i < sentence.size(); i++){
+				Graph graph = sentence.get(i), sharedGraph = sharedSentence.get(i);
+				assertTrue(graph.toString().equals(sharedGraph.toString()));
+				assertFalse(((NBestGraph)sharedGraph).isMaterialised());
+				if(graph.getMetadata() == null)
+					assertTrue(sharedGraph.getMetadata() == null);
+				else
+					assertTrue(graph.getMetadata().equals(sharedGraph.getMetadata()));
+				assertTrue(graph.toString().equals(sharedGraph.toString()));
+			}
+			count++;
+		}
+		assertFalse(sharedReader.hasNext());
+		assertTrue(count > 0);
+		reader.close();
+		sharedReader.close();
+	}
+
+	@Test
+	public void testReaders() throws GraphFormatException{
+		for(int mode : new int[]{RaspXmlGraphReader.NODES_ALL, RaspXmlGraphReader.NODES_TOKENS})
+			this.compare(new RaspXmlGraphReader("examples/raspxml/", mode, true, true), new RaspXmlGraphReader("examples/raspxml/", mode, true, true, true));
+		this.compare(new RaspGraphReader("examples/rasp/", true), new RaspGraphReader("examples/rasp/", true, true));
+		this.compare(new TSVGraphReader("examples/tsv/", true), new TSVGraphReader("examples/tsv/", true, true));
+	}
+
+	private void write(GraphReader reader, String path) throws GraphFormatException{
+		TSVGraphWriter writer = new TSVGraphWriter(path);
+		while(reader.hasNext())
+			writer.write(reader.nextSentence());
+		writer.close();
+		reader.close();
+	}
+
+	@Test
+	public void testNBestCorpus() throws GraphFormatException, IOException{
+		CorpusGenerator generator = new CorpusGenerator(5);
+		generator.setVocabulary(500, 1.0);
+		generator.setLength(15, 0.5, 40);
+		generator.setParses(5);
+		generator.setMetadata(true);
+		generator.generate(GraphReaderType.RASP, "semtests/nbest/corpus.rasp", 30);
+		generator.generate(GraphReaderType.RASP_XML, "semtests/nbest/corpus.xml", 30);
+
+		this.compare(new RaspGraphReader("semtests/nbest/corpus.rasp", true), new RaspGraphReader("semtests/nbest/corpus.rasp", true, true));
+		for(int mode : new int[]{RaspXmlGraphReader.NODES_ALL, RaspXmlGraphReader.NODES_TOKENS})
+			this.compare(new RaspXmlGraphReader("semtests/nbest/corpus.xml", mode, true, true), new RaspXmlGraphReader("semtests/nbest/corpus.xml", mode, true, true, true));
+
+		// Writing the shared parses directly gives the same TSV output
+		this.write(new RaspGraphReader("semtests/nbest/corpus.rasp", true), "semtests/nbest/corpus.tsv");
+		this.write(new RaspGraphReader("semtests/nbest/corpus.rasp", true, true), "semtests/nbest/shared.tsv");
+		assertTrue(Arrays.equals(Files.readAllBytes(Paths.get("semtests/nbest/corpus.tsv")), Files.readAllBytes(Paths.get("semtests/nbest/shared.tsv"))));
+		this.compare(new TSVGraphReader("semtests/nbest/corpus.tsv", true), new TSVGraphReader("semtests/nbest/shared.tsv", true, true));
+	}
+}
@@ -0,0 +1,153 @@
+package sem.test.graphreader;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import sem.exception.GraphFormatException;
+import sem.graph.Graph;
+import sem.graph.SymbolTable;
+import sem.graphreader.BinaryGraphReader;
+import sem.graphreader.GraphReader;
+import sem.graphreader.RaspXmlGraphReader;
+import sem.graphreader.TSVGraphReader;
+import sem.graphwriter.BinaryGraphWriter;
+import sem.graphwriter.GraphWriter;
+
+public class BinaryGraphReaderTest {
+	private String dir = "semtests/binary/";
+
+	/**
+	 * Write all the sentences from the reader into a binary file.
+	 */
+	private static void convert(GraphReader reader, String outputPath) throws GraphFormatException{
+		new File(outputPath).getParentFile().mkdirs();
+		GraphWriter writer = new BinaryGraphWriter(outputPath);
+		while(reader.hasNext())
+			writer.write(reader.nextSentence());
+		writer.close();
+		reader.close();
+	}
+
+	private static void delete(String path){
+		File file = new File(path);
+		if(file.isDirectory())
+			for(File child : file.listFiles())
+				delete(child.getPath());
+		file.delete();
+	}
+
+	private static String toString(ArrayList<Graph> sentence){
+		String string = sentence.toString();
+		for(Graph graph : sentence)
+			string += graph.getMetadata();
+		return string;
+	}
+
+	@Test
+	public void testReader() throws GraphFormatException{
+		convert(new TSVGraphReader("examples/tsv/file1.tsv", false), this.dir + "first.bin");
+		BinaryGraphReader reader = new BinaryGraphReader(this.dir + "first.bin");
+		RaspXmlGraphReaderTest.testNodes(reader);
+		reader.reset();
+		RaspXmlGraphReaderTest.testEdges(reader);
+		reader.close();
+
+		convert(new TSVGraphReader("examples/tsv/file1.tsv", true), this.dir + "all.bin");
+		reader = new BinaryGraphReader(this.dir + "all.bin");
+		RaspXmlGraphReaderTest.testMultipleParses(reader);
+		reader.reset();
+		RaspXmlGraphReaderTest.testMultipleLemmas(reader);
+		reader.close();
+		delete(this.dir);
+	}
+
+	@Test
+	public void testRoundTrip() throws GraphFormatException{
+		convert(new RaspXmlGraphReader("examples/raspxml/", RaspXmlGraphReader.NODES_TOKENS, true, true), this.dir + "raspxml.bin");
+
+		GraphReader original = new RaspXmlGraphReader("examples/raspxml/", RaspXmlGraphReader.NODES_TOKENS, true, true);
+		BinaryGraphReader reader = new BinaryGraphReader(this.dir + "raspxml.bin");
+		int count = 0;
+		while(original.hasNext()){
+			assertTrue(reader.hasNext());
+			assertTrue(toString(original.nextSentence()).equals(toString(reader.nextSentence())));
+			count++;
+		}
+		assertTrue(!reader.hasNext());
+		assertTrue(count > 0);
+		original.close();
+
+		// Metadata is preserved
+		convert(new RaspXmlGraphReader("examples/raspxml/file1.xml", RaspXmlGraphReader.NODES_TOKENS, false, true), this.dir + "metadata.bin");
+		GraphReader metadataReader = new BinaryGraphReader(this.dir + "metadata.bin");
+		RaspXmlGraphReaderTest.testMetadata(metadataReader);
+		metadataReader.close();
+
+		// Strings are interned with the symbol table
+		SymbolTable symbolTable = new SymbolTable();
+		reader.reset();
+		reader.setSymbolTable(symbolTable);
+		int graphs = 0;
+		while(reader.hasNext()){
+			Graph graph = reader.next();
+			if(graph.getNodes().size() > 0)
+				assertTrue(graph.getNodes().get(0).getLemma() == symbolTable.intern(graph.getNodes().get(0).getLemma()));
+			graphs++;
+		}
+		assertTrue(graphs == 28 + 29 + 451);
+		reader.close();
+		delete(this.dir);
+	}
+
+	@Test
+	public void testSeek() throws GraphFormatException{
+		// Converting every file separately, so that seeking also works across files
+		convert(new TSVGraphReader("examples/tsv/file1.tsv", true), this.dir + "file1.bin");
+		convert(new TSVGraphReader("examples/tsv/file2.tsv", true), this.dir + "file2.bin");
+		BinaryGraphReader reader = new BinaryGraphReader(this.dir);
+		SentenceIndexTest.testSeek(reader);
+		reader.close();
+		delete(this.dir);
+	}
+
+	@Test
+	public void testTruncated() throws GraphFormatException, IOException{
+		convert(new TSVGraphReader("examples/tsv/file1.tsv", true), this.dir + "file1.bin");
+		int sentences = 0;
+		GraphReader reader = new BinaryGraphReader(this.dir + "file1.bin");
+		while(reader.hasNext()){
+			reader.nextSentence();
+			sentences++;
+		}
+		reader.close();
+
+		// A second block header without the block: the file header is 5 bytes and a block header is 8 bytes
+		byte[] bytes = Files.readAllBytes(Paths.get(this.dir + "file1.bin"));
+		Files.write(Paths.get(this.dir + "file1.bin"), Arrays.copyOfRange(bytes, 5, 13), StandardOpenOption.APPEND);
+		reader = new BinaryGraphReader(this.dir + "file1.bin");
+		int count = 0;
+		boolean failed = false;
+		while(reader.hasNext() && !failed){
+			try{
+				reader.nextSentence();
+				count++;
+			} catch (GraphFormatException e){
+				assertTrue(e.getMessage().startsWith("Unexpected end of binary graph file."));
+				failed = true;
+			}
+		}
+		reader.close();
+		assertTrue(failed);
+		assertTrue(count <= sentences);
+		delete(this.dir);
+	}
+}
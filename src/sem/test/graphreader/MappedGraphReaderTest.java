@@ -0,0 +1,122 @@
+package sem.test.graphreader;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+import sem.exception.GraphFormatException;
+import sem.graph.Graph;
+import sem.graph.SymbolTable;
+import sem.graphreader.GraphReader;
+import sem.graphreader.MappedGraph;
+import sem.graphreader.MappedGraphReader;
+import sem.graphreader.RaspXmlGraphReader;
+import sem.graphreader.TSVGraphReader;
+import sem.graphwriter.SnapshotGraphWriter;
+
+public class MappedGraphReaderTest {
+	private String dir = "semtests/snapshot/";
+
+	private String snapshot(GraphReader reader, String name) throws GraphFormatException{
+		new File(this.dir).mkdirs();
+		String path = this.dir + name;
+		SnapshotGraphWriter.snapshot(reader, path);
+		reader.close();
+		return path;
+	}
+
+	private void delete(){
+		File dir = new File(this.dir);
+		for(File file : dir.listFiles())
+			file.delete();
+		dir.delete();
+	}
+
+	private static String toString(ArrayList<Graph> sentence){
+		String string = sentence.toString();
+		for(Graph graph : sentence)
+			string += graph.getMetadata();
+		return string;
+	}
+
+	@Test
+	public void testReader() throws GraphFormatException{
+		String path = this.snapshot(new TSVGraphReader("examples/tsv/file1.tsv", false), "first.snapshot");
+		MappedGraphReader reader = new MappedGraphReader(path);
+		RaspXmlGraphReaderTest.testNodes(reader);
+		reader.reset();
+		RaspXmlGraphReaderTest.testEdges(reader);
+		reader.close();
+
+		path = this.snapshot(new TSVGraphReader("examples/tsv/file1.tsv", true), "all.snapshot");
+		reader = new MappedGraphReader(path);
+		RaspXmlGraphReaderTest.testMultipleParses(reader);
+		reader.reset();
+		RaspXmlGraphReaderTest.testMultipleLemmas(reader);
+		reader.reset();
+		SentenceIndexTest.testSeek(reader);
+		reader.close();
+		this.delete();
+	}
+
+	@Test
+	public void testRoundTrip() throws GraphFormatException{
+		String path = this.snapshot(new RaspXmlGraphReader("examples/raspxml/", RaspXmlGraphReader.NODES_TOKENS, true, true), "raspxml.snapshot");
+
+		ArrayList<String> sentences = new ArrayList<String>();
+		GraphReader original = new RaspXmlGraphReader("examples/raspxml/", RaspXmlGraphReader.NODES_TOKENS, true, true);
+		while(original.hasNext())
+			sentences.add(toString(original.nextSentence()));
+		original.close();
+
+		// Small chunks, so that values and strings are read from many different mappings
+		for(int chunkBits : new int[]{30, 12}){
+			MappedGraphReader reader = new MappedGraphReader(path, chunkBits);
+			assertTrue(reader.getSentenceCount() == sentences.size());
+			int count = 0;
+			while(reader.hasNext())
+				assertTrue(toString(reader.nextSentence()).equals(sentences.get(count++)));
+			assertTrue(count == sentences.size());
+
+			// Random access
+			for(int i = sentences.size() - 1; i >= 0; i -= 13)
+				assertTrue(toString(reader.getSentence(i)).equals(sentences.get(i)));
+			reader.seek(sentences.size() - 2);
+			assertTrue(toString(reader.nextSentence()).equals(sentences.get(sentences.size() - 2)));
+			assertTrue(toString(reader.nextSentence()).equals(sentences.get(sentences.size() - 1)));
+			assertTrue(!reader.hasNext());
+			reader.close();
+		}
+
+		// Graphs are only decoded when needed
+		MappedGraphReader reader = new MappedGraphReader(path);
+		SymbolTable symbolTable = new SymbolTable();
+		reader.setSymbolTable(symbolTable);
+		int graphs = 0, edges = 0;
+		while(reader.hasNext()){
+			MappedGraph graph = (MappedGraph)reader.next();
+			for(int i = 0; i < graph.getEdgeCount(); i++)
+				assertTrue(graph.getLabel(i) == symbolTable.intern(graph.getLabel(i)));
+			edges += graph.getEdgeCount();
+			graphs++;
+			assertTrue(!graph.isMaterialised());
+			assertTrue(graph.getEdges().size() == graph.getEdgeCount());
+			assertTrue(graph.isMaterialised());
+		}
+		assertTrue(graphs == 28 + 29 + 451);
+		assertTrue(graphs == reader.getGraphCount());
+		assertTrue(edges > 0);
+
+		// Decoded graphs can be modified without changing the snapshot
+		MappedGraph graph = reader.getGraph(1);
+		int nodeCount = graph.getNodeCount();
+		graph.addNode("new", "NN1");
+		assertTrue(graph.getNodes().size() == nodeCount + 1);
+		assertTrue(reader.getGraph(1).getNodes().size() == nodeCount);
+		reader.close();
+		this.delete();
+	}
+}
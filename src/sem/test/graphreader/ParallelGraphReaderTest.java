@@ -0,0 +1,215 @@
+package sem.test.graphreader;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Test;
+
+import sem.exception.GraphFormatException;
+import sem.graph.Graph;
+import sem.graphreader.GraphReader;
+import sem.graphreader.GraphReaderFactory;
+import sem.graphreader.GraphReaderType;
+import sem.graphreader.ParallelGraphReader;
+
+public class ParallelGraphReaderTest {
+
+	private String dir = "examples/raspxml/";
+	private String brokenDir = "semtests/parallel/";
+
+	@After
+	public void tearDown(){
+		File dir = new File(this.brokenDir);
+		if(dir.isDirectory())
+			for(File file : dir.listFiles())
+				file.delete();
+		dir.delete();
+	}
+
+	private ArrayList<String> readAll(GraphReader reader) throws GraphFormatException{
+		ArrayList<String> graphs = new ArrayList<String>();
+		while(reader.hasNext()){
+			Graph graph = reader.next();
+			graphs.add(graph.toString());
+		}
+		return graphs;
+	}
+
+	@Test
+	public void testReadDir(){
+		try{
+			ParallelGraphReader reader = new ParallelGraphReader(GraphReaderType.RASP_XML, this.dir, 3, true);
+			RaspXmlGraphReaderTest.testReadDir(reader);
+			reader.close();
+
+			reader = new ParallelGraphReader(GraphReaderType.RASP_XML, this.dir, 3, false);
+			RaspXmlGraphReaderTest.testReadDir(reader);
+			reader.close();
+		} catch (GraphFormatException e) {
+			e.printStackTrace();
+		}
+	}
+
+	@Test
+	public void testPreserveOrder(){
+		try{
+			GraphReader reader = GraphReaderType.RASP_XML.makeGraphReader(this.dir);
+			ArrayList<String> expected = readAll(reader);
+			reader.close();
+
+			reader = GraphReaderType.RASP_XML.makeGraphReader(this.dir, 2, true);
+			assertTrue(reader instanceof ParallelGraphReader);
+			assertTrue(readAll(reader).equals(expected));
+
+			reader.reset();
+			assertTrue(readAll(reader).equals(expected));
+			reader.close();
+
+			reader = GraphReaderType.RASP_XML.makeGraphReader(this.dir, 2, false);
+			ArrayList<String> unordered = readAll(reader);
+			reader.close();
+			Collections.sort(expected);
+			Collections.sort(unordered);
+			assertTrue(unordered.equals(expected));
+		} catch (GraphFormatException e) {
+			e.printStackTrace();
+		}
+	}
+
+	@Test
+	public void testSentences(){
+		try{
+			ParallelGraphReader reader = new ParallelGraphReader(GraphReaderType.TSV, "examples/tsv/", 2, true);
+			int sentenceCount = 0;
+			while(reader.hasNext()){
+				ArrayList<Graph> sentence = reader.nextSentence();
+				assertTrue(sentence.size() > 0);
+				sentenceCount++;
+			}
+			reader.close();
+
+			GraphReader sequential = GraphReaderType.TSV.makeGraphReader("examples/tsv/");
+			int expected = 0;
+			while(sequential.hasNext()){
+				sequential.nextSentence();
+				expected++;
+			}
+			sequential.close();
+			assertTrue(sentenceCount == expected);
+		} catch (GraphFormatException e) {
+			e.printStackTrace();
+		}
+	}
+
+	@Test(timeout = 60000)
+	public void testRuntimeException() throws GraphFormatException, IOException{
+		// The second file is not a valid gzip file, so its reader throws a RuntimeException
+		new File(this.brokenDir).mkdirs();
+		Files.copy(Paths.get("examples/tsv/file1.tsv"), Paths.get(this.brokenDir + "a.tsv"));
+		Files.write(Paths.get(this.brokenDir + "b.tsv.gz"), "not a gzip file".getBytes());
+
+		GraphReader sequential = GraphReaderType.TSV.makeGraphReader("examples/tsv/file1.tsv");
+		int expected = 0;
+		while(sequential.hasNext()){
+			sequential.nextSentence();
+			expected++;
+		}
+		sequential.close();
+
+		for(boolean preserveOrder : new boolean[]{true, false}){
+			// With one worker, the files are read in order, so the error comes after all the sentences of the first file
+			ParallelGraphReader reader = new ParallelGraphReader(GraphReaderType.TSV, this.brokenDir, 1, preserveOrder);
+			int sentenceCount = 0, errorCount = 0;
+			while(reader.hasNext()){
+				try{
+					reader.nextSentence();
+					sentenceCount++;
+				} catch (RuntimeException e){
+					errorCount++;
+				}
+			}
+			reader.close();
+			// As with a GraphFormatException, the error is thrown while reading ahead, and the empty graph that replaces the failed read is returned instead
+			assertTrue(errorCount == 1);
+			assertTrue(sentenceCount == expected);
+		}
+	}
+
+	/**
+	 * A reader for one file, which fails with an Error after the first sentence or when it is closed.
+	 */
+	private static GraphReader failingReader(final String path, final boolean failOnClose) throws GraphFormatException{
+		final GraphReader reader = GraphReaderType.TSV.makeGraphReader(path);
+		return new GraphReader(){
+			private int count = 0;
+
+			@Override
+			public boolean hasNext() {
+				return reader.hasNext();
+			}
+
+			@Override
+			public Graph next() throws GraphFormatException {
+				return reader.next();
+			}
+
+			@Override
+			public ArrayList<Graph> nextSentence() throws GraphFormatException {
+				if(!failOnClose && this.count++ > 0)
+					throw new StackOverflowError();
+				return reader.nextSentence();
+			}
+
+			@Override
+			public void reset() throws GraphFormatException {
+				reader.reset();
+			}
+
+			@Override
+			public void close() {
+				reader.close();
+				if(failOnClose)
+					throw new OutOfMemoryError();
+			}
+		};
+	}
+
+	@Test(timeout = 60000)
+	public void testError() throws GraphFormatException, IOException{
+		new File(this.brokenDir).mkdirs();
+		Files.copy(Paths.get("examples/tsv/file1.tsv"), Paths.get(this.brokenDir + "a.tsv"));
+		Files.copy(Paths.get("examples/tsv/file2.tsv"), Paths.get(this.brokenDir + "b.tsv"));
+
+		for(final boolean failOnClose : new boolean[]{true, false}){
+			GraphReaderFactory factory = new GraphReaderFactory(){
+				@Override
+				public GraphReader makeGraphReader(String path) throws GraphFormatException {
+					if(path.endsWith("a.tsv"))
+						return failingReader(path, failOnClose);
+					return GraphReaderType.TSV.makeGraphReader(path);
+				}
+			};
+			for(boolean preserveOrder : new boolean[]{true, false}){
+				// The Error is passed to the consumer, and the reader continues with the next file instead of waiting forever
+				ParallelGraphReader reader = new ParallelGraphReader(factory, this.brokenDir, 2, preserveOrder);
+				int errorCount = 0;
+				while(reader.hasNext()){
+					try{
+						reader.nextSentence();
+					} catch (Error e){
+						errorCount++;
+					}
+				}
+				reader.close();
+				assertTrue(errorCount == 1);
+			}
+		}
+	}
+}
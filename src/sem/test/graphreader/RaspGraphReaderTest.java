@@ -4,12 +4,18 @@ import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 
 import org.junit.Test;
 
+import sem.benchmark.GrTokenizerBenchmark;
+import sem.benchmark.RaspLabelBenchmark;
 import sem.exception.GraphFormatException;
 import sem.graph.Graph;
+import sem.graphreader.GrTokenizer;
 import sem.graphreader.RaspGraphReader;
+import sem.graphreader.RaspLabel;
+import sem.util.Tools;
 
 public class RaspGraphReaderTest {
 
@@ -112,4 +118,69 @@ public class RaspGraphReaderTest {
 			e.printStackTrace();
 		}
 	}
+	
+	@Test
+	public void testParseLabel() throws GraphFormatException{
+		String[] labels = new String[]{"algorithm+s:6_NN2", "algorithm:6_NN2", "algorithm", "algorithm+:6", "algorithm+s",
+				"be+ed_VBDZ", "a:b", "a:_NN", "a_", "+s:1_NN", ":1", "_NN", "", "lemma:12x", "lemma:99999999999_NN",
+				"lemma+s1:2_NN", "lemma:2_N-N", "ellip", "a_b_c", "a+b+c", "it:3_PPH1", "\u00e9t\u00e9+s:4_NN2", "lemma:0_NN"};
+		RaspLabel raspLabel = new RaspLabel();
+		for(String label : labels){
+			LinkedHashMap<String,String> expected = RaspLabelBenchmark.parseLabelRegex(label);
+			raspLabel.parse(label);
+			assertTrue(label, raspLabel.toMap().equals(expected));
+			assertTrue(label, RaspGraphReader.parseLabel(label).equals(expected));
+			int index = Tools.getInt(expected.get("index"), -1);
+			assertTrue(label, raspLabel.getIndex() == (expected.get("index") == null ? -1 : index));
+			assertTrue(label, raspLabel.lemmaEquals(expected.get("lemma")));
+		}
+		
+		// Comparing on real data
+		for(String label : RaspLabelBenchmark.readLabels(this.largeFile)){
+			raspLabel.parse(label);
+			assertTrue(label, raspLabel.toMap().equals(RaspLabelBenchmark.parseLabelRegex(label)));
+		}
+	}
+	
+	private static String parseGrResult(String line, boolean simpleEdgeFormat, boolean split){
+		try {
+			if(split)
+				return GrTokenizerBenchmark.parseGrSplit(line, simpleEdgeFormat).toString();
+			return RaspGraphReader.parseGr(line, simpleEdgeFormat).toString();
+		} catch (GraphFormatException e) {
+			return "GraphFormatException";
+		}
+	}
+	
+	@Test
+	public void testParseGr() throws GraphFormatException{
+		String[] lines = new String[]{"(|ncsubj| |be+s:4_VBZ| |processing:3_NN1| _)", "(ncsubj be+s:4_VBZ processing:3_NN1 _)", 
+				"(|ncmod| _ |algorithm+s:6_NN2| |modern:3_JJ|)", "(|passive| |be+ed:4_VBDZ|)", "(|dobj| |include+ing:17_VVG| |and:23_CC|)",
+				"(ncmod |algorithm+s:6_NN2| |modern:3_JJ|)", "(|ncmod| |algorithm+s:6_NN2| |modern:3_JJ|)", "(|dobj|  |a:1_NN|\t|b:2_NN|)",
+				"( |dobj| |a:1_NN| |b:2_NN|)", "(|dobj| |a:1_NN| |b:2_NN| )", "|dobj| |a:1_NN| |b:2_NN|", "()", "(|dobj|)", "(|| a b)",
+				"(|xcomp| _ |a:1_NN| |b:2_NN| extra)", "(|unknown| |a:1_NN| |b:2_NN|)", "(|ta| |quote| |a:1_NN| |b:2_NN|)", "(|ta|)", 
+				"(|dobj| ||a:1_NN|| |b|)", "(|dobj| | |b|)", "(|conj| |a|\u000B|b|)"};
+		for(String line : lines){
+			for(boolean simpleEdgeFormat : new boolean[]{false, true})
+				assertTrue(line, parseGrResult(line, simpleEdgeFormat, false).equals(parseGrResult(line, simpleEdgeFormat, true)));
+		}
+		
+		// The tokenizer returns the same String object for known types
+		GrTokenizer tokenizer = new GrTokenizer();
+		tokenizer.parse("(|ncsubj| |be+s:4_VBZ| |processing:3_NN1| _)", false);
+		assertTrue(tokenizer.getType() == "ncsubj");
+		assertTrue(tokenizer.getCategory() == GrTokenizer.CATEGORY_INITIAL_GR);
+		assertTrue(tokenizer.getInitialGr().equals("_"));
+		tokenizer.parse("(|ncmod| _ |algorithm+s:6_NN2| |modern:3_JJ|)", false);
+		assertTrue(tokenizer.getType() == "ncmod");
+		assertTrue(tokenizer.getSubtype().equals("_"));
+		assertTrue(tokenizer.tokenEquals(tokenizer.getHeadToken(), "algorithm+s:6_NN2"));
+		
+		// Lines with only whitespace now give a GraphFormatException
+		assertTrue(parseGrResult("( )", false, false).equals("GraphFormatException"));
+		
+		// Comparing on real data
+		for(String line : GrTokenizerBenchmark.readGrLines(this.largeFile))
+			assertTrue(line, RaspGraphReader.parseGr(line, false).equals(GrTokenizerBenchmark.parseGrSplit(line, false)));
+	}
 }
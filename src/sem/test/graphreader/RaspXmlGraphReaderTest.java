@@ -2,9 +2,16 @@ package sem.test.graphreader;
 
 import static org.junit.Assert.assertTrue;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.junit.Test;
 
@@ -14,6 +21,9 @@ import sem.graph.Graph;
 import sem.graph.Node;
 import sem.graphreader.GraphReader;
 import sem.graphreader.RaspXmlGraphReader;
+import sem.graphreader.SentenceIndex;
+import sem.util.FileReader;
+import sem.util.FileWriter;
 
 public class RaspXmlGraphReaderTest {
 
@@ -298,4 +308,107 @@ public class RaspXmlGraphReaderTest {
 			e.printStackTrace();
 		}
 	}
+	
+	@Test
+	public void testStreams(){
+		try{
+			RaspXmlGraphReader reader = new RaspXmlGraphReader(this.dir, RaspXmlGraphReader.NODES_TOKENS, true, true);
+			ArrayList<String> expected = new ArrayList<String>();
+			int sentenceCount = 0;
+			while(reader.hasNext()){
+				reader.nextSentence();
+				sentenceCount++;
+			}
+			reader.reset();
+			while(reader.hasNext())
+				expected.add(reader.next().toString());
+			reader.close();
+
+			// Closing the stream also closes the reader
+			reader = new RaspXmlGraphReader(this.dir, RaspXmlGraphReader.NODES_TOKENS, true, true);
+			Stream<Graph> graphs = reader.graphs();
+			List<String> sequential = graphs.map(Graph::toString).collect(Collectors.toList());
+			graphs.close();
+			assertTrue(sequential.equals(expected));
+
+			reader = new RaspXmlGraphReader(this.dir, RaspXmlGraphReader.NODES_TOKENS, true, true);
+			graphs = reader.graphs().parallel();
+			List<String> parallel = graphs.map(Graph::toString).collect(Collectors.toList());
+			graphs.close();
+			assertTrue(parallel.equals(expected));
+
+			reader = new RaspXmlGraphReader(this.dir, RaspXmlGraphReader.NODES_TOKENS, true, true);
+			Stream<ArrayList<Graph>> sentences = reader.sentences().parallel();
+			assertTrue(sentences.count() == sentenceCount);
+			sentences.close();
+
+			// After reading some graphs, the stream contains the rest
+			reader = new RaspXmlGraphReader(this.dir, RaspXmlGraphReader.NODES_TOKENS, true, true);
+			for(int i = 0; i < 3; i++)
+				reader.next();
+			graphs = reader.graphs().parallel();
+			List<String> remaining = graphs.map(Graph::toString).collect(Collectors.toList());
+			graphs.close();
+			assertTrue(remaining.equals(expected.subList(3, expected.size())));
+
+			// Reset starts again from the beginning
+			reader = new RaspXmlGraphReader(this.dir, RaspXmlGraphReader.NODES_TOKENS, true, true);
+			reader.next();
+			reader.reset();
+			graphs = reader.graphs().parallel();
+			assertTrue(graphs.count() == expected.size());
+			graphs.close();
+		} catch (GraphFormatException e) {
+			e.printStackTrace();
+		}
+	}
+
+	@Test
+	public void testIndexedStreams() throws IOException{
+		// Streams only split by sentence if the input supports random access, so the example is recompressed as blocked gzip
+		new File("semtests").mkdirs();
+		String blockedFile = "semtests/pnp_1000.xml.bgz";
+		InputStream in = FileReader.openInputStream(new File(this.largeFile), 0);
+		OutputStream out = FileWriter.openOutputStream(blockedFile, FileWriter.BUFFER_SIZE);
+		byte[] buffer = new byte[1 << 16];
+		int n;
+		while((n = in.read(buffer)) > 0)
+			out.write(buffer, 0, n);
+		out.close();
+		in.close();
+		try{
+			for(String path : new String[]{blockedFile, this.dir}){
+				RaspXmlGraphReader reader = new RaspXmlGraphReader(path, RaspXmlGraphReader.NODES_TOKENS, true, true);
+				ArrayList<String> expected = new ArrayList<String>();
+				ArrayList<String> expectedIds = new ArrayList<String>();
+				while(reader.hasNext()){
+					Graph graph = reader.next();
+					expected.add(graph.toString());
+					expectedIds.add(graph.getMetadata().get("sentenceId"));
+				}
+				SentenceIndex index = SentenceIndex.build(reader);
+				reader.close();
+
+				// With a sentence index, every part of the parallel stream seeks to its first sentence
+				reader = new RaspXmlGraphReader(path, RaspXmlGraphReader.NODES_TOKENS, true, true);
+				reader.setSentenceIndex(index);
+				Stream<Graph> graphs = reader.graphs().parallel();
+				List<Graph> parallel = graphs.collect(Collectors.toList());
+				graphs.close();
+				assertTrue(parallel.stream().map(Graph::toString).collect(Collectors.toList()).equals(expected));
+				// The sentence numbers in a single file are the same as when reading sequentially
+				if(path.equals(blockedFile))
+					assertTrue(parallel.stream().map(g -> g.getMetadata().get("sentenceId")).collect(Collectors.toList()).equals(expectedIds));
+
+				reader = new RaspXmlGraphReader(path, RaspXmlGraphReader.NODES_TOKENS, true, true);
+				reader.setSentenceIndex(index);
+				Stream<ArrayList<Graph>> sentences = reader.sentences().parallel();
+				assertTrue(sentences.count() == index.size());
+				sentences.close();
+			}
+		} catch (GraphFormatException e) {
+			e.printStackTrace();
+		}
+		new File(blockedFile).delete();
+	}
 }
@@ -0,0 +1,212 @@
+package sem.test.graphreader;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+import sem.exception.GraphFormatException;
+import sem.graph.Graph;
+import sem.graphreader.CnCGraphReader;
+import sem.graphreader.ParsevalGraphReader;
+import sem.graphreader.RaspGraphReader;
+import sem.graphreader.RaspXmlGraphReader;
+import sem.graphreader.SeekableGraphReader;
+import sem.graphreader.SentenceIndex;
+import sem.graphreader.TSVGraphReader;
+
+public class SentenceIndexTest {
+	
+	/**
+	 * Read all the sentences, then seek to each of them and check that the same sentence is returned.
+	 */
+	public static void testSeek(SeekableGraphReader reader) throws GraphFormatException{
+		ArrayList<String> sentences = new ArrayList<String>();
+		while(reader.hasNext())
+			sentences.add(reader.nextSentence().toString());
+		assertTrue(sentences.size() > 0);
+		
+		// Without an index, seeking reads from the beginning
+		reader.seek(sentences.size() - 1);
+		assertTrue(reader.nextSentence().toString().equals(sentences.get(sentences.size() - 1)));
+		assertTrue(!reader.hasNext());
+		
+		SentenceIndex index = SentenceIndex.build(reader);
+		reader.setSentenceIndex(index);
+		assertTrue(index.size() == sentences.size());
+		
+		for(int i = sentences.size() - 1; i >= 0; i -= 7){
+			reader.seek(i);
+			assertTrue(reader.nextSentence().toString().equals(sentences.get(i)));
+		}
+		
+		// Reading continues to the end of the corpus after seeking
+		reader.seek(sentences.size() / 2);
+		int count = 0;
+		while(reader.hasNext()){
+			assertTrue(reader.nextSentence().toString().equals(sentences.get(sentences.size() / 2 + count)));
+			count++;
+		}
+		assertTrue(count == sentences.size() - sentences.size() / 2);
+	}
+	
+	@Test
+	public void testRasp() throws GraphFormatException{
+		SeekableGraphReader reader = new RaspGraphReader("examples/rasp/", true);
+		testSeek(reader);
+		reader.close();
+	}
+	
+	@Test
+	public void testRaspXml() throws GraphFormatException{
+		SeekableGraphReader reader = new RaspXmlGraphReader("examples/raspxml/", RaspXmlGraphReader.NODES_TOKENS, true, true);
+		testSeek(reader);
+		reader.close();
+	}
+	
+	@Test
+	public void testCnC() throws GraphFormatException{
+		SeekableGraphReader reader = new CnCGraphReader("examples/cnc/");
+		testSeek(reader);
+		reader.close();
+	}
+	
+	@Test
+	public void testParseval() throws GraphFormatException{
+		SeekableGraphReader reader = new ParsevalGraphReader("examples/parseval/", false, false);
+		testSeek(reader);
+		reader.close();
+	}
+	
+	@Test
+	public void testTSV() throws GraphFormatException{
+		SeekableGraphReader reader = new TSVGraphReader("examples/tsv/", true);
+		testSeek(reader);
+		reader.close();
+	}
+	
+	/**
+	 * Build an index that stores all the offsets, and one with the default interval.
+	 */
+	private static SentenceIndex[] buildIndexes(SeekableGraphReader reader) throws GraphFormatException{
+		SentenceIndex full = new SentenceIndex(reader.getInputFiles(), 1);
+		SentenceIndex sparse = new SentenceIndex(reader.getInputFiles());
+		reader.reset();
+		while(reader.hasNext()){
+			full.add(reader.getNextSentenceFileIndex(), reader.getNextSentenceOffset());
+			sparse.add(reader.getNextSentenceFileIndex(), reader.getNextSentenceOffset());
+			reader.nextSentence();
+		}
+		reader.reset();
+		return new SentenceIndex[]{full, sparse};
+	}
+	
+	@Test
+	public void testInterval() throws GraphFormatException{
+		TSVGraphReader reader = new TSVGraphReader("examples/tsv/", true);
+		SentenceIndex[] indexes = buildIndexes(reader);
+		SentenceIndex full = indexes[0], sparse = indexes[1];
+		assertTrue(sparse.getInterval() == SentenceIndex.DEFAULT_INTERVAL);
+		assertTrue(sparse.size() == full.size());
+		assertTrue(full.size() > 2 * SentenceIndex.DEFAULT_INTERVAL);
+		
+		// The indexed sentence is in the same file, at most interval - 1 sentences before
+		for(long i = 0; i < full.size(); i++){
+			long indexed = sparse.getIndexedSentence(i);
+			assertTrue(full.getIndexedSentence(i) == i);
+			assertTrue(indexed <= i && i - indexed < sparse.getInterval());
+			assertTrue(sparse.getFileIndex(i) == full.getFileIndex(i));
+			assertTrue(sparse.getFileIndex(indexed) == full.getFileIndex(i));
+			assertTrue(sparse.getOffset(i) == full.getOffset(indexed));
+		}
+		reader.close();
+	}
+	
+	private static void writeVarLong(DataOutputStream out, long value) throws IOException{
+		while((value & ~0x7FL) != 0){
+			out.writeByte((int)((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.writeByte((int)value);
+	}
+	
+	/**
+	 * An index file in the first format, with all the offsets, is loaded with the default interval.
+	 */
+	@Test
+	public void testLoadVersion1() throws GraphFormatException, IOException{
+		new File("semtests").mkdirs();
+		String indexPath = "semtests/tsv-v1" + SentenceIndex.SUFFIX;
+		TSVGraphReader reader = new TSVGraphReader("examples/tsv/", true);
+		SentenceIndex full = buildIndexes(reader)[0];
+		ArrayList<File> files = reader.getInputFiles();
+		
+		DataOutputStream out = new DataOutputStream(new FileOutputStream(indexPath));
+		out.writeInt(0x53474958);
+		out.writeInt(1);
+		out.writeInt(files.size());
+		long[] counts = new long[files.size()];
+		for(long i = 0; i < full.size(); i++)
+			counts[full.getFileIndex(i)]++;
+		for(int i = 0; i < files.size(); i++){
+			out.writeUTF(files.get(i).getName());
+			out.writeLong(files.get(i).length());
+			out.writeLong(files.get(i).lastModified());
+			writeVarLong(out, counts[i]);
+		}
+		long previous = 0;
+		for(long i = 0; i < full.size(); i++){
+			if(i > 0 && full.getFileIndex(i) != full.getFileIndex(i - 1))
+				previous = 0;
+			writeVarLong(out, full.getOffset(i) - previous);
+			previous = full.getOffset(i);
+		}
+		out.close();
+		
+		SentenceIndex loaded = SentenceIndex.load(indexPath);
+		assertTrue(loaded.matches(files));
+		assertTrue(loaded.getInterval() == SentenceIndex.DEFAULT_INTERVAL);
+		assertTrue(loaded.size() == full.size());
+		for(long i = 0; i < full.size(); i++){
+			assertTrue(loaded.getFileIndex(i) == full.getFileIndex(i));
+			assertTrue(loaded.getOffset(i) == full.getOffset(loaded.getIndexedSentence(i)));
+		}
+		reader.close();
+		new File(indexPath).delete();
+	}
+	
+	@Test
+	public void testSaveLoad() throws GraphFormatException{
+		new File("semtests").mkdirs();
+		String indexPath = "semtests/tsv" + SentenceIndex.SUFFIX;
+		TSVGraphReader reader = new TSVGraphReader("examples/tsv/", true);
+		SentenceIndex index = SentenceIndex.build(reader);
+		index.save(indexPath);
+		
+		SentenceIndex loaded = SentenceIndex.load(indexPath);
+		assertTrue(loaded.size() == index.size());
+		assertTrue(loaded.getInterval() == index.getInterval());
+		assertTrue(loaded.matches(reader.getInputFiles()));
+		for(long i = 0; i < index.size(); i++){
+			assertTrue(loaded.getFileIndex(i) == index.getFileIndex(i));
+			assertTrue(loaded.getOffset(i) == index.getOffset(i));
+		}
+		assertTrue(!loaded.matches(new ArrayList<File>()));
+		
+		reader.setSentenceIndex(loaded);
+		reader.seek(index.size() - 1);
+		ArrayList<Graph> sentence = reader.nextSentence();
+		assertTrue(sentence.size() > 0);
+		assertTrue(!reader.hasNext());
+		reader.close();
+		
+		assertTrue(SentenceIndex.getIndexPath("examples/tsv/").equals("examples/tsv" + SentenceIndex.SUFFIX));
+		assertTrue(SentenceIndex.load("semtests/missing" + SentenceIndex.SUFFIX) == null);
+		new File(indexPath).delete();
+	}
+}
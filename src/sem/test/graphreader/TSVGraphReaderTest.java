@@ -1,9 +1,20 @@
 package sem.test.graphreader;
 
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
 import org.junit.Test;
 
 import sem.exception.GraphFormatException;
+import sem.graph.Edge;
+import sem.graph.Graph;
+import sem.graph.Node;
+import sem.graph.SymbolTable;
+import sem.graphreader.GraphReader;
+import sem.graphreader.GraphReaderType;
 import sem.graphreader.TSVGraphReader;
+import sem.util.FileReader;
 
 public class TSVGraphReaderTest {
 
@@ -76,4 +87,64 @@ public class TSVGraphReaderTest {
 			e.printStackTrace();
 		}
 	}
+	
+	@Test
+	public void testSymbolTable(){
+		try{
+			SymbolTable symbolTable = new SymbolTable();
+			GraphReader reader = GraphReaderType.TSV.makeGraphReader(smallFile, symbolTable);
+			RaspXmlGraphReaderTest.testMultipleParses(reader);
+			
+			reader.reset();
+			while(reader.hasNext()){
+				Graph graph = reader.next();
+				for(Node node : graph.getNodes()){
+					assertTrue(node.getLemma() == symbolTable.intern(node.getLemma()));
+					assertTrue(node.getPos() == symbolTable.intern(node.getPos()));
+				}
+				for(Edge edge : graph.getEdges())
+					assertTrue(edge.getLabel() == symbolTable.intern(edge.getLabel()));
+			}
+			reader.close();
+		} catch (GraphFormatException e) {
+			e.printStackTrace();
+		}
+	}
+	
+	private TSVGraphReader makeReader(String... lines) throws GraphFormatException{
+		return new TSVGraphReader(new FileReader(Arrays.asList(lines)), true);
+	}
+	
+	private String getError(String... lines){
+		try {
+			TSVGraphReader reader = this.makeReader(lines);
+			while(reader.hasNext())
+				reader.nextSentence();
+		} catch (GraphFormatException e) {
+			return e.getMessage();
+		}
+		return null;
+	}
+	
+	@Test
+	public void testLineFormat() throws GraphFormatException{
+		// Surrounding whitespace is ignored, empty fields are kept, and ellip / null nodes are added by the GRs
+		TSVGraphReader reader = this.makeReader("  <s> ", "<g>", "\t<lem>", " 1\tcat\tNN1\t ", "2\t\tVVZ", "3\t[[ellip]]\tx", "</lem>",
+				"<gr>", "ncsubj\t2\t1", "conj\t[[ellip]]\t[[null]]", "</gr>", "</s>");
+		Graph graph = reader.nextSentence().get(0);
+		assertTrue(graph.getNodes().size() == 5);
+		assertTrue(graph.getNodes().get(0).getLemma().equals("cat") && graph.getNodes().get(0).getPos().equals("NN1"));
+		assertTrue(graph.getNodes().get(1).getLemma().equals("") && graph.getNodes().get(1).getPos().equals("VVZ"));
+		assertTrue(graph.getNodes().get(2).getLemma().equals(Graph.ellip.getLemma()) && graph.getNodes().get(2).getPos().equals(Graph.ellip.getPos()));
+		assertTrue(graph.getEdges().get(0).getLabel().equals("ncsubj") && graph.getEdges().get(0).getHead() == graph.getNodes().get(1));
+		assertTrue(graph.getEdges().get(1).getDep().getLemma().equals(Graph.nil.getLemma()));
+		assertTrue(!reader.hasNext());
+		
+		assertTrue(this.getError("<s>", "<g>", "<lem>", "1\tcat", "</lem>", "</s>").equals("Illegal number of lemma attributes in TSVGraphReader. : 1\tcat"));
+		assertTrue(this.getError("<s>", "<g>", "<lem>", "1\tcat\tNN1\tx ", "</lem>", "</s>").equals("Illegal number of lemma attributes in TSVGraphReader. : 1\tcat\tNN1\tx"));
+		assertTrue(this.getError("<s>", "<g>", "<lem>", "2\tcat\tNN1", "</lem>", "</s>").equals("Error in TSVGraphReader. Mismatch on IDs. : 1 0"));
+		assertTrue(this.getError("<s>", "<g>", "<gr>", "ncsubj\t2", "</gr>", "</s>").equals("Error: Illegal number of GR attributes in TSVGraphReader. : ncsubj\t2"));
+		assertTrue(this.getError("<s>", "<g>", "<lem>", "1\tcat\tNN1", "</lem>", "<gr>", "ncsubj\t2\t1", "</gr>", "</s>").equals("The head id of a GR does not exist in the lemmas. : ncsubj\t2\t1"));
+		assertTrue(this.getError("<s>", "<g>", "<lem>", "1\tcat\tNN1", "</lem>", "<gr>", "ncsubj\t1\tx", "</gr>", "</s>").equals("The GR dep id is not a number or a negative number. : ncsubj\t1\tx"));
+	}
 }
@@ -0,0 +1,77 @@
+package sem.test.graphvis;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+import sem.exception.GraphFormatException;
+import sem.graph.Graph;
+import sem.graphreader.RaspGraphReader;
+import sem.graphreader.SentenceIndex;
+import sem.graphreader.TSVGraphReader;
+import sem.graphvis.WindowedSentenceSource;
+
+public class WindowedSentenceSourceTest {
+	
+	private ArrayList<String> readAll(TSVGraphReader reader) throws GraphFormatException{
+		ArrayList<String> sentences = new ArrayList<String>();
+		reader.reset();
+		while(reader.hasNext())
+			sentences.add(reader.nextSentence().toString());
+		reader.reset();
+		return sentences;
+	}
+
+	@Test
+	public void testRandomAccess() throws GraphFormatException{
+		TSVGraphReader reader = new TSVGraphReader("examples/tsv/", true);
+		ArrayList<String> expected = readAll(reader);
+		
+		WindowedSentenceSource source = new WindowedSentenceSource(reader, 5);
+		assertTrue(!source.isSizeKnown());
+		int[] order = new int[]{0, 1, 2, 40, 39, 3, 200, expected.size()-1, 100, 0, 101, 99};
+		for(int sentenceId : order){
+			ArrayList<Graph> sentence = source.getSentence(sentenceId);
+			assertTrue(sentence.toString().equals(expected.get(sentenceId)));
+		}
+		assertTrue(source.getSentence(expected.size()) == null);
+		assertTrue(source.getSentence(-1) == null);
+		assertTrue(source.size() == expected.size());
+		assertTrue(source.isSizeKnown());
+		
+		// Only the window around the current sentence is kept in memory
+		assertTrue(source.getCacheSize() <= 11);
+		source.close();
+	}
+	
+	@Test
+	public void testPinned() throws GraphFormatException{
+		TSVGraphReader reader = new TSVGraphReader("examples/tsv/", true);
+		WindowedSentenceSource source = new WindowedSentenceSource(reader, 2);
+		ArrayList<Graph> sentence = source.getSentence(10);
+		sentence.get(0).addNode("edited", "NN1");
+		source.pin(10);
+		source.getSentence(300);
+		source.getSentence(5);
+		assertTrue(source.getSentence(10) == sentence);
+		source.close();
+	}
+	
+	@Test
+	public void testWithIndex() throws GraphFormatException{
+		RaspGraphReader reader = new RaspGraphReader("examples/rasp/", true);
+		ArrayList<String> expected = new ArrayList<String>();
+		while(reader.hasNext())
+			expected.add(reader.nextSentence().toString());
+		reader.setSentenceIndex(SentenceIndex.build(reader));
+		
+		WindowedSentenceSource source = new WindowedSentenceSource(reader, 3);
+		assertTrue(source.isSizeKnown());
+		assertTrue(source.size() == expected.size());
+		for(int sentenceId = expected.size() - 1; sentenceId >= 0; sentenceId -= 13)
+			assertTrue(source.getSentence(sentenceId).toString().equals(expected.get(sentenceId)));
+		source.close();
+	}
+}
@@ -0,0 +1,126 @@
+package sem.test.graphwriter;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Test;
+
+import sem.exception.GraphFormatException;
+import sem.graph.Graph;
+import sem.graphreader.GraphReader;
+import sem.graphreader.TSVGraphReader;
+import sem.graphwriter.GraphWriterType;
+import sem.graphwriter.ShardedGraphWriter;
+import sem.graphwriter.TSVGraphWriter;
+import sem.run.ConvertGraphs;
+import sem.util.FileReader;
+
+public class ShardedGraphWriterTest {
+	private String dir = "semtests/sharded/";
+
+	@After
+	public void tearDown(){
+		File d = new File(this.dir);
+		if(d.exists()){
+			for(File file : d.listFiles())
+				file.delete();
+			d.delete();
+		}
+	}
+
+	private static ArrayList<String> readSentences(GraphReader reader) throws GraphFormatException{
+		ArrayList<String> sentences = new ArrayList<String>();
+		while(reader.hasNext())
+			sentences.add(reader.nextSentence().toString());
+		reader.close();
+		return sentences;
+	}
+
+	/**
+	 * Write the test corpus, and return the sentences as they are read back from a single file written in the same way.
+	 */
+	private ArrayList<String> write(ShardedGraphWriter writer) throws GraphFormatException{
+		String baselinePath = "semtests/sharded-baseline.tsv";
+		TSVGraphWriter baseline = new TSVGraphWriter(baselinePath);
+		GraphReader reader = new TSVGraphReader("examples/tsv/pnp_1000.tsv.gz", true);
+		while(reader.hasNext()){
+			ArrayList<Graph> sentence = reader.nextSentence();
+			baseline.write(sentence);
+			writer.write(sentence);
+		}
+		reader.close();
+		writer.close();
+		baseline.close();
+		ArrayList<String> sentences = readSentences(new TSVGraphReader(baselinePath, true));
+		new File(baselinePath).delete();
+		return sentences;
+	}
+
+	@Test
+	public void testShardPath(){
+		assertTrue(ShardedGraphWriter.getShardPath("out/corpus.tsv.gz", -1, 12).equals(new File("out/corpus-000012.tsv.gz").getPath()));
+		assertTrue(ShardedGraphWriter.getShardPath("corpus", 3, 0).equals("corpus-p003-000000"));
+	}
+
+	@Test
+	public void testSharding() throws GraphFormatException{
+		// By number of sentences
+		ShardedGraphWriter writer = new ShardedGraphWriter(GraphWriterType.TSV, this.dir + "corpus.tsv", 100);
+		ArrayList<String> sentences = write(writer);
+		ArrayList<File> files = writer.getOutputFiles();
+		assertTrue(files.size() == (sentences.size() + 99) / 100);
+		assertTrue(files.equals(FileReader.listFileRec(new File(this.dir))));
+		assertTrue(readSentences(new TSVGraphReader(files.get(1).getPath(), true)).size() == 100);
+		assertTrue(readSentences(new TSVGraphReader(this.dir, true)).equals(sentences));
+		this.tearDown();
+
+		// By size, with compressed output
+		writer = new ShardedGraphWriter(GraphWriterType.TSV, this.dir + "corpus.tsv.gz", 0, 20000, 1);
+		sentences = write(writer);
+		files = writer.getOutputFiles();
+		assertTrue(files.size() > 1);
+		for(File file : files.subList(0, files.size() - 1))
+			assertTrue(file.length() >= 20000);
+		assertTrue(readSentences(new TSVGraphReader(this.dir, true)).equals(sentences));
+	}
+
+	@Test
+	public void testPartitions() throws GraphFormatException{
+		ShardedGraphWriter writer = new ShardedGraphWriter(GraphWriterType.TSV, this.dir + "corpus.tsv", 50, 0, 3);
+		ArrayList<String> sentences = write(writer);
+		ArrayList<File> files = writer.getOutputFiles();
+		assertTrue(files.get(0).getName().startsWith("corpus-p000-"));
+
+		// Every sentence is written once, and the order is preserved within each partition
+		ArrayList<String> result = new ArrayList<String>();
+		for(int partition = 0; partition < 3; partition++){
+			ArrayList<String> partitionSentences = new ArrayList<String>();
+			for(File file : files)
+				if(file.getName().startsWith("corpus-p00" + partition))
+					partitionSentences.addAll(readSentences(new TSVGraphReader(file.getPath(), true)));
+			assertTrue(partitionSentences.size() > 0);
+			int position = 0;
+			for(String sentence : partitionSentences){
+				while(position < sentences.size() && !sentences.get(position).equals(sentence))
+					position++;
+				assertTrue(position++ < sentences.size());
+			}
+			result.addAll(partitionSentences);
+		}
+		Collections.sort(result);
+		Collections.sort(sentences);
+		assertTrue(result.equals(sentences));
+		this.tearDown();
+
+		// ConvertGraphs gives the same partitions
+		ConvertGraphs.convertGraphs("tsv", "examples/tsv/pnp_1000.tsv.gz", "tsv", this.dir + "corpus.tsv", 1, 50, 0, 3);
+		assertTrue(FileReader.listFileRec(new File(this.dir)).equals(files));
+		ArrayList<String> converted = readSentences(new TSVGraphReader(this.dir, true));
+		Collections.sort(converted);
+		assertTrue(converted.equals(sentences));
+	}
+}
@@ -0,0 +1,116 @@
+package sem.test.metrics;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import sem.exception.GraphFormatException;
+import sem.graph.Graph;
+import sem.graphreader.GraphReader;
+import sem.graphreader.GraphReaderType;
+import sem.graphwriter.GraphWriter;
+import sem.graphwriter.GraphWriterType;
+import sem.metrics.Histogram;
+import sem.metrics.MetricsRegistry;
+import sem.metrics.Timer;
+import sem.util.FileReader;
+import sem.util.FileWriter;
+
+public class MetricsRegistryTest {
+
+	@Test
+	public void testHistogram(){
+		Histogram histogram = new Histogram();
+		assertTrue(histogram.getPercentile(50) == 0);
+		for(int i = 1; i <= 1000; i++)
+			histogram.record(i);
+		assertTrue(histogram.getCount() == 1000);
+		assertTrue(histogram.getMax() == 1000);
+		assertTrue(histogram.getMean() == 500.5);
+		// Percentiles are within 12.5% above the exact value
+		assertTrue(histogram.getPercentile(50) >= 500 && histogram.getPercentile(50) <= 500 * 1.125);
+		assertTrue(histogram.getPercentile(99) >= 990 && histogram.getPercentile(99) <= 1000);
+		assertTrue(histogram.getPercentile(100) == 1000);
+
+		histogram.reset();
+		histogram.record(Long.MAX_VALUE);
+		histogram.record(3);
+		assertTrue(histogram.getPercentile(50) == 3);
+		assertTrue(histogram.getPercentile(100) == Long.MAX_VALUE);
+	}
+
+	@Test
+	public void testRegistry() throws Exception{
+		MetricsRegistry metrics = new MetricsRegistry();
+		metrics.counter("a.count").add(5);
+		metrics.counter("a.count").inc();
+		Timer timer = metrics.timer("a.time");
+		timer.record(2000000);
+		assertTrue(metrics.timer("a.time") == timer);
+		assertTrue(metrics.getNames().toString().equals("[a.count, a.time]"));
+		try {
+			metrics.histogram("a.time");
+			fail();
+		} catch (RuntimeException e) {
+		}
+
+		// JMX
+		metrics.registerMBean("sem:type=Test");
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName("sem:type=Test");
+		assertTrue(((Long)server.getAttribute(name, "a.count")) == 6);
+		assertTrue(((Long)server.getAttribute(name, "a.time.count")) == 1);
+		assertTrue(((Long)server.getAttribute(name, "a.time.max")) == 2000000);
+		assertTrue(server.getMBeanInfo(name).getAttributes().length == 6);
+		server.invoke(name, "reset", null, null);
+		assertTrue(metrics.counter("a.count").getCount() == 0);
+		metrics.unregisterMBean();
+		assertFalse(server.isRegistered(name));
+	}
+
+	@Test
+	public void testInstrumented() throws GraphFormatException{
+		new File("semtests").mkdirs();
+		MetricsRegistry metrics = new MetricsRegistry();
+		FileReader.setMetrics(metrics);
+		FileWriter.setMetrics(metrics);
+		try {
+			GraphReader reader = GraphReaderType.TSV.makeGraphReader("examples/tsv/", 1, true, metrics);
+			GraphWriter writer = GraphWriterType.TSV.makeGraphWriter("semtests/metrics.tsv", metrics);
+			int sentences = 0, graphs = 0;
+			while(reader.hasNext()){
+				ArrayList<Graph> sentence = reader.nextSentence();
+				writer.write(sentence);
+				sentences++;
+				graphs += sentence.size();
+			}
+			reader.close();
+			writer.close();
+
+			assertTrue(metrics.counter("reader.tsv.sentences").getCount() == sentences);
+			assertTrue(metrics.counter("reader.tsv.graphs").getCount() == graphs);
+			assertTrue(metrics.timer("reader.tsv.read").getCount() == sentences);
+			assertTrue(metrics.counter("reader.tsv.errors").getCount() == 0);
+			assertTrue(metrics.counter("writer.tsv.sentences").getCount() == sentences);
+			assertTrue(metrics.counter("writer.tsv.graphs").getCount() == graphs);
+
+			long length = 0;
+			for(File file : FileReader.listFileRec(new File("examples/tsv/")))
+				length += file.length();
+			assertTrue(metrics.counter("file.bytes.raw").getCount() == length);
+			assertTrue(metrics.counter("file.bytes").getCount() > length);
+			assertTrue(metrics.counter("file.bytes.written").getCount() == new File("semtests/metrics.tsv").length());
+		} finally {
+			FileReader.setMetrics(null);
+			FileWriter.setMetrics(null);
+			new File("semtests/metrics.tsv").delete();
+		}
+	}
+}
@@ -0,0 +1,96 @@
+package sem.test.run;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Test;
+
+import sem.exception.GraphFormatException;
+import sem.graphreader.GraphReader;
+import sem.graphreader.GraphReaderType;
+import sem.graphreader.SentenceChunkReader;
+import sem.graphwriter.TSVGraphWriter;
+import sem.run.ConversionPipeline;
+import sem.run.ConvertGraphs;
+
+public class ConversionPipelineTest {
+	private String dir = "semtests/pipeline/";
+
+	@After
+	public void tearDown(){
+		File d = new File(this.dir);
+		if(d.exists()){
+			for(File file : d.listFiles())
+				file.delete();
+			d.delete();
+		}
+	}
+
+	private static ArrayList<String> readSentences(GraphReader reader) throws GraphFormatException{
+		ArrayList<String> sentences = new ArrayList<String>();
+		while(reader.hasNext())
+			sentences.add(reader.nextSentence().toString());
+		reader.close();
+		return sentences;
+	}
+
+	@Test
+	public void testChunks() throws GraphFormatException{
+		String[][] inputs = new String[][]{{"rasp", "examples/rasp/"}, {"parseval", "examples/parseval/"}, {"cnc", "examples/cnc/"}, {"tsv", "examples/tsv/"}};
+		for(String[] input : inputs){
+			GraphReaderType type = GraphReaderType.getType(input[0]);
+			ArrayList<String> expected = readSentences(type.makeGraphReader(input[1]));
+			assertTrue(expected.size() > 400);
+			for(int chunkSentences : new int[]{1, 7, 100000}){
+				SentenceChunkReader chunkReader = new SentenceChunkReader(type, input[1], chunkSentences);
+				ArrayList<String> sentences = new ArrayList<String>();
+				int chunks = 0;
+				while(chunkReader.hasNext()){
+					sentences.addAll(readSentences(SentenceChunkReader.makeGraphReader(type, chunkReader.next())));
+					chunks++;
+				}
+				chunkReader.close();
+				assertTrue(sentences.equals(expected));
+				assertTrue(chunkSentences < 100000 ? chunks >= expected.size() / chunkSentences : chunks == 1);
+			}
+		}
+		assertFalse(SentenceChunkReader.isSupported(GraphReaderType.RASP_XML));
+	}
+
+	@Test
+	public void testConvert() throws IOException{
+		new File(this.dir).mkdirs();
+		for(String[] input : new String[][]{{"tsv", "examples/tsv/pnp_1000.tsv.gz"}, {"rasp", "examples/rasp/"}}){
+			ConvertGraphs.convertGraphs(input[0], input[1], "tsv", this.dir + "sequential.tsv");
+			ConvertGraphs.convertGraphs(input[0], input[1], "tsv", this.dir + "pipeline.tsv", 1, 3, 0, 0, 1);
+			byte[] sequential = Files.readAllBytes(new File(this.dir + "sequential.tsv").toPath());
+			assertTrue(sequential.length > 100000);
+			assertTrue(Arrays.equals(Files.readAllBytes(new File(this.dir + "pipeline.tsv").toPath()), sequential));
+		}
+	}
+
+	@Test
+	public void testError() throws IOException{
+		new File(this.dir).mkdirs();
+		PrintWriter out = new PrintWriter(this.dir + "input.tsv");
+		for(int i = 0; i < 50; i++)
+			out.println("<s>\n<g>\n<lem>\n1\tword\tNN\n</lem>\n<gr>\n</gr>\n</s>");
+		out.println("<s>\n<g>\n<lem>\n1\tbroken\n</lem>\n</s>");
+		out.close();
+
+		TSVGraphWriter writer = new TSVGraphWriter(this.dir + "output.tsv");
+		try {
+			new ConversionPipeline(GraphReaderType.TSV, this.dir + "input.tsv", 2, 10).run(writer);
+			fail();
+		} catch (GraphFormatException e) {
+		}
+		writer.close();
+	}
+}
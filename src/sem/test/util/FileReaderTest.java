@@ -2,14 +2,32 @@ package sem.test.util;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import sem.exception.GraphFormatException;
+import sem.graphreader.RaspXmlGraphReader;
+import sem.metrics.MetricsRegistry;
+import sem.test.graphreader.RaspXmlGraphReaderTest;
 import sem.util.FileReader;
 import sem.util.FileWriter;
+import sem.util.ParallelGzipInputStream;
+import sem.util.ReadAheadInputStream;
 
 public class FileReaderTest {
 	
@@ -105,4 +123,204 @@ public class FileReaderTest {
 		fr.close();
 		
 	}
+	
+	@Test
+	public void testSeek() {
+		FileReader fr = new FileReader(dir);
+		ArrayList<Integer> fileIndices = new ArrayList<Integer>();
+		ArrayList<Long> offsets = new ArrayList<Long>();
+		while(fr.hasNext()){
+			fileIndices.add(fr.getNextLineFileIndex());
+			offsets.add(fr.getNextLineOffset());
+			fr.next();
+		}
+		assertTrue(fr.getNextLineFileIndex() == -1);
+		assertTrue(offsets.size() == 9);
+		assertTrue(fileIndices.get(4) == 1);
+		assertTrue(offsets.get(4) == "This is line 4\n".length());
+		
+		for(int i = 8; i >= 0; i--){
+			fr.seek(fileIndices.get(i), offsets.get(i));
+			assertTrue(fr.next().equals("This is line " + (i+1)));
+		}
+		
+		// Reading continues into the next files
+		fr.seek(fileIndices.get(2), offsets.get(2));
+		int count = 3;
+		while(fr.hasNext()){
+			assertTrue(fr.next().equals("This is line " + count));
+			count++;
+		}
+		assertTrue(count == 10);
+		fr.close();
+	}
+	
+	@Test
+	public void testReadAhead() throws IOException, GraphFormatException {
+		// Small buffers, so that reads cross many buffer boundaries
+		byte[] data = new byte[10000];
+		for(int i = 0; i < data.length; i++)
+			data[i] = (byte)(i * 31);
+		ReadAheadInputStream in = new ReadAheadInputStream(new ByteArrayInputStream(data), 3, 64);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] b = new byte[100];
+		out.write(in.read());
+		assertTrue(in.skip(9) == 9);
+		out.write(new byte[9]);
+		int n;
+		while((n = in.read(b, 0, b.length)) > 0)
+			out.write(b, 0, n);
+		assertTrue(in.read() == -1);
+		in.close();
+		byte[] result = out.toByteArray();
+		assertTrue(result.length == data.length);
+		assertTrue(result[0] == data[0]);
+		for(int i = 10; i < data.length; i++)
+			assertTrue(result[i] == data[i]);
+		
+		// Gzipped files give the same lines and offsets
+		String path = "examples/rasp/pnp_1000.rasp.gz";
+		FileReader plain = new FileReader(path, "\n", 0);
+		FileReader readAhead = new FileReader(path, "\n", 2);
+		ArrayList<Long> offsets = new ArrayList<Long>();
+		while(plain.hasNext()){
+			assertTrue(readAhead.getNextLineOffset() == plain.getNextLineOffset());
+			offsets.add(plain.getNextLineOffset());
+			assertTrue(readAhead.next().equals(plain.next()));
+		}
+		assertTrue(!readAhead.hasNext());
+		readAhead.seek(0, offsets.get(offsets.size() / 2));
+		plain.seek(0, offsets.get(offsets.size() / 2));
+		assertTrue(readAhead.next().equals(plain.next()));
+		plain.close();
+		readAhead.close();
+		
+		// The default depth is also used by the graph readers
+		FileReader.setDefaultReadAheadDepth(4);
+		try {
+			RaspXmlGraphReaderTest.testReadLarge(new RaspXmlGraphReader("examples/raspxml/pnp_1000.xml.gz", RaspXmlGraphReader.NODES_TOKENS, false, false));
+		} finally {
+			FileReader.setDefaultReadAheadDepth(0);
+		}
+	}
+	
+	private static byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] b = new byte[1000];
+		int n;
+		while((n = in.read(b, 0, b.length)) > 0)
+			out.write(b, 0, n);
+		in.close();
+		return out.toByteArray();
+	}
+	
+	@Test
+	public void testParallelGzip() throws IOException {
+		// Members of very different sizes, some of them much larger than a range
+		String path = dir + "semtest-members.gz";
+		Random random = new Random(1);
+		FileOutputStream out = new FileOutputStream(path);
+		for(int i = 0; i < 60; i++){
+			byte[] data = new byte[random.nextInt(1 << 12)];
+			for(int j = 0; j < data.length; j++)
+				data[j] = (byte)('a' + random.nextInt(4));
+			if(i % 7 == 0){
+				data = new byte[random.nextInt(1 << 20)];
+				random.nextBytes(data);
+			}
+			ByteArrayOutputStream member = new ByteArrayOutputStream();
+			GZIPOutputStream gzip = new GZIPOutputStream(member);
+			gzip.write(data);
+			gzip.close();
+			out.write(member.toByteArray());
+		}
+		out.close();
+		
+		for(String file : new String[]{path, "examples/raspxml/pnp_1000.xml.gz"}){
+			byte[] expected = readAll(new GZIPInputStream(new FileInputStream(file)));
+			for(int threads : new int[]{1, 3}){
+				byte[] result = readAll(new ParallelGzipInputStream(new File(file), threads));
+				assertTrue(Arrays.equals(expected, result));
+			}
+		}
+		
+		// A file with a single member does not start the threads
+		ParallelGzipInputStream single = new ParallelGzipInputStream(new File("examples/raspxml/pnp_1000.xml.gz"), 3);
+		assertTrue(!single.isParallel());
+		single.close();
+		
+		// Corrupt data is reported
+		RandomAccessFile corrupt = new RandomAccessFile(path, "rw");
+		corrupt.seek(corrupt.length() / 2);
+		int b = corrupt.read();
+		corrupt.seek(corrupt.length() / 2);
+		corrupt.write(b ^ 0x55);
+		corrupt.close();
+		try {
+			readAll(new ParallelGzipInputStream(new File(path), 2));
+			fail();
+		} catch (IOException e) {
+		}
+		new File(path).delete();
+	}
+	
+	@Test
+	public void testBlockedGzipSeek() {
+		// About 30 blocks of 64KB, with lines crossing the block boundaries
+		String blocked = dir + "semtest-seek.bgz", gzip = dir + "semtest-seek.gz";
+		for(String path : new String[]{blocked, gzip}){
+			FileWriter fw = new FileWriter(path);
+			for(int i = 0; i < 100000; i++)
+				fw.writeln("Line " + i + " of the blocked gzip file");
+			fw.close();
+		}
+		
+		FileReader fr = new FileReader(blocked);
+		ArrayList<Long> offsets = new ArrayList<Long>();
+		while(fr.hasNext()){
+			offsets.add(fr.getNextLineOffset());
+			fr.next();
+		}
+		fr.close();
+		assertTrue(offsets.size() == 100000);
+		
+		MetricsRegistry metrics = new MetricsRegistry();
+		FileReader.setMetrics(metrics);
+		try {
+			FileReader blockedReader = new FileReader(blocked), gzipReader = new FileReader(gzip);
+			for(int i : new int[]{99999, 0, 1234, 50000, 77777}){
+				blockedReader.seek(0, offsets.get(i));
+				gzipReader.seek(0, offsets.get(i));
+				assertTrue(blockedReader.next().equals("Line " + i + " of the blocked gzip file"));
+				assertTrue(gzipReader.next().equals("Line " + i + " of the blocked gzip file"));
+			}
+			
+			// Reading carries on to the end of the file
+			blockedReader.seek(0, offsets.get(99990));
+			int count = 0;
+			while(blockedReader.hasNext()){
+				assertTrue(blockedReader.next().equals("Line " + (99990 + count) + " of the blocked gzip file"));
+				count++;
+			}
+			assertTrue(count == 10);
+			
+			// Only the headers of the blocks before the offset are read
+			long raw = metrics.counter("file.bytes.raw").getCount();
+			blockedReader.seek(0, offsets.get(99999));
+			assertTrue(metrics.counter("file.bytes.raw").getCount() - raw < new File(blocked).length() / 4);
+			
+			try {
+				blockedReader.seek(0, offsets.get(99999) + 1000);
+				fail();
+			} catch (RuntimeException e) {
+				assertTrue(e.getMessage().startsWith("Offset"));
+			}
+			blockedReader.close();
+			gzipReader.close();
+		} finally {
+			FileReader.setMetrics(null);
+			new File(blocked).delete();
+			new File(gzip).delete();
+		}
+	}
 }
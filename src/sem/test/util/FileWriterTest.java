@@ -6,18 +6,29 @@ import java.io.BufferedReader;
 import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.zip.GZIPInputStream;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import sem.exception.GraphFormatException;
+import sem.graph.Graph;
+import sem.graphreader.TSVGraphReader;
+import sem.graphwriter.TSVGraphWriter;
+import sem.util.FileReader;
 import sem.util.FileWriter;
+import sem.util.ParallelGzipInputStream;
 
 public class FileWriterTest {
 	
 	String dir = "semtests/";
 	String file = dir + "semtest-filewriter.txt";
+	String gzFile = dir + "semtest-filewriter.txt.bgz";
 
 	@Before
 	public void setUp() throws Exception {
@@ -31,6 +42,8 @@ public class FileWriterTest {
 		File f;
 		if((f = new File(file)).exists())
 			f.delete();
+		if((f = new File(gzFile)).exists())
+			f.delete();
 	}
 
 	@Test
@@ -63,5 +76,116 @@ public class FileWriterTest {
 			System.exit(1);
 		}
 	}
+	
+	@Test
+	public void testBlockedGzip() throws Exception {
+		FileWriter fw = new FileWriter(gzFile);
+		for(int i = 0; i < 100000; i++)
+			fw.writeln("This is line " + i);
+		fw.close();
+		
+		// Any gzip reader can read the file
+		BufferedReader br = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(gzFile))));
+		String line;
+		int count = 0;
+		while((line = br.readLine()) != null){
+			assertTrue(line.equals("This is line " + count));
+			count++;
+		}
+		assertTrue(count == 100000);
+		br.close();
+		
+		// The file ends with the empty BGZF block
+		RandomAccessFile raf = new RandomAccessFile(gzFile, "r");
+		raf.seek(raf.length() - 28);
+		assertTrue(raf.read() == 0x1f && raf.read() == 0x8b);
+		raf.close();
+		
+		ParallelGzipInputStream parallel = new ParallelGzipInputStream(new File(gzFile), 4);
+		assertTrue(parallel.isParallel());
+		parallel.close();
+		FileReader fr = new FileReader(gzFile, null, 0, 4);
+		count = 0;
+		while(fr.hasNext()){
+			assertTrue(fr.next().equals("This is line " + count));
+			count++;
+		}
+		assertTrue(count == 100000);
+		fr.close();
+	}
+	
+	@Test
+	public void testCompressedOutput() throws IOException, GraphFormatException {
+		// Files are compressed according to the suffix, and FileReader reads them all
+		String[] suffixes = new String[]{".gz", ".bgz", ".lz4"};
+		int[][] magic = new int[][]{{0x1f, 0x8b}, {0x1f, 0x8b}, {0x04, 0x22}};
+		for(int i = 0; i < suffixes.length; i++){
+			String path = dir + "semtest-compressed" + suffixes[i];
+			FileWriter fw = new FileWriter(path);
+			for(int j = 0; j < 20000; j++)
+				fw.writeln("This is line " + j);
+			fw.close();
+			
+			FileInputStream in = new FileInputStream(path);
+			assertTrue(in.read() == magic[i][0] && in.read() == magic[i][1]);
+			in.close();
+			assertTrue(new File(path).length() < 20000 * "This is line 10000".length() / 4);
+			
+			FileReader fr = new FileReader(path);
+			int count = 0;
+			while(fr.hasNext())
+				assertTrue(fr.next().equals("This is line " + count++));
+			assertTrue(count == 20000);
+			fr.close();
+			new File(path).delete();
+		}
+		
+		// Graph writers use the same compression
+		String plainPath = dir + "semtest-graphs.tsv";
+		String path = dir + "semtest-graphs.tsv.lz4";
+		TSVGraphReader reader = new TSVGraphReader("examples/tsv/pnp_1000.tsv.gz", true);
+		TSVGraphWriter plainWriter = new TSVGraphWriter(plainPath);
+		TSVGraphWriter writer = new TSVGraphWriter(path, 1 << 20);
+		int sentences = 0;
+		while(reader.hasNext()){
+			ArrayList<Graph> sentence = reader.nextSentence();
+			plainWriter.write(sentence);
+			writer.write(sentence);
+			sentences++;
+		}
+		plainWriter.close();
+		writer.close();
+		reader.close();
+		assertTrue(new File(path).length() < new File(plainPath).length() / 2);
+		
+		FileReader plain = new FileReader(plainPath);
+		FileReader compressed = new FileReader(path);
+		while(plain.hasNext())
+			assertTrue(compressed.next().equals(plain.next()));
+		assertTrue(!compressed.hasNext());
+		plain.close();
+		compressed.close();
+		
+		reader = new TSVGraphReader(path, true);
+		int count = 0;
+		while(reader.hasNext()){
+			reader.nextSentence();
+			count++;
+		}
+		assertTrue(count == sentences);
+		reader.close();
+		new File(path).delete();
+		new File(plainPath).delete();
+	}
 
+	@Test
+	public void testRandomAccessPath() {
+		assertTrue(FileWriter.getRandomAccessPath("corpus.tsv.gz").equals("corpus.tsv.bgz"));
+		assertTrue(FileWriter.getRandomAccessPath("corpus.tsv.bgz").equals("corpus.tsv.bgz"));
+		assertTrue(FileWriter.getRandomAccessPath("corpus.tsv").equals("corpus.tsv"));
+		assertTrue(FileReader.isRandomAccess(new File("corpus.tsv.bgz")));
+		assertTrue(FileReader.isRandomAccess(new File("corpus.tsv")));
+		assertTrue(!FileReader.isRandomAccess(new File("corpus.tsv.gz")));
+		assertTrue(!FileReader.isRandomAccess(new File("corpus.tsv.lz4")));
+	}
 }
@@ -0,0 +1,116 @@
+package sem.test.util;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import sem.util.Lz4FrameInputStream;
+import sem.util.Lz4FrameOutputStream;
+import sem.util.XXHash32;
+
+public class Lz4FrameStreamTest {
+
+	private static byte[] compress(byte[] data, int blockSize) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Lz4FrameOutputStream lz4 = new Lz4FrameOutputStream(out, blockSize);
+		// Writing in uneven pieces
+		for(int i = 0; i < data.length; i += 7777)
+			lz4.write(data, i, Math.min(7777, data.length - i));
+		lz4.close();
+		return out.toByteArray();
+	}
+
+	private static byte[] decompress(byte[] data) throws IOException {
+		InputStream in = new Lz4FrameInputStream(new ByteArrayInputStream(data));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] b = new byte[1000];
+		int n;
+		while((n = in.read(b, 0, b.length)) > 0)
+			out.write(b, 0, n);
+		in.close();
+		return out.toByteArray();
+	}
+
+	@Test
+	public void testXXHash32() {
+		byte[] b = "Nobody inspects the spammish repetition".getBytes();
+		assertTrue(XXHash32.hash(new byte[0], 0, 0, 0) == 0x02CC5D05);
+		assertTrue(XXHash32.hash("abc".getBytes(), 0, 3, 0) == 0x32D153FF);
+		assertTrue(XXHash32.hash(b, 0, b.length, 0) == 0xE2293B2F);
+
+		XXHash32 hash = new XXHash32();
+		for(int i = 0; i < b.length; i += 3)
+			hash.update(b, i, Math.min(3, b.length - i));
+		assertTrue(hash.getValue() == 0xE2293B2F);
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		// Same bytes as "lz4 -B4" for empty input
+		byte[] empty = new byte[]{0x04, 0x22, 0x4d, 0x18, 0x64, 0x40, (byte)0xa7, 0, 0, 0, 0, 0x05, 0x5d, (byte)0xcc, 0x02};
+		assertTrue(Arrays.equals(compress(new byte[0], Lz4FrameOutputStream.BLOCK_SIZE_64KB), empty));
+		assertTrue(decompress(empty).length == 0);
+
+		byte[] text = Files.readAllBytes(new File("examples/plaintext/pnp.txt").toPath());
+		byte[] random = new byte[300000];
+		new Random(1).nextBytes(random);
+		byte[] zeros = new byte[3000000];
+		for(byte[] data : new byte[][]{"short".getBytes(), "abcabcabcabcabcabcabcabc".getBytes(), text, random, zeros}){
+			for(int blockSize : new int[]{Lz4FrameOutputStream.BLOCK_SIZE_64KB, Lz4FrameOutputStream.BLOCK_SIZE_1MB}){
+				byte[] compressed = compress(data, blockSize);
+				assertTrue(Arrays.equals(decompress(compressed), data));
+				if(data == text)
+					assertTrue(compressed.length < data.length * 3 / 4);
+			}
+		}
+
+		// Several frames, with a skippable frame in between
+		byte[] first = compress(text, Lz4FrameOutputStream.BLOCK_SIZE_256KB);
+		byte[] second = compress("the end".getBytes(), Lz4FrameOutputStream.BLOCK_SIZE_64KB);
+		ByteArrayOutputStream joined = new ByteArrayOutputStream();
+		joined.write(first);
+		joined.write(new byte[]{0x50, 0x2a, 0x4d, 0x18, 3, 0, 0, 0, 1, 2, 3});
+		joined.write(second);
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		expected.write(text);
+		expected.write("the end".getBytes());
+		assertTrue(Arrays.equals(decompress(joined.toByteArray()), expected.toByteArray()));
+	}
+
+	@Test
+	public void testLinkedBlocks() throws IOException {
+		// Frame with linked blocks and no checksums, where the second block copies the first one
+		byte[] frame = new byte[]{0x04, 0x22, 0x4d, 0x18, 0x40, 0x40, 0,
+				9, 0, 0, 0, (byte)0x80, 'a', 'b', 'c', 'd', 'e', 'f', 'g', 'h',
+				5, 0, 0, 0, 0x04, 8, 0, 0x10, '!',
+				0, 0, 0, 0};
+		frame[6] = (byte)(XXHash32.hash(frame, 4, 2, 0) >>> 8);
+		assertTrue(new String(decompress(frame)).equals("abcdefghabcdefgh!"));
+	}
+
+	@Test
+	public void testCorrupt() throws IOException {
+		byte[] text = Files.readAllBytes(new File("examples/plaintext/pnp.txt").toPath());
+		byte[] compressed = compress(text, Lz4FrameOutputStream.BLOCK_SIZE_64KB);
+		compressed[compressed.length / 2] ^= 0x55;
+		try {
+			decompress(compressed);
+			fail();
+		} catch (IOException e) {
+		}
+		try {
+			decompress("not lz4".getBytes());
+			fail();
+		} catch (IOException e) {
+		}
+	}
+}
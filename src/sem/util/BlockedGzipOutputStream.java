@@ -0,0 +1,252 @@
+package sem.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Output stream that writes blocked gzip (the BGZF format used by bgzip and samtools).
+ *
+ * <p>The data is split into blocks of at most 65280 bytes, and every block is compressed as a separate gzip member.
+ * The blocks are compressed in parallel and written in order. The result is a valid multi-member gzip file that any gzip reader can decompress,
+ * and that ParallelGzipInputStream can decompress on several threads.
+ * The header of every member contains the size of the compressed block (the "BC" extra field), and the file ends with an empty block.
+ *
+ */
+public class BlockedGzipOutputStream extends OutputStream {
+	/**
+	 * The largest amount of uncompressed data in one block. This guarantees that the compressed block fits into 64KB.
+	 */
+	public static final int BLOCK_SIZE = 0xff00;
+	private static final int MAX_COMPRESSED_SIZE = 1 << 16;
+	private static final int HEADER_SIZE = 18;
+	private static final int TRAILER_SIZE = 8;
+
+	/**
+	 * The empty block at the end of every file.
+	 */
+	private static final byte[] EOF_BLOCK = new byte[]{
+		0x1f, (byte)0x8b, 0x08, 0x04, 0x00, 0x00, 0x00, 0x00, 0x00, (byte)0xff, 0x06, 0x00, 0x42, 0x43, 0x02, 0x00,
+		0x1b, 0x00, 0x03, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00};
+
+	private OutputStream out;
+	private int level;
+	private byte[] block;
+	private int blockLength;
+	private ExecutorService executor;
+	private ArrayDeque<Future<byte[]>> pending;
+	private int maxPending;
+	private boolean closed;
+
+	/**
+	 * Create a stream that compresses blocks on as many threads as there are processors.
+	 * @param out	The underlying stream.
+	 */
+	public BlockedGzipOutputStream(OutputStream out){
+		this(out, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Create a stream that compresses blocks on the given number of threads.
+	 * @param out		The underlying stream.
+	 * @param threads	Number of threads. With 1, the blocks are compressed on the calling thread.
+	 */
+	public BlockedGzipOutputStream(OutputStream out, int threads){
+		this(out, threads, Deflater.DEFAULT_COMPRESSION);
+	}
+
+	/**
+	 * Create a stream that compresses blocks on the given number of threads.
+	 * @param out		The underlying stream.
+	 * @param threads	Number of threads. With 1, the blocks are compressed on the calling thread.
+	 * @param level		Compression level, between 0 and 9, or -1 for the default.
+	 */
+	public BlockedGzipOutputStream(OutputStream out, int threads, int level){
+		if(threads < 1)
+			throw new RuntimeException("Number of compression threads has to be at least 1, found " + threads);
+		this.out = out;
+		this.level = level;
+		this.block = new byte[BLOCK_SIZE];
+		this.blockLength = 0;
+		this.pending = new ArrayDeque<Future<byte[]>>();
+		this.maxPending = 2 * threads;
+		this.closed = false;
+		if(threads > 1){
+			this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory(){
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "BlockedGzipOutputStream");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		else
+			this.executor = null;
+	}
+
+	/**
+	 * Compress one block into a gzip member with the BGZF header.
+	 * @param data		Uncompressed data.
+	 * @param length	Length of the data.
+	 * @param level		Compression level.
+	 * @return	The compressed block.
+	 */
+	public static byte[] compressBlock(byte[] data, int length, int level){
+		byte[] buffer = new byte[MAX_COMPRESSED_SIZE];
+		int size = deflate(data, length, level, buffer);
+		// Data that does not compress is stored instead, which always fits
+		if(size < 0)
+			size = deflate(data, length, Deflater.NO_COMPRESSION, buffer);
+		if(size < 0)
+			throw new RuntimeException("Block does not fit into " + MAX_COMPRESSED_SIZE + " bytes");
+
+		int blockSize = HEADER_SIZE + size + TRAILER_SIZE;
+		byte[] result = new byte[blockSize];
+		result[0] = 0x1f;
+		result[1] = (byte)0x8b;
+		result[2] = 0x08; // deflate
+		result[3] = 0x04; // FEXTRA
+		result[9] = (byte)0xff; // unknown OS
+		result[10] = 6; // length of the extra field
+		result[12] = 'B';
+		result[13] = 'C';
+		result[14] = 2;
+		putShort(result, 16, blockSize - 1);
+		System.arraycopy(buffer, 0, result, HEADER_SIZE, size);
+		CRC32 crc = new CRC32();
+		crc.update(data, 0, length);
+		putInt(result, HEADER_SIZE + size, (int)crc.getValue());
+		putInt(result, HEADER_SIZE + size + 4, length);
+		return result;
+	}
+
+	/**
+	 * @return	Size of the compressed data, or -1 if it does not fit into the buffer together with the header and trailer.
+	 */
+	private static int deflate(byte[] data, int length, int level, byte[] buffer){
+		Deflater deflater = new Deflater(level, true);
+		try {
+			deflater.setInput(data, 0, length);
+			deflater.finish();
+			int limit = buffer.length - HEADER_SIZE - TRAILER_SIZE;
+			int size = 0;
+			while(!deflater.finished() && size < limit)
+				size += deflater.deflate(buffer, size, limit - size);
+			return deflater.finished() ? size : -1;
+		} finally {
+			deflater.end();
+		}
+	}
+
+	private static void putShort(byte[] b, int pos, int value){
+		b[pos] = (byte)value;
+		b[pos+1] = (byte)(value >>> 8);
+	}
+
+	private static void putInt(byte[] b, int pos, int value){
+		putShort(b, pos, value);
+		putShort(b, pos + 2, value >>> 16);
+	}
+
+	/**
+	 * Compress the current block, and write out finished blocks if there are too many waiting.
+	 */
+	private void submitBlock() throws IOException{
+		if(this.blockLength == 0)
+			return;
+		if(this.executor == null)
+			this.out.write(compressBlock(this.block, this.blockLength, this.level));
+		else {
+			final byte[] data = this.block;
+			final int length = this.blockLength;
+			final int level = this.level;
+			this.pending.add(this.executor.submit(new Callable<byte[]>(){
+				@Override
+				public byte[] call() {
+					return compressBlock(data, length, level);
+				}
+			}));
+			this.block = new byte[BLOCK_SIZE];
+			while(this.pending.size() > this.maxPending)
+				this.writePending();
+		}
+		this.blockLength = 0;
+	}
+
+	/**
+	 * Write the oldest compressed block, waiting for it if needed.
+	 */
+	private void writePending() throws IOException{
+		try {
+			this.out.write(this.pending.poll().get());
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		if(this.closed)
+			throw new IOException("Stream closed");
+		this.block[this.blockLength++] = (byte)b;
+		if(this.blockLength == BLOCK_SIZE)
+			this.submitBlock();
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		if(this.closed)
+			throw new IOException("Stream closed");
+		while(len > 0){
+			int n = Math.min(len, BLOCK_SIZE - this.blockLength);
+			System.arraycopy(b, off, this.block, this.blockLength, n);
+			this.blockLength += n;
+			off += n;
+			len -= n;
+			if(this.blockLength == BLOCK_SIZE)
+				this.submitBlock();
+		}
+	}
+
+	/**
+	 * Compress and write all the data so far. This ends the current block, so calling it often makes the compression worse.
+	 */
+	@Override
+	public void flush() throws IOException {
+		if(this.closed)
+			return;
+		this.submitBlock();
+		while(!this.pending.isEmpty())
+			this.writePending();
+		this.out.flush();
+	}
+
+	/**
+	 * Write the remaining data and the end-of-file block, and close the underlying stream.
+	 */
+	@Override
+	public void close() throws IOException {
+		if(this.closed)
+			return;
+		try {
+			this.flush();
+			this.out.write(EOF_BLOCK);
+		} finally {
+			this.closed = true;
+			if(this.executor != null)
+				this.executor.shutdownNow();
+			this.out.close();
+		}
+	}
+}
@@ -1,16 +1,23 @@
 package sem.util;
 
-import java.io.BufferedReader;
-import java.io.DataInputStream;
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.List;
 import java.util.zip.GZIPInputStream;
 
+import sem.metrics.MeteredInputStream;
+import sem.metrics.MetricsRegistry;
+
 /**
  * Comparator for sorting files accoring to their path name.
  *
@@ -27,14 +34,45 @@ class FileComparator implements Comparator<File>{
  * Given an input file, it will read it line by line.
  * Given a directory, it will iterate through all the lines in all the files in that directory.
  *
+ * <p>The reader also keeps track of the byte offset of each line in its file (after decompression), which makes it possible to seek back to a line later.
+ *
+ * <p>With read-ahead enabled, the files are read and decompressed in a background thread (see ReadAheadInputStream),
+ * so that the work done with the lines can overlap with disk access and decompression.
+ * Gzipped files that consist of many members (for example blocked gzip files written by FileWriter) can also be decompressed
+ * on several threads. Both settings can be given to the constructor; the static setters only change the defaults for readers created later.
+ *
+ * <p>The amount of data read and the time spent on it can be recorded in a MetricsRegistry, see setMetrics().
+ *
+ * <p>A FileReader can also return lines that are already in memory, for example a chunk of a file that was read on another thread.
+ *
  */
 public class FileReader{
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static volatile int defaultReadAheadDepth = 0;
+	private static volatile int defaultDecompressionThreads = 1;
+	private static volatile MetricsRegistry metrics = null;
+	
 	private ArrayList<File> inputFiles;
-	private File currentInputFile;
-	private BufferedReader reader;
+	private int currentFileIndex;
+	private InputStream input;
+	private Charset charset;
+	private byte[] bytes;
+	private int bytesPos;
+	private int bytesLength;
+	private byte[] lineBytes;
+	private boolean skipLF;
+	private long position;
 	private String nextLine;
+	private int nextLineFileIndex;
+	private long nextLineOffset;
+	private int lineFileIndex;
+	private long lineOffset;
 	private String buffer;
 	private String fileAddendum;
+	private int readAheadDepth;
+	private int decompressionThreads;
+	private List<String> lines;
+	private int linePos;
 	
 	/**
 	 * Recursively find all files that are contained in that directory.
@@ -74,9 +112,41 @@ public class FileReader{
 	 * @param	fileAddendum	String to be appended at the end of each file.
 	 */
 	public FileReader(String inputPath, String fileAddendum){
+		this(inputPath, fileAddendum, defaultReadAheadDepth);
+	}
+	
+	/**
+	 * Constructs a new FileReader.
+	 * Takes as input the path to a file or a directory.
+	 * @param inputPath Input path.
+	 * @param	fileAddendum	String to be appended at the end of each file, or null.
+	 * @param	readAheadDepth	Number of buffers that are filled ahead in a background thread, or 0 to read on the calling thread.
+	 */
+	public FileReader(String inputPath, String fileAddendum, int readAheadDepth){
+		this(inputPath, fileAddendum, readAheadDepth, defaultDecompressionThreads);
+	}
+	
+	/**
+	 * Constructs a new FileReader.
+	 * Takes as input the path to a file or a directory.
+	 * @param inputPath Input path.
+	 * @param	fileAddendum			String to be appended at the end of each file, or null.
+	 * @param	readAheadDepth			Number of buffers that are filled ahead in a background thread, or 0 to read on the calling thread.
+	 * @param	decompressionThreads	Number of threads for decompressing .gz files, 1 to use GZIPInputStream.
+	 */
+	public FileReader(String inputPath, String fileAddendum, int readAheadDepth, int decompressionThreads){
+		if(readAheadDepth != 0 && readAheadDepth < 2)
+			throw new RuntimeException("Read-ahead depth has to be 0 or at least 2, found " + readAheadDepth);
+		if(decompressionThreads < 1)
+			throw new RuntimeException("Number of decompression threads has to be at least 1, found " + decompressionThreads);
+		this.readAheadDepth = readAheadDepth;
+		this.decompressionThreads = decompressionThreads;
 		this.inputFiles = new ArrayList<File>();
-		this.currentInputFile = null;
-		this.reader = null;
+		this.currentFileIndex = -1;
+		this.input = null;
+		this.charset = Charset.defaultCharset();
+		this.bytes = new byte[BUFFER_SIZE];
+		this.lineBytes = new byte[256];
 		this.nextLine = null;
 		this.fileAddendum = fileAddendum;
 		
@@ -91,63 +161,391 @@ public class FileReader{
 	}
 
 	/**
-	 * Reset the FileReader.
+	 * Constructs a new FileReader that returns lines from memory instead of reading files.
+	 * The lines count as a single file with index 0, and the offset of each line is its line number.
+	 * @param lines	The lines, without line breaks.
 	 */
-	public void reset(){
+	public FileReader(List<String> lines){
+		this.lines = lines;
+		this.inputFiles = new ArrayList<File>();
+		this.currentFileIndex = -1;
+		this.input = null;
+		this.nextLine = null;
+		this.reset();
+	}
+
+	/**
+	 * Set the read-ahead depth for all FileReaders and XmlReaders that are created after this, unless they specify their own.
+	 * This makes it possible to enable read-ahead in the graph readers.
+	 * The setting is global for the whole process, so it should be set once by the application; readers that are already open keep their own depth.
+	 * @param depth	Number of buffers that are filled ahead in a background thread, or 0 (the default) to disable read-ahead.
+	 */
+	public static void setDefaultReadAheadDepth(int depth){
+		if(depth != 0 && depth < 2)
+			throw new RuntimeException("Read-ahead depth has to be 0 or at least 2, found " + depth);
+		defaultReadAheadDepth = depth;
+	}
+	
+	/**
+	 * @return	The default read-ahead depth, 0 if read-ahead is disabled.
+	 */
+	public static int getDefaultReadAheadDepth(){
+		return defaultReadAheadDepth;
+	}
+	
+	/**
+	 * Set the number of threads used for decompressing .gz files in all FileReaders and XmlReaders that are created after this, unless they specify their own.
+	 * With more than one thread, the files are read with ParallelGzipInputStream, which only helps with multi-member files.
+	 * The setting is global for the whole process, so it should be set once by the application; readers that are already open keep their own setting.
+	 * @param threads	Number of threads, 1 (the default) to use GZIPInputStream.
+	 */
+	public static void setDecompressionThreads(int threads){
+		if(threads < 1)
+			throw new RuntimeException("Number of decompression threads has to be at least 1, found " + threads);
+		defaultDecompressionThreads = threads;
+	}
+	
+	/**
+	 * @return	The default number of threads used for decompressing .gz files.
+	 */
+	public static int getDecompressionThreads(){
+		return defaultDecompressionThreads;
+	}
+	
+	/**
+	 * Record the amount of data read and the time spent reading in all FileReaders and XmlReaders that open files after this.
+	 * The counter "file.bytes.raw" counts the bytes read from disk, and "file.bytes" the bytes after decompression.
+	 * The timer "file.read" measures the time spent waiting for decompressed data, which includes disk access and decompression, but not parsing.
+	 * The setting is global for the whole process and applies to the files opened on every thread,
+	 * so it should be set once by the application (as in ConvertGraphs.main()), not by the code that reads a single input.
+	 * @param registry	Registry for the metrics, or null (the default) to disable them.
+	 */
+	public static void setMetrics(MetricsRegistry registry){
+		metrics = registry;
+	}
+	
+	/**
+	 * @return	The registry used for recording file metrics, or null.
+	 */
+	public static MetricsRegistry getMetrics(){
+		return metrics;
+	}
+	
+	/**
+	 * Open a file for reading. Files ending with .gz or .bgz are decompressed as gzip, and files ending with .lz4 as LZ4 frames.
+	 * @param file				The file.
+	 * @param readAheadDepth	Number of buffers that are filled ahead in a background thread, or 0 to read on the calling thread.
+	 * @return	Input stream.
+	 * @throws IOException
+	 */
+	public static InputStream openInputStream(File file, int readAheadDepth) throws IOException{
+		return openInputStream(file, 0, readAheadDepth, defaultDecompressionThreads);
+	}
+	
+	/**
+	 * Check whether reading a file from an offset takes time independent of the offset.
+	 * This is the case for uncompressed files and blocked gzip files (.bgz), but not for other .gz files and .lz4 files,
+	 * which have no points where decompression can start other than the beginning. Random access to them is not supported:
+	 * openInputStream() still accepts an offset, but it decompresses everything before it.
+	 * @param file	The file.
+	 * @return	True if the file supports random access.
+	 */
+	public static boolean isRandomAccess(File file){
+		String name = file.getName();
+		return !name.endsWith(".gz") && !name.endsWith(".lz4");
+	}
+	
+	/**
+	 * Open a file for reading, starting from a byte offset in the decompressed data.
+	 * In blocked gzip files (.bgz, written by FileWriter or bgzip), the blocks before the offset are skipped using the sizes in their headers,
+	 * so only the block that contains the offset is decompressed. Other compressed files are decompressed from the beginning up to the offset,
+	 * as they do not support random access (see isRandomAccess()).
+	 * @param file				The file.
+	 * @param offset			Byte offset in the decompressed data.
+	 * @param readAheadDepth	Number of buffers that are filled ahead in a background thread, or 0 to read on the calling thread.
+	 * @param decompressionThreads	Number of threads for decompressing gzip files from the beginning, 1 to use GZIPInputStream.
+	 * @return	Input stream.
+	 * @throws IOException
+	 */
+	public static InputStream openInputStream(File file, long offset, int readAheadDepth, int decompressionThreads) throws IOException{
+		InputStream input;
+		MetricsRegistry registry = metrics;
+		String name = file.getName();
+		boolean gzip = name.endsWith(".gz") || name.endsWith(".bgz");
+		// Compressed position and decompressed offset of the block where reading starts
+		long[] block = new long[]{0, 0};
+		if(offset > 0 && name.endsWith(".bgz"))
+			block = findBlock(file, offset);
+		if(gzip && decompressionThreads > 1 && offset == 0){
+			input = new ParallelGzipInputStream(file, decompressionThreads);
+			if(registry != null)
+				registry.counter("file.bytes.raw").add(file.length());
+		}
+		else {
+			FileInputStream fileInput = new FileInputStream(file);
+			if(block[0] > 0)
+				fileInput.getChannel().position(block[0]);
+			InputStream raw = fileInput;
+			if(registry != null)
+				raw = new MeteredInputStream(raw, registry.counter("file.bytes.raw"), null);
+			if(gzip)
+				input = new GZIPInputStream(raw, BUFFER_SIZE);
+			else if(name.endsWith(".lz4"))
+				input = new Lz4FrameInputStream(new BufferedInputStream(raw, BUFFER_SIZE));
+			else
+				input = raw;
+		}
+		
+		long remaining = offset - block[1];
 		try {
-			if(reader != null){
-				reader.close();
-				reader = null;
+			while(remaining > 0){
+				long skipped = input.skip(remaining);
+				if(skipped <= 0){
+					// skip() is allowed to stop early, read() tells whether we have reached the end of the file.
+					if(input.read() < 0)
+						throw new RuntimeException("Offset " + offset + " is beyond the end of file " + file.getPath());
+					skipped = 1;
+				}
+				remaining -= skipped;
 			}
-			currentInputFile = null;
-			nextLine = null;
-			this.buffer = null;
-			this.next();
-		} catch (IOException e) {
-			throw new RuntimeException(e);
+		} catch (RuntimeException e) {
+			input.close();
+			throw e;
+		}
+		
+		if(readAheadDepth > 0)
+			input = new ReadAheadInputStream(input, readAheadDepth);
+		if(registry != null)
+			input = new MeteredInputStream(input, registry.counter("file.bytes"), registry.timer("file.read"));
+		return input;
+	}
+	
+	/**
+	 * Find the block of a blocked gzip file that contains the offset, by reading only the header and the trailer of the blocks before it.
+	 * If the file is not in the BGZF format, the search stops at the last block that could be read, so the rest is decompressed as usual.
+	 * @return	The position of the block in the file, and the decompressed offset where the block starts.
+	 */
+	private static long[] findBlock(File file, long offset) throws IOException{
+		long position = 0, blockOffset = 0;
+		FileChannel channel = FileChannel.open(file.toPath());
+		try {
+			ByteBuffer header = ByteBuffer.allocate(18).order(ByteOrder.LITTLE_ENDIAN);
+			ByteBuffer trailer = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+			while(true){
+				// The header has to contain the "BC" extra field with the size of the compressed block
+				header.clear();
+				if(!readFully(channel, header, position) || header.getShort(0) != (short)0x8b1f || (header.get(3) & 4) == 0
+						|| header.getShort(10) != 6 || header.get(12) != 'B' || header.get(13) != 'C' || header.getShort(14) != 2)
+					break;
+				int blockSize = (header.getShort(16) & 0xffff) + 1;
+				// The last 4 bytes of the block are the size of the decompressed data
+				trailer.clear();
+				if(!readFully(channel, trailer, position + blockSize - 4))
+					break;
+				long dataSize = trailer.getInt(0) & 0xffffffffL;
+				// Stopping at the empty block at the end of the file, so that an offset beyond the end is reported when skipping
+				if(dataSize == 0 || blockOffset + dataSize > offset)
+					break;
+				position += blockSize;
+				blockOffset += dataSize;
+			}
+		} finally {
+			channel.close();
 		}
+		return new long[]{position, blockOffset};
+	}
+	
+	private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException{
+		while(buffer.hasRemaining()){
+			int n = channel.read(buffer, position + buffer.position());
+			if(n < 0)
+				return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Reset the FileReader.
+	 */
+	public void reset(){
+		this.close();
+		this.currentFileIndex = -1;
+		this.nextLine = null;
+		this.buffer = null;
+		this.linePos = 0;
+		this.next();
 	}
 
 	/**
 	 * Close the FileReader.
 	 */
 	public void close() {
-		if(reader != null){
+		if(input != null){
 			try {
-				reader.close();
+				input.close();
 			} catch (IOException e) {
 				throw new RuntimeException(e);
 			}
+			input = null;
 		}
 	}
-
+	
 	/**
-	 * Shift reading to the next input file.
+	 * Get the list of input files, in the order they are read. The list is empty if the lines come from memory.
+	 * @return	List of files.
 	 */
-	private void openNextInputFile() {
-		int currentIndex = -1;
-		if(currentInputFile != null)
-			currentIndex = inputFiles.indexOf(currentInputFile);
-		
-		if(currentIndex + 1 >= 0 && currentIndex + 1 < inputFiles.size())
-			currentInputFile = inputFiles.get(currentIndex + 1);
-		else 
+	public ArrayList<File> getInputFiles(){
+		return this.inputFiles;
+	}
+	
+	/**
+	 * Get the index (in getInputFiles()) of the file containing the line that next() will return.
+	 * @return	File index, or -1 if there are no more lines.
+	 */
+	public int getNextLineFileIndex(){
+		return this.nextLineFileIndex;
+	}
+	
+	/**
+	 * Get the byte offset of the line that next() will return, counted from the start of the (decompressed) file.
+	 * Lines coming from the file addendum get the length of the file as their offset.
+	 * @return	Byte offset, or -1 if there are no more lines.
+	 */
+	public long getNextLineOffset(){
+		return this.nextLineOffset;
+	}
+	
+	/**
+	 * Continue reading from a position that was returned by getNextLineFileIndex() and getNextLineOffset().
+	 * Reading carries on to the following files, as usual.
+	 * Blocked gzip files (.bgz) only decompress the block that contains the offset, other compressed files have to be decompressed up to the offset (see openInputStream()).
+	 * @param fileIndex	Index of the file.
+	 * @param offset	Byte offset in the file.
+	 */
+	public void seek(int fileIndex, long offset){
+		if(this.lines == null && (fileIndex < 0 || fileIndex >= this.inputFiles.size()))
+			throw new RuntimeException("File index out of range in FileReader: " + fileIndex);
+		if(offset < 0)
+			throw new RuntimeException("Negative offset in FileReader: " + offset);
+		if(this.lines != null){
+			if(fileIndex != 0 || offset > this.lines.size())
+				throw new RuntimeException("Line " + offset + " is out of range in FileReader");
+			this.linePos = (int)offset;
+			this.nextLine = null;
+			this.next();
 			return;
+		}
+		this.openInputFile(fileIndex, offset);
+		this.nextLine = null;
+		this.next();
+	}
 
+	/**
+	 * Start reading the file with the specified index.
+	 * @param fileIndex	Index of the file.
+	 */
+	private void openInputFile(int fileIndex){
+		this.openInputFile(fileIndex, 0);
+	}
+
+	/**
+	 * Start reading the file with the specified index from a byte offset.
+	 * @param fileIndex	Index of the file.
+	 * @param offset	Byte offset in the (decompressed) file.
+	 */
+	private void openInputFile(int fileIndex, long offset){
 		try {
-			if(reader != null)
-				reader.close();
-			DataInputStream in;
-			if(currentInputFile.getName().endsWith(".gz"))
-				in = new DataInputStream(new GZIPInputStream(new FileInputStream(currentInputFile)));
-			else
-				in = new DataInputStream(new FileInputStream(currentInputFile));
-			this.reader = new BufferedReader(new InputStreamReader(in));
+			this.close();
+			File file = inputFiles.get(fileIndex);
+			this.input = openInputStream(file, offset, this.readAheadDepth, this.decompressionThreads);
+			this.currentFileIndex = fileIndex;
+			this.bytesPos = 0;
+			this.bytesLength = 0;
+			this.skipLF = false;
+			this.position = offset;
 			this.buffer = this.fileAddendum;
+		} catch (RuntimeException e) {
+			throw e;
 		} catch (Exception e) {
 			throw new RuntimeException(e);
 		}
 	}
+
+	/**
+	 * Shift reading to the next input file.
+	 */
+	private void openNextInputFile() {
+		if(currentFileIndex + 1 < inputFiles.size())
+			this.openInputFile(currentFileIndex + 1);
+	}
+	
+	/**
+	 * Make sure there are unread bytes in the buffer.
+	 * @return	False if the end of the file has been reached.
+	 * @throws IOException
+	 */
+	private boolean fill() throws IOException{
+		if(this.bytesPos < this.bytesLength)
+			return true;
+		int count = this.input.read(this.bytes, 0, this.bytes.length);
+		this.bytesPos = 0;
+		this.bytesLength = (count > 0) ? count : 0;
+		return count > 0;
+	}
+	
+	/**
+	 * Read a line from the current file. Lines end with \n, \r or \r\n, the same as in BufferedReader.
+	 * @return	The line, or null at the end of the file.
+	 * @throws IOException
+	 */
+	private String readFileLine() throws IOException{
+		if(this.skipLF){
+			this.skipLF = false;
+			if(fill() && this.bytes[this.bytesPos] == '\n'){
+				this.bytesPos++;
+				this.position++;
+			}
+		}
+		this.lineFileIndex = this.currentFileIndex;
+		this.lineOffset = this.position;
+		
+		int length = 0;
+		while(fill()){
+			int start = this.bytesPos, i = start;
+			byte[] b = this.bytes;
+			int end = this.bytesLength;
+			while(i < end && b[i] != '\n' && b[i] != '\r')
+				i++;
+			this.position += i - start;
+			this.bytesPos = i;
+			
+			if(i < end){
+				this.bytesPos++;
+				this.position++;
+				if(b[i] == '\r')
+					this.skipLF = true;
+				// The whole line is in the buffer, no need to copy it.
+				if(length == 0)
+					return new String(b, start, i - start, this.charset);
+				appendLineBytes(b, start, i - start, length);
+				return new String(this.lineBytes, 0, length + i - start, this.charset);
+			}
+			appendLineBytes(b, start, i - start, length);
+			length += i - start;
+		}
+		if(length > 0)
+			return new String(this.lineBytes, 0, length, this.charset);
+		return null;
+	}
+	
+	private void appendLineBytes(byte[] source, int start, int count, int length){
+		if(length + count > this.lineBytes.length){
+			byte[] newLineBytes = new byte[Math.max(this.lineBytes.length * 2, length + count)];
+			System.arraycopy(this.lineBytes, 0, newLineBytes, 0, length);
+			this.lineBytes = newLineBytes;
+		}
+		System.arraycopy(source, start, this.lineBytes, length, count);
+	}
 	
 	/**
 	 * Read the next line from input.
@@ -155,15 +553,24 @@ public class FileReader{
 	 */
 	private String readNextLine(){
 		String line = null;
+		if(this.lines != null){
+			if(this.linePos >= this.lines.size())
+				return null;
+			this.lineFileIndex = 0;
+			this.lineOffset = this.linePos;
+			return this.lines.get(this.linePos++);
+		}
 		try {
-			if(reader == null)
+			if(input == null)
 				this.openNextInputFile();
-			if(reader == null)
+			if(input == null)
 				return null;
 			
-			line = reader.readLine();
+			line = readFileLine();
 			if(line == null){
 				if(this.buffer != null && this.buffer.length() > 0){
+					this.lineFileIndex = this.currentFileIndex;
+					this.lineOffset = this.position;
 					int index = this.buffer.indexOf('\n');
 					if(index >= 0){
 						line = this.buffer.substring(0, index);
@@ -179,7 +586,7 @@ public class FileReader{
 				}
 				else {
 					openNextInputFile();
-					line = reader.readLine();
+					line = readFileLine();
 				}
 			}
 			if(line == null) 
@@ -196,6 +603,14 @@ public class FileReader{
 	public String next() {
 		String prevLine = this.nextLine;
 		this.nextLine = readNextLine();
+		if(this.nextLine != null){
+			this.nextLineFileIndex = this.lineFileIndex;
+			this.nextLineOffset = this.lineOffset;
+		}
+		else {
+			this.nextLineFileIndex = -1;
+			this.nextLineOffset = -1;
+		}
 		return prevLine;
 	}
 
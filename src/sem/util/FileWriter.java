@@ -1,21 +1,114 @@
 package sem.util;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.util.zip.GZIPOutputStream;
 
+import sem.metrics.MeteredOutputStream;
+import sem.metrics.MetricsRegistry;
+
+/**
+ * Class for simplifying file writing.
+ * The output is compressed according to the suffix of the file name: .gz for gzip, .bgz for blocked gzip (see BlockedGzipOutputStream)
+ * and .lz4 for the LZ4 frame format (see Lz4FrameOutputStream). FileReader can read all of these.
+ *
+ * <p>The amount of data written can be recorded in a MetricsRegistry, see setMetrics().
+ *
+ */
 public class FileWriter {
+	/**
+	 * The default buffer size is 64KB.
+	 */
+	public static final int BUFFER_SIZE = 1 << 16;
+	private static volatile MetricsRegistry metrics = null;
+	
 	private BufferedWriter writer;
 	private String filename;
+	private int bufferSize;
 	
 	public FileWriter(String filename){
+		this(filename, BUFFER_SIZE);
+	}
+	
+	/**
+	 * Create a new FileWriter.
+	 * @param filename		Path to the output file. The suffix selects the compression, for example .bgz for blocked gzip.
+	 * @param bufferSize	Size of the buffers, in bytes.
+	 */
+	public FileWriter(String filename, int bufferSize){
+		if(bufferSize < 1)
+			throw new RuntimeException("Invalid buffer size for FileWriter: " + bufferSize);
 		this.filename = filename;
+		this.bufferSize = bufferSize;
 		this.init();
 	}
 	
+	/**
+	 * Get the name under which the command-line tools write a compressed corpus.
+	 * A name ending with .gz is changed to end with .bgz, so that the corpus is written as blocked gzip,
+	 * which gzip can still decompress, and which supports random access (see FileReader.isRandomAccess()). Other names are returned unchanged.
+	 * @param path	Requested output path.
+	 * @return	Output path.
+	 */
+	public static String getRandomAccessPath(String path){
+		if(path.endsWith(".gz"))
+			return path.substring(0, path.length() - 3) + ".bgz";
+		return path;
+	}
+	
+	/**
+	 * Record the amount of data written and the time spent writing in all FileWriters that open files after this.
+	 * The counter "file.bytes.written" counts the bytes written to disk, "file.bytes.uncompressed" the bytes before compression, and the timer "file.write" measures
+	 * the time spent in compressing and writing the data.
+	 * The setting is global for the whole process and applies to the files opened on every thread,
+	 * so it should be set once by the application (as in ConvertGraphs.main()), not by the code that writes a single output.
+	 * @param registry	Registry for the metrics, or null (the default) to disable them.
+	 */
+	public static void setMetrics(MetricsRegistry registry){
+		metrics = registry;
+	}
+	
+	/**
+	 * @return	The registry used for recording file metrics, or null.
+	 */
+	public static MetricsRegistry getMetrics(){
+		return metrics;
+	}
+	
+	/**
+	 * Open a file for writing, compressing the output according to the suffix of the file name.
+	 * @param filename		Path to the file.
+	 * @param bufferSize	Size of the buffer, in bytes.
+	 * @return	Output stream.
+	 * @throws IOException
+	 */
+	public static OutputStream openOutputStream(String filename, int bufferSize) throws IOException{
+		MetricsRegistry registry = metrics;
+		OutputStream out = new FileOutputStream(filename);
+		if(registry != null)
+			out = new MeteredOutputStream(out, registry.counter("file.bytes.written"), null);
+		if(filename.endsWith(".bgz"))
+			out = new BlockedGzipOutputStream(new BufferedOutputStream(out, bufferSize));
+		else if(filename.endsWith(".gz"))
+			out = new GZIPOutputStream(out, bufferSize);
+		else if(filename.endsWith(".lz4"))
+			out = new Lz4FrameOutputStream(new BufferedOutputStream(out, bufferSize));
+		else
+			out = new BufferedOutputStream(out, bufferSize);
+		if(registry != null)
+			out = new MeteredOutputStream(out, registry.counter("file.bytes.uncompressed"), registry.timer("file.write"));
+		return out;
+	}
+	
 	private void init(){
 		try{
-			java.io.FileWriter fstream = new java.io.FileWriter(this.filename);
-		    writer = new BufferedWriter(fstream);
+			OutputStream out = openOutputStream(this.filename, this.bufferSize);
+			writer = new BufferedWriter(new OutputStreamWriter(out, Charset.defaultCharset()), this.bufferSize);
 		}catch (Exception e){
 			e.printStackTrace();
 			System.exit(1);
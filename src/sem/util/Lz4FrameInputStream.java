@@ -0,0 +1,298 @@
+package sem.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream that decompresses data in the LZ4 frame format, written by Lz4FrameOutputStream or the lz4 command line tool.
+ *
+ * <p>Blocks can be independent or linked, and all the optional checksums are verified.
+ * Several frames in a row (including skippable frames) are read as one stream.
+ *
+ */
+public class Lz4FrameInputStream extends InputStream {
+	private static final int HISTORY_SIZE = 1 << 16;
+
+	private InputStream in;
+	private byte[] compressed;
+	private byte[] buffer;
+	private int bufferPos;
+	private int bufferLength;
+	private boolean linkedBlocks;
+	private boolean blockChecksum;
+	private XXHash32 contentChecksum;
+	private int blockSize;
+	private boolean inFrame;
+	private boolean finished;
+
+	/**
+	 * Start reading a stream of LZ4 frames.
+	 * @param in	The underlying stream.
+	 * @throws IOException
+	 */
+	public Lz4FrameInputStream(InputStream in) throws IOException{
+		this.in = in;
+		this.inFrame = false;
+		this.finished = false;
+		if(!this.readFrameHeader(true))
+			throw new EOFException("Empty LZ4 stream");
+	}
+
+	/**
+	 * Decompress a block in the LZ4 block format.
+	 * @param src			Compressed data.
+	 * @param srcOff		Start of the compressed data.
+	 * @param srcLength		Length of the compressed data.
+	 * @param dst			Target array.
+	 * @param dstOff		Where the decompressed data is written.
+	 * @param dstLimit		End of the space in the target array.
+	 * @param historyStart	Matches can refer back to data in the target array starting from here (dstOff for independent blocks).
+	 * @return	Length of the decompressed data.
+	 * @throws IOException	If the data is not a valid block.
+	 */
+	public static int decompressBlock(byte[] src, int srcOff, int srcLength, byte[] dst, int dstOff, int dstLimit, int historyStart) throws IOException{
+		int ip = srcOff, srcEnd = srcOff + srcLength, op = dstOff;
+		try {
+			while(true){
+				int token = src[ip++] & 0xff;
+				int literalLength = token >>> 4;
+				if(literalLength == 15){
+					int b;
+					do {
+						b = src[ip++] & 0xff;
+						literalLength += b;
+					} while(b == 255);
+				}
+				if(literalLength > srcEnd - ip || literalLength > dstLimit - op)
+					throw new IOException("Malformed LZ4 block");
+				System.arraycopy(src, ip, dst, op, literalLength);
+				ip += literalLength;
+				op += literalLength;
+				// The last sequence has no match
+				if(ip == srcEnd)
+					return op - dstOff;
+
+				int offset = (src[ip] & 0xff) | ((src[ip+1] & 0xff) << 8);
+				ip += 2;
+				int matchLength = token & 15;
+				if(matchLength == 15){
+					int b;
+					do {
+						b = src[ip++] & 0xff;
+						matchLength += b;
+					} while(b == 255);
+				}
+				matchLength += Lz4FrameOutputStream.MIN_MATCH;
+				int ref = op - offset;
+				if(offset == 0 || ref < historyStart || matchLength > dstLimit - op || ip >= srcEnd)
+					throw new IOException("Malformed LZ4 block");
+				if(offset >= matchLength)
+					System.arraycopy(dst, ref, dst, op, matchLength);
+				else {
+					// Overlapping match, which repeats the last bytes
+					for(int i = 0; i < matchLength; i++)
+						dst[op + i] = dst[ref + i];
+				}
+				op += matchLength;
+			}
+		} catch (ArrayIndexOutOfBoundsException e) {
+			throw new IOException("Malformed LZ4 block");
+		}
+	}
+
+	private int readByte() throws IOException{
+		int b = this.in.read();
+		if(b < 0)
+			throw new EOFException("Unexpected end of LZ4 stream");
+		return b;
+	}
+
+	private int readInt() throws IOException{
+		return this.readByte() | (this.readByte() << 8) | (this.readByte() << 16) | (this.readByte() << 24);
+	}
+
+	private void readFully(byte[] b, int off, int len) throws IOException{
+		while(len > 0){
+			int n = this.in.read(b, off, len);
+			if(n < 0)
+				throw new EOFException("Unexpected end of LZ4 stream");
+			off += n;
+			len -= n;
+		}
+	}
+
+	/**
+	 * Read the header of the next frame, skipping any skippable frames.
+	 * @param first	True for the first frame of the stream.
+	 * @return	False at the end of the stream.
+	 */
+	private boolean readFrameHeader(boolean first) throws IOException{
+		while(true){
+			int b0 = this.in.read();
+			if(b0 < 0)
+				return false;
+			int magic = b0 | (this.readByte() << 8) | (this.readByte() << 16) | (this.readByte() << 24);
+			if((magic & 0xFFFFFFF0) == 0x184D2A50){
+				long skip = this.readInt() & 0xffffffffL;
+				while(skip > 0){
+					long n = this.in.skip(skip);
+					if(n <= 0){
+						this.readByte();
+						n = 1;
+					}
+					skip -= n;
+				}
+				continue;
+			}
+			if(magic != Lz4FrameOutputStream.MAGIC)
+				throw new IOException(first ? "Not in LZ4 frame format" : "Unexpected data after LZ4 frame");
+			break;
+		}
+
+		byte[] descriptor = new byte[14];
+		descriptor[0] = (byte)this.readByte();
+		descriptor[1] = (byte)this.readByte();
+		int flags = descriptor[0] & 0xff;
+		if((flags >>> 6) != 1)
+			throw new IOException("Unsupported LZ4 frame version");
+		if((flags & 0x02) != 0 || (descriptor[1] & 0x8f) != 0)
+			throw new IOException("Reserved bits are set in the LZ4 frame descriptor");
+		int length = 2;
+		if((flags & 0x08) != 0){
+			// Content size
+			this.readFully(descriptor, length, 8);
+			length += 8;
+		}
+		if((flags & 0x01) != 0){
+			// Dictionary id
+			this.readFully(descriptor, length, 4);
+			length += 4;
+		}
+		int headerChecksum = this.readByte();
+		if(headerChecksum != ((XXHash32.hash(descriptor, 0, length, 0) >>> 8) & 0xff))
+			throw new IOException("Corrupt LZ4 frame header");
+		if((flags & 0x01) != 0)
+			throw new IOException("LZ4 frames with dictionaries are not supported");
+
+		int blockSizeId = (descriptor[1] >>> 4) & 7;
+		if(blockSizeId < 4)
+			throw new IOException("Invalid LZ4 block size");
+		this.blockSize = 1 << (2 * blockSizeId + 8);
+		this.linkedBlocks = (flags & 0x20) == 0;
+		this.blockChecksum = (flags & 0x10) != 0;
+		this.contentChecksum = ((flags & 0x04) != 0) ? new XXHash32() : null;
+
+		int bufferSize = this.blockSize + (this.linkedBlocks ? HISTORY_SIZE : 0);
+		if(this.buffer == null || this.buffer.length < bufferSize)
+			this.buffer = new byte[bufferSize];
+		if(this.compressed == null || this.compressed.length < this.blockSize)
+			this.compressed = new byte[this.blockSize];
+		this.bufferPos = this.bufferLength = 0;
+		this.inFrame = true;
+		return true;
+	}
+
+	/**
+	 * Read and decompress the next block.
+	 * @return	False at the end of the stream.
+	 */
+	private boolean readBlock() throws IOException{
+		while(true){
+			if(!this.inFrame && !this.readFrameHeader(false))
+				return false;
+			int size = this.readInt();
+			if(size == 0){
+				// End of the frame
+				if(this.contentChecksum != null && this.readInt() != this.contentChecksum.getValue())
+					throw new IOException("Corrupt LZ4 frame (wrong content checksum)");
+				this.inFrame = false;
+				continue;
+			}
+			boolean stored = (size & 0x80000000) != 0;
+			size &= 0x7fffffff;
+			if(size > this.blockSize)
+				throw new IOException("LZ4 block is larger than the block size");
+			this.readFully(this.compressed, 0, size);
+			if(this.blockChecksum && this.readInt() != XXHash32.hash(this.compressed, 0, size, 0))
+				throw new IOException("Corrupt LZ4 block (wrong checksum)");
+
+			// With linked blocks, the last 64KB of the previous blocks stay in front of the new block
+			int start = 0;
+			if(this.linkedBlocks){
+				int keep = Math.min(this.bufferLength, HISTORY_SIZE);
+				System.arraycopy(this.buffer, this.bufferLength - keep, this.buffer, 0, keep);
+				start = keep;
+			}
+			int length;
+			if(stored){
+				System.arraycopy(this.compressed, 0, this.buffer, start, size);
+				length = size;
+			}
+			else
+				length = decompressBlock(this.compressed, 0, size, this.buffer, start, start + this.blockSize, this.linkedBlocks ? 0 : start);
+			if(this.contentChecksum != null)
+				this.contentChecksum.update(this.buffer, start, length);
+			this.bufferPos = start;
+			this.bufferLength = start + length;
+			if(length > 0)
+				return true;
+		}
+	}
+
+	/**
+	 * Make sure there is unread data in the buffer.
+	 * @return	False at the end of the stream.
+	 */
+	private boolean fill() throws IOException{
+		if(this.bufferPos < this.bufferLength)
+			return true;
+		if(this.finished)
+			return false;
+		if(!this.readBlock()){
+			this.finished = true;
+			return false;
+		}
+		return true;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if(!fill())
+			return -1;
+		return this.buffer[this.bufferPos++] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if(off < 0 || len < 0 || len > b.length - off)
+			throw new IndexOutOfBoundsException();
+		if(len == 0)
+			return 0;
+		if(!fill())
+			return -1;
+		int n = Math.min(len, this.bufferLength - this.bufferPos);
+		System.arraycopy(this.buffer, this.bufferPos, b, off, n);
+		this.bufferPos += n;
+		return n;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		if(n <= 0 || !fill())
+			return 0;
+		int skipped = (int)Math.min(n, this.bufferLength - this.bufferPos);
+		this.bufferPos += skipped;
+		return skipped;
+	}
+
+	@Override
+	public int available() throws IOException {
+		return this.bufferLength - this.bufferPos;
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.in.close();
+	}
+}
@@ -0,0 +1,138 @@
+package sem.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Read-only memory mapping of a whole file.
+ *
+ * <p>A single MappedByteBuffer can only cover 2GB, so larger files are mapped in chunks of 1GB.
+ * Values of 4 or 8 bytes that are aligned to their size never cross a chunk boundary, so they are read from a single buffer.
+ * Byte ranges can cross the boundary and are copied from both chunks.
+ *
+ */
+public class MappedFile {
+	/**
+	 * The default size of one mapped chunk is 2^30 bytes (1GB).
+	 */
+	public static final int CHUNK_BITS = 30;
+
+	private String path;
+	private MappedByteBuffer[] chunks;
+	private int chunkBits;
+	private long chunkMask;
+	private long size;
+
+	/**
+	 * Map a file into memory.
+	 * @param path	Path to the file.
+	 */
+	public MappedFile(String path){
+		this(path, CHUNK_BITS);
+	}
+
+	/**
+	 * Map a file into memory, using chunks of the given size. Smaller chunks are mainly useful for testing.
+	 * @param path		Path to the file.
+	 * @param chunkBits	Size of the chunks as a power of two, between 3 and 30.
+	 */
+	public MappedFile(String path, int chunkBits){
+		if(chunkBits < 3 || chunkBits > CHUNK_BITS)
+			throw new RuntimeException("Invalid chunk size: 2^" + chunkBits);
+		this.path = path;
+		this.chunkBits = chunkBits;
+		this.chunkMask = (1L << chunkBits) - 1;
+		long chunkSize = 1L << chunkBits;
+		RandomAccessFile file = null;
+		try {
+			file = new RandomAccessFile(new File(path), "r");
+			FileChannel channel = file.getChannel();
+			this.size = channel.size();
+			long chunkCount = (this.size + chunkSize - 1) >>> chunkBits;
+			if(chunkCount > Integer.MAX_VALUE)
+				throw new RuntimeException("File is too large to map with chunks of 2^" + chunkBits + " bytes: " + path);
+			this.chunks = new MappedByteBuffer[(int)chunkCount];
+			for(int i = 0; i < chunkCount; i++){
+				long start = (long)i << chunkBits;
+				this.chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(chunkSize, this.size - start));
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		} finally {
+			// The mapping stays valid after the channel is closed
+			if(file != null){
+				try {
+					file.close();
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		}
+	}
+
+	public String getPath(){
+		return this.path;
+	}
+
+	/**
+	 * @return	Size of the file in bytes.
+	 */
+	public long size(){
+		return this.size;
+	}
+
+	private void checkRange(long position, long length){
+		if(this.chunks == null)
+			throw new RuntimeException("The file has been closed: " + this.path);
+		if(position < 0 || length < 0 || position + length > this.size)
+			throw new RuntimeException("Position " + position + " is outside the mapped file " + this.path);
+	}
+
+	/**
+	 * Read a 4-byte integer. The position has to be a multiple of 4.
+	 */
+	public int getInt(long position){
+		this.checkRange(position, 4);
+		return this.chunks[(int)(position >>> this.chunkBits)].getInt((int)(position & this.chunkMask));
+	}
+
+	/**
+	 * Read an 8-byte integer. The position has to be a multiple of 8.
+	 */
+	public long getLong(long position){
+		this.checkRange(position, 8);
+		return this.chunks[(int)(position >>> this.chunkBits)].getLong((int)(position & this.chunkMask));
+	}
+
+	/**
+	 * Copy a range of bytes from the file.
+	 * @param position	Position in the file.
+	 * @param target	Target array.
+	 * @param offset	Position in the target array.
+	 * @param length	Number of bytes.
+	 */
+	public void getBytes(long position, byte[] target, int offset, int length){
+		this.checkRange(position, length);
+		while(length > 0){
+			ByteBuffer chunk = this.chunks[(int)(position >>> this.chunkBits)].duplicate();
+			int chunkPosition = (int)(position & this.chunkMask);
+			int n = Math.min(length, chunk.capacity() - chunkPosition);
+			chunk.position(chunkPosition);
+			chunk.get(target, offset, n);
+			position += n;
+			offset += n;
+			length -= n;
+		}
+	}
+
+	/**
+	 * Release the mapping. The memory is unmapped when the buffers are garbage collected.
+	 */
+	public void close(){
+		this.chunks = null;
+	}
+}
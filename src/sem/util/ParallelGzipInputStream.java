@@ -0,0 +1,501 @@
+package sem.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Input stream that decompresses a multi-member gzip file on several threads.
+ *
+ * <p>The compressed file is divided into ranges of 256KB. For every range, a worker thread finds the first gzip member that starts in the range
+ * and decompresses the members from there, until it reaches a member that starts in the next range.
+ * Members are recognised by their header and checked with their CRC32, and the results are only used if every range continues
+ * exactly where the previous one ended.
+ *
+ * <p>This works well for blocked gzip files (written by BlockedGzipOutputStream, bgzip, etc.) and other files made of many small members.
+ * Before starting the threads, the first member is decompressed on the calling thread, to check that it ends within the first range and is followed by another member.
+ * Files with a single member (as written by the normal gzip tool) are decompressed sequentially with GZIPInputStream without starting any threads.
+ * If the file contains large members later on, or the ranges do not fit together, the rest of the file is also decompressed sequentially. The result is always the same as with GZIPInputStream.
+ *
+ */
+public class ParallelGzipInputStream extends InputStream {
+	/**
+	 * Size of the compressed range handled by one task.
+	 */
+	public static final int RANGE_SIZE = 1 << 18;
+	/**
+	 * Ranges that decompress to more than this are handled sequentially.
+	 */
+	private static final int MAX_OUTPUT = 1 << 26;
+	private static final int FEXTRA = 4, FNAME = 8, FCOMMENT = 16, FHCRC = 2;
+
+	/**
+	 * The decompressed data from one range.
+	 */
+	private static class Result{
+		private long start;
+		private long end;
+		private byte[] bytes;
+		private int length;
+		private boolean valid;
+	}
+
+	/**
+	 * Reads the compressed file through a buffer, using positional reads so that the channel can be shared between threads.
+	 */
+	private static class Input{
+		private FileChannel channel;
+		private long size;
+		private byte[] buffer;
+		private long bufferStart;
+		private int bufferPos;
+		private int bufferLength;
+
+		private Input(FileChannel channel, long size){
+			this.channel = channel;
+			this.size = size;
+			this.buffer = new byte[1 << 16];
+		}
+
+		private long position(){
+			return this.bufferStart + this.bufferPos;
+		}
+
+		private void seek(long position){
+			if(position >= this.bufferStart && position <= this.bufferStart + this.bufferLength)
+				this.bufferPos = (int)(position - this.bufferStart);
+			else {
+				this.bufferStart = position;
+				this.bufferPos = this.bufferLength = 0;
+			}
+		}
+
+		/**
+		 * Make sure there are unread bytes in the buffer.
+		 * @return	False at the end of the file.
+		 */
+		private boolean fill() throws IOException{
+			if(this.bufferPos < this.bufferLength)
+				return true;
+			this.bufferStart += this.bufferLength;
+			this.bufferPos = this.bufferLength = 0;
+			ByteBuffer target = ByteBuffer.wrap(this.buffer);
+			while(target.hasRemaining() && this.bufferStart + target.position() < this.size){
+				int n = this.channel.read(target, this.bufferStart + target.position());
+				if(n < 0)
+					break;
+			}
+			this.bufferLength = target.position();
+			return this.bufferLength > 0;
+		}
+
+		private int read() throws IOException{
+			if(!fill())
+				throw new ZipException("Unexpected end of gzip file");
+			return this.buffer[this.bufferPos++] & 0xff;
+		}
+
+		private int readShort() throws IOException{
+			return read() | (read() << 8);
+		}
+
+		private long readInt() throws IOException{
+			return readShort() | ((long)readShort() << 16);
+		}
+	}
+
+	private File file;
+	private FileChannel channel;
+	private long size;
+	private ExecutorService executor;
+	private ArrayDeque<Future<Result>> pending;
+	private ArrayDeque<Long> pendingEnds;
+	private int maxPending;
+	private long nextRangeStart;
+	private long position;
+	private InputStream sequential;
+	private byte[] current;
+	private int currentPos;
+	private int currentLength;
+	private boolean closed;
+
+	/**
+	 * Open a gzip file for decompression on as many threads as there are processors.
+	 * @param file	The file.
+	 * @throws IOException
+	 */
+	public ParallelGzipInputStream(File file) throws IOException{
+		this(file, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Open a gzip file for decompression on several threads.
+	 * @param file		The file.
+	 * @param threads	Number of threads.
+	 * @throws IOException
+	 */
+	public ParallelGzipInputStream(File file, int threads) throws IOException{
+		if(threads < 1)
+			throw new RuntimeException("Number of decompression threads has to be at least 1, found " + threads);
+		this.file = file;
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		this.size = this.channel.size();
+		this.executor = null;
+		this.pending = new ArrayDeque<Future<Result>>();
+		this.pendingEnds = new ArrayDeque<Long>();
+		this.maxPending = 2 * threads;
+		this.nextRangeStart = 0;
+		this.position = 0;
+		this.sequential = null;
+		this.current = null;
+		this.currentPos = this.currentLength = 0;
+		this.closed = false;
+		if(isMultiMember(this.channel, this.size)){
+			this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory(){
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "ParallelGzipInputStream");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		else
+			this.switchToSequential();
+	}
+
+	/**
+	 * Find the next position that looks like the start of a gzip member.
+	 * @return	The position, or -1 if there is none before the limit.
+	 */
+	private static long findHeader(Input input, long from, long limit) throws IOException{
+		input.seek(from);
+		int b0 = -1, b1 = -1, b2 = -1;
+		while(input.position() < limit + 3 && input.fill()){
+			int b3 = input.read();
+			if(b0 == 0x1f && b1 == 0x8b && b2 == 0x08 && (b3 & 0xe0) == 0)
+				return input.position() - 4;
+			b0 = b1;
+			b1 = b2;
+			b2 = b3;
+		}
+		return -1;
+	}
+
+	/**
+	 * Skip the header of a gzip member, starting at the current position of the input.
+	 */
+	private static void readHeader(Input input) throws IOException{
+		if(input.read() != 0x1f || input.read() != 0x8b || input.read() != 0x08)
+			throw new ZipException("Not in gzip format");
+		int flags = input.read();
+		if((flags & 0xe0) != 0)
+			throw new ZipException("Unsupported gzip flags");
+		for(int i = 0; i < 6; i++)
+			input.read();
+		if((flags & FEXTRA) != 0){
+			int length = input.readShort();
+			for(int i = 0; i < length; i++)
+				input.read();
+		}
+		if((flags & FNAME) != 0)
+			while(input.read() != 0);
+		if((flags & FCOMMENT) != 0)
+			while(input.read() != 0);
+		if((flags & FHCRC) != 0)
+			input.readShort();
+	}
+
+	/**
+	 * Check whether the file has more than one member, by decompressing the first member if it ends within the first range.
+	 * @return	True if the first member is followed by another one.
+	 */
+	private static boolean isMultiMember(FileChannel channel, long size){
+		Input input = new Input(channel, size);
+		Inflater inflater = new Inflater(true);
+		byte[] output = new byte[1 << 16];
+		try {
+			readHeader(input);
+			while(!inflater.finished()){
+				if(inflater.needsInput()){
+					if(input.position() >= RANGE_SIZE || !input.fill())
+						return false;
+					inflater.setInput(input.buffer, input.bufferPos, input.bufferLength - input.bufferPos);
+					input.bufferPos = input.bufferLength;
+				}
+				if(inflater.inflate(output) == 0 && inflater.needsDictionary())
+					return false;
+			}
+			input.bufferPos = input.bufferLength - inflater.getRemaining();
+			// CRC and size of the first member
+			input.readInt();
+			input.readInt();
+			long next = input.position();
+			return next < size && findHeader(input, next, next + 1) == next;
+		} catch (IOException e) {
+			return false;
+		} catch (DataFormatException e) {
+			return false;
+		} finally {
+			inflater.end();
+		}
+	}
+
+	/**
+	 * Decompress one gzip member, starting at the current position of the input.
+	 * @param result	The decompressed data is appended to the result.
+	 */
+	private static void inflateMember(Input input, Inflater inflater, Result result) throws IOException{
+		readHeader(input);
+
+		inflater.reset();
+		CRC32 crc = new CRC32();
+		int start = result.length;
+		try {
+			while(!inflater.finished()){
+				if(inflater.needsInput()){
+					if(!input.fill())
+						throw new ZipException("Unexpected end of gzip file");
+					inflater.setInput(input.buffer, input.bufferPos, input.bufferLength - input.bufferPos);
+					input.bufferPos = input.bufferLength;
+				}
+				if(result.length == result.bytes.length){
+					if(result.bytes.length >= MAX_OUTPUT)
+						throw new ZipException("Range is too large for parallel decompression");
+					byte[] bytes = new byte[Math.min(2 * result.bytes.length, MAX_OUTPUT)];
+					System.arraycopy(result.bytes, 0, bytes, 0, result.length);
+					result.bytes = bytes;
+				}
+				int n = inflater.inflate(result.bytes, result.length, result.bytes.length - result.length);
+				if(n == 0 && inflater.needsDictionary())
+					throw new ZipException("Gzip member needs a dictionary");
+				result.length += n;
+			}
+		} catch (DataFormatException e) {
+			throw new ZipException(e.getMessage());
+		}
+		input.bufferPos = input.bufferLength - inflater.getRemaining();
+
+		crc.update(result.bytes, start, result.length - start);
+		if(input.readInt() != crc.getValue())
+			throw new ZipException("Corrupt gzip member (wrong CRC)");
+		if(input.readInt() != ((result.length - start) & 0xffffffffL))
+			throw new ZipException("Corrupt gzip member (wrong size)");
+	}
+
+	/**
+	 * Decompress the members that start in a range of the compressed file.
+	 * If the first candidate is not a real member, the next one is tried.
+	 * @return	The result, which is invalid if a member could not be decompressed.
+	 */
+	private static Result inflateRange(FileChannel channel, long size, long rangeStart, long rangeEnd){
+		Input input = new Input(channel, size);
+		Inflater inflater = new Inflater(true);
+		Result result = new Result();
+		result.bytes = new byte[4 * RANGE_SIZE];
+		result.valid = false;
+		try {
+			long candidate = (rangeStart == 0) ? 0 : findHeader(input, rangeStart, rangeEnd);
+			while(candidate >= 0){
+				result.length = 0;
+				try {
+					input.seek(candidate);
+					inflateMember(input, inflater, result);
+					break;
+				} catch (IOException e) {
+					if(rangeStart == 0)
+						return result;
+					candidate = findHeader(input, candidate + 1, rangeEnd);
+				}
+			}
+			if(candidate < 0){
+				// No member starts in this range
+				result.start = result.end = -1;
+				result.length = 0;
+				result.valid = true;
+				return result;
+			}
+			result.start = candidate;
+			while(input.position() < rangeEnd && input.position() < size)
+				inflateMember(input, inflater, result);
+			result.end = input.position();
+			result.valid = true;
+		} catch (IOException e) {
+			result.valid = false;
+		} finally {
+			inflater.end();
+		}
+		return result;
+	}
+
+	/**
+	 * Start decompressing more ranges, up to the limit of pending tasks.
+	 */
+	private void submitRanges(){
+		while(this.pending.size() < this.maxPending && this.nextRangeStart < this.size){
+			final long rangeStart = this.nextRangeStart;
+			final long rangeEnd = Math.min(rangeStart + RANGE_SIZE, this.size);
+			final FileChannel channel = this.channel;
+			final long size = this.size;
+			this.pending.add(this.executor.submit(new Callable<Result>(){
+				@Override
+				public Result call() {
+					return inflateRange(channel, size, rangeStart, rangeEnd);
+				}
+			}));
+			this.pendingEnds.add(rangeEnd);
+			this.nextRangeStart = rangeEnd;
+		}
+	}
+
+	/**
+	 * Stop the parallel decompression and continue with GZIPInputStream from the current position.
+	 */
+	private void switchToSequential() throws IOException{
+		for(Future<Result> future : this.pending)
+			future.cancel(false);
+		this.pending.clear();
+		this.pendingEnds.clear();
+		if(this.executor != null)
+			this.executor.shutdown();
+		this.nextRangeStart = this.size;
+		this.channel.position(this.position);
+		this.sequential = new GZIPInputStream(Channels.newInputStream(this.channel), 1 << 16);
+		this.current = new byte[1 << 16];
+	}
+
+	/**
+	 * Make sure there are unread bytes in the current buffer.
+	 * @return	False at the end of the file.
+	 * @throws IOException
+	 */
+	private boolean fill() throws IOException{
+		if(this.closed)
+			throw new IOException("Stream closed");
+		while(this.currentPos >= this.currentLength){
+			if(this.sequential != null){
+				int n = this.sequential.read(this.current, 0, this.current.length);
+				if(n < 0)
+					return false;
+				this.currentPos = 0;
+				this.currentLength = n;
+				continue;
+			}
+
+			this.submitRanges();
+			Future<Result> future = this.pending.poll();
+			if(future == null){
+				// An empty file is not a valid gzip file, which GZIPInputStream reports
+				if(this.size == 0)
+					this.switchToSequential();
+				else
+					return false;
+				continue;
+			}
+			Result result;
+			try {
+				result = future.get();
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			} catch (ExecutionException e) {
+				result = null;
+			}
+			long rangeEnd = this.pendingEnds.poll();
+			if(this.position >= rangeEnd)
+				continue; // The range is covered by members that started earlier
+			if(result == null || !result.valid || result.start != this.position){
+				this.switchToSequential();
+				continue;
+			}
+			this.current = result.bytes;
+			this.currentPos = 0;
+			this.currentLength = result.length;
+			this.position = result.end;
+		}
+		return true;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if(!fill())
+			return -1;
+		return this.current[this.currentPos++] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if(off < 0 || len < 0 || len > b.length - off)
+			throw new IndexOutOfBoundsException();
+		if(len == 0)
+			return 0;
+		if(!fill())
+			return -1;
+		int n = Math.min(len, this.currentLength - this.currentPos);
+		System.arraycopy(this.current, this.currentPos, b, off, n);
+		this.currentPos += n;
+		return n;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		if(n <= 0 || !fill())
+			return 0;
+		int skipped = (int)Math.min(n, this.currentLength - this.currentPos);
+		this.currentPos += skipped;
+		return skipped;
+	}
+
+	@Override
+	public int available() throws IOException {
+		if(this.closed)
+			return 0;
+		return this.currentLength - this.currentPos;
+	}
+
+	/**
+	 * Check whether the file is still being decompressed on the worker threads.
+	 * @return	False for files with a single member, and after switching to sequential decompression.
+	 */
+	public boolean isParallel(){
+		return this.executor != null && this.sequential == null;
+	}
+
+	/**
+	 * @return	The file that is being decompressed.
+	 */
+	public File getFile(){
+		return this.file;
+	}
+
+	/**
+	 * Stop the worker threads and close the file.
+	 */
+	@Override
+	public void close() throws IOException {
+		if(this.closed)
+			return;
+		this.closed = true;
+		if(this.executor != null)
+			this.executor.shutdownNow();
+		this.pending.clear();
+		this.pendingEnds.clear();
+		this.current = null;
+		this.channel.close();
+	}
+}
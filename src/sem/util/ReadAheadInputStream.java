@@ -0,0 +1,216 @@
+package sem.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Input stream that reads ahead of the consumer in a background thread.
+ *
+ * <p>The thread reads the wrapped stream (including any decompression it does) into a fixed ring of large buffers,
+ * and the consumer reads from the buffers that have already been filled. When all the buffers are full, the thread waits
+ * until the consumer has finished with one of them, so memory use is bounded by depth * bufferSize.
+ * Errors in the background thread are thrown from read() once the consumer reaches them.
+ *
+ * <p>The stream itself is not thread-safe: it should be used by one consumer at a time.
+ *
+ */
+public class ReadAheadInputStream extends InputStream {
+	/**
+	 * The default size of one buffer is 1MB.
+	 */
+	public static final int BUFFER_SIZE = 1 << 20;
+
+	/**
+	 * A filled buffer. A chunk with length -1 marks the end of the stream.
+	 */
+	private static class Chunk{
+		private byte[] bytes;
+		private int length;
+		private IOException exception;
+
+		private Chunk(byte[] bytes){
+			this.bytes = bytes;
+		}
+	}
+
+	private InputStream in;
+	private ArrayBlockingQueue<Chunk> free;
+	private ArrayBlockingQueue<Chunk> filled;
+	private Thread thread;
+	private Chunk current;
+	private int position;
+	private boolean finished;
+	private volatile boolean closed;
+
+	/**
+	 * Start reading ahead from the stream, using buffers of the default size.
+	 * @param in	The wrapped stream.
+	 * @param depth	Number of buffers.
+	 */
+	public ReadAheadInputStream(InputStream in, int depth){
+		this(in, depth, BUFFER_SIZE);
+	}
+
+	/**
+	 * Start reading ahead from the stream.
+	 * @param in			The wrapped stream.
+	 * @param depth			Number of buffers, at least 2. One of them is being read by the consumer, the others can be filled by the background thread.
+	 * @param bufferSize	Size of one buffer in bytes.
+	 */
+	public ReadAheadInputStream(InputStream in, int depth, int bufferSize){
+		if(depth < 2)
+			throw new RuntimeException("Read-ahead depth has to be at least 2, found " + depth);
+		if(bufferSize < 1)
+			throw new RuntimeException("Invalid read-ahead buffer size: " + bufferSize);
+		this.in = in;
+		this.free = new ArrayBlockingQueue<Chunk>(depth);
+		this.filled = new ArrayBlockingQueue<Chunk>(depth);
+		for(int i = 0; i < depth; i++)
+			this.free.add(new Chunk(new byte[bufferSize]));
+		this.current = null;
+		this.position = 0;
+		this.finished = false;
+		this.closed = false;
+
+		this.thread = new Thread(new Runnable(){
+			@Override
+			public void run() {
+				fillBuffers();
+			}
+		}, "ReadAheadInputStream");
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	/**
+	 * Loop of the background thread.
+	 */
+	private void fillBuffers(){
+		try {
+			while(!this.closed){
+				Chunk chunk = this.free.take();
+				// Filling the whole buffer, so that the consumer gets as few handovers as possible
+				int length = 0;
+				IOException exception = null;
+				try {
+					while(length < chunk.bytes.length){
+						int n = this.in.read(chunk.bytes, length, chunk.bytes.length - length);
+						if(n < 0)
+							break;
+						length += n;
+					}
+				} catch (IOException e) {
+					exception = e;
+				}
+				if(length > 0){
+					chunk.length = length;
+					chunk.exception = null;
+					this.filled.put(chunk);
+					if(exception == null && length == chunk.bytes.length)
+						continue;
+					chunk = this.free.take();
+				}
+				// End of the stream, or an error
+				chunk.length = -1;
+				chunk.exception = exception;
+				this.filled.put(chunk);
+				return;
+			}
+		} catch (InterruptedException e) {
+			// The stream has been closed
+		}
+	}
+
+	/**
+	 * Make sure there are unread bytes in the current buffer.
+	 * @return	False at the end of the stream.
+	 * @throws IOException
+	 */
+	private boolean fill() throws IOException{
+		if(this.closed)
+			throw new IOException("Stream closed");
+		if(this.current != null && this.position < this.current.length)
+			return true;
+		if(this.finished)
+			return false;
+		if(this.current != null){
+			this.free.add(this.current);
+			this.current = null;
+		}
+		Chunk chunk;
+		try {
+			chunk = this.filled.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+		if(chunk.length < 0){
+			this.finished = true;
+			if(chunk.exception != null)
+				throw chunk.exception;
+			return false;
+		}
+		this.current = chunk;
+		this.position = 0;
+		return true;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if(!fill())
+			return -1;
+		return this.current.bytes[this.position++] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if(off < 0 || len < 0 || len > b.length - off)
+			throw new IndexOutOfBoundsException();
+		if(len == 0)
+			return 0;
+		if(!fill())
+			return -1;
+		int n = Math.min(len, this.current.length - this.position);
+		System.arraycopy(this.current.bytes, this.position, b, off, n);
+		this.position += n;
+		return n;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		if(n <= 0 || !fill())
+			return 0;
+		int skipped = (int)Math.min(n, this.current.length - this.position);
+		this.position += skipped;
+		return skipped;
+	}
+
+	@Override
+	public int available() throws IOException {
+		if(this.closed || this.current == null)
+			return 0;
+		return this.current.length - this.position;
+	}
+
+	/**
+	 * Stop the background thread and close the wrapped stream.
+	 */
+	@Override
+	public void close() throws IOException {
+		if(this.closed)
+			return;
+		this.closed = true;
+		this.thread.interrupt();
+		try {
+			this.thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		this.free.clear();
+		this.filled.clear();
+		this.current = null;
+		this.in.close();
+	}
+}
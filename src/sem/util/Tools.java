@@ -137,6 +137,43 @@ public class Tools {
     	}
     }
     
+    /**
+     * Get the integer from a part of the text, without creating a new string. If not an integer, return the default value.
+     * Accepts the same input as Integer.parseInt().
+     * @param text
+     * @param start
+     * @param end
+     * @param def
+     * @return
+     */
+    public static int getInt(CharSequence text, int start, int end, int def)
+    {
+    	if(text == null || start >= end)
+    		return def;
+    	boolean negative = false;
+    	int i = start;
+    	char first = text.charAt(i);
+    	if(first == '-' || first == '+'){
+    		negative = (first == '-');
+    		if(++i == end)
+    			return def;
+    	}
+    	long value = 0;
+    	for(; i < end; i++){
+    		int digit = Character.digit(text.charAt(i), 10);
+    		if(digit < 0)
+    			return def;
+    		value = value * 10 + digit;
+    		if(value > (long)Integer.MAX_VALUE + 1)
+    			return def;
+    	}
+    	if(negative)
+    		value = -value;
+    	if(value > Integer.MAX_VALUE)
+    		return def;
+    	return (int)value;
+    }
+    
     /**
      * Get the double from text. If not a double, return the default value.
      * @param text
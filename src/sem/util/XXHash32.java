@@ -0,0 +1,124 @@
+package sem.util;
+
+/**
+ * The 32-bit xxHash checksum, as used in the LZ4 frame format.
+ * The data can be added in pieces with update(), getValue() returns the checksum of everything so far.
+ *
+ */
+public class XXHash32 {
+	private static final int PRIME1 = 0x9E3779B1;
+	private static final int PRIME2 = 0x85EBCA77;
+	private static final int PRIME3 = 0xC2B2AE3D;
+	private static final int PRIME4 = 0x27D4EB2F;
+	private static final int PRIME5 = 0x165667B1;
+
+	private int seed;
+	private int v1, v2, v3, v4;
+	private byte[] buffer;
+	private int bufferLength;
+	private long totalLength;
+
+	public XXHash32(){
+		this(0);
+	}
+
+	public XXHash32(int seed){
+		this.seed = seed;
+		this.buffer = new byte[16];
+		this.reset();
+	}
+
+	/**
+	 * Calculate the checksum of a byte range.
+	 */
+	public static int hash(byte[] b, int off, int len, int seed){
+		XXHash32 hash = new XXHash32(seed);
+		hash.update(b, off, len);
+		return hash.getValue();
+	}
+
+	/**
+	 * Start again with no data.
+	 */
+	public void reset(){
+		this.v1 = this.seed + PRIME1 + PRIME2;
+		this.v2 = this.seed + PRIME2;
+		this.v3 = this.seed;
+		this.v4 = this.seed - PRIME1;
+		this.bufferLength = 0;
+		this.totalLength = 0;
+	}
+
+	private static int readInt(byte[] b, int pos){
+		return (b[pos] & 0xff) | ((b[pos+1] & 0xff) << 8) | ((b[pos+2] & 0xff) << 16) | ((b[pos+3] & 0xff) << 24);
+	}
+
+	private static int round(int acc, int input){
+		acc += input * PRIME2;
+		acc = Integer.rotateLeft(acc, 13);
+		return acc * PRIME1;
+	}
+
+	private void stripe(byte[] b, int pos){
+		this.v1 = round(this.v1, readInt(b, pos));
+		this.v2 = round(this.v2, readInt(b, pos + 4));
+		this.v3 = round(this.v3, readInt(b, pos + 8));
+		this.v4 = round(this.v4, readInt(b, pos + 12));
+	}
+
+	/**
+	 * Add data to the checksum.
+	 */
+	public void update(byte[] b, int off, int len){
+		this.totalLength += len;
+		if(this.bufferLength > 0){
+			int n = Math.min(len, 16 - this.bufferLength);
+			System.arraycopy(b, off, this.buffer, this.bufferLength, n);
+			this.bufferLength += n;
+			off += n;
+			len -= n;
+			if(this.bufferLength < 16)
+				return;
+			this.stripe(this.buffer, 0);
+			this.bufferLength = 0;
+		}
+		int end = off + len;
+		while(off + 16 <= end){
+			this.stripe(b, off);
+			off += 16;
+		}
+		System.arraycopy(b, off, this.buffer, 0, end - off);
+		this.bufferLength = end - off;
+	}
+
+	/**
+	 * @return	The checksum of all the data added so far.
+	 */
+	public int getValue(){
+		int h;
+		if(this.totalLength >= 16)
+			h = Integer.rotateLeft(this.v1, 1) + Integer.rotateLeft(this.v2, 7) + Integer.rotateLeft(this.v3, 12) + Integer.rotateLeft(this.v4, 18);
+		else
+			h = this.seed + PRIME5;
+		h += (int)this.totalLength;
+
+		int pos = 0;
+		while(pos + 4 <= this.bufferLength){
+			h += readInt(this.buffer, pos) * PRIME3;
+			h = Integer.rotateLeft(h, 17) * PRIME4;
+			pos += 4;
+		}
+		while(pos < this.bufferLength){
+			h += (this.buffer[pos] & 0xff) * PRIME5;
+			h = Integer.rotateLeft(h, 11) * PRIME1;
+			pos++;
+		}
+
+		h ^= h >>> 15;
+		h *= PRIME2;
+		h ^= h >>> 13;
+		h *= PRIME3;
+		h ^= h >>> 16;
+		return h;
+	}
+}
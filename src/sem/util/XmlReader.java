@@ -1,11 +1,14 @@
 package sem.util;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.SequenceInputStream;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.zip.GZIPInputStream;
 
 import javax.xml.namespace.NamespaceContext;
 import javax.xml.namespace.QName;
@@ -18,12 +21,114 @@ import javax.xml.stream.XMLStreamReader;
  * Class for simplifying the reading of XML documents.
  * It can take as input a single file or a directory of files, either plain text or GZIP-ed.
  *
+ * <p>If an element name is tracked, the reader also records the byte offset of every start tag with that name,
+ * and can later seek back to one of them.
+ *
  */
 public class XmlReader implements XMLStreamReader{
+	/**
+	 * Looking up the StAX implementation is slow, so one factory is shared by all readers and files.
+	 * The factory is not configured after it is created, and the stream readers it creates are independent, so sharing it between threads is safe.
+	 */
+	private static final XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+	
 	private ArrayList<File> inputFiles;
-	private File currentInputFile;
+	private int currentFileIndex;
 	private XMLStreamReader xmlStreamReader;
 	private InputStream fileInputStream;
+	private String trackedElement;
+	private ElementOffsetInputStream offsetInputStream;
+	private int readAheadDepth;
+	private int decompressionThreads;
+	
+	/**
+	 * Input stream that finds the byte offsets of start tags with a given name, as the bytes pass through it.
+	 * The XML parser reads ahead, so the offset of an element has always been found by the time the parser returns it.
+	 */
+	private static class ElementOffsetInputStream extends FilterInputStream{
+		private byte[] pattern;
+		private int matched;
+		private long position;
+		private long[] offsets;
+		private int head;
+		private int tail;
+
+		public ElementOffsetInputStream(InputStream in, String elementName, long startOffset){
+			super(in);
+			this.pattern = ("<" + elementName).getBytes();
+			this.matched = 0;
+			this.position = startOffset;
+			this.offsets = new long[16];
+			this.head = 0;
+			this.tail = 0;
+		}
+
+		private void scan(byte[] b, int off, int len){
+			for(int i = off; i < off + len; i++){
+				byte c = b[i];
+				if(this.matched == this.pattern.length){
+					if(c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '>' || c == '/')
+						this.add(this.position + (i - off) - this.pattern.length);
+					this.matched = 0;
+				}
+				if(c == this.pattern[this.matched])
+					this.matched++;
+				else
+					this.matched = (c == '<') ? 1 : 0;
+			}
+			this.position += len;
+		}
+
+		private void add(long offset){
+			if(this.tail == this.offsets.length){
+				if(this.head > 0){
+					System.arraycopy(this.offsets, this.head, this.offsets, 0, this.tail - this.head);
+					this.tail -= this.head;
+					this.head = 0;
+				}
+				else {
+					long[] newOffsets = new long[this.offsets.length * 2];
+					System.arraycopy(this.offsets, 0, newOffsets, 0, this.tail);
+					this.offsets = newOffsets;
+				}
+			}
+			this.offsets[this.tail++] = offset;
+		}
+
+		public long poll(){
+			if(this.head == this.tail)
+				return -1;
+			return this.offsets[this.head++];
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			int count = this.read(b, 0, 1);
+			return (count <= 0) ? -1 : (b[0] & 0xff);
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int count = super.read(b, off, len);
+			if(count > 0)
+				this.scan(b, off, count);
+			return count;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			byte[] b = new byte[(int)Math.min(n, 8192)];
+			long skipped = 0;
+			while(skipped < n){
+				int count = this.read(b, 0, (int)Math.min(n - skipped, b.length));
+				if(count <= 0)
+					break;
+				skipped += count;
+			}
+			return skipped;
+		}
+	}
 	
 	/**
 	 * Constructs a new XmlReader.
@@ -31,8 +136,12 @@ public class XmlReader implements XMLStreamReader{
 	 */
 	public XmlReader(String inputPath){
 		this.inputFiles = new ArrayList<File>();
-		this.currentInputFile = null;
+		this.currentFileIndex = -1;
 		this.xmlStreamReader = null;
+		this.trackedElement = null;
+		this.offsetInputStream = null;
+		this.readAheadDepth = FileReader.getDefaultReadAheadDepth();
+		this.decompressionThreads = FileReader.getDecompressionThreads();
 		
 		File input = new File(inputPath);
 		if(!input.exists()){
@@ -54,36 +163,148 @@ public class XmlReader implements XMLStreamReader{
 		} catch (Exception e) {
 			throw new RuntimeException(e);
 		}
-		this.currentInputFile = null;
+		this.currentFileIndex = -1;
 		this.xmlStreamReader = null;
 		this.fileInputStream = null;
+		this.offsetInputStream = null;
+	}
+	
+	/**
+	 * Start recording the byte offsets of all start tags with this name. Needs to be set before reading starts.
+	 * @param elementName	Name of the element, for example "sentence".
+	 */
+	public void setTrackedElement(String elementName){
+		this.trackedElement = elementName;
+	}
+	
+	/**
+	 * Read and decompress the files in a background thread, ahead of the parser. Needs to be set before reading starts.
+	 * @param depth	Number of buffers that are filled ahead, or 0 to read on the calling thread.
+	 */
+	public void setReadAheadDepth(int depth){
+		if(depth != 0 && depth < 2)
+			throw new RuntimeException("Read-ahead depth has to be 0 or at least 2, found " + depth);
+		this.readAheadDepth = depth;
+	}
+	
+	/**
+	 * Decompress .gz files on several threads (see FileReader.setDecompressionThreads()). Needs to be set before reading starts.
+	 * @param threads	Number of threads, 1 to use GZIPInputStream.
+	 */
+	public void setDecompressionThreads(int threads){
+		if(threads < 1)
+			throw new RuntimeException("Number of decompression threads has to be at least 1, found " + threads);
+		this.decompressionThreads = threads;
+	}
+	
+	/**
+	 * Get the list of input files, in the order they are read.
+	 * @return	List of files.
+	 */
+	public ArrayList<File> getInputFiles(){
+		return this.inputFiles;
+	}
+	
+	/**
+	 * Get the index (in getInputFiles()) of the file that is currently being read.
+	 * @return	File index, or -1 if reading has not started.
+	 */
+	public int getCurrentFileIndex(){
+		return this.currentFileIndex;
+	}
+	
+	/**
+	 * Get the byte offset of the next tracked start tag in the current file.
+	 * Calling this every time the parser returns a tracked start element gives the offset of that element.
+	 * @return	Byte offset in the (decompressed) file, or -1 if no element is being tracked.
+	 */
+	public long nextElementOffset(){
+		if(this.offsetInputStream == null)
+			return -1;
+		return this.offsetInputStream.poll();
+	}
+	
+	private InputStream openRawInputStream(File file) throws IOException{
+		return FileReader.openInputStream(file, 0, this.readAheadDepth, this.decompressionThreads);
+	}
+	
+	private void openInputFile(int fileIndex, InputStream inputStream) throws XMLStreamException{
+		this.close();
+		this.currentFileIndex = fileIndex;
+		this.fileInputStream = inputStream;
+		this.xmlStreamReader = inputFactory.createXMLStreamReader(this.fileInputStream);
 	}
 	
 	public void openNextInputFile() {
-
-		int currentIndex = -1;
-		if(this.currentInputFile != null)
-			currentIndex = inputFiles.indexOf(currentInputFile);
-
-		if(currentIndex + 1 >= 0 && currentIndex + 1 < inputFiles.size())
-			currentInputFile = inputFiles.get(currentIndex + 1);
-		else 
+		if(this.currentFileIndex + 1 >= inputFiles.size())
 			return;
 
 		try {
 			this.close();
-			
-			if(currentInputFile.getName().endsWith(".gz"))
-				this.fileInputStream = new GZIPInputStream(new FileInputStream(currentInputFile));
-			else
-				this.fileInputStream = new FileInputStream(currentInputFile);
-
-			this.xmlStreamReader = XMLInputFactory.newInstance().createXMLStreamReader(this.fileInputStream);
+			int fileIndex = this.currentFileIndex + 1;
+			InputStream inputStream = this.openRawInputStream(inputFiles.get(fileIndex));
+			this.offsetInputStream = null;
+			if(this.trackedElement != null)
+				inputStream = this.offsetInputStream = new ElementOffsetInputStream(inputStream, this.trackedElement, 0);
+			this.openInputFile(fileIndex, inputStream);
 		} catch (Exception e) {
 			throw new RuntimeException(e);
 		}
 	}
 	
+	/**
+	 * Continue reading from a tracked start tag, using an offset returned by nextElementOffset().
+	 * The part of the file before the first tracked element (XML declaration, root element, etc.) is read again,
+	 * so the parser sees a document where the elements before the offset have been left out.
+	 * In blocked gzip files (.bgz), the blocks between the header and the offset are not decompressed (see FileReader.openInputStream()).
+	 * Reading carries on to the following files, as usual.
+	 * @param fileIndex	Index of the file.
+	 * @param offset	Byte offset of a tracked start tag.
+	 */
+	public void seek(int fileIndex, long offset){
+		if(this.trackedElement == null)
+			throw new RuntimeException("XmlReader can only seek to tracked elements, but no element is being tracked.");
+		if(fileIndex < 0 || fileIndex >= this.inputFiles.size())
+			throw new RuntimeException("File index out of range in XmlReader: " + fileIndex);
+		
+		try {
+			this.close();
+			InputStream raw = this.openRawInputStream(this.inputFiles.get(fileIndex));
+			
+			// Reading the header, up to the first tracked element
+			ElementOffsetInputStream headerScanner = new ElementOffsetInputStream(raw, this.trackedElement, 0);
+			ByteArrayOutputStream header = new ByteArrayOutputStream();
+			byte[] b = new byte[1];
+			long first = -1;
+			while(first < 0 && headerScanner.read(b, 0, 1) > 0){
+				header.write(b[0]);
+				first = headerScanner.poll();
+			}
+			if(first < 0 || offset < first)
+				throw new RuntimeException("No tracked element at offset " + offset + " in file " + this.inputFiles.get(fileIndex).getPath());
+			
+			// Bytes that were read after the start of the first element
+			byte[] headerBytes = header.toByteArray();
+			long consumed = headerBytes.length;
+			InputStream rest;
+			if(offset < consumed)
+				rest = new SequenceInputStream(new ByteArrayInputStream(headerBytes, (int)offset, (int)(consumed - offset)), raw);
+			else {
+				// The file is opened again at the offset, so that blocked gzip files can skip the blocks in between
+				raw.close();
+				rest = FileReader.openInputStream(this.inputFiles.get(fileIndex), offset, this.readAheadDepth, this.decompressionThreads);
+			}
+			
+			this.offsetInputStream = new ElementOffsetInputStream(rest, this.trackedElement, offset);
+			InputStream inputStream = new SequenceInputStream(new ByteArrayInputStream(headerBytes, 0, (int)first), this.offsetInputStream);
+			this.openInputFile(fileIndex, inputStream);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		} catch (XMLStreamException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
 
 	@Override
 	public boolean hasNext(){